@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.collections;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Keeps the top thousand of ten million longs, in a random order or 
+ * the worst case of ascending order, with a 
+ * SortedLimitedList, a BoundedHeap, a StripedBoundedHeap offered to 
+ * by one thread, and a BoundedLongHeap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class BoundedHeapBenchmark {
+
+    private static final Comparator COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            return ((Long) o1).compareTo((Long) o2);
+        }
+    };
+
+    @Param({ "10000000" })
+    private int size;
+
+    @Param({ "1000" })
+    private int capacity;
+
+    @Param({ "random", "ascending" })
+    private String order;
+
+    private long[] values;
+    private Long[] objects;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        values = new long[size];
+        objects = new Long[size];
+        for(int i=0; i<size; i++) {
+            values[i] = "ascending".equals(order) ? i : random.nextLong();
+            objects[i] = Long.valueOf(values[i]);
+        }
+    }
+
+    @Benchmark
+    public List sortedLimitedList() {
+        List list = new SortedLimitedList(capacity, COMPARATOR);
+        for(int i=0; i<size; i++) {
+            list.add(objects[i]);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List boundedHeap() {
+        BoundedHeap heap = new BoundedHeap(capacity, COMPARATOR);
+        for(int i=0; i<size; i++) {
+            heap.offer(objects[i]);
+        }
+        return heap.toSortedList();
+    }
+
+    @Benchmark
+    public List stripedBoundedHeap() {
+        StripedBoundedHeap heap = new StripedBoundedHeap(capacity, COMPARATOR);
+        for(int i=0; i<size; i++) {
+            heap.offer(objects[i]);
+        }
+        return heap.toSortedList();
+    }
+
+    @Benchmark
+    public long[] boundedLongHeap() {
+        BoundedLongHeap heap = new BoundedLongHeap(capacity);
+        for(int i=0; i<size; i++) {
+            heap.offer(values[i]);
+        }
+        return heap.toArray();
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name of Genjava-Core nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.collections;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Indexes every class on the benchmark's classpath and in the
+ * runtime's modules by its fully qualified name, as ClassIndex does,
+ * then looks each class up and lists the classes of each package.
+ * A HashMap indexing the same names is the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class FQMapBenchmark {
+
+    private String[] classes;
+    private String[] names;
+    private String[] packages;
+
+    private FQMap index;
+
+    @Setup
+    public void setUp() throws IOException {
+        TreeSet found = new TreeSet();
+        StringTokenizer path = new StringTokenizer(System.getProperty("java.class.path"), File.pathSeparator);
+        while(path.hasMoreTokens()) {
+            File file = new File(path.nextToken());
+            if(file.isFile()) {
+                ZipFile zip = new ZipFile(file);
+                Enumeration entries = zip.entries();
+                while(entries.hasMoreElements()) {
+                    addClass(found, ((ZipEntry) entries.nextElement()).getName());
+                }
+                zip.close();
+            }
+        }
+        final TreeSet modules = found;
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        Files.walkFileTree(jrt.getPath("/modules"), new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // /modules/java.base/java/lang/String.class
+                String name = file.toString();
+                int idx = name.indexOf('/', "/modules/".length());
+                addClass(modules, name.substring(idx + 1));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        classes = (String[]) found.toArray(new String[0]);
+        names = new String[classes.length];
+        TreeSet pckgs = new TreeSet();
+        for(int i=0; i<classes.length; i++) {
+            int idx = classes[i].lastIndexOf('.');
+            names[i] = classes[i].substring(idx + 1);
+            if(idx != -1) {
+                pckgs.add(classes[i].substring(0, idx));
+            }
+        }
+        packages = (String[]) pckgs.toArray(new String[0]);
+        index = index();
+        System.out.println(classes.length + " classes in " + packages.length + " packages");
+    }
+
+    private static void addClass(Collection found, String entry) {
+        if(entry.endsWith(".class") && entry.indexOf('$') == -1 && entry.indexOf('-') == -1) {
+            found.add(entry.substring(0, entry.length() - 6).replace('/', '.'));
+        }
+    }
+
+    @Benchmark
+    public FQMap index() {
+        FQMap map = new FQMap();
+        for(int i=0; i<classes.length; i++) {
+            map.put(classes[i], names[i]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map indexHashMap() {
+        Map map = new HashMap();
+        for(int i=0; i<classes.length; i++) {
+            map.put(classes[i], names[i]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public int lookup() {
+        int n = 0;
+        for(int i=0; i<classes.length; i++) {
+            if(index.get(classes[i]) != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int classesInPackages() {
+        int n = 0;
+        for(int i=0; i<packages.length; i++) {
+            Collection classes = ((FQMap) index.get(packages[i])).getSeparatedValues()[1];
+            if(classes != null) {
+                n += classes.size();
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int iterate() {
+        int n = 0;
+        Iterator it = index.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            n += entry.getKey().hashCode();
+        }
+        return n;
+    }
+
+}
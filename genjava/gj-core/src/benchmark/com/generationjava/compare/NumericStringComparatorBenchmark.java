@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.compare;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorts a million file names and version strings, in the natural 
+ * String order for comparison, with NumericStringComparator, and 
+ * with NumericStringKeys both made for the sort and made beforehand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class NumericStringComparatorBenchmark {
+
+    @Param({ "1000000" })
+    private int size;
+
+    private String[] strings;
+    private NumericStringKey[] keys;
+    private NumericStringComparator comparator = new NumericStringComparator();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] names = { "image", "IMG_", "report-", "log.", "track " };
+        String[] extensions = { ".jpg", ".txt", ".gz", "" };
+        strings = new String[size];
+        for(int i=0; i<size; i++) {
+            if(random.nextBoolean()) {
+                // file names with counters, some zero padded
+                String number = String.valueOf(random.nextInt(100000));
+                if(random.nextInt(4) == 0) {
+                    number = "000".substring(0, random.nextInt(3) + 1) + number;
+                }
+                strings[i] = names[random.nextInt(names.length)] + number + 
+                             extensions[random.nextInt(extensions.length)];
+            } else {
+                // version strings
+                strings[i] = "lib-" + random.nextInt(20) + "." + random.nextInt(40) + "." + 
+                             random.nextInt(200) + (random.nextInt(3) == 0 ? "-beta" + random.nextInt(10) : "");
+            }
+        }
+        keys = new NumericStringKey[size];
+        for(int i=0; i<size; i++) {
+            keys[i] = comparator.getKey(strings[i]);
+        }
+    }
+
+    @Benchmark
+    public Object[] naturalOrder() {
+        Object[] copy = (Object[]) strings.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Object[] comparator() {
+        Object[] copy = (Object[]) strings.clone();
+        Arrays.sort(copy, comparator);
+        return copy;
+    }
+
+    @Benchmark
+    public Object[] keys() {
+        Object[] copy = new Object[size];
+        for(int i=0; i<size; i++) {
+            copy[i] = comparator.getKey(strings[i]);
+        }
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Object[] precomputedKeys() {
+        Object[] copy = (Object[]) keys.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps the N greatest objects offered to it, as a SortedLimitedList 
+ * would, but in a binary heap with the least of them on top. An offer 
+ * costs O(log N) rather than the O(N) of inserting into a sorted list, 
+ * so this suits keeping the top N of a great many objects when they 
+ * are only wanted in order at the end.
+ * Objects which compare equal are kept and ordered as a 
+ * SortedLimitedList would, the earliest offered first.
+ * Not synchronized, see StripedBoundedHeap for use by many threads.
+ */
+public class BoundedHeap {
+
+    private Comparator comparator;
+    private int capacity;
+
+    // heap ordered, least at 0
+    private Object[] heap;
+    // the order each was offered in, to break ties
+    private long[] sequence;
+    private int size;
+    private long offered;
+
+    public BoundedHeap(int capacity, Comparator comparator) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: "+capacity);
+        }
+        this.capacity = capacity;
+        this.comparator = comparator;
+        int initial = Math.min(capacity, 16);
+        this.heap = new Object[initial];
+        this.sequence = new long[initial];
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public Comparator getComparator() {
+        return this.comparator;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+    /**
+     * @return false if obj was not kept, as the heap is full and obj 
+     *         is no greater than the least object in it
+     */
+    public boolean offer(Object obj) {
+        if(this.size < this.capacity) {
+            if(this.size == this.heap.length) {
+                int length = (int) Math.min(this.capacity, this.heap.length * 2L);
+                Object[] bigger = new Object[length];
+                System.arraycopy(this.heap, 0, bigger, 0, this.size);
+                this.heap = bigger;
+                long[] biggerSequence = new long[length];
+                System.arraycopy(this.sequence, 0, biggerSequence, 0, this.size);
+                this.sequence = biggerSequence;
+            }
+            siftUp(this.size++, obj, this.offered++);
+            return true;
+        }
+        if(this.capacity == 0 || this.comparator.compare(obj, this.heap[0]) <= 0) {
+            this.offered++;
+            return false;
+        }
+        replaceTop(obj, this.offered++);
+        return true;
+    }
+
+    /**
+     * The least object kept, which the next object offered to a full 
+     * heap has to beat.
+     */
+    public Object peek() {
+        if(this.size == 0) {
+            throw new NoSuchElementException("BoundedHeap is empty");
+        }
+        return this.heap[0];
+    }
+
+    /**
+     * Offers each object kept by another heap, greatest first. 
+     */
+    public void merge(BoundedHeap other) {
+        Object[] objs = other.toArray();
+        for(int i=0; i<objs.length; i++) {
+            offer(objs[i]);
+        }
+    }
+
+    /**
+     * The objects kept, greatest first.
+     */
+    public Object[] toArray() {
+        Object[] objs = new Object[this.size];
+        long[] seqs = new long[this.size];
+        System.arraycopy(this.heap, 0, objs, 0, this.size);
+        System.arraycopy(this.sequence, 0, seqs, 0, this.size);
+        // heap sort, taking the least off the top to the end
+        for(int end=this.size - 1; end>0; end--) {
+            Object obj = objs[end];
+            long seq = seqs[end];
+            objs[end] = objs[0];
+            seqs[end] = seqs[0];
+            siftDown(objs, seqs, 0, end, obj, seq);
+        }
+        return objs;
+    }
+
+    /**
+     * The objects kept as a SortedLimitedList of the same capacity, 
+     * which may carry on being added to.
+     */
+    public SortedLimitedList toSortedList() {
+        List list = new ArrayList(this.capacity);
+        list.addAll(Arrays.asList(toArray()));
+        return new SortedLimitedList(list, this.capacity, this.comparator);
+    }
+
+    public void clear() {
+        Arrays.fill(this.heap, 0, this.size, null);
+        this.size = 0;
+    }
+
+    public String toString() {
+        return Arrays.asList(toArray()).toString();
+    }
+
+    // whether a is to be dropped before b: it is less, or equal and 
+    // offered later
+    private boolean before(Object a, long seqA, Object b, long seqB) {
+        int cmp = this.comparator.compare(a, b);
+        return cmp < 0 || (cmp == 0 && seqA > seqB);
+    }
+
+    private void siftUp(int i, Object obj, long seq) {
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(!before(obj, seq, this.heap[parent], this.sequence[parent])) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            this.sequence[i] = this.sequence[parent];
+            i = parent;
+        }
+        this.heap[i] = obj;
+        this.sequence[i] = seq;
+    }
+
+    // An object which displaces the least is usually among the greatest, 
+    // so rather than sift it down from the top, the hole it leaves is 
+    // walked down to a leaf along the lesser children and the object 
+    // sifted up from there, taking about half the comparisons.
+    private void replaceTop(Object obj, long seq) {
+        int i = 0;
+        int half = this.size >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if(right < this.size && before(this.heap[right], this.sequence[right], this.heap[child], this.sequence[child])) {
+                child = right;
+            }
+            this.heap[i] = this.heap[child];
+            this.sequence[i] = this.sequence[child];
+            i = child;
+        }
+        siftUp(i, obj, seq);
+    }
+
+    private void siftDown(Object[] heap, long[] sequence, int i, int size, Object obj, long seq) {
+        int half = size >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if(right < size && before(heap[right], sequence[right], heap[child], sequence[child])) {
+                child = right;
+            }
+            if(!before(heap[child], sequence[child], obj, seq)) {
+                break;
+            }
+            heap[i] = heap[child];
+            sequence[i] = sequence[child];
+            i = child;
+        }
+        heap[i] = obj;
+        sequence[i] = seq;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.collections;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A BoundedHeap of longs, keeping the N greatest offered without 
+ * boxing them. Not synchronized.
+ */
+public class BoundedLongHeap {
+
+    private int capacity;
+
+    // heap ordered, least at 0
+    private long[] heap;
+    private int size;
+
+    public BoundedLongHeap(int capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: "+capacity);
+        }
+        this.capacity = capacity;
+        this.heap = new long[Math.min(capacity, 16)];
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+    /**
+     * @return false if value was not kept, as the heap is full and 
+     *         value is no greater than the least value in it
+     */
+    public boolean offer(long value) {
+        if(this.size < this.capacity) {
+            if(this.size == this.heap.length) {
+                long[] bigger = new long[(int) Math.min(this.capacity, this.heap.length * 2L)];
+                System.arraycopy(this.heap, 0, bigger, 0, this.size);
+                this.heap = bigger;
+            }
+            siftUp(this.size++, value);
+            return true;
+        }
+        if(this.capacity == 0 || value <= this.heap[0]) {
+            return false;
+        }
+        replaceTop(value);
+        return true;
+    }
+
+    /**
+     * The least value kept, which the next value offered to a full 
+     * heap has to beat.
+     */
+    public long peek() {
+        if(this.size == 0) {
+            throw new NoSuchElementException("BoundedLongHeap is empty");
+        }
+        return this.heap[0];
+    }
+
+    public void merge(BoundedLongHeap other) {
+        for(int i=0; i<other.size; i++) {
+            offer(other.heap[i]);
+        }
+    }
+
+    /**
+     * The values kept, greatest first.
+     */
+    public long[] toArray() {
+        long[] values = new long[this.size];
+        System.arraycopy(this.heap, 0, values, 0, this.size);
+        for(int end=this.size - 1; end>0; end--) {
+            long value = values[end];
+            values[end] = values[0];
+            siftDown(values, 0, end, value);
+        }
+        return values;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    // walks the hole left by the least down along the lesser children 
+    // and sifts value up from there, as BoundedHeap does
+    private void replaceTop(long value) {
+        int i = 0;
+        int half = this.size >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if(right < this.size && this.heap[right] < this.heap[child]) {
+                child = right;
+            }
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        siftUp(i, value);
+    }
+
+    private void siftUp(int i, long value) {
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(value >= this.heap[parent]) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            i = parent;
+        }
+        this.heap[i] = value;
+    }
+
+    private static void siftDown(long[] heap, int i, int size, long value) {
+        int half = size >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if(right < size && heap[right] < heap[child]) {
+                child = right;
+            }
+            if(heap[child] >= value) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+}
@@ -31,41 +31,75 @@
  */
 package com.generationjava.collections;
 
-import java.util.Map;
-import java.util.HashMap;
-import java.util.Set;
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 // @date    2000-05-13
 
-// There is a potential bug, but it is rare, and a fix is 
-// scheduled. Also there are many opportunities for optimisation.
 /**
- * A map which nests maps depending on a separator in the key.
- * The default case is to use the '.' character. 
+ * A map whose String keys are names split into segments by a
+ * separator, the '.' character by default, such as the fully 
+ * qualified names of classes.
+ * <p>
+ * The names are held in a radix trie. Each node of the trie is one 
+ * or more whole segments, so a chain of packages with nothing else 
+ * in them is a single node. The children of a node are sorted by 
+ * the hash of their first segment and binary searched. A key is 
+ * matched against the trie on its own chars, it is never split.
+ * <p>
+ * Getting a name which has no value of its own, but has names 
+ * beneath it, returns an FQMap of the names beneath it relative to 
+ * that name, much as a package holds its classes. That map is a view; 
+ * reading or writing it reads or writes this map. The name itself is 
+ * not a key, so it is not in the keySet and is not counted by size.
+ * <p>
+ * Keys which are not Strings are kept in a plain map beside the trie.
+ * <p>
+ * Safe for use by many threads. Writes are synchronized on the map,
+ * reads take no lock. A read sees a write either completely or not 
+ * at all, and iterators never throw ConcurrentModificationException, 
+ * they show the map as it was at some point while they iterate.
  */
-public class FQMap implements Map {
+public class FQMap extends AbstractMap {
+
+    // the value of a node which has no value of its own, as null is a value
+    private static final Object NONE = new Object();
+
+    private static final Node[] NO_NODES = new Node[0];
 
-    private Map  myMap = null;
     private char myChar;
 
-    // unused atm. Use this to optimise for situations when 
-    // FQ's are not being used. Basically count FQ's out and in,
-    // if possible.
-    private int numberFQMapValues = 0;
+    // a view is a name in the map it is a view of, a map is its own owner
+    private FQMap  myOwner;
+    private String myPrefix;
+
+    // only used in the owner
+    private Node myRoot;
+    private Map  myMap;
+    private volatile int mySize;
+
+    private transient Set myEntrySet;
 
-    // create a FQ map built on top of this type of map.
+    /**
+     * Create an FQMap keeping keys which are not Strings in the 
+     * given map, which is cleared.
+     */
     public FQMap(Map m, char separator) {
         m.clear();
-        myMap  = m;
-        myChar = separator;
+        myMap   = m;
+        myChar  = separator;
+        myOwner = this;
+        myRoot  = node(new char[0], NONE, NO_NODES);
     }
 
-    // create a FQ map built on top of a HashMap, and 
-    // separated by '.'
+    // create a FQ map separated by '.'
     public FQMap() {
         this(new HashMap(),'.');
     }
@@ -77,13 +111,14 @@ public class FQMap implements Map {
         this(new HashMap(),c);
     }
 
-    public String toString() {
-        return "{"+myMap+"}";
+    // a view of the names beneath prefix
+    private FQMap(FQMap owner, String prefix) {
+        myChar   = owner.myChar;
+        myOwner  = owner;
+        myPrefix = prefix;
     }
 
     public Map createEmptyMap() {
-        // TODO: make a new version of myMap
-
         return new FQMap(myChar);
     }
 
@@ -91,33 +126,64 @@ public class FQMap implements Map {
         return myChar;
     }
 
+    /**
+     * The name this map is a view of the names beneath, or null if 
+     * it is not a view.
+     */
+    public String getPrefix() {
+        return myPrefix;
+    }
+
     /**
      * returns an array of size 2. First element is a 
-     * Collection of the values that are FQMaps, second 
-     * element is the values that aren`t FQMaps.
+     * Collection of the FQMaps of the names one segment beneath 
+     * this map which have names beneath them, second element is 
+     * the values of the names one segment beneath this map. 
+     * Either is null if there are none.
      */
     public Collection[] getSeparatedValues() {
-        Collection col = myMap.values();
-        if(col == null) {
-            return null;
-        }
         ArrayList fqmaps    = null;
         ArrayList nonfqmaps = null;
 
-        Iterator it = col.iterator();
-        while(it.hasNext()) {
-            Object ob = it.next();
-            if(ob instanceof FQMap) {
-                if(fqmaps == null) {
-                    fqmaps = new ArrayList();
-                }
-                fqmaps.add(ob);
+        Node[] nodes = NO_NODES;
+        int skip = 0;
+        if(myPrefix == null) {
+            nodes = myRoot.children;
+        } else {
+            int[] end = new int[1];
+            Node node = myOwner.walk(null, myPrefix, end);
+            if(node == null) {
+                // nothing beneath
+            } else
+            if(end[0] == node.label.length) {
+                nodes = node.children;
             } else {
-                if(nonfqmaps == null) {
-                    nonfqmaps = new ArrayList();
+                // the prefix ends part way through the node's label
+                nodes = new Node[] { node };
+                skip = end[0] + 1;
+            }
+        }
+
+        for(int i=0; i<nodes.length; i++) {
+            Node node = nodes[i];
+            int idx = indexOf(node.label, myChar, skip);
+            if(idx == -1) {
+                Object value = node.value;
+                if(value != NONE) {
+                    if(nonfqmaps == null) {
+                        nonfqmaps = new ArrayList();
+                    }
+                    nonfqmaps.add(value);
+                }
+                idx = node.label.length;
+                if(node.children.length == 0) {
+                    continue;
                 }
-                nonfqmaps.add(ob);
             }
+            if(fqmaps == null) {
+                fqmaps = new ArrayList();
+            }
+            fqmaps.add(view(new String(node.label, skip, idx - skip)));
         }
         Collection[] retVal = new Collection[2];
         retVal[0] = fqmaps;
@@ -127,277 +193,677 @@ public class FQMap implements Map {
 
     /* map interface */
 
-    //  Removes all mappings from this map (optional operation). 
+    //  Removes all mappings from this map. 
     public void clear() {
-        myMap.clear();
+        if(myPrefix != null) {
+            Iterator it = entrySet().iterator();
+            while(it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+            return;
+        }
+        synchronized(this) {
+            myRoot.children = NO_NODES;
+            myMap.clear();
+            mySize = 0;
+        }
     }
 
     //  Returns true if this map contains a mapping for the specified key. 
     public boolean containsKey(Object key) {
-        return (get(key) == null);
-    }
-
-    //  Returns true if this map maps one or more keys to the specified value. 
-    public boolean containsValue(Object value) {
-        return (values().contains(value));
+        if(key instanceof String) {
+            Node node = myOwner.walk(myPrefix, (String)key, null);
+            return node != null && node.value != NONE;
+        }
+        if(myPrefix != null) {
+            return false;
+        }
+        synchronized(this) {
+            return myMap.containsKey(key);
+        }
     }
 
     //  Returns a set view of the mappings contained in this map. 
     public Set entrySet() {
-        Set keys = keySet();
-        if(keys == null) {
-            return null;
+        if(myEntrySet == null) {
+            myEntrySet = new EntrySet();
         }
+        return myEntrySet;
+    }
 
-        HashSet retSet = new HashSet();
-
-        Iterator it = keys.iterator();
-        while(it.hasNext()) {
-            Object key = it.next();
-            retSet.add(new FQEntry(this,key));
+    /**
+     * Returns the value to which this map maps the specified key, 
+     * or if the key is a name with no value but names beneath it, 
+     * an FQMap of those names.
+     */
+    public Object get(Object key) {
+        if(key instanceof String) { 
+            String keyStr = (String)key;
+            Node node = myOwner.walk(myPrefix, keyStr, null);
+            if(node != null) {
+                Object value = node.value;
+                if(value != NONE) {
+                    return value;
+                }
+                return view(keyStr);
+            }
+            if(myOwner.walk(myPrefix, keyStr, new int[1]) != null) {
+                return view(keyStr);
+            }
+            return null;
+        } else {  // handle non-string keys
+            if(myPrefix != null) {
+                return null;
+            }
+            synchronized(this) {
+                return myMap.get(key);
+            }
         }
-
-        return retSet;
     }
 
-    //  Compares the specified object with this map for equality. 
-    public boolean equals(Object o) {
-        return myMap.equals(o);    // FIX:?
+    //  Returns true if this map contains no key-value mappings. 
+    public boolean isEmpty() {
+        if(myPrefix == null) {
+            return mySize == 0;
+        }
+        return size() == 0;
     }
 
-    //  Returns the value to which this map maps the specified key. 
-    public Object get(Object key) {
+    /**
+     * Associates the specified value with the specified key in this 
+     * map. A view only takes String keys.
+     */
+    public Object put(Object key, Object value) {
         if(key instanceof String) { 
-            String keyStr = (String)key;
-            int idx = keyStr.indexOf(myChar);
-            if(idx == -1 || idx == keyStr.length() - 1) {
-                // it's top level.
-                return myMap.get(key);
-            } else {
-                String first = keyStr.substring(0,idx);
-                Object ob = myMap.get(first);
-                Map subMap = null;
-                if(ob != null) {
-                    if(ob instanceof Map) {
-                            subMap = (Map)ob;
-                        return subMap.get(keyStr.substring(idx+1));
-                    } else {
-                        return null;
-                    }                
-                } else {
-                    return null;
+            synchronized(myOwner) {
+                return myOwner.putName(myPrefix, (String)key, value);
+            }
+        } else {  // handle non-string keys
+            if(myPrefix != null) {
+                throw new ClassCastException("The keys of a view of the names beneath " + myPrefix + " must be Strings. ");
+            }
+            synchronized(this) {
+                if(!myMap.containsKey(key)) {
+                    mySize++;
                 }
+                return myMap.put(key,value);
+            }
+        }
+    }
+
+    //  Removes the mapping for this key from this map if present. 
+    public Object remove(Object key) {
+        if(key instanceof String) { 
+            synchronized(myOwner) {
+                return myOwner.removeName(myPrefix, (String)key);
             }
         } else {  // handle non-string keys
-            return myMap.get(key);
+            if(myPrefix != null) {
+                return null;
+            }
+            synchronized(this) {
+                if(myMap.containsKey(key)) {
+                    mySize--;
+                }
+                return myMap.remove(key);
+            }
         }
     }
 
-    //  Returns the hash code value for this map. 
-    public int hashCode() {
-        return myMap.hashCode();    // FIX:?
+    //  Returns the number of key-value mappings in this map. 
+    public int size() {
+        if(myPrefix == null) {
+            return mySize;
+        }
+        int[] end = new int[1];
+        Node node = myOwner.walk(null, myPrefix, end);
+        if(node == null) {
+            return 0;
+        }
+        if(end[0] < node.label.length) {
+            return count(node);
+        }
+        int n = 0;
+        Node[] children = node.children;
+        for(int i=0; i<children.length; i++) {
+            n += count(children[i]);
+        }
+        return n;
     }
 
-    //  Returns true if this map contains no key-value mappings. 
-    public boolean isEmpty() {
-        return myMap.isEmpty();
+    private static int count(Node node) {
+        int n = node.value == NONE ? 0 : 1;
+        Node[] children = node.children;
+        for(int i=0; i<children.length; i++) {
+            n += count(children[i]);
+        }
+        return n;
+    }
+
+    private FQMap view(String name) {
+        return new FQMap(myOwner, myPrefix == null ? name : myPrefix + myChar + name);
+    }
+
+    /* the trie, the methods below are only called on the owner */
+
+    // the length of prefix + separator + key
+    private static int length(String prefix, String key) {
+        return prefix == null ? key.length() : prefix.length() + 1 + key.length();
+    }
+
+    // a char of prefix + separator + key, without concatenating them
+    private char charAt(String prefix, String key, int i) {
+        if(prefix == null) {
+            return key.charAt(i);
+        }
+        int n = prefix.length();
+        if(i < n) {
+            return prefix.charAt(i);
+        }
+        if(i == n) {
+            return myChar;
+        }
+        return key.charAt(i - n - 1);
     }
 
     /**
-     *  Returns a set view of the keys contained in this map. 
-     * BUG: If a FQMap is intentionally added to an FQMap, rather 
-     * than created through a fully qualified key, such that 
-     * put(someObj,FQMap) is effectively done, and then this top
-     * level FQMap is added to another, either intentionally or 
-     * under the fully qualified scheme, then the keySet will
-     * contain the stringied version of someObj, which means 
-     * that a request with this key will _not_ work, unless
-     * someObj's hashCode() and equals() are such that someObj
-     * equals the stringified version of someObj.
+     * Walks the trie along prefix + separator + key, or key if 
+     * prefix is null, to the node it names. If end is not null, and 
+     * the name ends at a separator part way through a node's label, 
+     * that node is returned, and end[0] set to where in the label 
+     * the name ends, otherwise to the length of the label.
      *
-     * To this end, a fix is to wrap all keys coming back out in 
-     * a 'FQKey' object which contains an ArrayList of all subkeys.
-     * Code would need changing so a value may be obtained using 
-     * this FQKey.
+     * @return null if there is no such node
+     */
+    private Node walk(String prefix, String key, int[] end) {
+        int len = length(prefix, key);
+        Node node = myRoot;
+        int i = 0;
+        while(true) {
+            Node[] children = node.children;
+            int idx = search(children, prefix, key, i, len);
+            if(idx < 0) {
+                return null;
+            }
+            node = children[idx];
+            char[] label = node.label;
+            // search matched the first segment
+            int j = node.first;
+            i += j;
+            while(j < label.length && i < len && label[j] == charAt(prefix, key, i)) {
+                i++;
+                j++;
+            }
+            if(i == len) {
+                if(j == label.length || (end != null && label[j] == myChar)) {
+                    if(end != null) {
+                        end[0] = j;
+                    }
+                    return node;
+                }
+                return null;
+            }
+            if(j < label.length || charAt(prefix, key, i) != myChar) {
+                return null;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Binary searches nodes, which are sorted by the hash of the first 
+     * segment of their labels, for the one whose label starts with the 
+     * segment of the name starting at i.
      *
-     * Also to note, the stringified form of an object is fully
-     * qualified, using '.' as the package/class seperator.
-     * ie) the default behaviour of this class.
+     * @return the index of the node, or (-(insertion point) - 1)
      */
-    public Set keySet() {
-        Set keys = myMap.keySet();
-        if(keys == null) {
-            return null;
+    private int search(Node[] nodes, String prefix, String key, int i, int len) {
+        int end = i;
+        int hash = 0;
+        while(end < len) {
+            char c = charAt(prefix, key, end);
+            if(c == myChar) {
+                break;
+            }
+            hash = 31 * hash + c;
+            end++;
         }
 
-        HashSet retSet = new HashSet();
-        Iterator it = keys.iterator();
-        while(it.hasNext()) {
-            Object key = it.next();
-            Object value = myMap.get(key);
-            if(value instanceof FQMap) {
-                Set subkeys = ((FQMap)value).keySet();
-                if(subkeys != null) {
-                    Iterator subIt = subkeys.iterator();
-                    while(subIt.hasNext()) {
-                        retSet.add(""+key+myChar+subIt.next());
+        int low = 0;
+        int high = nodes.length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int midHash = nodes[mid].hash;
+            if(midHash < hash) {
+                low = mid + 1;
+            } else
+            if(midHash > hash) {
+                high = mid - 1;
+            } else {
+                // check every node of the same hash
+                while(mid > 0 && nodes[mid - 1].hash == hash) {
+                    mid--;
+                }
+                for( ; mid < nodes.length && nodes[mid].hash == hash; mid++) {
+                    char[] label = nodes[mid].label;
+                    int length = end - i;
+                    if(label.length == length || (label.length > length && label[length] == myChar)) {
+                        int j = 0;
+                        while(j < length && label[j] == charAt(prefix, key, i + j)) {
+                            j++;
+                        }
+                        if(j == length) {
+                            return mid;
+                        }
                     }
                 }
-            } else {
-                retSet.add(key);
+                return -(mid + 1);
             }
         }
-        return retSet;
+        return -(low + 1);
     }
 
-    //  Associates the specified value with the specified key in this map (optional operation). 
-    public Object put(Object key, Object value) {
-        if(key instanceof String) { 
-            String keyStr = (String)key;
-            int idx = keyStr.indexOf(myChar);
-            if(idx == -1 || idx == keyStr.length() - 1) {
-                // it's top level.
-                return myMap.put(key,value);
+    // called synchronized on the owner
+    private Object putName(String prefix, String key, Object value) {
+        int len = length(prefix, key);
+        Node node = myRoot;
+        int i = 0;
+        while(true) {
+            Node[] children = node.children;
+            int idx = search(children, prefix, key, i, len);
+            if(idx < 0) {
+                Node leaf = node(chars(prefix, key, i, len), value, NO_NODES);
+                node.children = insert(children, -idx - 1, leaf);
+                mySize++;
+                return null;
+            }
+            Node child = children[idx];
+            char[] label = child.label;
+            int j = 0;
+            while(j < label.length && i < len && label[j] == charAt(prefix, key, i)) {
+                i++;
+                j++;
+            }
+            if(j == label.length) {
+                if(i == len) {
+                    Object old = child.value;
+                    child.value = value;
+                    if(old == NONE) {
+                        mySize++;
+                        return null;
+                    }
+                    return old;
+                }
+                if(charAt(prefix, key, i) == myChar) {
+                    i++;
+                    node = child;
+                    continue;
+                }
+            }
+
+            // the name leaves the label part way through, so the label 
+            // is split after the last segment they share
+            Node[] split;
+            int at;
+            Object splitValue = NONE;
+            if(i == len && label[j] == myChar) {
+                // the name is the start of the label
+                at = j;
+                splitValue = value;
+                split = new Node[1];
             } else {
-                String first = keyStr.substring(0,idx);
-                Object ob = myMap.get(first);
-                Map subMap = null;
-                if(ob != null) {
-                    if(ob instanceof Map) {
-                            subMap = (Map)ob;
-                        return subMap.put(keyStr.substring(idx+1),value);
-                    } else {
-                        subMap = createEmptyMap();
-                        subMap.put(keyStr.substring(idx+1),value);
-                        myMap.put(first,subMap);
-                        return ob;
-                    }                
-                } else {
-                    subMap = createEmptyMap();
-                    subMap.put(keyStr.substring(idx+1),value);
-                    myMap.put(first,subMap);
-                    return ob;
+                at = lastIndexOf(label, myChar, j - 1);
+                i -= j - at;
+                split = new Node[2];
+                split[1] = node(chars(prefix, key, i + 1, len), value, NO_NODES);
+            }
+            split[0] = node(copy(label, at + 1, label.length), child.value, child.children);
+            if(split.length == 2 && split[0].hash > split[1].hash) {
+                Node tmp = split[0];
+                split[0] = split[1];
+                split[1] = tmp;
+            }
+            node.children = replace(children, idx, node(copy(label, 0, at), splitValue, split));
+            mySize++;
+            return null;
+        }
+    }
+
+    // called synchronized on the owner
+    private Object removeName(String prefix, String key) {
+        int len = length(prefix, key);
+        Node grandparent = null;
+        Node parent = myRoot;
+        int idx;
+        int i = 0;
+        while(true) {
+            idx = search(parent.children, prefix, key, i, len);
+            if(idx < 0) {
+                return null;
+            }
+            Node node = parent.children[idx];
+            char[] label = node.label;
+            int j = 0;
+            while(j < label.length && i < len && label[j] == charAt(prefix, key, i)) {
+                i++;
+                j++;
+            }
+            if(j < label.length) {
+                return null;
+            }
+            if(i == len) {
+                break;
+            }
+            if(charAt(prefix, key, i) != myChar) {
+                return null;
+            }
+            i++;
+            grandparent = parent;
+            parent = node;
+        }
+
+        Node node = parent.children[idx];
+        Object old = node.value;
+        if(old == NONE) {
+            return null;
+        }
+        mySize--;
+
+        // keep every node but the root holding a value or branching
+        Node[] children = node.children;
+        if(children.length > 1) {
+            node.value = NONE;
+        } else
+        if(children.length == 1) {
+            parent.children = replace(parent.children, idx, join(node, children[0]));
+        } else {
+            Node[] siblings = new Node[parent.children.length - 1];
+            System.arraycopy(parent.children, 0, siblings, 0, idx);
+            System.arraycopy(parent.children, idx + 1, siblings, idx, siblings.length - idx);
+            if(grandparent != null && parent.value == NONE && siblings.length == 1) {
+                Node[] uncles = grandparent.children;
+                for(int k=0; k<uncles.length; k++) {
+                    if(uncles[k] == parent) {
+                        grandparent.children = replace(uncles, k, join(parent, siblings[0]));
+                        break;
+                    }
                 }
+            } else {
+                parent.children = siblings;
             }
-        } else {  // handle non-string keys
-            return myMap.put(key,value);
         }
+        return old;
     }
 
-    //  Copies all of the mappings from the specified map to this map (optional operation). 
-    public void putAll(Map t) {
-        if(t == null) {
-            return;
+    private char[] chars(String prefix, String key, int from, int len) {
+        char[] chars = new char[len - from];
+        for(int i=from; i<len; i++) {
+            chars[i - from] = charAt(prefix, key, i);
         }
+        return chars;
+    }
 
-        Set keys = t.keySet();
+    // a node of both labels, for a node left holding no value and one child
+    private Node join(Node node, Node child) {
+        char[] label = new char[node.label.length + 1 + child.label.length];
+        System.arraycopy(node.label, 0, label, 0, node.label.length);
+        label[node.label.length] = myChar;
+        System.arraycopy(child.label, 0, label, node.label.length + 1, child.label.length);
+        return node(label, child.value, child.children);
+    }
 
-        if(keys == null) {
-            return;
+    private Node node(char[] label, Object value, Node[] children) {
+        int hash = 0;
+        int first = 0;
+        while(first < label.length && label[first] != myChar) {
+            hash = 31 * hash + label[first];
+            first++;
+        }
+        return new Node(label, hash, first, value, children);
+    }
+
+    private static int indexOf(char[] chars, char c, int from) {
+        for(int i=from; i<chars.length; i++) {
+            if(chars[i] == c) {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        Iterator it = keys.iterator();
-        while(it.hasNext()) {
-            Object ob = it.next();
-            put(ob,t.get(ob));
+    private static int lastIndexOf(char[] chars, char c, int from) {
+        for(int i=from; i>=0; i--) {
+            if(chars[i] == c) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+    private static char[] copy(char[] chars, int from, int to) {
+        char[] copy = new char[to - from];
+        System.arraycopy(chars, from, copy, 0, copy.length);
+        return copy;
+    }
+
+    private static Node[] insert(Node[] nodes, int idx, Node node) {
+        Node[] bigger = new Node[nodes.length + 1];
+        System.arraycopy(nodes, 0, bigger, 0, idx);
+        bigger[idx] = node;
+        System.arraycopy(nodes, idx, bigger, idx + 1, nodes.length - idx);
+        return bigger;
+    }
+
+    private static Node[] replace(Node[] nodes, int idx, Node node) {
+        Node[] copy = (Node[]) nodes.clone();
+        copy[idx] = node;
+        return copy;
     }
 
-    //  Removes the mapping for this key from this map if present (optional operation). 
     /**
-     * Unimplemented.
+     * One or more whole segments of a name. The label and a published 
+     * children array are never changed, a write replaces them, so 
+     * readers need no lock.
      */
-    public Object remove(Object key) {
-        return null;    // FIX:
+    private static final class Node {
+        final char[] label;
+        // of the first segment of the label, as String.hashCode
+        final int hash;
+        // the length of the first segment
+        final int first;
+        volatile Object value;
+        volatile Node[] children;
+
+        Node(char[] label, int hash, int first, Object value, Node[] children) {
+            this.label = label;
+            this.hash = hash;
+            this.first = first;
+            this.value = value;
+            this.children = children;
+        }
     }
 
-    //  Returns the number of key-value mappings in this map. 
-    public int size() {
-        if(myMap.size() == 0) {
-            return 0;
+    private class EntrySet extends AbstractSet {
+        public Iterator iterator() {
+            return new EntryIterator();
         }
-        
-        Collection[] values = getSeparatedValues();
-        
-        int ret_int = 0;
-        if(values[0] != null) {
-            Iterator it = values[0].iterator();
-            while(it.hasNext()) {
-                FQMap map = (FQMap)it.next();
-                ret_int += map.size();
+        public int size() {
+            return FQMap.this.size();
+        }
+        public boolean contains(Object o) {
+            if(!(o instanceof Map.Entry)) {
+                return false;
             }
+            Map.Entry entry = (Map.Entry)o;
+            Object key = entry.getKey();
+            if(!containsKey(key)) {
+                return false;
+            }
+            Object value = get(key);
+            return value == null ? entry.getValue() == null : value.equals(entry.getValue());
         }
-        if(values[1] != null) {
-            ret_int += values[1].size();
+        public boolean remove(Object o) {
+            if(!contains(o)) {
+                return false;
+            }
+            FQMap.this.remove(((Map.Entry)o).getKey());
+            return true;
+        }
+        public void clear() {
+            FQMap.this.clear();
         }
-        return ret_int;
     }
 
-    //  Returns a collection view of the values contained in this map. 
-    public Collection values() {
-        Collection[] values = getSeparatedValues();
-        if(values == null) {
-            return null;
+    /**
+     * Walks the trie depth first, building 
+     * each key in one buffer.
+     */
+    private class EntryIterator implements Iterator {
+
+        private Node[][] myNodes = new Node[8][];
+        private int[] myIndexes = new int[8];
+        // the length of the key at each depth
+        private int[] myLengths = new int[8];
+        private int myDepth = -1;
+        // of the label of the first node, when a view starts part way through it
+        private int mySkip;
+        private StringBuffer myKey = new StringBuffer();
+
+        // the entries whose keys are not Strings
+        private Iterator myOthers;
+
+        private FQEntry myNext;
+        private FQEntry myLast;
+
+        EntryIterator() {
+            if(myPrefix == null) {
+                push(myRoot.children, 0);
+                synchronized(FQMap.this) {
+                    if(!myMap.isEmpty()) {
+                        ArrayList others = new ArrayList();
+                        Iterator it = myMap.entrySet().iterator();
+                        while(it.hasNext()) {
+                            Map.Entry entry = (Map.Entry)it.next();
+                            others.add(new FQEntry(FQMap.this, entry.getKey(), entry.getValue()));
+                        }
+                        myOthers = others.iterator();
+                    }
+                }
+            } else {
+                int[] end = new int[1];
+                Node node = myOwner.walk(null, myPrefix, end);
+                if(node != null) {
+                    if(end[0] == node.label.length) {
+                        push(node.children, 0);
+                    } else {
+                        push(new Node[] { node }, 0);
+                        mySkip = end[0] + 1;
+                    }
+                }
+            }
+            advance();
         }
-        ArrayList retList = null;
-        if(values[0] != null) {
-            if(retList == null) {
-                retList = new ArrayList();
+
+        private void push(Node[] nodes, int length) {
+            myDepth++;
+            if(myDepth == myNodes.length) {
+                Node[][] nodes2 = new Node[myDepth * 2][];
+                System.arraycopy(myNodes, 0, nodes2, 0, myDepth);
+                myNodes = nodes2;
+                int[] indexes = new int[myDepth * 2];
+                System.arraycopy(myIndexes, 0, indexes, 0, myDepth);
+                myIndexes = indexes;
+                int[] lengths = new int[myDepth * 2];
+                System.arraycopy(myLengths, 0, lengths, 0, myDepth);
+                myLengths = lengths;
             }
-            Iterator it = values[0].iterator();
-            while(it.hasNext()) {
-                FQMap map = (FQMap)it.next();
-                retList.addAll(map.values());
+            myNodes[myDepth] = nodes;
+            myIndexes[myDepth] = 0;
+            myLengths[myDepth] = length;
+        }
+
+        private void advance() {
+            myNext = null;
+            while(myDepth >= 0) {
+                Node[] nodes = myNodes[myDepth];
+                int idx = myIndexes[myDepth];
+                if(idx == nodes.length) {
+                    myNodes[myDepth] = null;
+                    myDepth--;
+                    continue;
+                }
+                myIndexes[myDepth] = idx + 1;
+                Node node = nodes[idx];
+                Object value = node.value;
+                Node[] children = node.children;
+
+                myKey.setLength(myLengths[myDepth]);
+                if(myDepth == 0) {
+                    myKey.append(node.label, mySkip, node.label.length - mySkip);
+                } else {
+                    myKey.append(myChar);
+                    myKey.append(node.label);
+                }
+                if(children.length != 0) {
+                    push(children, myKey.length());
+                }
+                if(value != NONE) {
+                    myNext = new FQEntry(FQMap.this, myKey.toString(), value);
+                    return;
+                }
+            }
+            if(myOthers != null && myOthers.hasNext()) {
+                myNext = (FQEntry)myOthers.next();
+            }
+        }
+
+        public boolean hasNext() {
+            return myNext != null;
+        }
+
+        public Object next() {
+            if(myNext == null) {
+                throw new NoSuchElementException();
             }
+            myLast = myNext;
+            advance();
+            return myLast;
         }
-        if(values[1] != null) {
-            if(retList == null) {
-                retList = new ArrayList();
+
+        public void remove() {
+            if(myLast == null) {
+                throw new IllegalStateException();
             }
-            retList.addAll(values[1]);
+            FQMap.this.remove(myLast.getKey());
+            myLast = null;
         }
-        return retList;
+
     }
 
 }
-// assumes u can`t have null keys.
+
+// an entry of an FQMap, setting the value puts it into the map
 class FQEntry implements Map.Entry {
 
-    private Map    myMap = null;
-    private Object myKey = null;
+    private Map    myMap   = null;
+    private Object myKey   = null;
+    private Object myValue = null;
 
-    public FQEntry(Map map, Object key) {
-        myMap = map;
-        myKey = key;
+    public FQEntry(Map map, Object key, Object value) {
+        myMap   = map;
+        myKey   = key;
+        myValue = value;
     }
  
     //  Compares the specified object with this entry for equality. 
     public boolean equals(Object o) {
-        if(o == null) {
+        if( !(o instanceof Map.Entry) ) {
             return false;
         }
-        if( o instanceof FQEntry ) {
-            FQEntry fqe    = (FQEntry)o;
-            Object  key    = getKey();
-            Object  okey   = fqe.getKey();
-            Object  value  = getValue();
-            Object  ovalue = fqe.getValue();
-
-            if(okey == null && key == null) {
-                // null key assumption. doesn`t check value.
-                return true;
-            }
-
-            if(getKey().equals(fqe.getKey())) {
-                if(ovalue == null && value == null) {
-                    return true;
-                }
-                if(getValue().equals(fqe.getValue())) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        Map.Entry entry = (Map.Entry)o;
+        return (myKey == null ? entry.getKey() == null : myKey.equals(entry.getKey())) &&
+               (myValue == null ? entry.getValue() == null : myValue.equals(entry.getValue()));
     }
 
     //  Returns the key corresponding to this entry. 
@@ -407,38 +873,25 @@ class FQEntry implements Map.Entry {
 
     //  Returns the value corresponding to this entry. 
     public Object getValue() {
-        if(myMap != null) {
-            return myMap.get(myKey);
-        } else {
-            return null;
-        }
+        return myValue;
     }
 
     //  Returns the hash code value for this map entry. 
     public int hashCode() {
-        int n = 0;
-        
-        if(myKey != null) {
-            n += myKey.hashCode();
-        }
-        Object ob = getValue();
-        if(ob != null) {
-            n &= ob.hashCode();
-        }
-        return n;
+        return (myKey == null ? 0 : myKey.hashCode()) ^
+               (myValue == null ? 0 : myValue.hashCode());
     }
 
-    //  Replaces the value corresponding to this entry with the specified value (optional operation). 
+    //  Replaces the value corresponding to this entry with the specified value. 
     public Object setValue(Object value) {
-        if(myMap != null) {
-            return myMap.put(getKey(),value);
-        } else {
-            return null;  // WHAT TO DO??
-        }
+        Object old = myValue;
+        myMap.put(myKey, value);
+        myValue = value;
+        return old;
     }
 
     public String toString() {
-        return ""+getKey()+":"+getValue();
+        return ""+getKey()+"="+getValue();
     }
 
 }
@@ -41,6 +41,9 @@ import java.util.List;
  * new adds are ignored and inserts mean the one on the end 
  * of the list is removed.
  * The List is kept in a sorted order.
+ * Each add still shifts the List along, so to keep the top N of 
+ * many objects, offer them to a BoundedHeap and ask it for the 
+ * SortedLimitedList at the end.
  */
 public class SortedLimitedList extends LimitedList {
 
@@ -68,18 +71,20 @@ public class SortedLimitedList extends LimitedList {
         return true;
     }
 
-    // inserts into correctly sorted position
+    // inserts into correctly sorted position, after any equal objects
     private void insertIntoSort(Object obj) {
-        int sz = size();
-        int i;                      // used outside loop
-        for(i=sz-1; i>-1; i--) {
-            if(comparator.compare(obj, get(i)) > 0) {
-                continue;
+        // binary search for the first object which obj is greater than
+        int low = 0;
+        int high = size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(comparator.compare(obj, get(mid)) > 0) {
+                high = mid;
             } else {
-                break;
+                low = mid + 1;
             }
         }
-        super.add(i+1, obj);
+        super.add(low, obj);
     }
 
     public boolean addAll(Collection coll) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.collections;
+
+import java.util.Comparator;
+
+/**
+ * A BoundedHeap which many threads may offer to at once. Each thread 
+ * offers to one of a number of stripes, each a BoundedHeap of the 
+ * full capacity under its own lock, so threads only contend when 
+ * they share a stripe. The stripes are merged into one heap when 
+ * the result is wanted.
+ * Objects which compare equal are kept in the order each thread 
+ * offered them, but in no particular order between threads.
+ */
+public class StripedBoundedHeap {
+
+    private Comparator comparator;
+    private int capacity;
+    private Stripe[] stripes;
+
+    /**
+     * Uses a stripe for each processor.
+     */
+    public StripedBoundedHeap(int capacity, Comparator comparator) {
+        this(capacity, comparator, Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedBoundedHeap(int capacity, Comparator comparator, int stripes) {
+        if(stripes < 1) {
+            throw new IllegalArgumentException("There must be at least one stripe: "+stripes);
+        }
+        this.capacity = capacity;
+        this.comparator = comparator;
+        this.stripes = new Stripe[stripes];
+        for(int i=0; i<stripes; i++) {
+            this.stripes[i] = new Stripe(new BoundedHeap(capacity, comparator));
+        }
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return false if obj was not kept by the calling thread's stripe
+     */
+    public boolean offer(Object obj) {
+        // thread ids are handed out in turn, so the threads of a pool 
+        // fall on different stripes
+        Stripe stripe = this.stripes[ (int) (Thread.currentThread().getId() % this.stripes.length) ];
+        // the floor only rises, so an object no greater than it, even 
+        // if it is out of date, would not be kept
+        Object floor = stripe.floor;
+        if(floor != null && this.comparator.compare(obj, floor) <= 0) {
+            return false;
+        }
+        synchronized(stripe) {
+            BoundedHeap heap = stripe.heap;
+            if(!heap.offer(obj)) {
+                return false;
+            }
+            if(heap.isFull()) {
+                stripe.floor = heap.peek();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The N greatest objects offered by any thread so far.
+     */
+    public BoundedHeap merge() {
+        BoundedHeap merged = new BoundedHeap(this.capacity, this.comparator);
+        for(int i=0; i<this.stripes.length; i++) {
+            synchronized(this.stripes[i]) {
+                merged.merge(this.stripes[i].heap);
+            }
+        }
+        return merged;
+    }
+
+    public SortedLimitedList toSortedList() {
+        return merge().toSortedList();
+    }
+
+    public void clear() {
+        for(int i=0; i<this.stripes.length; i++) {
+            synchronized(this.stripes[i]) {
+                this.stripes[i].heap.clear();
+                this.stripes[i].floor = null;
+            }
+        }
+    }
+
+    private static class Stripe {
+
+        private BoundedHeap heap;
+
+        // the least object kept once the heap is full, which an object 
+        // has to beat to be worth taking the lock for
+        private volatile Object floor;
+
+        Stripe(BoundedHeap heap) {
+            this.heap = heap;
+        }
+
+    }
+
+}
@@ -36,12 +36,15 @@ import java.util.Comparator;
 /**
  * A Comparator which deals with alphabet characters 'naturally', but 
  * deals with numerics numerically. Leading 0's are ignored numerically,
- * but do come into play if the number is equal. Thus aaa119yyyy comes before 
- * aaa0119xxxx regardless of x or y.
+ * but do come into play if the rest of the string is equal. Thus aaa119x 
+ * comes before aaa0119x, but aaa119y comes after aaa0119x.
  *
  * The comparison should be very performant as it only ever deals with 
  * issues at a character level and never tries to consider the 
- * numerics as numbers.
+ * numerics as numbers. Strings are walked in place, so comparing 
+ * two Strings creates no objects. For sorting the same values 
+ * repeatedly, getKey gives a NumericStringKey which remembers where 
+ * the numbers are.
  *
  * @author bayard@generationjava.com
  */
@@ -51,7 +54,6 @@ public class NumericStringComparator implements Comparator {
     }
 
     public int compare(Object o1, Object o2) {
-// System.out.println("Comparing: "+o1+" and "+o2);
         if(o1 == null) {
             return 1;
         } else
@@ -62,114 +64,63 @@ public class NumericStringComparator implements Comparator {
         String s1 = o1.toString();
         String s2 = o2.toString();
 
-        // find the first digit.
-        int idx1 = getFirstDigitIndex(s1);
-        int idx2 = getFirstDigitIndex(s2);
-
-        if( ( idx1 == -1 )   || 
-            ( idx2 == -1 ) ||
-            ( !s1.substring(0,idx1).equals(s2.substring(0,idx2)) )
-          )
-        {
-// System.out.println("Shortcutted. ");
-            return s1.compareTo(s2);
-        }
-
-        // find the last digit
-        int edx1 = getLastDigitIndex(s1, idx1);
-        int edx2 = getLastDigitIndex(s2, idx2);
-
-        String sub1 = null;
-        String sub2 = null;
-
-        if(edx1 == -1) {
-            sub1 = s1.substring(idx1);
-        } else {
-            sub1 = s1.substring(idx1, edx1);
-        }
+        // start of the rest of each string
+        int rest1 = 0;
+        int rest2 = 0;
+
+        // the innermost difference in leading zeroes
+        int zeroes = 0;
+
+        // each time round, the text up to the next number in each 
+        // string, then the numbers themselves, are compared
+        while(true) {
+            // find the first digit.
+            int idx1 = getFirstDigitIndex(s1, rest1);
+            int idx2 = getFirstDigitIndex(s2, rest2);
+
+            if( ( idx1 == -1 )   || 
+                ( idx2 == -1 ) ||
+                !regionEquals(s1, rest1, idx1, s2, rest2, idx2)
+              )
+            {
+                return compareRest(s1, rest1, s2, rest2, zeroes);
+            }
 
-        if(edx2 == -1) {
-            sub2 = s2.substring(idx2);
-        } else {
-            sub2 = s2.substring(idx2, edx2);
-        }
+            // find the last digit
+            int edx1 = getLastDigitIndex(s1, idx1);
+            int edx2 = getLastDigitIndex(s2, idx2);
 
-        // deal with zeros at start of each number
-        int zero1 = countZeroes(sub1);
-        int zero2 = countZeroes(sub2);
-
-        sub1 = sub1.substring(zero1);
-        sub2 = sub2.substring(zero2);
-
-        // if equal, then recurse with the rest of the string
-        // need to deal with zeroes so that 00119 appears after 119
-        if(sub1.equals(sub2)) {
-            int ret = 0;
-            if(zero1 > zero2) {
-                ret = 1;
-            } else
-            if(zero1 < zero2) {
-                ret = -1;
-            }
-// System.out.println("EDXs: "+edx1+" & "+edx2);
-            if(edx1 == -1) {
-                s1 = "";
-            } else {
-                s1 = s1.substring(edx1);
-            }
-            if(edx2 == -1) {
-                s2 = "";
-            } else {
-                s2 = s2.substring(edx2);
-            }
+            // deal with zeros at start of each number
+            int nz1 = skipZeroes(s1, idx1, edx1);
+            int nz2 = skipZeroes(s2, idx2, edx2);
 
-            int comp = compare(s1, s2);
-            if(comp != 0) {
-                ret = comp;
-            }
-// System.out.println("Dealt with rest of string: "+ret);
-            return ret;
-        } else {
-            // if a numerical string is smaller in length than another
-            // then it must be less. 
-            if(sub1.length() != sub2.length()) {
-// System.out.println("Ahah, different length. ");
-                return ( sub1.length() < sub2.length() ) ? -1 : 1;
+            int cmp = compareDigits(s1, nz1, edx1, s2, nz2, edx2);
+            if(cmp != 0) {
+                return cmp;
             }
-        }
 
+            // numerically equal, so 00119 appears after 119 unless the 
+            // rest of the string decides
+            zeroes = compareZeroes(nz1 - idx1, nz2 - idx2, zeroes);
 
-        // now we get to do the string based numerical thing :)
-        // going to assume that the individual character for the 
-        // number has the right order. ie) '9' > '0'
-        // possibly bad in i18n.
-        char[] chr1 = sub1.toCharArray();
-        char[] chr2 = sub2.toCharArray();
-
-        int sz = chr1.length;
-        for(int i=0; i<sz; i++) {
-            // this should give better speed
-            if(chr1[i] != chr2[i]) {
-// System.out.println("Length is different. ");
-                return (chr1[i] < chr2[i]) ? -1 : 1;
-            }
+            rest1 = edx1;
+            rest2 = edx2;
         }
-
-// System.out.println("Default. Boo. ");
-        return 0;
     }
 
-    private int getFirstDigitIndex(String str) {
-        return getFirstDigitIndex(str, 0);
-    }
-    private int getFirstDigitIndex(String str, int start) {
-        return getFirstDigitIndex(str.toCharArray(), start);
+    /**
+     * A key for the object which compares with other keys as the 
+     * object compares here, without looking for the numbers each time.
+     */
+    public NumericStringKey getKey(Object obj) {
+        return new NumericStringKey(obj.toString());
     }
-    private int getFirstDigitIndex(char[] chrs, int start) {
-        int sz = chrs.length;
+
+    private static int getFirstDigitIndex(String str, int start) {
+        int sz = str.length();
 
         for(int i=start; i<sz; i++) {
-            if(Character.isDigit(chrs[i])) {
+            if(Character.isDigit(str.charAt(i))) {
                 return i;
             }
         }
@@ -177,34 +128,81 @@ public class NumericStringComparator implements Comparator {
         return -1;
     }
 
-    private int getLastDigitIndex(String str, int start) {
-        return getLastDigitIndex(str.toCharArray(), start);
-    }
-    private int getLastDigitIndex(char[] chrs, int start) {
-        int sz = chrs.length;
+    // the end of the digits, which may be the end of the string
+    static int getLastDigitIndex(String str, int start) {
+        int sz = str.length();
 
         for(int i=start; i<sz; i++) {
-            if(!Character.isDigit(chrs[i])) {
+            if(!Character.isDigit(str.charAt(i))) {
                 return i;
             }
         }
 
-        return -1;
+        return sz;
+    }
+
+    // the first non-zero digit, or end if the number is all zeroes
+    static int skipZeroes(String str, int start, int end) {
+        int i = start;
+        while(i < end && str.charAt(i) == '0') {
+            i++;
+        }
+        return i;
     }
 
-    private int countZeroes(String str) {
-        int count = 0;
+    // whether the text before each number is the same
+    private static boolean regionEquals(String s1, int start1, int end1, String s2, int start2, int end2) {
+        return (end1 - start1 == end2 - start2) && s1.regionMatches(start1, s2, start2, end1 - start1);
+    }
 
-        // assuming str is small...
-        for(int i=0; i<str.length(); i++) {
-            if(str.charAt(i) == '0') {
-                count++;
-            } else {
-                break;
+    // compares two numbers without their leading zeroes; a shorter 
+    // number must be less, otherwise the first digit to differ decides
+    private static int compareDigits(String s1, int start1, int end1, String s2, int start2, int end2) {
+        int sz = end1 - start1;
+        if(sz != end2 - start2) {
+            return ( sz < end2 - start2 ) ? -1 : 1;
+        }
+        // going to assume that the individual character for the 
+        // number has the right order. ie) '9' > '0'
+        // possibly bad in i18n.
+        for(int i=0; i<sz; i++) {
+            char c1 = s1.charAt(start1 + i);
+            char c2 = s2.charAt(start2 + i);
+            if(c1 != c2) {
+                return (c1 < c2) ? -1 : 1;
             }
         }
+        return 0;
+    }
+
+    // a difference in leading zeroes further along takes precedence
+    private static int compareZeroes(int zero1, int zero2, int zeroes) {
+        if(zero1 > zero2) {
+            return 1;
+        } else
+        if(zero1 < zero2) {
+            return -1;
+        }
+        return zeroes;
+    }
 
-        return count;
+    // String.compareTo on the rest of each string, falling back to 
+    // any difference in leading zeroes
+    private static int compareRest(String s1, int start1, String s2, int start2, int zeroes) {
+        int len1 = s1.length() - start1;
+        int len2 = s2.length() - start2;
+        int sz = Math.min(len1, len2);
+        for(int i=0; i<sz; i++) {
+            char c1 = s1.charAt(start1 + i);
+            char c2 = s2.charAt(start2 + i);
+            if(c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        if(len1 != len2) {
+            return len1 - len2;
+        }
+        return zeroes;
     }
 
 }
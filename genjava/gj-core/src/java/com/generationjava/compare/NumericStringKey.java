@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.compare;
+
+/**
+ * A String prepared for sorting by NumericStringComparator, in the 
+ * way a CollationKey is for a Collator. The String is encoded once 
+ * so that comparing two keys is a plain character by character 
+ * comparison. Keys are worth having when the same values are sorted 
+ * or searched many times.
+ */
+public final class NumericStringKey implements Comparable {
+
+    // stands in for a number; sorts against any non-digit as a digit would
+    private static final char NUMBER = '0';
+
+    // ends the text and numbers, before the counts of leading zeroes
+    private static final char END = '\u0000';
+
+    private static final NumericStringComparator COMPARATOR = new NumericStringComparator();
+
+    private final String source;
+
+    // null if the source cannot be encoded, when keys compare as the 
+    // comparator does
+    private final char[] key;
+
+    NumericStringKey(String source) {
+        this.source = source;
+        this.key = encode(source);
+    }
+
+    public String getSourceString() {
+        return this.source;
+    }
+
+    public int compareTo(Object obj) {
+        NumericStringKey other = (NumericStringKey) obj;
+        char[] key1 = this.key;
+        char[] key2 = other.key;
+        if(key1 == null || key2 == null) {
+            return COMPARATOR.compare(this.source, other.source);
+        }
+        int sz = Math.min(key1.length, key2.length);
+        for(int i=0; i<sz; i++) {
+            if(key1[i] != key2[i]) {
+                return key1[i] - key2[i];
+            }
+        }
+        return key1.length - key2.length;
+    }
+
+    public boolean equals(Object obj) {
+        if(obj instanceof NumericStringKey) {
+            return this.source.equals( ((NumericStringKey) obj).source );
+        }
+        return false;
+    }
+
+    public int hashCode() {
+        return this.source.hashCode();
+    }
+
+    public String toString() {
+        return this.source;
+    }
+
+    // The text is kept as it is, while each number becomes NUMBER, 
+    // its length without leading zeroes and its digits without leading 
+    // zeroes, so longer numbers sort after shorter ones. After END come 
+    // the counts of leading zeroes, last number first, as the innermost 
+    // difference in zeroes decides a tie. Where text differs the 
+    // comparator falls back to comparing the rest of the Strings, which 
+    // the encoding matches so long as a number starts with an ASCII 
+    // digit and the text never holds END.
+    private static char[] encode(String source) {
+        int sz = source.length();
+        int numbers = 0;
+        for(int i=0; i<sz; i++) {
+            char c = source.charAt(i);
+            if(c == END) {
+                return null;
+            }
+            if(Character.isDigit(c)) {
+                if(c < '0' || c > '9') {
+                    return null;
+                }
+                if(i == 0 || !Character.isDigit(source.charAt(i - 1))) {
+                    numbers++;
+                }
+            }
+        }
+
+        char[] key = new char[sz + numbers * 3 + 1];
+        int[] zeroes = new int[numbers];
+        int length = 0;
+        int n = 0;
+        int i = 0;
+        while(i < sz) {
+            char c = source.charAt(i);
+            if(!Character.isDigit(c)) {
+                key[length++] = c;
+                i++;
+                continue;
+            }
+            int end = NumericStringComparator.getLastDigitIndex(source, i);
+            int start = NumericStringComparator.skipZeroes(source, i, end);
+            if(end - start > Character.MAX_VALUE || start - i > Character.MAX_VALUE) {
+                return null;
+            }
+            key[length++] = NUMBER;
+            key[length++] = (char) (end - start);
+            source.getChars(start, end, key, length);
+            length += end - start;
+            zeroes[n++] = start - i;
+            i = end;
+        }
+        key[length++] = END;
+        for(n=numbers - 1; n>=0; n--) {
+            key[length++] = (char) zeroes[n];
+        }
+
+        if(length == key.length) {
+            return key;
+        }
+        char[] trimmed = new char[length];
+        System.arraycopy(key, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+}
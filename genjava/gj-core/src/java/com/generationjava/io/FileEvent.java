@@ -31,12 +31,93 @@
  */
 package com.generationjava.io;
 
+import java.io.File;
+
 import java.util.EventObject;
 
+/**
+ * A change to a file. When sent by a FileWatcher it stands for every 
+ * change to the file since the last event, and when the file is 
+ * tailed, carries the bytes appended to it.
+ */
 public class FileEvent extends EventObject {
 
+    public static final int CREATED  = 1;
+    public static final int MODIFIED = 2;
+    public static final int DELETED  = 3;
+
+    private File file;
+    private int type = MODIFIED;
+    private int count = 1;
+    private byte[] data;
+    private long offset;
+
     public FileEvent(Object obj) {
         super(obj);
     }
 
+    public FileEvent(Object obj, File file, int type, int count) {
+        super(obj);
+        this.file = file;
+        this.type = type;
+        this.count = count;
+    }
+
+    /**
+     * The file which changed, which is in the directory watched when 
+     * a directory is watched.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * CREATED, MODIFIED or DELETED. Changes which follow each other are 
+     * combined, so a file created and then modified is CREATED, and 
+     * deleted and then created is MODIFIED.
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * How many changes this event stands for.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * The bytes appended to a tailed file, null if it is not tailed.
+     */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /**
+     * Where in the file the data starts.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    void setData(byte[] data, long offset) {
+        this.data = data;
+        this.offset = offset;
+    }
+
+    public String toString() {
+        String str = "FileEvent - ";
+        switch(this.type) {
+            case CREATED: str += "created"; break;
+            case DELETED: str += "deleted"; break;
+            default: str += "modified";
+        }
+        str += "; file="+this.file+", count="+this.count;
+        if(this.data != null) {
+            str += ", "+this.data.length+" bytes at "+this.offset;
+        }
+        return str;
+    }
+
 }
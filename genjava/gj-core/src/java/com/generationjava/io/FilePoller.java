@@ -36,10 +36,18 @@ import java.io.File;
 import java.util.LinkedList;
 import java.util.Iterator;
 
-public class FilePoller implements Runnable {
+/**
+ * Tells PollListeners when a file changes, and gathers what is 
+ * appended to it. The file is watched by the shared FileWatcher, so 
+ * running a FilePoller starts the watching and returns, and the delay 
+ * is how long the file must be unchanged before listeners are told.
+ */
+public class FilePoller implements Runnable, PollListener {
 
-    static public void main(String[] strs) {
+    static public void main(String[] strs) throws InterruptedException {
         pollFile(strs[0]);
+        // the FileWatcher's thread is a daemon
+        Thread.sleep(Long.MAX_VALUE);
     }
 
     static public void pollFile(String filename) {
@@ -51,13 +59,12 @@ public class FilePoller implements Runnable {
             }
         } );
         fp.setFile(file);
-        fp.setDelay(1L);
-        Thread t = new Thread(fp);
-        t.start();
+        fp.setDelay(100L);
+        fp.run();
     }
 
     private File file;
-    private long delay;
+    private long delay = 100;
     private StringBuffer buffer;
 
     private LinkedList listeners;
@@ -77,11 +84,12 @@ public class FilePoller implements Runnable {
         listeners.add(listener);
     }
 
-    private void notifyListeners() {
+    private void notifyListeners(FileEvent event) {
         if(listeners == null) {
             return;
         }
-        FileEvent fe = new FileEvent(this);
+        FileEvent fe = new FileEvent(this, event.getFile(), event.getType(), event.getCount());
+        fe.setData(event.getData(), event.getOffset());
         Iterator iterator = listeners.iterator();
         while(iterator.hasNext()) {
             PollListener pl = (PollListener)iterator.next();
@@ -89,41 +97,44 @@ public class FilePoller implements Runnable {
         }
     }
 
+    /**
+     * Start watching the file.
+     */
     public void run() {
-        long length = file.length();
-        long lastMod = file.lastModified();
-//        try {
-            while(true) {
-                if( (length != file.length()) ||
-                    (lastMod != file.lastModified()) 
-                  ) 
-                {
-                    notifyListeners();
-                }
-                length = file.length();
-                lastMod = file.lastModified();
-                try {
-                    Thread.sleep(this.delay);
-                } catch(InterruptedException ie) {
-                }
-            }
-//        } catch(IOException ioe) {
-//            ioe.printStackTrace();
-//        }
+        FileWatcher.getShared().tail(this.file, this, this.delay);
+    }
+
+    /**
+     * Stop watching the file.
+     */
+    public void stop() {
+        FileWatcher.getShared().unwatch(this.file, this);
+    }
+
+    public void fileChanged(FileEvent fe) {
+        byte[] data = fe.getData();
+        for(int i=0; i<data.length; i++) {
+            append( (char)(data[i] & 0xff) );
+        }
+        notifyListeners(fe);
     }
 
-    private void append(char ch) {
+    private synchronized void append(char ch) {
         if(buffer == null) {
             buffer = new StringBuffer();
         }
         buffer.append(ch);
     }
 
-    public String getData() {
-        return buffer.toString();
+    /**
+     * What has been appended to the file since it started being 
+     * watched, or the data was cleared.
+     */
+    public synchronized String getData() {
+        return buffer == null ? "" : buffer.toString();
     }
 
-    public void clearData() {
+    public synchronized void clearData() {
         buffer = null;
     }
 
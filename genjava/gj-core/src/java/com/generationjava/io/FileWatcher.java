@@ -0,0 +1,642 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches any number of files and directories on one thread, telling 
+ * PollListeners of changes with FileEvents.
+ * <p>
+ * Where the filesystem tells of changes, the directories are 
+ * registered with a java.nio.file.WatchService, a file by its 
+ * directory. Otherwise, as on network filesystems, they are polled; 
+ * every minimum interval after a change, backing off to the maximum 
+ * interval while they are unchanged.
+ * <p>
+ * Changes are debounced. A FileEvent is sent once a file has been 
+ * quiet for the debounce time, and stands for every change to it 
+ * since the last event. A tailed file's events carry the bytes 
+ * appended to it. Listeners are called on the watcher's thread, one 
+ * at a time, and may watch and unwatch.
+ */
+public class FileWatcher {
+
+    // filesystems whose changes may be made by other machines, unseen by inotify
+    private static final Set NETWORK = new HashSet(Arrays.asList(new String[] {
+        "nfs", "nfs4", "cifs", "smbfs", "smb2", "afs", "9p", "fuse.sshfs"
+    }));
+
+    // the most bytes of a tailed file sent in one event
+    private static final int MAX_DATA = 1024 * 1024;
+
+    private static FileWatcher shared;
+
+    /**
+     * A FileWatcher for the whole of the JVM.
+     */
+    public static synchronized FileWatcher getShared() {
+        if(shared == null) {
+            shared = new FileWatcher();
+        }
+        return shared;
+    }
+
+    private WatchService service;
+    private boolean polling;
+
+    private long debounce = 100;
+    private long minInterval = 100;
+    private long maxInterval = 5000;
+
+    private List registrations = new ArrayList();
+    // directory Path to the Registrations watching in it
+    private Map directories = new HashMap();
+    // directory Path to its WatchKey
+    private Map keys = new HashMap();
+
+    private Thread thread;
+    private boolean waiting;
+    private boolean closed;
+
+    public FileWatcher() {
+        this(false);
+    }
+
+    /**
+     * @param polling poll everything, as for a filesystem which does 
+     *        not tell of changes
+     */
+    public FileWatcher(boolean polling) {
+        this.polling = polling;
+        if(!polling) {
+            try {
+                this.service = FileSystems.getDefault().newWatchService();
+                // some platforms only have a WatchService which polls, 
+                // and much less often than we would
+                if(this.service.getClass().getName().indexOf("Polling") != -1) {
+                    this.service.close();
+                    this.service = null;
+                    this.polling = true;
+                }
+            } catch(IOException ioe) {
+                this.polling = true;
+            } catch(UnsupportedOperationException uoe) {
+                this.polling = true;
+            }
+        }
+    }
+
+    /**
+     * How long a file must be unchanged before its event is sent, for 
+     * files watched from now on.
+     */
+    public synchronized void setDebounce(long debounce) {
+        this.debounce = debounce;
+    }
+
+    public synchronized void setPollInterval(long minInterval, long maxInterval) {
+        this.minInterval = minInterval;
+        this.maxInterval = Math.max(minInterval, maxInterval);
+    }
+
+    /**
+     * Watch a file, or a directory and the files in it.
+     */
+    public void watch(File file, PollListener listener) {
+        register(file, listener, false, -1);
+    }
+
+    public void watch(File file, PollListener listener, long debounce) {
+        register(file, listener, false, debounce);
+    }
+
+    /**
+     * Watch a file, as tail -f does. Each event carries the bytes 
+     * appended since the last, starting from the file's length now. 
+     * If the file is truncated or replaced, it is read from the start.
+     */
+    public void tail(File file, PollListener listener) {
+        register(file, listener, true, -1);
+    }
+
+    public void tail(File file, PollListener listener, long debounce) {
+        register(file, listener, true, debounce);
+    }
+
+    public synchronized void unwatch(File file, PollListener listener) {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        Iterator iterator = registrations.iterator();
+        while(iterator.hasNext()) {
+            Registration reg = (Registration)iterator.next();
+            if(reg.path.equals(path) && reg.listener == listener) {
+                iterator.remove();
+                unwatchDirectory(reg);
+            }
+        }
+    }
+
+    /**
+     * Stop watching, and the watcher's thread.
+     */
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            registrations.clear();
+            directories.clear();
+            keys.clear();
+            notifyAll();
+        }
+        if(service != null) {
+            try {
+                service.close();
+            } catch(IOException ioe) {
+                // closing anyway
+            }
+        }
+    }
+
+    private synchronized void register(File file, PollListener listener, boolean tail, long debounce) {
+        if(closed) {
+            throw new IllegalStateException("FileWatcher has been closed. ");
+        }
+        file = file.getAbsoluteFile();
+        if(tail && file.isDirectory()) {
+            throw new IllegalArgumentException("A directory cannot be tailed: "+file);
+        }
+        Registration reg = new Registration(file, listener, tail, debounce < 0 ? this.debounce : debounce);
+        if(tail) {
+            reg.offset = file.length();
+            reg.fileKey = fileKey(file);
+        }
+        if(polling || !watchDirectory(reg)) {
+            startPolling(reg, System.currentTimeMillis());
+        }
+        registrations.add(reg);
+
+        if(thread == null) {
+            thread = new Thread(new Runnable() {
+                public void run() {
+                    loop();
+                }
+            }, "FileWatcher");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            wake();
+        }
+    }
+
+    // register the directory the registration is in with the WatchService
+    private boolean watchDirectory(Registration reg) {
+        Path dir = reg.directory ? reg.path : reg.path.getParent();
+        if(dir == null) {
+            return false;
+        }
+        List regs = (List)directories.get(dir);
+        if(regs == null) {
+            try {
+                if(NETWORK.contains(Files.getFileStore(dir).type())) {
+                    return false;
+                }
+                WatchKey key = dir.register(service, new WatchEvent.Kind[] {
+                    StandardWatchEventKinds.ENTRY_CREATE, 
+                    StandardWatchEventKinds.ENTRY_DELETE, 
+                    StandardWatchEventKinds.ENTRY_MODIFY 
+                });
+                keys.put(dir, key);
+            } catch(IOException ioe) {
+                // missing or unwatchable, so polled
+                return false;
+            } catch(UnsupportedOperationException uoe) {
+                return false;
+            }
+            regs = new ArrayList();
+            directories.put(dir, regs);
+        }
+        regs.add(reg);
+        reg.watchedDirectory = dir;
+        return true;
+    }
+
+    private void unwatchDirectory(Registration reg) {
+        Path dir = reg.watchedDirectory;
+        if(dir == null) {
+            return;
+        }
+        reg.watchedDirectory = null;
+        List regs = (List)directories.get(dir);
+        regs.remove(reg);
+        if(regs.isEmpty()) {
+            directories.remove(dir);
+            ((WatchKey)keys.remove(dir)).cancel();
+        }
+    }
+
+    // wake the watcher's thread to look at a new registration
+    private void wake() {
+        if(Thread.currentThread() == thread) {
+            return;
+        }
+        if(service == null) {
+            notifyAll();
+        } else
+        if(waiting) {
+            // only while it waits on the WatchService, never in a listener
+            thread.interrupt();
+        }
+    }
+
+    private void loop() {
+        List events = new ArrayList();
+        while(true) {
+            long wait;
+            synchronized(this) {
+                if(closed) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                poll(now);
+                due(now, events);
+                wait = events.isEmpty() ? nextWake(now) : 0;
+                if(wait != 0 && service == null) {
+                    try {
+                        wait(Math.max(wait, 0));
+                    } catch(InterruptedException ie) {
+                        // look again
+                    }
+                    continue;
+                }
+                waiting = wait != 0;
+            }
+
+            if(!events.isEmpty()) {
+                deliver(events);
+                events.clear();
+                continue;
+            }
+
+            WatchKey key = null;
+            try {
+                if(wait < 0) {
+                    key = service.take();
+                } else {
+                    key = service.poll(wait, java.util.concurrent.TimeUnit.MILLISECONDS);
+                }
+            } catch(InterruptedException ie) {
+                // woken for a new registration
+            } catch(ClosedWatchServiceException cwse) {
+                return;
+            }
+
+            synchronized(this) {
+                waiting = false;
+                // an interrupt can only have been sent while waiting, under 
+                // this lock, so clearing it now leaves none for a listener
+                Thread.interrupted();
+                long now = System.currentTimeMillis();
+                while(key != null) {
+                    process(key, now);
+                    key = service.poll();
+                }
+            }
+        }
+    }
+
+    // called synchronized, with the WatchKey of a directory
+    private void process(WatchKey key, long now) {
+        Path dir = (Path)key.watchable();
+        List regs = (List)directories.get(dir);
+        List events = key.pollEvents();
+        if(regs == null) {
+            return;
+        }
+        for(int i=0; i<events.size(); i++) {
+            WatchEvent event = (WatchEvent)events.get(i);
+            WatchEvent.Kind kind = event.kind();
+            if(kind == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, so everything in the directory may have changed
+                for(int j=0; j<regs.size(); j++) {
+                    Registration reg = (Registration)regs.get(j);
+                    change(reg, reg.file, FileEvent.MODIFIED, now);
+                }
+                continue;
+            }
+            int type = FileEvent.MODIFIED;
+            if(kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                type = FileEvent.CREATED;
+            } else
+            if(kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                type = FileEvent.DELETED;
+            }
+            Path path = dir.resolve((Path)event.context());
+            for(int j=0; j<regs.size(); j++) {
+                Registration reg = (Registration)regs.get(j);
+                if(reg.directory) {
+                    change(reg, path.toFile(), type, now);
+                } else
+                if(reg.path.equals(path)) {
+                    change(reg, reg.file, type, now);
+                }
+            }
+        }
+        if(!key.reset()) {
+            // the directory has gone, poll for it to return
+            Object[] gone = regs.toArray();
+            for(int i=0; i<gone.length; i++) {
+                Registration reg = (Registration)gone[i];
+                unwatchDirectory(reg);
+                startPolling(reg, now);
+            }
+        }
+    }
+
+    // called synchronized, coalesces a change into those waiting to be sent
+    private void change(Registration reg, File file, int type, long now) {
+        Pending pending = (Pending)reg.pending.get(file);
+        if(pending == null) {
+            pending = new Pending(type);
+            reg.pending.put(file, pending);
+        } else {
+            pending.count++;
+            if(pending.type == FileEvent.CREATED && type == FileEvent.MODIFIED) {
+                // still created
+            } else
+            if(pending.type == FileEvent.DELETED && type == FileEvent.CREATED) {
+                pending.type = FileEvent.MODIFIED;
+            } else {
+                pending.type = type;
+            }
+        }
+        pending.due = now + reg.debounce;
+    }
+
+    // called synchronized, takes the changes which have been quiet long enough
+    private void due(long now, List events) {
+        for(int i=0; i<registrations.size(); i++) {
+            Registration reg = (Registration)registrations.get(i);
+            if(reg.pending.isEmpty()) {
+                continue;
+            }
+            Iterator iterator = reg.pending.entrySet().iterator();
+            while(iterator.hasNext()) {
+                Map.Entry entry = (Map.Entry)iterator.next();
+                Pending pending = (Pending)entry.getValue();
+                if(pending.due <= now) {
+                    iterator.remove();
+                    events.add(reg);
+                    events.add(new FileEvent(this, (File)entry.getKey(), pending.type, pending.count));
+                }
+            }
+        }
+    }
+
+    // called synchronized, how long until something is due, -1 for never
+    private long nextWake(long now) {
+        long next = Long.MAX_VALUE;
+        for(int i=0; i<registrations.size(); i++) {
+            Registration reg = (Registration)registrations.get(i);
+            if(reg.polled) {
+                next = Math.min(next, reg.nextPoll);
+            }
+            Iterator iterator = reg.pending.values().iterator();
+            while(iterator.hasNext()) {
+                next = Math.min(next, ((Pending)iterator.next()).due);
+            }
+        }
+        if(next == Long.MAX_VALUE) {
+            return -1;
+        }
+        return Math.max(1, next - now);
+    }
+
+    // events holds each Registration followed by its FileEvent
+    private void deliver(List events) {
+        for(int i=0; i<events.size(); i+=2) {
+            Registration reg = (Registration)events.get(i);
+            FileEvent event = (FileEvent)events.get(i + 1);
+            synchronized(this) {
+                if(!registrations.contains(reg)) {
+                    // unwatched by an earlier listener
+                    continue;
+                }
+            }
+            if(reg.tail) {
+                try {
+                    readAppended(reg, event);
+                } catch(IOException ioe) {
+                    // gone between the change and now, send what we know
+                    event.setData(new byte[0], reg.offset);
+                }
+            }
+            try {
+                reg.listener.fileChanged(event);
+            } catch(RuntimeException re) {
+                // one listener must not stop the others
+                re.printStackTrace();
+            }
+        }
+    }
+
+    // only called on the watcher's thread, which alone uses offset and fileKey
+    private void readAppended(Registration reg, FileEvent event) throws IOException {
+        File file = reg.file;
+        if(event.getType() == FileEvent.DELETED) {
+            reg.offset = 0;
+            reg.fileKey = null;
+            event.setData(new byte[0], 0);
+            return;
+        }
+        Object fileKey = fileKey(file);
+        long length = file.length();
+        if(length < reg.offset || (fileKey != null && !fileKey.equals(reg.fileKey))) {
+            // truncated, or replaced as when a log is rotated
+            reg.offset = 0;
+        }
+        reg.fileKey = fileKey;
+        int n = (int)Math.min(length - reg.offset, MAX_DATA);
+        byte[] data = new byte[Math.max(n, 0)];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(reg.offset);
+            raf.readFully(data);
+        } finally {
+            raf.close();
+        }
+        event.setData(data, reg.offset);
+        reg.offset += data.length;
+        if(reg.offset < length) {
+            // send the rest straight after
+            synchronized(this) {
+                change(reg, file, FileEvent.MODIFIED, System.currentTimeMillis() - reg.debounce);
+            }
+        }
+    }
+
+    private static Object fileKey(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch(IOException ioe) {
+            return null;
+        }
+    }
+
+    // called synchronized
+    private void startPolling(Registration reg, long now) {
+        reg.polled = true;
+        reg.interval = minInterval;
+        reg.nextPoll = now + reg.interval;
+        reg.snapshot = snapshot(reg);
+    }
+
+    // called synchronized, polls the registrations which are due
+    private void poll(long now) {
+        for(int i=0; i<registrations.size(); i++) {
+            Registration reg = (Registration)registrations.get(i);
+            if(!reg.polled || reg.nextPoll > now) {
+                continue;
+            }
+            Map snapshot = snapshot(reg);
+            boolean changed = false;
+            Iterator iterator = snapshot.entrySet().iterator();
+            while(iterator.hasNext()) {
+                Map.Entry entry = (Map.Entry)iterator.next();
+                long[] stat = (long[])reg.snapshot.get(entry.getKey());
+                if(stat == null) {
+                    change(reg, (File)entry.getKey(), FileEvent.CREATED, now);
+                    changed = true;
+                } else
+                if(!Arrays.equals(stat, (long[])entry.getValue())) {
+                    change(reg, (File)entry.getKey(), FileEvent.MODIFIED, now);
+                    changed = true;
+                }
+            }
+            iterator = reg.snapshot.keySet().iterator();
+            while(iterator.hasNext()) {
+                File file = (File)iterator.next();
+                if(!snapshot.containsKey(file)) {
+                    change(reg, file, FileEvent.DELETED, now);
+                    changed = true;
+                }
+            }
+            reg.snapshot = snapshot;
+            // back off while nothing changes
+            reg.interval = changed ? minInterval : Math.min(reg.interval * 2, maxInterval);
+            reg.nextPoll = now + reg.interval;
+        }
+    }
+
+    // File to {lastModified, length} of the file, or the files in the directory
+    private static Map snapshot(Registration reg) {
+        Map snapshot = new HashMap();
+        if(reg.directory) {
+            File[] files = reg.file.listFiles();
+            if(files != null) {
+                for(int i=0; i<files.length; i++) {
+                    snapshot.put(files[i], new long[] { files[i].lastModified(), files[i].length() });
+                }
+            }
+        } else
+        if(reg.file.exists()) {
+            snapshot.put(reg.file, new long[] { reg.file.lastModified(), reg.file.length() });
+        }
+        return snapshot;
+    }
+
+    // a listener watching a file or directory
+    private static class Registration {
+        File file;
+        Path path;
+        boolean directory;
+        PollListener listener;
+        long debounce;
+        // File to the Pending change to it
+        Map pending = new LinkedHashMap();
+
+        // the directory registered with the WatchService
+        Path watchedDirectory;
+
+        boolean polled;
+        long interval;
+        long nextPoll;
+        Map snapshot;
+
+        boolean tail;
+        long offset;
+        Object fileKey;
+
+        Registration(File file, PollListener listener, boolean tail, long debounce) {
+            this.file = file;
+            this.path = file.toPath().normalize();
+            this.directory = file.isDirectory();
+            this.listener = listener;
+            this.tail = tail;
+            this.debounce = debounce;
+        }
+    }
+
+    private static class Pending {
+        int type;
+        int count = 1;
+        long due;
+
+        Pending(int type) {
+            this.type = type;
+        }
+    }
+
+}
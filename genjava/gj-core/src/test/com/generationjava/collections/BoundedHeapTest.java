@@ -0,0 +1,125 @@
+package com.generationjava.collections;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class BoundedHeapTest extends TestCase {
+
+    // Strings compared by length only, so there are plenty of ties
+    private static final Comparator LENGTH = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            return ((String) o1).length() - ((String) o2).length();
+        }
+    };
+
+    public BoundedHeapTest(String name) {
+        super(name);
+    }
+
+    //-----------------------------------------------------------------------
+
+    public void testSameAsSortedLimitedList() {
+        Random random = new Random(7);
+        int[] capacities = { 0, 1, 2, 10, 100 };
+        for(int c=0; c<capacities.length; c++) {
+            BoundedHeap heap = new BoundedHeap(capacities[c], LENGTH);
+            List list = new SortedLimitedList(capacities[c], LENGTH);
+            for(int i=0; i<2000; i++) {
+                String str = "x" + random.nextInt(1000);
+                assertEquals( list.add(str), heap.offer(str) );
+            }
+            assertEquals( list, heap.toSortedList() );
+            assertEquals( list, Arrays.asList(heap.toArray()) );
+        }
+    }
+
+    public void testPeek() {
+        BoundedHeap heap = new BoundedHeap(3, LENGTH);
+        heap.offer("aa");
+        heap.offer("a");
+        heap.offer("aaaa");
+        assertEquals( "a", heap.peek() );
+        assertFalse( heap.offer("b") );
+        assertTrue( heap.offer("aaa") );
+        assertEquals( "aa", heap.peek() );
+        assertEquals( "[aaaa, aaa, aa]", heap.toString() );
+    }
+
+    public void testMerge() {
+        BoundedHeap heap1 = new BoundedHeap(3, LENGTH);
+        BoundedHeap heap2 = new BoundedHeap(3, LENGTH);
+        heap1.offer("a");
+        heap1.offer("aaa");
+        heap2.offer("aa");
+        heap2.offer("aaaa");
+        heap1.merge(heap2);
+        assertEquals( "[aaaa, aaa, aa]", heap1.toString() );
+    }
+
+    public void testLongs() {
+        Random random = new Random(7);
+        BoundedLongHeap heap = new BoundedLongHeap(50);
+        long[] values = new long[5000];
+        for(int i=0; i<values.length; i++) {
+            values[i] = random.nextLong();
+            heap.offer(values[i]);
+        }
+        Arrays.sort(values);
+        long[] top = heap.toArray();
+        assertEquals( 50, top.length );
+        for(int i=0; i<top.length; i++) {
+            assertEquals( values[values.length - 1 - i], top[i] );
+        }
+        assertEquals( values[values.length - 50], heap.peek() );
+    }
+
+    public void testDoubles() {
+        BoundedDoubleHeap heap = new BoundedDoubleHeap(3);
+        heap.offer(1.5);
+        heap.offer(Double.NaN);
+        heap.offer(-0.0);
+        heap.offer(0.0);
+        heap.offer(-7);
+        double[] top = heap.toArray();
+        assertEquals( 3, top.length );
+        assertTrue( Double.isNaN(top[0]) );
+        assertEquals( 1.5, top[1], 0 );
+        assertEquals( Double.doubleToLongBits(0.0), Double.doubleToLongBits(top[2]) );
+    }
+
+    public void testStriped() throws InterruptedException {
+        final StripedBoundedHeap heap = new StripedBoundedHeap(100, LENGTH, 4);
+        final List expected = new ArrayList();
+        Thread[] threads = new Thread[4];
+        for(int t=0; t<threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for(int i=offset; i<1000; i+=4) {
+                        heap.offer(pad(i));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(int t=0; t<threads.length; t++) {
+            threads[t].join();
+        }
+        for(int i=999; i>=900; i--) {
+            expected.add(pad(i));
+        }
+        assertEquals( expected, heap.toSortedList() );
+    }
+
+    private static String pad(int length) {
+        char[] chrs = new char[length];
+        Arrays.fill(chrs, 'x');
+        return new String(chrs);
+    }
+
+}
@@ -7,7 +7,12 @@ import junit.textui.TestRunner;
 
 import java.beans.Beans;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 
 public class FQMapTest extends TestCase {
 
@@ -30,4 +35,158 @@ public class FQMapTest extends TestCase {
         assertEquals(true, Beans.isInstanceOf(map.get("well"), java.util.Map.class));
         assertEquals(3, map.size());
     }
+
+    public void testMapContract() {
+        Map map = new FQMap();
+        map.put("a.b.c", "abc");
+        map.put("a.b", "ab");
+        map.put("a.bc", "a-bc");
+        map.put("x", null);
+
+        assertTrue(map.containsKey("a.b.c"));
+        assertTrue(map.containsKey("a.b"));
+        assertTrue(map.containsKey("x"));
+        assertFalse(map.containsKey("a"));
+        assertFalse(map.containsKey("a.b.c.d"));
+        assertFalse(map.containsKey("a.bcd"));
+        assertEquals(4, map.size());
+
+        assertEquals("ab", map.put("a.b", "AB"));
+        assertEquals("AB", map.get("a.b"));
+        assertEquals("abc", map.get("a.b.c"));
+
+        Map expected = new HashMap();
+        expected.put("a.b.c", "abc");
+        expected.put("a.b", "AB");
+        expected.put("a.bc", "a-bc");
+        expected.put("x", null);
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.keySet(), map.keySet());
+
+        assertEquals("AB", map.remove("a.b"));
+        assertNull(map.remove("a.b"));
+        assertNull(map.remove("a"));
+        assertEquals("abc", map.get("a.b.c"));
+        assertEquals(3, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a.b.c"));
+    }
+
+    public void testView() {
+        FQMap map = new FQMap();
+        map.put("java.util.Map", "Map");
+        map.put("java.util.List", "List");
+        map.put("java.util.concurrent.Future", "Future");
+        map.put("java.io.File", "File");
+        map.put("org.apache.commons.lang.StringUtils", "StringUtils");
+
+        FQMap util = (FQMap) map.get("java.util");
+        assertEquals("java.util", util.getPrefix());
+        assertEquals(3, util.size());
+        assertEquals("Map", util.get("Map"));
+        assertEquals("Future", util.get("concurrent.Future"));
+
+        Collection[] values = util.getSeparatedValues();
+        assertEquals(1, values[0].size());
+        assertEquals("java.util.concurrent", ((FQMap) values[0].iterator().next()).getPrefix());
+        assertEquals(new HashSet(java.util.Arrays.asList(new String[] { "Map", "List" })), new HashSet(values[1]));
+
+        // part way through the one node of org.apache.commons.lang.StringUtils
+        FQMap apache = (FQMap) map.get("org.apache");
+        assertEquals(1, apache.size());
+        assertEquals("commons.lang.StringUtils", apache.keySet().iterator().next());
+        values = apache.getSeparatedValues();
+        assertNull(values[1]);
+        assertEquals("org.apache.commons", ((FQMap) values[0].iterator().next()).getPrefix());
+
+        util.put("Set", "Set");
+        assertEquals("Set", map.get("java.util.Set"));
+        assertEquals("List", util.remove("List"));
+        assertFalse(map.containsKey("java.util.List"));
+        util.clear();
+        assertEquals(2, map.size());
+        assertNull(map.get("java.util"));
+        assertNull(map.get("org.apache.commons.lang.String"));
+    }
+
+    public void testIteratorRemove() {
+        Map map = new FQMap();
+        map.put("a.b", "1");
+        map.put("a.c", "2");
+        map.put("a.c.d", "3");
+        map.put(Integer.valueOf(4), "4");
+        Iterator it = map.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            if(!"a.c".equals(entry.getKey())) {
+                it.remove();
+            }
+        }
+        assertEquals(1, map.size());
+        assertEquals("2", map.get("a.c"));
+    }
+
+    public void testAgainstHashMap() {
+        Random random = new Random(42);
+        String[] segments = { "", "a", "b", "ab", "ba", "abc" };
+        FQMap map = new FQMap();
+        Map expected = new HashMap();
+        for(int n=0; n<20000; n++) {
+            StringBuffer key = new StringBuffer(segments[random.nextInt(segments.length)]);
+            int depth = random.nextInt(4);
+            for(int i=0; i<depth; i++) {
+                key.append('.').append(segments[random.nextInt(segments.length)]);
+            }
+            String str = key.toString();
+            if(random.nextInt(3) == 0) {
+                assertEquals(str, expected.remove(str), map.remove(str));
+            } else {
+                Integer value = Integer.valueOf(n);
+                assertEquals(str, expected.put(str, value), map.put(str, value));
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(str, expected.containsKey(str), map.containsKey(str));
+            if(n % 1000 == 0) {
+                assertEquals(expected, map);
+            }
+        }
+        assertEquals(expected, map);
+    }
+
+    public void testConcurrentReads() throws InterruptedException {
+        final FQMap map = new FQMap();
+        final int count = 20000;
+        final boolean[] failed = new boolean[1];
+        Thread reader = new Thread() {
+            public void run() {
+                // names are put in order, so the first size() are there
+                int size = 0;
+                while(size < count) {
+                    size = map.size();
+                    for(int i=0; i<size; i+=7) {
+                        if(!Integer.valueOf(i).equals(map.get(name(i)))) {
+                            failed[0] = true;
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+        reader.start();
+        for(int i=0; i<count; i++) {
+            map.put(name(i), Integer.valueOf(i));
+        }
+        reader.join(60000);
+        assertFalse(failed[0]);
+        assertEquals(count, map.size());
+    }
+
+    private static String name(int i) {
+        return "p" + (i % 7) + ".q" + (i % 13) + ".C" + i;
+    }
+
 }
@@ -56,6 +56,38 @@ public class NumericStringComparatorTest extends TestCase {
             cmp = cmp / Math.abs(cmp);
         }
         assertTrue( str1+" and "+str2+" should compare as "+expected+" and not "+cmp, cmp == expected);
+
+        cmp = nsc.getKey(str1).compareTo(nsc.getKey(str2));
+        if(cmp != 0) {
+            cmp = cmp / Math.abs(cmp);
+        }
+        assertTrue( "Keys of "+str1+" and "+str2+" should compare as "+expected+" and not "+cmp, cmp == expected);
+    }
+
+    public void testZeroes() {
+        compare("aaa119x", "aaa0119x", -1);
+        compare("aaa119y", "aaa0119x", 1);
+        compare("a01b1", "a1b01", -1);
+        compare("a01b01", "a1b01", 1);
+        compare("a01b", "a1b", 1);
+        compare("a007", "a007", 0);
+        compare("a0", "a00", -1);
+    }
+
+    public void testNumbers() {
+        compare("file9.txt", "file10.txt", -1);
+        compare("file10.txt", "file9.txt", 1);
+        compare("1.10.2", "1.9.12", 1);
+        compare("x12y34", "x12y34", 0);
+        // keys of these fall back to the comparator
+        compare("a\u0661", "a1", 1);
+        compare("a\u0000b", "a", 1);
+    }
+
+    public void testNull() {
+        NumericStringComparator nsc = new NumericStringComparator();
+        assertEquals( 1, nsc.compare(null, "a") );
+        assertEquals( -1, nsc.compare("a", null) );
     }
 
     public void testBug() {
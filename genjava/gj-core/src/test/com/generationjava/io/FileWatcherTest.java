@@ -0,0 +1,169 @@
+package com.generationjava.io;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileWatcherTest extends TestCase {
+
+    private File dir;
+    private FileWatcher watcher;
+
+    public FileWatcherTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws IOException {
+        dir = File.createTempFile("FileWatcherTest", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    public void tearDown() {
+        if(watcher != null) {
+            watcher.close();
+        }
+        File[] files = dir.listFiles();
+        for(int i=0; i<files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    //-----------------------------------------------------------------------
+
+    public void testWatchFile() throws Exception {
+        File file = new File(dir, "watched");
+        write(file, "start", false);
+        watcher = new FileWatcher();
+        Listener listener = new Listener();
+        watcher.watch(file, listener, 200);
+
+        // several writes close together are one event
+        for(int i=0; i<5; i++) {
+            write(file, "more", true);
+        }
+        FileEvent event = listener.await(1);
+        assertEquals(file, event.getFile());
+        assertEquals(FileEvent.MODIFIED, event.getType());
+        assertNull(event.getData());
+        Thread.sleep(400);
+        assertEquals(1, listener.size());
+
+        watcher.unwatch(file, listener);
+        write(file, "unwatched", true);
+        Thread.sleep(400);
+        assertEquals(1, listener.size());
+    }
+
+    public void testWatchDirectory() throws Exception {
+        watcher = new FileWatcher();
+        Listener listener = new Listener();
+        watcher.watch(dir, listener, 50);
+
+        File file = new File(dir, "created");
+        write(file, "new", false);
+        FileEvent event = listener.await(1);
+        assertEquals(file, event.getFile());
+        assertEquals(FileEvent.CREATED, event.getType());
+
+        file.delete();
+        event = listener.await(2);
+        assertEquals(file, event.getFile());
+        assertEquals(FileEvent.DELETED, event.getType());
+    }
+
+    public void testTail() throws Exception {
+        checkTail(new FileWatcher());
+    }
+
+    public void testTailPolling() throws Exception {
+        checkTail(new FileWatcher(true));
+    }
+
+    private void checkTail(FileWatcher fw) throws Exception {
+        watcher = fw;
+        watcher.setPollInterval(10, 100);
+        File file = new File(dir, "tailed");
+        write(file, "before\n", false);
+        Listener listener = new Listener();
+        watcher.tail(file, listener, 50);
+
+        write(file, "hello\n", true);
+        FileEvent event = listener.await(1);
+        assertEquals("hello\n", new String(event.getData(), "ISO-8859-1"));
+        assertEquals(7, event.getOffset());
+
+        write(file, "world\n", true);
+        event = listener.await(2);
+        assertEquals("world\n", new String(event.getData(), "ISO-8859-1"));
+        assertEquals(13, event.getOffset());
+
+        // truncated, so read from the start
+        write(file, "x", false);
+        event = listener.await(3);
+        assertEquals("x", new String(event.getData(), "ISO-8859-1"));
+        assertEquals(0, event.getOffset());
+    }
+
+    public void testFilePoller() throws Exception {
+        File file = new File(dir, "polled");
+        write(file, "before\n", false);
+        FilePoller poller = new FilePoller();
+        Listener listener = new Listener();
+        poller.addListener(listener);
+        poller.setFile(file);
+        poller.setDelay(50);
+        poller.run();
+        try {
+            write(file, "after\n", true);
+            FileEvent event = listener.await(1);
+            assertSame(poller, event.getSource());
+            assertEquals("after\n", poller.getData());
+        } finally {
+            poller.stop();
+        }
+    }
+
+    private static void write(File file, String str, boolean append) throws IOException {
+        OutputStream out = new FileOutputStream(file, append);
+        try {
+            out.write(str.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    static class Listener implements PollListener {
+        private List events = new ArrayList();
+
+        public synchronized void fileChanged(FileEvent fe) {
+            events.add(fe);
+            notifyAll();
+        }
+
+        synchronized int size() {
+            return events.size();
+        }
+
+        // the nth event, waiting up to ten seconds for it
+        synchronized FileEvent await(int n) throws InterruptedException {
+            long end = System.currentTimeMillis() + 10000;
+            while(events.size() < n && System.currentTimeMillis() < end) {
+                wait(100);
+            }
+            assertTrue("Expected "+n+" events, got "+events, events.size() >= n);
+            return (FileEvent)events.get(n - 1);
+        }
+    }
+
+}
@@ -32,16 +32,43 @@
 package com.generationjava.io.find;
 
 import java.io.File;
-import java.util.List;
-import java.util.LinkedList;
+import java.io.IOException;
+
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Finds Files in a file system.
  *
  * Informs FindListeners whenever a Find is made, and returns the 
  * finds to the user.
+ * <p>
+ * Directories are listed in parallel, each subdirectory a task on a 
+ * fork/join pool. Each entry's attributes are read once, as it is 
+ * listed, and answer the filter's questions of it. A directory is 
+ * found before what is in it, or after with the DEPTH option, but 
+ * what is in different directories is found in no particular order. 
+ * Symbolic links are not followed, except for the directory searched.
  */
 public class FileFinder implements Finder {
 
@@ -76,7 +103,26 @@ public class FileFinder implements Finder {
         }
     }
 
+    // ends the queue of a stream
+    private static final Object END = new Object();
+
     private List findListeners;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How many threads list directories at once. Defaults to the 
+     * number of processors.
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: "+parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
 
     /**
      * Find all files in the specified directory.
@@ -85,65 +131,312 @@ public class FileFinder implements Finder {
         return find(directory, new java.util.HashMap());
     }
 
-    // add maxdepth and mindepth somehow
+    /**
+     * Find the files under a directory which pass the options. 
+     * FindListeners are told of each as it is found, one at a time.
+     * The MAXDEPTH option is how many directories down to look, 0 
+     * being the directory itself, and MINDEPTH how many down files 
+     * must be to be found.
+     */
     public File[] find(File directory, Map options) {
-        notifyDirectoryStarted(directory);
+        Search search = new Search(options);
+        search.results = new ArrayList();
+        if(findListeners != null) {
+            search.listeners = (FindListener[]) findListeners.toArray(new FindListener[0]);
+        }
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.invoke(new Walk(search, directory, pool));
+        } finally {
+            pool.shutdown();
+        }
+        return (File[]) search.results.toArray(new File[0]);
+    }
+
+    /**
+     * A Stream of the Paths of the files under a directory which pass 
+     * the options, as they are found. The finding runs ahead of the 
+     * stream by a bounded amount, and stops if the stream is closed. 
+     * FindListeners are not told.
+     */
+    public Stream stream(File directory, Map options) {
+        final Search search = new Search(options);
+        search.queue = new ArrayBlockingQueue(1024);
+        final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        pool.execute(new Walk(search, directory, pool));
+
+        Iterator iterator = new Iterator() {
+            private Object next;
+            public boolean hasNext() {
+                if(next == null) {
+                    next = search.take();
+                }
+                return next != END;
+            }
+            public Object next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object obj = next;
+                next = null;
+                return obj;
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        Stream stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL | Spliterator.DISTINCT), false);
+        return (Stream) stream.onClose(new Runnable() {
+            public void run() {
+                search.cancelled = true;
+                pool.shutdownNow();
+            }
+        });
+    }
+
+    /**
+     * One find, shared by the tasks listing its directories.
+     */
+    private class Search {
+        private FindingFilter filter;
+        private boolean depthFirst;
+        private int minDepth;
+        private int maxDepth = Integer.MAX_VALUE;
+        private boolean ignoreHiddenDirs;
+
+        // for find
+        private List results;
+        private FindListener[] listeners;
 
-        boolean depthFirst = toBoolean(options.get(Finder.DEPTH));
+        // for stream
+        private BlockingQueue queue;
+        private RuntimeException failure;
 
-        // to implement
-        int maxDepth = toInt(options.get(Finder.MAXDEPTH));
-        int minDepth = toInt(options.get(Finder.MINDEPTH));
-        boolean ignoreHiddenDirs = toBoolean(options.get(Finder.IGNORE_HIDDEN_DIRS));
+        private volatile boolean cancelled;
 
-        FindingFilter filter = new FindingFilter(options);
-        List list = find(directory, filter, depthFirst);
-        if(filter.accept(directory)) {
-            if(depthFirst) {
-                list.add( directory );
-            } else {
-                list.add( 0, directory );
+        Search(Map options) {
+            this.filter = new FindingFilter(options);
+            this.depthFirst = toBoolean(options.get(Finder.DEPTH));
+            this.minDepth = toInt(options.get(Finder.MINDEPTH));
+            if(options.containsKey(Finder.MAXDEPTH)) {
+                this.maxDepth = toInt(options.get(Finder.MAXDEPTH));
+            }
+            this.ignoreHiddenDirs = toBoolean(options.get(Finder.IGNORE_HIDDEN_DIRS));
+        }
+
+        /**
+         * A file depth directories down, in directory.
+         *
+         * @param inDirectory collects what is found in the directory, 
+         *                    for directoryFinished
+         */
+        void found(File directory, StatFile file, int depth, List inDirectory) {
+            if(depth < this.minDepth || !this.filter.accept(file)) {
+                return;
+            }
+            if(this.queue != null) {
+                put(file.toPath());
+                return;
+            }
+            File plain = new File(file.getPath());
+            if(inDirectory != null) {
+                inDirectory.add(plain);
+            }
+            synchronized(this) {
+                this.results.add(plain);
+                if(this.listeners != null && !file.isDirectory()) {
+                    fire(new FindEvent(FileFinder.this, "fileFound", directory, plain));
+                }
+            }
+        }
+
+        void directoryStarted(File directory) {
+            if(this.listeners != null) {
+                synchronized(this) {
+                    fire(new FindEvent(FileFinder.this, "directoryStarted", new File(directory.getPath())));
+                }
             }
         }
-        File[] files = (File[]) list.toArray(new File[0]);
-        notifyDirectoryFinished(directory, files);
-        return files;
-    }
 
-    private List find(File directory, FindingFilter filter, boolean depthFirst) {
+        void directoryFinished(File directory, List inDirectory) {
+            if(this.listeners != null) {
+                File[] files = (File[]) inDirectory.toArray(new File[0]);
+                synchronized(this) {
+                    fire(new FindEvent(FileFinder.this, "directoryFinished", new File(directory.getPath()), files));
+                }
+            }
+        }
 
-        // we can't use listFiles(filter) here, directories don't work correctly
-        File[] list = directory.listFiles();
+        private void fire(FindEvent fe) {
+            for(int i=0; i<this.listeners.length; i++) {
+                if("fileFound".equals(fe.getType())) {
+                    this.listeners[i].fileFound(fe);
+                } else
+                if("directoryStarted".equals(fe.getType())) {
+                    this.listeners[i].directoryStarted(fe);
+                } else {
+                    this.listeners[i].directoryFinished(fe);
+                }
+            }
+        }
 
-        if (list == null) {
-            return null;
+        // waits for room in the queue, unless the stream is closed
+        private void put(Object obj) {
+            try {
+                while(!this.cancelled && !this.queue.offer(obj, 100, TimeUnit.MILLISECONDS)) {
+                    // the stream is being read slowly
+                }
+            } catch(InterruptedException ie) {
+                this.cancelled = true;
+            }
         }
 
-        List retlist = new LinkedList();
-        int sz = list.length;
+        void finish(RuntimeException failure) {
+            this.failure = failure;
+            if(this.queue != null) {
+                put(END);
+            }
+        }
 
-        for (int i = 0; i < sz; i++) {
-            File tmp = list[i];
-            if(!depthFirst && filter.accept(tmp)) {
-                retlist.add(tmp);
-                notifyFileFound(directory,tmp);
+        Object take() {
+            Object obj;
+            try {
+                obj = this.queue.take();
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new FinderException(ie);
             }
-            if (tmp.isDirectory()) {
-                notifyDirectoryStarted(tmp);
-                List sublist = find(tmp, filter, depthFirst);
-                int subsz = sublist.size();
-                for (int j = 0; j < subsz; j++) {
-                    retlist.add(sublist.get(j));
+            if(obj == END) {
+                // leave the end for any later call
+                this.queue.offer(END);
+                if(this.failure != null) {
+                    throw this.failure;
                 }
-                notifyDirectoryFinished(tmp, (File[]) sublist.toArray(new File[0]));
             }
-            if(depthFirst && filter.accept(tmp)) {
-                retlist.add(tmp);
-                notifyFileFound(directory,tmp);
+            return obj;
+        }
+    }
+
+    /**
+     * Finds the directory searched, and everything under it.
+     */
+    private class Walk extends RecursiveAction {
+        private Search search;
+        private File root;
+        private ForkJoinPool pool;
+
+        Walk(Search search, File root, ForkJoinPool pool) {
+            this.search = search;
+            this.root = root;
+            this.pool = pool;
+        }
+
+        protected void compute() {
+            RuntimeException failure = null;
+            try {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(this.root.toPath(), BasicFileAttributes.class);
+                } catch(IOException ioe) {
+                    // nothing to find
+                    return;
+                }
+                StatFile file = new StatFile(this.root.toPath(), attributes);
+                if(!this.search.depthFirst) {
+                    this.search.found(this.root.getParentFile(), file, 0, null);
+                }
+                if(attributes.isDirectory() && this.search.maxDepth > 0) {
+                    new DirectoryTask(this.search, file, 0).invoke();
+                }
+                if(this.search.depthFirst) {
+                    this.search.found(this.root.getParentFile(), file, 0, null);
+                }
+            } catch(RuntimeException re) {
+                failure = re;
+                throw re;
+            } finally {
+                this.search.finish(failure);
+                this.pool.shutdown();
             }
         }
+    }
+
+    /**
+     * Lists a directory, forking a task for each directory in it.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private Search search;
+        private StatFile directory;
+        private int depth;
+
+        DirectoryTask(Search search, StatFile directory, int depth) {
+            this.search = search;
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        protected void compute() {
+            if(this.search.cancelled) {
+                return;
+            }
+            this.search.directoryStarted(this.directory);
+            List inDirectory = this.search.listeners == null ? null : new ArrayList();
+            List tasks = null;
+            int depth = this.depth + 1;
 
-        return retlist;
+            DirectoryStream stream = null;
+            try {
+                stream = Files.newDirectoryStream(this.directory.toPath());
+                Iterator iterator = stream.iterator();
+                while(iterator.hasNext() && !this.search.cancelled) {
+                    Path path = (Path)iterator.next();
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch(IOException ioe) {
+                        // gone since it was listed
+                        continue;
+                    }
+                    StatFile file = new StatFile(path, attributes);
+                    if(attributes.isDirectory() && depth < this.search.maxDepth && 
+                       !(this.search.ignoreHiddenDirs && file.isHidden()))
+                    {
+                        if(tasks == null) {
+                            tasks = new ArrayList();
+                        }
+                        tasks.add(new DirectoryTask(this.search, file, depth));
+                        if(!this.search.depthFirst) {
+                            this.search.found(this.directory, file, depth, inDirectory);
+                        }
+                    } else {
+                        this.search.found(this.directory, file, depth, inDirectory);
+                    }
+                }
+            } catch(IOException ioe) {
+                // unreadable, as find carries on past
+            } catch(DirectoryIteratorException die) {
+                // as above, part way through
+            } finally {
+                if(stream != null) {
+                    try {
+                        stream.close();
+                    } catch(IOException ioe) {
+                        // nothing more to read
+                    }
+                }
+            }
+
+            if(tasks != null) {
+                invokeAll(tasks);
+                if(this.search.depthFirst) {
+                    for(int i=0; i<tasks.size(); i++) {
+                        StatFile subdirectory = ((DirectoryTask)tasks.get(i)).directory;
+                        this.search.found(this.directory, subdirectory, depth, inDirectory);
+                    }
+                }
+            }
+            this.search.directoryFinished(this.directory, inDirectory);
+        }
     }
     
     /**
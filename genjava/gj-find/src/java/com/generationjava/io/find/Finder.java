@@ -50,11 +50,11 @@ public interface Finder {
     // OPTIONS
     /** Do not include the current time in date calculations - Unimplemented*/
     public static final String DAYSTART = "DAYSTART";
-    /** */
+    /** Find the contents of a directory before the directory itself */
     public static final String DEPTH = "DEPTH";
-    /** How far down the directory structure to start searching at - Unimplemented */
+    /** How many directories to search down, 0 being only the starting point */
     public static final String MAXDEPTH = "MAXDEPTH";
-    /** How many directories to search down - Unimplemented */
+    /** How far down the directory structure to start finding files at */
     public static final String MINDEPTH = "MINDEPTH";
     /** Don't follow hidden directories */
     public static final String IGNORE_HIDDEN_DIRS = "IGNORE_HIDDEN_DIRS";
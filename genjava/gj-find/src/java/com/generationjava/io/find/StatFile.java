@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.io.find;
+
+import java.io.File;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A File which answers the questions the FindingFilter asks most 
+ * from the attributes read when its directory was listed, rather 
+ * than by asking the filesystem again for each. Only used while 
+ * finding; the Files handed out are plain Files.
+ */
+class StatFile extends File {
+
+    private transient Path path;
+    private transient BasicFileAttributes attributes;
+
+    StatFile(Path path, BasicFileAttributes attributes) {
+        super(path.toString());
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    public boolean exists() {
+        return true;
+    }
+
+    public boolean isDirectory() {
+        return this.attributes.isDirectory();
+    }
+
+    public boolean isFile() {
+        return this.attributes.isRegularFile();
+    }
+
+    public long length() {
+        return this.attributes.size();
+    }
+
+    public long lastModified() {
+        return this.attributes.lastModifiedTime().toMillis();
+    }
+
+    public Path toPath() {
+        return this.path;
+    }
+
+}
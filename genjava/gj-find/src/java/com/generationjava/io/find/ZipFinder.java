@@ -69,9 +69,9 @@ public class ZipFinder implements Finder {
 
         try {
             ZipFile zip = new ZipFile(zipfile);
-            Enumeration enum = zip.entries();
-            while(enum.hasMoreElements()) {
-                ZipEntry entry = (ZipEntry)enum.nextElement();
+            Enumeration entries = zip.entries();
+            while(entries.hasMoreElements()) {
+                ZipEntry entry = (ZipEntry)entries.nextElement();
                 if(extension != null) {
                     if(entry.getName().endsWith(extension)) {
                         addFile(retlist, entry.getName());
@@ -106,8 +106,9 @@ public class ZipFinder implements Finder {
             directory = file.substring(0,idx);
             file = file.substring(idx+1);
         }
-        notifyFileFound(new File(directory), new File(directory, file));
-        list.add(file);
+        File found = new File(directory, file);
+        notifyFileFound(new File(directory), found);
+        list.add(found);
     }
     
     public void addFindListener(FindListener fl) {
@@ -33,8 +33,13 @@ package com.generationjava.util;
 
 import java.io.File;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringTokenizer;
 
 import com.generationjava.collections.FQMap;
 
@@ -49,8 +54,15 @@ import com.generationjava.io.find.FindEvent;
  */
 public class ClassIndex implements FindListener {
 
+    // fully qualified classname to classname
     private FQMap map = null;
 
+    // classname to the package of the first class of that name
+    private Map packages = null;
+
+    // the directory being indexed, null for a jar
+    private String root = null;
+
     /**
      * Create an index of the runtime classpath.
      */
@@ -63,28 +75,30 @@ public class ClassIndex implements FindListener {
      */
     public ClassIndex(String classpath) {
         map = new FQMap();
-        int idx = -1;
-        int current = 0;
-        while( (idx = classpath.indexOf(File.pathSeparatorChar, idx)) != -1 ) {
-            String path = classpath.substring(current, idx);
+        packages = new HashMap();
+        StringTokenizer tokens = new StringTokenizer(classpath, File.pathSeparator);
+        while(tokens.hasMoreTokens()) {
+            File file = new File(tokens.nextToken());
+            if(!file.exists()) {
+                continue;
+            }
 
-            File file = new File(path);
             Finder finder = null;
+            HashMap options = new HashMap();
             if(file.isDirectory()) {
                 // find all .class files.
                 finder = new FileFinder();
+                options.put(Finder.NAME, "*.class");
+                root = file.getPath();
             } else {
                 // assume it's a zip/jar
                 // open and find all .class files
                 finder = new ZipFinder();
+                options.put(Finder.NAME, ".class");
+                root = null;
             }
             finder.addFindListener(this);
-            HashMap options = new HashMap();
-            options.put(Finder.NAME, "class");
             finder.find(file, options);
-
-            idx++;
-            current = idx;
         }
 
     }
@@ -93,31 +107,58 @@ public class ClassIndex implements FindListener {
      * Get the package that a given classname is in.
      */
     public String getPackage(String classname) {
-        return (String)map.get(classname);
+        return (String)packages.get(classname);
     }
 
     public Collection getRootClasses() {
         return getClassesIn("");
     }
+
+    /**
+     * The names of the classes in a package.
+     */
     public Collection getClassesIn(String packagename) {
-        FQMap tmp = map;
-        if(!"".equals(packagename)) {
-            tmp = (FQMap)map.get(packagename);
+        FQMap tmp = getPackageMap(packagename);
+        if(tmp == null) {
+            return Collections.EMPTY_LIST;
         }
-        Collection[] colls = tmp.getSeparatedValues();
-        return colls[1];
+        Collection classes = tmp.getSeparatedValues()[1];
+        return classes == null ? Collections.EMPTY_LIST : classes;
     }
 
     public Collection getRootPackages() {
         return getPackagesIn("");
     }
+
+    /**
+     * The fully qualified names of the packages in a package.
+     */
     public Collection getPackagesIn(String packagename) {
-        FQMap tmp = map;
-        if(!"".equals(packagename)) {
-            tmp = (FQMap)map.get(packagename);
+        FQMap tmp = getPackageMap(packagename);
+        if(tmp == null) {
+            return Collections.EMPTY_LIST;
         }
-        Collection[] colls = tmp.getSeparatedValues();
-        return colls[0];
+        Collection maps = tmp.getSeparatedValues()[0];
+        if(maps == null) {
+            return Collections.EMPTY_LIST;
+        }
+        Collection names = new ArrayList(maps.size());
+        Iterator it = maps.iterator();
+        while(it.hasNext()) {
+            names.add( ((FQMap)it.next()).getPrefix() );
+        }
+        return names;
+    }
+
+    private FQMap getPackageMap(String packagename) {
+        if("".equals(packagename)) {
+            return map;
+        }
+        Object obj = map.get(packagename);
+        if(obj instanceof FQMap) {
+            return (FQMap)obj;
+        }
+        return null;
     }
 
     public void directoryStarted(FindEvent findEvent) {
@@ -139,19 +180,25 @@ public class ClassIndex implements FindListener {
 
         filename = filename.substring(0,filename.length()-6);
 
-        if(map.get(filename) != null) {
-            // simulate the import method of getting the first one
-            return;
-        }
-
         String pck = findEvent.getDirectory().getPath();
-        pck = pck.replace('/','.');
+        if(root != null && pck.startsWith(root)) {
+            pck = pck.substring(root.length());
+        }
+        pck = pck.replace(File.separatorChar,'.').replace('/','.');
         while(pck.startsWith(".")) {
             pck = pck.substring(1);
         }
 
-        map.put(filename, pck);
+        String classname = "".equals(pck) ? filename : pck + "." + filename;
+        if(map.containsKey(classname)) {
+            // simulate the import method of getting the first one
+            return;
+        }
+        map.put(classname, filename);
+
+        if(!packages.containsKey(filename)) {
+            packages.put(filename, pck);
+        }
     }
 
 }
-
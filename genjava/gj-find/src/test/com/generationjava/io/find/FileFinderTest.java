@@ -25,6 +25,8 @@ public class FileFinderTest extends TestCase {
         finder = new FileFinder();
         options = new HashMap();
         options.put(Finder.NOT+Finder.PATH, "*.svn*");
+        // version control does not keep empty directories
+        new File(dir, "type/dir").mkdir();
         // uncomment for debugging
 //        finder.addFindListener( new DebugListener() );
     }
@@ -123,6 +125,30 @@ public class FileFinderTest extends TestCase {
         assertEquals(0, files.length);
     }
 
+    public void testMaxDepth() {
+        options.put(Finder.MAXDEPTH, "1");
+        File[] files = finder.find(new File(dir, "path"), options);
+        // path and path/dir, not path/dir/file
+        assertEquals(2, files.length);
+    }
+
+    public void testMinDepth() {
+        options.put(Finder.MINDEPTH, "2");
+        File[] files = finder.find(new File(dir, "path"), options);
+        assertEquals(1, files.length);
+        assertEquals("file", files[0].getName());
+    }
+
+    public void testStream() {
+        options.put(Finder.TYPE, "f");
+        java.util.stream.Stream stream = finder.stream(new File(dir, "regex"), options);
+        try {
+            assertEquals(3, stream.count());
+        } finally {
+            stream.close();
+        }
+    }
+
 }
 
 class DebugListener implements FindListener {
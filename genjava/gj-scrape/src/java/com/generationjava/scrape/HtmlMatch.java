@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.scrape;
+
+import java.util.Map;
+
+/**
+ * An element found by a HtmlSelector. Holds offsets into the 
+ * page rather than copies of it, so the content is only cut out 
+ * if it is asked for.
+ */
+public class HtmlMatch {
+
+    private String page;
+    private String tag;
+    private Map attributes;
+    private int start;
+    private int contentStart;
+    private int contentEnd;
+    private int end;
+
+    // identity of the element and its parent within the page, 
+    // used to group children under their parent
+    int id;
+    int parentId;
+
+    HtmlMatch(String page, String tag, Map attributes, int start, int contentStart, int contentEnd, int end) {
+        this.page = page;
+        this.tag = tag;
+        this.attributes = attributes;
+        this.start = start;
+        this.contentStart = contentStart;
+        this.contentEnd = contentEnd;
+        this.end = end;
+    }
+
+    /**
+     * The lowercased tag name.
+     */
+    public String getTag() {
+        return this.tag;
+    }
+
+    /**
+     * Get an attribute value, or null if the element does not have 
+     * the attribute. The name is case-insensitive.
+     */
+    public String getAttribute(String name) {
+        return (String) this.attributes.get(name.toLowerCase());
+    }
+
+    /**
+     * Map of lowercased attribute name to unescaped value.
+     */
+    public Map getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * The text between the opening and closing tags. This is 
+     * the same value as HtmlScraper.get(tag) returns.
+     */
+    public String getContent() {
+        return this.page.substring(this.contentStart, this.contentEnd);
+    }
+
+    /**
+     * The index of the opening &lt; in the page.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * The index in the page just after the end of the element.
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * The element, including its tags.
+     */
+    public String toString() {
+        return this.page.substring(this.start, this.end);
+    }
+
+}
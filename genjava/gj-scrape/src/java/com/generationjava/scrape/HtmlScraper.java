@@ -39,7 +39,10 @@ import java.text.Format;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
@@ -70,6 +73,9 @@ import com.generationjava.web.XmlW;
     */
 public class HtmlScraper {
 
+    private static final HtmlSelectorMatcher TABLE_MATCHER = 
+        new HtmlSelectorMatcher(new String[] { "tr", "tr > td" });
+
     // The entire page
     private String page;
     // Lowercase version of the entire page
@@ -301,6 +307,27 @@ public class HtmlScraper {
         return text;
     }
 
+    /**
+     * Get every element from the current point onwards that 
+     * matches a css-style selector. See HtmlSelector for the syntax.
+     */
+    public HtmlMatch[] select(String selector) {
+        return select(HtmlSelector.compile(selector));
+    }
+
+    public HtmlMatch[] select(HtmlSelector selector) {
+        List list = select(new HtmlSelectorMatcher(new HtmlSelector[] { selector }))[0];
+        return (HtmlMatch[]) list.toArray(new HtmlMatch[list.size()]);
+    }
+
+    /**
+     * Run many selectors over the page in a single pass. Returns 
+     * a List of HtmlMatch for each selector in the matcher.
+     */
+    public List[] select(HtmlSelectorMatcher matcher) {
+        return matcher.matchAll(this.page, this.currentIndex);
+    }
+
     /**
      * Prints out the current position in the scraper until the end of the page. 
      */
@@ -351,21 +378,40 @@ public class HtmlScraper {
         return scrapeTable(null);
     }
     public Object[] scrapeTable(Object[] pattern) {
+        // one pass over the page finds every row and every cell
+        List[] found = TABLE_MATCHER.matchAll(this.page, this.currentIndex);
+        List rows = found[0];
+        List tds = found[1];
+
+        Map cellsByRow = new HashMap();
+        for(int i=0; i<tds.size(); i++) {
+            HtmlMatch td = (HtmlMatch) tds.get(i);
+            Integer rowId = Integer.valueOf(td.parentId);
+            List cells = (List) cellsByRow.get(rowId);
+            if(cells == null) {
+                cells = new ArrayList();
+                cellsByRow.put(rowId, cells);
+            }
+            cells.add(td);
+        }
+
         List rowData = new LinkedList();
         
-LABEL:  while(this.move("tr")) {
-        	String tableRowData = this.get("tr");
+LABEL:  for(int r=0; r<rows.size(); r++) {
+            HtmlMatch row = (HtmlMatch) rows.get(r);
+            this.currentIndex = row.getStart();
+
+            List tdList = (List) cellsByRow.get(Integer.valueOf(row.id));
+            if(tdList == null) {
+                tdList = Collections.EMPTY_LIST;
+            }
 
-            HtmlScraper rowScraper = new HtmlScraper();
-        	rowScraper.scrape(tableRowData);
-            
-            int n = 0;
             List cells = new ArrayList();
 
             // TODO: Look for "th"?
             
-            while (rowScraper.move("td")) {
-            	String cellContent = rowScraper.get("td").trim();
+            for(int n=0; n<tdList.size(); n++) {
+            	String cellContent = ((HtmlMatch) tdList.get(n)).getContent().trim();
                 
                 if(pattern == null) {
                     cells.add(cellContent);
@@ -404,8 +450,6 @@ LABEL:  while(this.move("tr")) {
                 } else {
                 	throw new RuntimeException("Target was neither a Format object or a Class object: " + target.getClass().getName());
                 }
-                 
-                n++;
             }
             
             // Does the number of cells match the pattern length?  If not, skip.
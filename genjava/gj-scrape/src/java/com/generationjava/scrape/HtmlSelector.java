@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.scrape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled css-style selector. Selectors are compiled once 
+ * and then run by a HtmlSelectorMatcher in a single pass over 
+ * a page, so a scrape wanting hundreds of values does not need 
+ * to walk the page hundreds of times.
+ *
+ * The supported syntax is a subset of css:
+ * <ul>
+ *   <li><code>td</code> or <code>*</code> - a tag name, case-insensitive</li>
+ *   <li><code>table td</code> - descendant</li>
+ *   <li><code>tr &gt; td</code> - child</li>
+ *   <li><code>td:nth-of-type(2)</code> - the second td of its parent</li>
+ *   <li><code>a[href]</code> - has the attribute</li>
+ *   <li><code>a[class=foo]</code> - attribute equals, quotes optional</li>
+ *   <li><code>a[href^=http]</code> - attribute starts with</li>
+ * </ul>
+ */
+public class HtmlSelector {
+
+    static final int DESCENDANT = 0;
+    static final int CHILD = 1;
+
+    static final int EXISTS = 0;
+    static final int EQUALS = 1;
+    static final int PREFIX = 2;
+
+    // The original text of the selector
+    private String text;
+    // The steps, from left to right
+    private Step[] steps;
+
+    private HtmlSelector(String text, Step[] steps) {
+        this.text = text;
+        this.steps = steps;
+    }
+
+    /**
+     * Compile a selector. Throws an IllegalArgumentException if the 
+     * selector cannot be understood.
+     */
+    public static HtmlSelector compile(String selector) {
+        List list = new ArrayList();
+        int len = selector.length();
+        int idx = 0;
+        int combinator = DESCENDANT;
+        while(true) {
+            idx = skipWhitespace(selector, idx);
+            if(idx == len) {
+                break;
+            }
+            if(selector.charAt(idx) == '>') {
+                if(list.isEmpty() || combinator == CHILD) {
+                    throw new IllegalArgumentException("Misplaced '>' at "+idx+" in selector: "+selector);
+                }
+                combinator = CHILD;
+                idx++;
+                continue;
+            }
+            Step step = new Step();
+            step.combinator = combinator;
+            idx = parseStep(selector, idx, step);
+            list.add(step);
+            combinator = DESCENDANT;
+        }
+        if(list.isEmpty()) {
+            throw new IllegalArgumentException("Empty selector. ");
+        }
+        if(combinator == CHILD) {
+            throw new IllegalArgumentException("Selector ends with '>': "+selector);
+        }
+        if(list.size() > 64) {
+            throw new IllegalArgumentException("Selector has more than 64 steps: "+selector);
+        }
+        return new HtmlSelector(selector, (Step[]) list.toArray(new Step[list.size()]));
+    }
+
+    // parse a single tag[attr]:nth-of-type(n) step, returning the index after it
+    private static int parseStep(String selector, int idx, Step step) {
+        int len = selector.length();
+        int start = idx;
+        while(idx < len && isNameChar(selector.charAt(idx))) {
+            idx++;
+        }
+        if(idx < len && selector.charAt(idx) == '*' && idx == start) {
+            idx++;
+        } else 
+        if(idx == start) {
+            throw new IllegalArgumentException("Expected a tag name at "+idx+" in selector: "+selector);
+        } else {
+            step.tag = selector.substring(start, idx).toLowerCase();
+        }
+
+        List names = new ArrayList();
+        List ops = new ArrayList();
+        List values = new ArrayList();
+        while(idx < len) {
+            char ch = selector.charAt(idx);
+            if(ch == '[') {
+                int close = selector.indexOf(']', idx);
+                if(close == -1) {
+                    throw new IllegalArgumentException("Unclosed '[' at "+idx+" in selector: "+selector);
+                }
+                String attr = selector.substring(idx + 1, close).trim();
+                int op = EXISTS;
+                String value = null;
+                int eq = attr.indexOf('=');
+                if(eq != -1) {
+                    op = EQUALS;
+                    value = unquote(attr.substring(eq + 1).trim());
+                    if(eq > 0 && attr.charAt(eq - 1) == '^') {
+                        op = PREFIX;
+                        eq--;
+                    }
+                    attr = attr.substring(0, eq).trim();
+                }
+                if(attr.length() == 0) {
+                    throw new IllegalArgumentException("Missing attribute name at "+idx+" in selector: "+selector);
+                }
+                names.add(attr.toLowerCase());
+                ops.add(Integer.valueOf(op));
+                values.add(value);
+                idx = close + 1;
+            } else
+            if(selector.startsWith(":nth-of-type(", idx)) {
+                int open = idx + ":nth-of-type(".length();
+                int close = selector.indexOf(')', open);
+                if(close == -1) {
+                    throw new IllegalArgumentException("Unclosed ':nth-of-type(' at "+idx+" in selector: "+selector);
+                }
+                try {
+                    step.nth = Integer.parseInt(selector.substring(open, close).trim());
+                } catch(NumberFormatException nfe) {
+                    throw new IllegalArgumentException("Bad :nth-of-type index at "+idx+" in selector: "+selector);
+                }
+                if(step.nth < 1) {
+                    throw new IllegalArgumentException(":nth-of-type index must be 1 or more in selector: "+selector);
+                }
+                idx = close + 1;
+            } else
+            if(Character.isWhitespace(ch) || ch == '>') {
+                break;
+            } else {
+                throw new IllegalArgumentException("Unexpected '"+ch+"' at "+idx+" in selector: "+selector);
+            }
+        }
+
+        step.attributes = (String[]) names.toArray(new String[names.size()]);
+        step.values = (String[]) values.toArray(new String[values.size()]);
+        step.operators = new int[ops.size()];
+        for(int i=0; i<step.operators.length; i++) {
+            step.operators[i] = ((Integer) ops.get(i)).intValue();
+        }
+        return idx;
+    }
+
+    private static String unquote(String value) {
+        if(value.length() >= 2) {
+            char first = value.charAt(0);
+            if( (first == '"' || first == '\'') && value.charAt(value.length() - 1) == first) {
+                return value.substring(1, value.length() - 1);
+            }
+        }
+        return value;
+    }
+
+    private static int skipWhitespace(String str, int idx) {
+        while(idx < str.length() && Character.isWhitespace(str.charAt(idx))) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private static boolean isNameChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '-' || ch == '_';
+    }
+
+    /**
+     * The number of steps in this selector. 
+     */
+    int size() {
+        return this.steps.length;
+    }
+
+    /**
+     * Work out which steps an element is the end of, given the states 
+     * of its parent. Bit n of the result is set if steps 0 to n match 
+     * with step n falling on this element. 
+     *
+     * @param parentState the state bits of the parent element
+     * @param ancestorState the state bits of the parent and all its ancestors or'd together
+     */
+    long advance(long parentState, long ancestorState, String tag, Map attributes, int nthOfType) {
+        long state = 0;
+        for(int i=0; i<this.steps.length; i++) {
+            Step step = this.steps[i];
+            if(i > 0) {
+                long previous = (step.combinator == CHILD) ? parentState : ancestorState;
+                if( (previous & (1L << (i - 1))) == 0) {
+                    continue;
+                }
+            }
+            if(step.matches(tag, attributes, nthOfType)) {
+                state |= (1L << i);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Does the state mean the whole selector has matched.
+     */
+    boolean isComplete(long state) {
+        return (state & (1L << (this.steps.length - 1))) != 0;
+    }
+
+    public String toString() {
+        return this.text;
+    }
+
+    // A single tag[attr]:nth-of-type(n) part of the selector
+    static class Step {
+        int combinator;
+        // null for *
+        String tag;
+        // 0 for any
+        int nth;
+        String[] attributes;
+        int[] operators;
+        String[] values;
+
+        boolean matches(String name, Map attrs, int nthOfType) {
+            if(this.tag != null && !this.tag.equals(name)) {
+                return false;
+            }
+            if(this.nth != 0 && this.nth != nthOfType) {
+                return false;
+            }
+            for(int i=0; i<this.attributes.length; i++) {
+                String value = (String) attrs.get(this.attributes[i]);
+                if(value == null) {
+                    return false;
+                }
+                switch(this.operators[i]) {
+                    case EQUALS:
+                        if(!value.equals(this.values[i])) {
+                            return false;
+                        }
+                        break;
+                    case PREFIX:
+                        if(!value.startsWith(this.values[i])) {
+                            return false;
+                        }
+                        break;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of Genjava-Core nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.generationjava.scrape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.generationjava.web.XmlW;
+
+/**
+ * Runs any number of HtmlSelectors over a page in one pass. 
+ * The page is tokenised once, each element is checked against 
+ * every selector using the state of its parent, and matches are 
+ * handed to a listener as the elements close. 
+ *
+ * A matcher holds no state between calls, so one instance may 
+ * be shared and used by many threads.
+ *
+ * The page is treated as HTML: empty elements such as br and img 
+ * need no closing tag, the contents of script and style are not 
+ * looked into, and unclosed td, tr, li, p and option tags are closed 
+ * by the next one in the same way a browser would.
+ */
+public class HtmlSelectorMatcher {
+
+    private static final Set VOID_TAGS = toSet(new String[] {
+        "area", "base", "br", "col", "embed", "hr", "img", "input", 
+        "link", "meta", "param", "source", "wbr" });
+
+    private static final Set RAW_TAGS = toSet(new String[] { "script", "style" });
+
+    // tag -> { tags it implicitly closes, tags that stop the search }
+    private static final Map IMPLICIT_CLOSE = new HashMap();
+
+    static {
+        Set[] cell = new Set[] { toSet(new String[] { "td", "th" }), 
+                                 toSet(new String[] { "tr", "table" }) };
+        IMPLICIT_CLOSE.put("td", cell);
+        IMPLICIT_CLOSE.put("th", cell);
+        IMPLICIT_CLOSE.put("tr", new Set[] { toSet(new String[] { "tr" }), 
+                                             toSet(new String[] { "table", "thead", "tbody", "tfoot" }) });
+        IMPLICIT_CLOSE.put("li", new Set[] { toSet(new String[] { "li" }), 
+                                             toSet(new String[] { "ul", "ol" }) });
+        IMPLICIT_CLOSE.put("p", new Set[] { toSet(new String[] { "p" }), 
+                                            toSet(new String[] { "div", "td", "th", "li", "table", "body" }) });
+        IMPLICIT_CLOSE.put("option", new Set[] { toSet(new String[] { "option" }), 
+                                                 toSet(new String[] { "select" }) });
+    }
+
+    private static final Comparator DOCUMENT_ORDER = new DocumentOrderComparator();
+
+    private HtmlSelector[] selectors;
+
+    public HtmlSelectorMatcher(HtmlSelector[] selectors) {
+        this.selectors = selectors.clone();
+    }
+
+    public HtmlSelectorMatcher(String[] selectors) {
+        this.selectors = new HtmlSelector[selectors.length];
+        for(int i=0; i<selectors.length; i++) {
+            this.selectors[i] = HtmlSelector.compile(selectors[i]);
+        }
+    }
+
+    public HtmlSelector[] getSelectors() {
+        return this.selectors.clone();
+    }
+
+    /**
+     * Get all the matches for each selector. The returned array 
+     * has a List of HtmlMatch for each selector, in the order the 
+     * elements start in the page.
+     */
+    public List[] matchAll(String page) {
+        return matchAll(page, 0);
+    }
+
+    public List[] matchAll(String page, int from) {
+        final List[] results = new List[this.selectors.length];
+        for(int i=0; i<results.length; i++) {
+            results[i] = new ArrayList();
+        }
+        match(page, from, new HtmlMatchListener() {
+            public void matched(int selector, HtmlMatch match) {
+                results[selector].add(match);
+            }
+        });
+        for(int i=0; i<results.length; i++) {
+            Collections.sort(results[i], DOCUMENT_ORDER);
+        }
+        return results;
+    }
+
+    public void match(String page, HtmlMatchListener listener) {
+        match(page, 0, listener);
+    }
+
+    /**
+     * Walk the page from the given index, telling the listener 
+     * about every element that matches a selector.
+     */
+    public void match(String page, int from, HtmlMatchListener listener) {
+        new Walk(page, listener).run(from);
+    }
+
+    // The state of a single walk over a page
+    private class Walk {
+
+        private String page;
+        private HtmlMatchListener listener;
+        private List stack = new ArrayList();
+        private int nextId = 1;
+
+        Walk(String page, HtmlMatchListener listener) {
+            this.page = page;
+            this.listener = listener;
+            this.stack.add(new Frame(null, null, 0, 0, 0, 0, selectors.length));
+        }
+
+        void run(int idx) {
+            int len = page.length();
+            while(idx < len) {
+                int lt = page.indexOf('<', idx);
+                if(lt == -1 || lt + 1 >= len) {
+                    break;
+                }
+                char ch = page.charAt(lt + 1);
+                if(ch == '!') {
+                    if(page.startsWith("<!--", lt)) {
+                        int close = page.indexOf("-->", lt + 4);
+                        idx = (close == -1) ? len : close + 3;
+                    } else {
+                        idx = skipTo(page, '>', lt);
+                    }
+                } else
+                if(ch == '?') {
+                    idx = skipTo(page, '>', lt);
+                } else
+                if(ch == '/') {
+                    int nameEnd = nameEnd(page, lt + 2);
+                    int gt = page.indexOf('>', nameEnd);
+                    if(gt == -1) {
+                        break;
+                    }
+                    if(nameEnd > lt + 2) {
+                        close(page.substring(lt + 2, nameEnd).toLowerCase(), lt, gt + 1);
+                    }
+                    idx = gt + 1;
+                } else
+                if(Character.isLetter(ch)) {
+                    idx = open(lt);
+                    if(idx == -1) {
+                        break;
+                    }
+                } else {
+                    idx = lt + 1;
+                }
+            }
+            // whatever is left open ends with the page
+            while(stack.size() > 1) {
+                pop(len, len);
+            }
+        }
+
+        // parse an opening tag, returning the index after it or -1 if the page ends first
+        private int open(int lt) {
+            int len = page.length();
+            int nameEnd = nameEnd(page, lt + 1);
+            String name = page.substring(lt + 1, nameEnd).toLowerCase();
+            Map attributes = new HashMap();
+            boolean selfClosing = false;
+            int idx = nameEnd;
+            while(true) {
+                while(idx < len && Character.isWhitespace(page.charAt(idx))) {
+                    idx++;
+                }
+                if(idx >= len) {
+                    return -1;
+                }
+                char ch = page.charAt(idx);
+                if(ch == '>') {
+                    break;
+                }
+                if(ch == '/' && idx + 1 < len && page.charAt(idx + 1) == '>') {
+                    selfClosing = true;
+                    idx++;
+                    break;
+                }
+                int attrStart = idx;
+                while(idx < len) {
+                    ch = page.charAt(idx);
+                    if(Character.isWhitespace(ch) || ch == '=' || ch == '>' || 
+                       (ch == '/' && idx + 1 < len && page.charAt(idx + 1) == '>') ) {
+                        break;
+                    }
+                    idx++;
+                }
+                if(idx == attrStart) {
+                    // a stray '=', skip it
+                    idx++;
+                    continue;
+                }
+                String attr = page.substring(attrStart, idx).toLowerCase();
+                String value = "";
+                while(idx < len && Character.isWhitespace(page.charAt(idx))) {
+                    idx++;
+                }
+                if(idx < len && page.charAt(idx) == '=') {
+                    idx++;
+                    while(idx < len && Character.isWhitespace(page.charAt(idx))) {
+                        idx++;
+                    }
+                    if(idx >= len) {
+                        return -1;
+                    }
+                    char quote = page.charAt(idx);
+                    if(quote == '"' || quote == '\'') {
+                        int close = page.indexOf(quote, idx + 1);
+                        if(close == -1) {
+                            return -1;
+                        }
+                        value = page.substring(idx + 1, close);
+                        idx = close + 1;
+                    } else {
+                        int valueStart = idx;
+                        while(idx < len && !Character.isWhitespace(page.charAt(idx)) && page.charAt(idx) != '>') {
+                            idx++;
+                        }
+                        value = page.substring(valueStart, idx);
+                    }
+                    value = XmlW.unescapeXml(value);
+                }
+                if(!attributes.containsKey(attr)) {
+                    attributes.put(attr, value);
+                }
+            }
+            int gt = idx;
+
+            implicitClose(name, lt);
+
+            Frame parent = top();
+            Frame frame = new Frame(name, attributes, lt, gt + 1, nextId++, parent.id, selectors.length);
+            int nth = parent.countChild(name);
+            for(int i=0; i<selectors.length; i++) {
+                frame.state[i] = selectors[i].advance(parent.state[i], parent.reach[i], name, attributes, nth);
+                frame.reach[i] = parent.reach[i] | frame.state[i];
+            }
+            stack.add(frame);
+
+            if(selfClosing || VOID_TAGS.contains(name)) {
+                pop(gt + 1, gt + 1);
+                return gt + 1;
+            }
+            if(RAW_TAGS.contains(name)) {
+                int close = indexOfIgnoreCase(page, "</" + name, gt + 1);
+                if(close == -1) {
+                    pop(len, len);
+                    return len;
+                }
+                int end = skipTo(page, '>', close);
+                pop(close, end);
+                return end;
+            }
+            return gt + 1;
+        }
+
+        // a closing tag closes the nearest open tag of the same name, 
+        // and anything left open inside it
+        private void close(String name, int lt, int end) {
+            for(int i=stack.size() - 1; i > 0; i--) {
+                if(name.equals(((Frame) stack.get(i)).name)) {
+                    while(stack.size() - 1 > i) {
+                        pop(lt, lt);
+                    }
+                    pop(lt, end);
+                    return;
+                }
+            }
+            // never opened, ignore it
+        }
+
+        private void implicitClose(String name, int lt) {
+            Set[] rule = (Set[]) IMPLICIT_CLOSE.get(name);
+            if(rule == null) {
+                return;
+            }
+            for(int i=stack.size() - 1; i > 0; i--) {
+                String open = ((Frame) stack.get(i)).name;
+                if(rule[0].contains(open)) {
+                    while(stack.size() > i) {
+                        pop(lt, lt);
+                    }
+                    return;
+                }
+                if(rule[1].contains(open)) {
+                    return;
+                }
+            }
+        }
+
+        private Frame top() {
+            return (Frame) stack.get(stack.size() - 1);
+        }
+
+        private void pop(int contentEnd, int end) {
+            Frame frame = (Frame) stack.remove(stack.size() - 1);
+            HtmlMatch match = null;
+            for(int i=0; i<selectors.length; i++) {
+                if(selectors[i].isComplete(frame.state[i])) {
+                    if(match == null) {
+                        match = new HtmlMatch(page, frame.name, frame.attributes, frame.start, 
+                                              frame.contentStart, contentEnd, end);
+                        match.id = frame.id;
+                        match.parentId = frame.parentId;
+                    }
+                    listener.matched(i, match);
+                }
+            }
+        }
+    }
+
+    // An open element
+    private static class Frame {
+        String name;
+        Map attributes;
+        int start;
+        int contentStart;
+        int id;
+        int parentId;
+        long[] state;
+        long[] reach;
+        // child tag name -> count so far, for nth-of-type
+        Map childCounts;
+
+        Frame(String name, Map attributes, int start, int contentStart, int id, int parentId, int selectors) {
+            this.name = name;
+            this.attributes = attributes;
+            this.start = start;
+            this.contentStart = contentStart;
+            this.id = id;
+            this.parentId = parentId;
+            this.state = new long[selectors];
+            this.reach = new long[selectors];
+        }
+
+        int countChild(String child) {
+            if(this.childCounts == null) {
+                this.childCounts = new HashMap();
+            }
+            int[] count = (int[]) this.childCounts.get(child);
+            if(count == null) {
+                count = new int[1];
+                this.childCounts.put(child, count);
+            }
+            return ++count[0];
+        }
+    }
+
+    private static class DocumentOrderComparator implements Comparator {
+        public int compare(Object o1, Object o2) {
+            return ((HtmlMatch) o1).getStart() - ((HtmlMatch) o2).getStart();
+        }
+    }
+
+    private static int nameEnd(String page, int idx) {
+        while(idx < page.length()) {
+            char ch = page.charAt(idx);
+            if(!(Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == ':')) {
+                break;
+            }
+            idx++;
+        }
+        return idx;
+    }
+
+    // index after the next ch, or the end of the page
+    private static int skipTo(String page, char ch, int idx) {
+        int found = page.indexOf(ch, idx);
+        return (found == -1) ? page.length() : found + 1;
+    }
+
+    private static int indexOfIgnoreCase(String page, String search, int idx) {
+        int last = page.length() - search.length();
+        for(int i=idx; i<=last; i++) {
+            if(page.regionMatches(true, i, search, 0, search.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Set toSet(String[] strs) {
+        Set set = new HashSet();
+        for(int i=0; i<strs.length; i++) {
+            set.add(strs[i]);
+        }
+        return set;
+    }
+
+}
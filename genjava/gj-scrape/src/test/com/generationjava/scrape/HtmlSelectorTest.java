@@ -0,0 +1,102 @@
+package com.generationjava.scrape;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class HtmlSelectorTest extends TestCase {
+
+    public static final String TEST_PAGE = 
+        "<html><body>" +
+        "<table id='outer'><tr><td>A1</td><td><a href='http://x.org/'>A2</a></td></tr>" +
+        "<tr><td>B1<td>B2</tr></table>" +
+        "<ul><li>one<li class=\"x\">two<br>three</ul>" +
+        "<script>var s = '<td>not a cell</td>';</script>" +
+        "<!-- <td>nor this</td> -->" +
+        "<p><a href=\"/local\">local</a>" +
+        "</body></html>";
+
+    public HtmlSelectorTest(String name) {
+        super(name);
+    }
+
+    private HtmlMatch[] select(String selector) {
+        HtmlScraper scraper = new HtmlScraper();
+        scraper.scrape(TEST_PAGE);
+        return scraper.select(selector);
+    }
+
+    public void testTag() {
+        HtmlMatch[] matches = select("td");
+        assertEquals(4, matches.length);
+        assertEquals("A1", matches[0].getContent());
+        assertEquals("B1", matches[2].getContent());
+        assertEquals("B2", matches[3].getContent());
+    }
+
+    public void testCaseInsensitive() {
+        assertEquals(4, select("TD").length);
+        assertEquals("outer", select("TABLE[ID]")[0].getAttribute("ID"));
+    }
+
+    public void testDescendantAndChild() {
+        assertEquals(1, select("p > a").length);
+        assertEquals(1, select("table a").length);
+        assertEquals(0, select("tr > a").length);
+        assertEquals(1, select("tr > td > a").length);
+        assertEquals(1, select("body > ul > li[class=x]").length);
+    }
+
+    public void testNthOfType() {
+        HtmlMatch[] matches = select("tr:nth-of-type(2) > td:nth-of-type(2)");
+        assertEquals(1, matches.length);
+        assertEquals("B2", matches[0].getContent());
+    }
+
+    public void testAttributes() {
+        assertEquals("http://x.org/", select("a[href^=http]")[0].getAttribute("href"));
+        assertEquals("/local", select("a[href^='/']")[0].getAttribute("href"));
+        assertEquals(2, select("a[href]").length);
+        assertEquals(0, select("a[href=http]").length);
+        assertEquals("two<br>three", select("li[class=\"x\"]")[0].getContent());
+    }
+
+    public void testManySelectorsOnePass() {
+        HtmlSelectorMatcher matcher = new HtmlSelectorMatcher(new String[] { "td", "li", "a[href]" });
+        List[] found = matcher.matchAll(TEST_PAGE);
+        assertEquals(4, found[0].size());
+        assertEquals(2, found[1].size());
+        assertEquals(2, found[2].size());
+        assertEquals("one", ((HtmlMatch) found[1].get(0)).getContent());
+    }
+
+    public void testSelectFromCurrentIndex() {
+        HtmlScraper scraper = new HtmlScraper();
+        scraper.scrape(TEST_PAGE);
+        assertTrue(scraper.move("ul"));
+        assertEquals(0, scraper.select("td").length);
+        assertEquals(2, scraper.select("li").length);
+    }
+
+    public void testBadSelector() {
+        String[] bad = new String[] { "", "> td", "td >", "td[", "td:nth-of-type(0)", "td!" };
+        for(int i=0; i<bad.length; i++) {
+            try {
+                HtmlSelector.compile(bad[i]);
+                fail("Should have failed: "+bad[i]);
+            } catch(IllegalArgumentException iae) {
+                // expected
+            }
+        }
+    }
+
+    public void testScrapeTableUnclosedCells() {
+        HtmlScraper scraper = new HtmlScraper();
+        scraper.scrape(TEST_PAGE);
+        Object[] data = scraper.scrapeTable();
+        assertEquals(2, data.length);
+        assertEquals("A1", ((Object[]) data[0])[0]);
+        assertEquals("B2", ((Object[]) data[1])[1]);
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.osjava.jardiff;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.objectweb.asm.Opcodes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes the report of one diff the old way, through a DOMDiffHandler
+ * and jardiff-html.xsl, and streamed by HtmlDiffHandler and
+ * JsonDiffHandler. The two jars are generated: of the classes in
+ * each, 1% are only in the old jar, 1% only in the new one and a
+ * quarter have a method, a field or both changed. Output is thrown
+ * away, so this is the cost of producing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx1g" })
+public class ReportBenchmark
+{
+    @Param({ "20000" })
+    private int classes;
+
+    private JarDiff jarDiff;
+
+    private Transformer html;
+
+    private static final OutputStream NOWHERE = new OutputStream() {
+        public void write(int b) {
+        }
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws Exception {
+        jarDiff = new JarDiff();
+        jarDiff.setOldVersion("1.0");
+        jarDiff.setNewVersion("2.0");
+        for (int i = 0; i < classes; i++) {
+            String name = "org/example/pkg" + (i % 50) + "/Class" + i;
+            if (i % 100 != 0) {
+                jarDiff.oldClassInfo.put(name, createClass(name, 0));
+            }
+            if (i % 100 != 1) {
+                jarDiff.newClassInfo.put(name, createClass(name, i % 4 == 2 ? 1 + i % 3 : 0));
+            }
+        }
+        URL url = JarDiff.class.getClassLoader()
+            .getResource("style/jardiff-html.xsl");
+        html = TransformerFactory.newInstance()
+            .newTransformer(new StreamSource(url.toString()));
+    }
+
+    /**
+     * A class with a few methods and fields. A change of 1 alters a
+     * method, 2 a field's value and 3 both.
+     */
+    private static ClassInfo createClass(String name, int change) {
+        Map methods = new TreeMap();
+        for (int i = 0; i < 8; i++) {
+            String desc = "(Ljava/lang/String;I)Ljava/lang/String;";
+            int access = Opcodes.ACC_PUBLIC;
+            if (i == 0 && (change & 1) != 0) {
+                access |= Opcodes.ACC_FINAL;
+            }
+            methods.put("method" + i + desc, new MethodInfo(access,
+                "method" + i, desc, null, new String[] { "java/io/IOException" }));
+        }
+        Map fields = new HashMap();
+        for (int i = 0; i < 4; i++) {
+            Object value = Integer.valueOf(i == 0 && (change & 2) != 0 ? 42 : i);
+            fields.put("FIELD" + i, new FieldInfo(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                "FIELD" + i, "I", null, value));
+        }
+        return new ClassInfo(Opcodes.V1_4, Opcodes.ACC_PUBLIC, name, null,
+            "java/lang/Object", new String[] { "java/io/Serializable" },
+            methods, fields);
+    }
+
+    @Benchmark
+    public void xslt() throws Exception {
+        jarDiff.diff(new DOMDiffHandler(html, new StreamResult(NOWHERE)),
+            new SimpleDiffCriteria());
+    }
+
+    @Benchmark
+    public void html() throws Exception {
+        jarDiff.diff(new HtmlDiffHandler(NOWHERE), new SimpleDiffCriteria());
+    }
+
+    @Benchmark
+    public void json() throws Exception {
+        jarDiff.diff(new JsonDiffHandler(NOWHERE), new SimpleDiffCriteria());
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * org.osjava.jardiff.ClassInfoIndex
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A directory of binary indexes holding the ClassInfo of jar files, so 
+ * a jar which has been parsed once never needs to be parsed again.
+ * Each index is named after the SHA-1 of the jar it was built from, so
+ * the same release is found whatever it is called or wherever it lives.
+ * <p>
+ * An index file is a string table followed by the classes, with every
+ * string written once and referred to by its position in the table.
+ * Counts, flags and positions are written as variable length ints.
+ * Index files are read through a memory mapping.
+ */
+public class ClassInfoIndex
+{
+    /**
+     * The magic number at the start of an index file, "JDIX".
+     */
+    private static final int MAGIC = 0x4A444958;
+
+    /**
+     * The version of the index file format.
+     */
+    private static final int FORMAT = 1;
+
+    /**
+     * The suffix of index files.
+     */
+    private static final String SUFFIX = ".jdx";
+
+    /**
+     * Tags for the type of the initial value of a field.
+     */
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_INT = 1;
+    private static final int VALUE_LONG = 2;
+    private static final int VALUE_FLOAT = 3;
+    private static final int VALUE_DOUBLE = 4;
+    private static final int VALUE_STRING = 5;
+
+    /**
+     * The directory index files are kept in.
+     */
+    private File dir;
+
+    /**
+     * Create a new ClassInfoIndex keeping its files in the specified 
+     * directory, which is created if it does not exist.
+     *
+     * @param dir the directory to keep index files in.
+     * @throws DiffException if the directory cannot be created.
+     */
+    public ClassInfoIndex(File dir) throws DiffException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new DiffException(
+                new IOException("Cannot create index directory " + dir));
+        }
+        this.dir = dir;
+    }
+
+    /**
+     * Get the directory index files are kept in.
+     *
+     * @return the index directory.
+     */
+    public File getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Get the index file for the specified jar file, whether or not it
+     * exists yet.
+     *
+     * @param jar the jar file.
+     * @return the index file named after the jar's SHA-1.
+     * @throws DiffException if the jar cannot be read.
+     */
+    public File getIndexFile(File jar) throws DiffException {
+        try {
+            return new File(dir, sha1(jar) + SUFFIX);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Load the ClassInfo of the specified jar file from its index.
+     *
+     * @param jar the jar file.
+     * @return a map of internal class names to ClassInfo, or null if the
+     *         jar has not been indexed.
+     * @throws DiffException if the index cannot be read.
+     */
+    public Map load(File jar) throws DiffException {
+        File file = getIndexFile(jar);
+        if (!file.isFile()) {
+            return null;
+        }
+        return read(file);
+    }
+
+    /**
+     * Store the ClassInfo of the specified jar file in its index.
+     *
+     * @param jar the jar file.
+     * @param classInfo a map of internal class names to ClassInfo.
+     * @return the index file.
+     * @throws DiffException if the index cannot be written.
+     */
+    public File store(File jar, Map classInfo) throws DiffException {
+        File file = getIndexFile(jar);
+        write(classInfo, file);
+        return file;
+    }
+
+    /**
+     * Write a map of ClassInfo to an index file.
+     * The file is written under a temporary name and renamed into place,
+     * so a reader never sees a partial index.
+     *
+     * @param classInfo a map of internal class names to ClassInfo.
+     * @param file the index file to write.
+     * @throws DiffException if the index cannot be written.
+     */
+    public static void write(Map classInfo, File file) throws DiffException {
+        Map indexes = new HashMap();
+        List strings = new ArrayList();
+        Iterator i = classInfo.values().iterator();
+        while (i.hasNext()) {
+            ClassInfo ci = (ClassInfo) i.next();
+            intern(ci.getName(), strings, indexes);
+            intern(ci.getSignature(), strings, indexes);
+            intern(ci.getSupername(), strings, indexes);
+            intern(ci.getInterfaces(), strings, indexes);
+            Iterator j = ci.getMethodMap().values().iterator();
+            while (j.hasNext()) {
+                MethodInfo mi = (MethodInfo) j.next();
+                intern(mi.getName(), strings, indexes);
+                intern(mi.getDesc(), strings, indexes);
+                intern(mi.getSignature(), strings, indexes);
+                intern(mi.getExceptions(), strings, indexes);
+            }
+            j = ci.getFieldMap().values().iterator();
+            while (j.hasNext()) {
+                FieldInfo fi = (FieldInfo) j.next();
+                intern(fi.getName(), strings, indexes);
+                intern(fi.getDesc(), strings, indexes);
+                intern(fi.getSignature(), strings, indexes);
+                if (fi.getValue() instanceof String) {
+                    intern((String) fi.getValue(), strings, indexes);
+                }
+            }
+        }
+
+        File tmp = null;
+        DataOutputStream out = null;
+        try {
+            // unique, so runs writing the same index don't share it
+            tmp = File.createTempFile(file.getName() + ".", ".tmp",
+                                      file.getAbsoluteFile().getParentFile());
+            out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            writeInt(out, strings.size());
+            for (int k = 0; k < strings.size(); k++) {
+                byte[] bytes = ((String) strings.get(k)).getBytes("UTF-8");
+                writeInt(out, bytes.length);
+                out.write(bytes);
+            }
+            writeInt(out, classInfo.size());
+            i = classInfo.values().iterator();
+            while (i.hasNext()) {
+                ClassInfo ci = (ClassInfo) i.next();
+                writeInt(out, ci.getVersion());
+                writeInt(out, ci.getAccess());
+                writeString(out, ci.getName(), indexes);
+                writeString(out, ci.getSignature(), indexes);
+                writeString(out, ci.getSupername(), indexes);
+                writeStrings(out, ci.getInterfaces(), indexes);
+                writeInt(out, ci.getMethodMap().size());
+                Iterator j = ci.getMethodMap().values().iterator();
+                while (j.hasNext()) {
+                    MethodInfo mi = (MethodInfo) j.next();
+                    writeInt(out, mi.getAccess());
+                    writeString(out, mi.getName(), indexes);
+                    writeString(out, mi.getDesc(), indexes);
+                    writeString(out, mi.getSignature(), indexes);
+                    writeStrings(out, mi.getExceptions(), indexes);
+                }
+                writeInt(out, ci.getFieldMap().size());
+                j = ci.getFieldMap().values().iterator();
+                while (j.hasNext()) {
+                    FieldInfo fi = (FieldInfo) j.next();
+                    writeInt(out, fi.getAccess());
+                    writeString(out, fi.getName(), indexes);
+                    writeString(out, fi.getDesc(), indexes);
+                    writeString(out, fi.getSignature(), indexes);
+                    writeValue(out, fi.getValue(), indexes);
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + tmp + " to " 
+                                          + file);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Read a map of ClassInfo from an index file.
+     *
+     * @param file the index file.
+     * @return a map of internal class names to ClassInfo.
+     * @throws DiffException if the file cannot be read, or is not an 
+     *                       index.
+     */
+    public static Map read(File file) throws DiffException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buf = 
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT) {
+                throw new IOException(file + " is not a jardiff index");
+            }
+            String[] strings = new String[readInt(buf)];
+            byte[] bytes = new byte[256];
+            for (int k = 0; k < strings.length; k++) {
+                int len = readInt(buf);
+                if (len > bytes.length) {
+                    bytes = new byte[len];
+                }
+                buf.get(bytes, 0, len);
+                strings[k] = new String(bytes, 0, len, "UTF-8");
+            }
+            Map classInfo = new TreeMap();
+            int classes = readInt(buf);
+            for (int c = 0; c < classes; c++) {
+                int version = readInt(buf);
+                int access = readInt(buf);
+                String name = readString(buf, strings);
+                String signature = readString(buf, strings);
+                String supername = readString(buf, strings);
+                String[] interfaces = readStrings(buf, strings);
+                int methods = readInt(buf);
+                Map methodMap = new HashMap();
+                for (int m = 0; m < methods; m++) {
+                    MethodInfo mi = new MethodInfo(readInt(buf), 
+                                                   readString(buf, strings),
+                                                   readString(buf, strings),
+                                                   readString(buf, strings),
+                                                   readStrings(buf, strings));
+                    methodMap.put(mi.getName() + mi.getDesc(), mi);
+                }
+                int fields = readInt(buf);
+                Map fieldMap = new HashMap();
+                for (int f = 0; f < fields; f++) {
+                    FieldInfo fi = new FieldInfo(readInt(buf),
+                                                 readString(buf, strings),
+                                                 readString(buf, strings),
+                                                 readString(buf, strings),
+                                                 readValue(buf, strings));
+                    fieldMap.put(fi.getName(), fi);
+                }
+                classInfo.put(name, new ClassInfo(version, access, name, 
+                                                  signature, supername,
+                                                  interfaces, methodMap,
+                                                  fieldMap));
+            }
+            return classInfo;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        } catch (RuntimeException re) {
+            // a truncated or corrupt file runs off the end of the buffer
+            throw new DiffException(re);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the SHA-1 of a file as a hex string.
+     *
+     * @param file the file.
+     * @return the SHA-1 of the file's contents.
+     * @throws IOException if the file cannot be read.
+     */
+    public static String sha1(File file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IOException("SHA-1 not supported: " + nsae);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[65536];
+            int i;
+            while ((i = in.read(buffer, 0, buffer.length)) != -1) {
+                md.update(buffer, 0, i);
+            }
+        } finally {
+            in.close();
+        }
+        byte[] digest = md.digest();
+        StringBuffer sb = new StringBuffer(digest.length * 2);
+        for (int i = 0; i < digest.length; i++) {
+            sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void intern(String s, List strings, Map indexes) {
+        if (s != null && !indexes.containsKey(s)) {
+            indexes.put(s, Integer.valueOf(strings.size()));
+            strings.add(s);
+        }
+    }
+
+    private static void intern(String[] s, List strings, Map indexes) {
+        if (s != null) {
+            for (int i = 0; i < s.length; i++) {
+                intern(s[i], strings, indexes);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s,
+                                    Map indexes) 
+        throws IOException 
+    {
+        writeInt(out, s == null ? -1 : ((Integer) indexes.get(s)).intValue());
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] s,
+                                     Map indexes) 
+        throws IOException 
+    {
+        if (s == null) {
+            writeInt(out, -1);
+            return;
+        }
+        writeInt(out, s.length);
+        for (int i = 0; i < s.length; i++) {
+            writeString(out, s[i], indexes);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value,
+                                   Map indexes) 
+        throws IOException 
+    {
+        if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            writeInt(out, ((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(((Long) value).longValue());
+        } else if (value instanceof Float) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value, indexes);
+        } else {
+            out.writeByte(VALUE_NULL);
+        }
+    }
+
+    /**
+     * Write an int in as few bytes as it needs, seven bits to a byte with
+     * the top bit set on all but the last byte. The value is zigzag 
+     * encoded first so -1, which marks null, takes a single byte.
+     */
+    private static void writeInt(DataOutputStream out, int i) 
+        throws IOException 
+    {
+        int v = (i << 1) ^ (i >> 31);
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readInt(ByteBuffer buf) {
+        int v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buf.get();
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static String readString(ByteBuffer buf, String[] strings) {
+        int i = readInt(buf);
+        return i == -1 ? null : strings[i];
+    }
+
+    private static String[] readStrings(ByteBuffer buf, String[] strings) {
+        int len = readInt(buf);
+        if (len == -1) {
+            return null;
+        }
+        String[] s = new String[len];
+        for (int i = 0; i < len; i++) {
+            s[i] = readString(buf, strings);
+        }
+        return s;
+    }
+
+    private static Object readValue(ByteBuffer buf, String[] strings) 
+        throws IOException 
+    {
+        int tag = buf.get();
+        switch (tag) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_INT:
+                return Integer.valueOf(readInt(buf));
+            case VALUE_LONG:
+                return Long.valueOf(buf.getLong());
+            case VALUE_FLOAT:
+                return Float.valueOf(buf.getFloat());
+            case VALUE_DOUBLE:
+                return Double.valueOf(buf.getDouble());
+            case VALUE_STRING:
+                return readString(buf, strings);
+            default:
+                throw new IOException("Unknown field value type " + tag);
+        }
+    }
+}
@@ -0,0 +1,804 @@
+/*
+ * org.osjava.jardiff.HtmlDiffHandler
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.Type;
+
+/**
+ * A DiffHandler which writes an HTML report of the diff as it goes,
+ * producing the same report as jardiff-html.xsl without building a DOM
+ * or running a transform.
+ * Nothing is held in memory except, when API links are wanted, the 
+ * names of the classes in each jar.
+ */
+public class HtmlDiffHandler extends AbstractDiffHandler
+{
+    /**
+     * The footer written at the end of the report.
+     */
+    private static final String FOOTER = "<p>API diff generated by "
+        + "<a href=\"http://www.osjava.org/jardiff/\">JarDiff</a></p>\n"
+        + "</body>\n</html>\n";
+
+    /**
+     * Where we write the report to.
+     */
+    private final Writer out;
+
+    /**
+     * The stylesheet to link to, or null.
+     */
+    private String stylesheet;
+
+    /**
+     * The location of the old API documents, or null.
+     */
+    private String fromApi;
+
+    /**
+     * The location of the new API documents, or null.
+     */
+    private String toApi;
+
+    /**
+     * The names of classes in the old jar, kept only when linking to the
+     * old API documents.
+     */
+    private Set oldClasses;
+
+    /**
+     * The names of classes in the new jar, kept only when linking to the
+     * new API documents.
+     */
+    private Set newClasses;
+
+    /**
+     * The set contains() is adding class names to, or null.
+     */
+    private Set contents;
+
+    /**
+     * The internal name of the class whose changes are being written, or
+     * null when outside a changed class.
+     */
+    private String currentClass;
+
+    /**
+     * Whether the heading of the current section has been written.
+     * Section headings are only written once the section has an item.
+     */
+    private boolean opened;
+
+    /**
+     * Create a new HtmlDiffHandler which writes to the specified 
+     * OutputStream.
+     *
+     * @param out Where to write output.
+     * @throws DiffException if UTF-8 is not supported.
+     */
+    public HtmlDiffHandler(OutputStream out) throws DiffException {
+        try {
+            this.out = new BufferedWriter(
+                    new OutputStreamWriter(out, "UTF-8"), 65536
+                    );
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Set the stylesheet the report links to.
+     *
+     * @param stylesheet the href of a stylesheet, or null.
+     */
+    public void setStylesheet(String stylesheet) {
+        this.stylesheet = stylesheet;
+    }
+
+    /**
+     * Set the location of the old API documents, which removed and 
+     * changed classes are linked to.
+     *
+     * @param fromApi the href of the old javadocs, or null.
+     */
+    public void setFromApi(String fromApi) {
+        this.fromApi = fromApi;
+    }
+
+    /**
+     * Set the location of the new API documents, which added and 
+     * changed classes are linked to.
+     *
+     * @param toApi the href of the new javadocs, or null.
+     */
+    public void setToApi(String toApi) {
+        this.toApi = toApi;
+    }
+
+    /**
+     * Start the diff.
+     * This writes out the head of the html document.
+     *
+     * @param oldJar name of old jar file.
+     * @param newJar name of new jar file.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startDiff(String oldJar, String newJar) throws DiffException {
+        try {
+            out.write("<html>\n<head>\n<meta http-equiv=\"Content-Type\" "
+                      + "content=\"text/html; charset=UTF-8\">\n<title>");
+            writeTitle(oldJar, newJar);
+            out.write("</title>\n");
+            if (isSet(stylesheet)) {
+                out.write("<link href=\"");
+                escape(stylesheet);
+                out.write("\" rel=\"stylesheet\" type=\"text/css\">\n");
+            } else {
+                out.write("<style type=\"text/css\"></style>\n");
+            }
+            out.write("</head>\n<body>\n<h2>");
+            writeTitle(oldJar, newJar);
+            out.write("</h2>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Start the list of old contents.
+     * The names are only kept if the old API documents are linked to.
+     */
+    public void startOldContents() {
+        if (isSet(fromApi)) {
+            oldClasses = new HashSet();
+            contents = oldClasses;
+        }
+    }
+
+    /**
+     * Start the list of new contents.
+     * The names are only kept if the new API documents are linked to.
+     */
+    public void startNewContents() {
+        if (isSet(toApi)) {
+            newClasses = new HashSet();
+            contents = newClasses;
+        }
+    }
+
+    /**
+     * Add a contained class.
+     *
+     * @param info information about a class
+     */
+    public void contains(ClassInfo info) {
+        if (contents != null) {
+            contents.add(info.getName());
+        }
+    }
+
+    /**
+     * End the list of old contents.
+     */
+    public void endOldContents() {
+        contents = null;
+    }
+
+    /**
+     * End the list of new contents.
+     */
+    public void endNewContents() {
+        contents = null;
+    }
+
+    /**
+     * Start the removed section, either of classes or of the members of 
+     * a changed class.
+     */
+    public void startRemoved() {
+        opened = false;
+    }
+
+    /**
+     * Write out a removed class.
+     *
+     * @param info The info about the removed class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classRemoved(ClassInfo info) throws DiffException {
+        try {
+            openSection("<h3>Removed classes</h3>\n<ul class=\"class-removed\">\n");
+            out.write("<li>");
+            startLink(fromApi, oldClasses, info.getName(), null);
+            escape(getClassName(info.getName()));
+            endLink(fromApi, oldClasses, info.getName());
+            out.write("</li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the removed section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endRemoved() throws DiffException {
+        endSection();
+    }
+
+    /**
+     * Start the added section, either of classes or of the members of 
+     * a changed class.
+     */
+    public void startAdded() {
+        opened = false;
+    }
+
+    /**
+     * Write out an added class.
+     *
+     * @param info The info about the added class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classAdded(ClassInfo info) throws DiffException {
+        try {
+            openSection("<h3>Added classes</h3>\n<ul class=\"class-added\">\n");
+            out.write("<li>");
+            startLink(toApi, newClasses, info.getName(), null);
+            escape(getClassName(info.getName()));
+            endLink(toApi, newClasses, info.getName());
+            out.write("</li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the added section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endAdded() throws DiffException {
+        endSection();
+    }
+
+    /**
+     * Start the changed section, either of classes or of the members of 
+     * a changed class.
+     */
+    public void startChanged() {
+        opened = false;
+    }
+
+    /**
+     * Start writing the changes to a class.
+     *
+     * @param internalName the internal name of the class that has changed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startClassChanged(String internalName) throws DiffException 
+    {
+        try {
+            openSection("<h3>Changed classes</h3>\n<ul class=\"class-changed\">\n");
+            out.write("<li><h4>");
+            escape(getClassName(internalName));
+            out.write("</h4>\n");
+            currentClass = internalName;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a removed field.
+     *
+     * @param info Info about the field that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldRemoved(FieldInfo info) throws DiffException {
+        try {
+            openSection("<h5>Removed:</h5>\n<ul>\n");
+            out.write("<li>");
+            writeField(fromApi, oldClasses, info);
+            out.write("</li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a removed method.
+     *
+     * @param info Info about the method that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodRemoved(MethodInfo info) throws DiffException {
+        try {
+            openSection("<h5>Removed:</h5>\n<ul>\n");
+            out.write("<li>");
+            writeMethod(fromApi, oldClasses, info);
+            out.write("</li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out an added field.
+     *
+     * @param info Info about the added field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldAdded(FieldInfo info) throws DiffException {
+        try {
+            openSection("<h5>Added:</h5>\n<ul>\n");
+            out.write("<li>");
+            writeField(toApi, newClasses, info);
+            out.write("</li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out an added method.
+     *
+     * @param info Info about the added method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodAdded(MethodInfo info) throws DiffException {
+        try {
+            openSection("<h5>Added:</h5>\n<ul>\n");
+            out.write("<li>");
+            writeMethod(toApi, newClasses, info);
+            out.write("</li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a change to the class itself.
+     *
+     * @param oldInfo Info about the old class.
+     * @param newInfo Info about the new class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classChanged(ClassInfo oldInfo, ClassInfo newInfo)
+        throws DiffException 
+    {
+        try {
+            openSection("<h5>Changed:</h5>\n<ul>\n");
+            out.write("<li><span>From: ");
+            startLink(fromApi, oldClasses, currentClass, null);
+            writeClass(oldInfo);
+            endLink(fromApi, oldClasses, currentClass);
+            out.write("</span><br><span>To: ");
+            startLink(toApi, newClasses, currentClass, null);
+            writeClass(newInfo);
+            endLink(toApi, newClasses, currentClass);
+            out.write("</span></li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a changed field.
+     *
+     * @param oldInfo Info about the old field.
+     * @param newInfo Info about the new field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldChanged(FieldInfo oldInfo, FieldInfo newInfo)
+        throws DiffException 
+    {
+        try {
+            openSection("<h5>Changed:</h5>\n<ul>\n");
+            out.write("<li><span>From: ");
+            writeField(fromApi, oldClasses, oldInfo);
+            out.write("</span><br><span>To: ");
+            writeField(toApi, newClasses, newInfo);
+            out.write("</span></li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a changed method.
+     *
+     * @param oldInfo Info about the old method.
+     * @param newInfo Info about the new method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodChanged(MethodInfo oldInfo, MethodInfo newInfo)
+        throws DiffException
+    {
+        try {
+            openSection("<h5>Changed:</h5>\n<ul>\n");
+            out.write("<li><span>From: ");
+            writeMethod(fromApi, oldClasses, oldInfo);
+            out.write("</span><br><span>To: ");
+            writeMethod(toApi, newClasses, newInfo);
+            out.write("</span></li>\n");
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the changes to a class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endClassChanged() throws DiffException {
+        try {
+            out.write("</li>\n");
+            currentClass = null;
+            // back in the changed classes section, which must be open
+            opened = true;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the changed section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endChanged() throws DiffException {
+        endSection();
+    }
+
+    /**
+     * End the diff, writing the footer and closing the stream.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endDiff() throws DiffException {
+        try {
+            out.write(FOOTER);
+            out.close();
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write the heading of the current section, if it has not been 
+     * written already.
+     */
+    private void openSection(String heading) throws IOException {
+        if (!opened) {
+            out.write(heading);
+            opened = true;
+        }
+    }
+
+    /**
+     * Close the list of the current section, if it was opened.
+     */
+    private void endSection() throws DiffException {
+        try {
+            if (opened) {
+                out.write("</ul>\n");
+            }
+            opened = false;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write "Comparing old to new".
+     */
+    private void writeTitle(String oldJar, String newJar) throws IOException {
+        out.write("Comparing ");
+        escape(oldJar);
+        out.write(" to ");
+        escape(newJar);
+    }
+
+    /**
+     * Start a link to the API documents of a class, if there are API
+     * documents and the class is in them.
+     *
+     * @param api the location of the API documents, or null.
+     * @param classes the classes documented.
+     * @param internalName the internal name of the class.
+     * @param anchor the anchor within the class page, or null.
+     */
+    private void startLink(String api, Set classes, String internalName, 
+                           String anchor) 
+        throws IOException 
+    {
+        if (isSet(api) && classes != null && classes.contains(internalName)) {
+            out.write("<a href=\"");
+            escape(api);
+            out.write('/');
+            escape(internalName.replace('$', '.'));
+            out.write(".html");
+            if (anchor != null) {
+                out.write('#');
+                escape(anchor);
+            }
+            out.write("\">");
+        }
+    }
+
+    /**
+     * End a link started by startLink.
+     */
+    private void endLink(String api, Set classes, String internalName) 
+        throws IOException 
+    {
+        if (isSet(api) && classes != null && classes.contains(internalName)) {
+            out.write("</a>");
+        }
+    }
+
+    /**
+     * Write out a class declaration.
+     */
+    private void writeClass(ClassInfo info) throws IOException {
+        out.write("<span class=\"class\">");
+        if (info.isDeprecated()) {
+            out.write("<i>deprecated: </i>");
+        }
+        out.write(info.getAccessType());
+        out.write(' ');
+        if (info.isAbstract()) {
+            out.write("abstract ");
+        }
+        if (info.isStatic()) {
+            out.write("static ");
+        }
+        if (info.isFinal()) {
+            out.write("final ");
+        }
+        escape(getClassName(info.getName()));
+        String superName = info.getSupername();
+        if (superName != null && !"java/lang/Object".equals(superName)) {
+            out.write(" extends ");
+            escape(getClassName(superName));
+        }
+        String[] interfaces = info.getInterfaces();
+        if (interfaces != null) {
+            for (int i = 0; i < interfaces.length; i++) {
+                out.write(i == 0 ? " implements " : ", ");
+                escape(getClassName(interfaces[i]));
+            }
+        }
+        out.write("</span>");
+    }
+
+    /**
+     * Write out a field declaration of the current class, linked to the
+     * specified API documents.
+     */
+    private void writeField(String api, Set classes, FieldInfo info) 
+        throws IOException 
+    {
+        startLink(api, classes, currentClass, info.getName());
+        out.write("<span class=\"field\">");
+        if (info.isDeprecated()) {
+            out.write("<em>deprecated: </em>");
+        }
+        out.write(info.getAccessType());
+        out.write(' ');
+        if (info.isFinal()) {
+            out.write("final ");
+        }
+        if (info.isStatic()) {
+            out.write("static ");
+        }
+        if (info.isTransient()) {
+            out.write("transient ");
+        }
+        if (info.isVolatile()) {
+            out.write("volatile ");
+        }
+        writeType(Type.getType(info.getDesc()));
+        out.write(' ');
+        escape(info.getName());
+        if (info.getValue() != null) {
+            out.write(" = ");
+            escape(info.getValue().toString());
+        }
+        out.write(";</span>");
+        endLink(api, classes, currentClass);
+    }
+
+    /**
+     * Write out a method declaration of the current class, linked to the
+     * specified API documents.
+     */
+    private void writeMethod(String api, Set classes, MethodInfo info)
+        throws IOException 
+    {
+        boolean init = "<init>".equals(info.getName());
+        Type[] args = Type.getArgumentTypes(info.getDesc());
+        String anchor = null;
+        if (isSet(api) && classes != null && classes.contains(currentClass)) {
+            StringBuffer sb = new StringBuffer();
+            sb.append(init ? getShortName(currentClass) : info.getName());
+            sb.append('(');
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(getTypeName(args[i]));
+            }
+            sb.append(')');
+            anchor = sb.toString();
+        }
+        startLink(api, classes, currentClass, anchor);
+        out.write("<span class=\"method\">");
+        if (info.isDeprecated()) {
+            out.write("<em>deprecated: </em>");
+        }
+        out.write(info.getAccessType());
+        out.write(' ');
+        if (info.isFinal()) {
+            out.write("final ");
+        }
+        if (info.isStatic()) {
+            out.write("static ");
+        }
+        if (info.isSynchronized()) {
+            out.write("synchronized ");
+        }
+        if (info.isAbstract()) {
+            out.write("abstract ");
+        }
+        if (init) {
+            escape(getShortName(currentClass));
+        } else {
+            writeType(Type.getReturnType(info.getDesc()));
+            out.write(' ');
+            escape(info.getName());
+        }
+        out.write('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                out.write(", ");
+            }
+            writeType(args[i]);
+        }
+        out.write(')');
+        String[] exceptions = info.getExceptions();
+        if (exceptions != null) {
+            for (int i = 0; i < exceptions.length; i++) {
+                out.write(i == 0 ? " throws " : ", ");
+                escape(getClassName(exceptions[i]));
+            }
+        }
+        out.write("</span>");
+        endLink(api, classes, currentClass);
+    }
+
+    /**
+     * Write out the java name of a type.
+     */
+    private void writeType(Type type) throws IOException {
+        escape(getTypeName(type));
+    }
+
+    /**
+     * Get the java name of a type, e.g. int, java.lang.String[].
+     */
+    private String getTypeName(Type type) {
+        if (type.getSort() != Type.ARRAY) {
+            if (type.getSort() == Type.OBJECT) {
+                return getClassName(type.getInternalName());
+            }
+            return type.getClassName();
+        }
+        StringBuffer sb = new StringBuffer(getTypeName(type.getElementType()));
+        for (int i = 0; i < type.getDimensions(); i++) {
+            sb.append("[]");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the name of a class without its package, as used for 
+     * constructors.
+     */
+    private String getShortName(String internalName) {
+        return internalName.substring(internalName.lastIndexOf('/') + 1)
+            .replace('$', '.');
+    }
+
+    /**
+     * Write out some text escaped for html.
+     */
+    private void escape(String str) throws IOException {
+        int len = str.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            String rep;
+            switch (str.charAt(i)) {
+                case '<':
+                    rep = "&lt;";
+                    break;
+                case '>':
+                    rep = "&gt;";
+                    break;
+                case '&':
+                    rep = "&amp;";
+                    break;
+                case '"':
+                    rep = "&quot;";
+                    break;
+                default:
+                    continue;
+            }
+            out.write(str, start, i - start);
+            out.write(rep);
+            start = i + 1;
+        }
+        out.write(str, start, len - start);
+    }
+
+    private static boolean isSet(String str) {
+        return str != null && str.length() > 0;
+    }
+}
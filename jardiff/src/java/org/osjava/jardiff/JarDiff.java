@@ -44,14 +44,21 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 /*
@@ -116,9 +123,31 @@ public class JarDiff
     private String newVersion;
 
     /**
-     * Class info visitor, used to load information about classes.
+     * Class info visitors, one per thread loading classes.
      */
-    private ClassInfoVisitor infoVisitor = new ClassInfoVisitor();
+    private static final ThreadLocal infoVisitor = new ThreadLocal() {
+        protected Object initialValue() {
+            return new ClassInfoVisitor();
+        }
+    };
+
+    /**
+     * The entries of the old jar file, so classes which are byte for 
+     * byte the same in the new jar need not be parsed again.
+     * Keys are entry names.
+     * Values are instances of LoadedClass.
+     */
+    private Map oldEntries = new HashMap();
+
+    /**
+     * The number of threads used to parse classes.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The index of previously parsed jar files, or null.
+     */
+    private ClassInfoIndex index;
 
     /**
      * Create a new JarDiff object.
@@ -181,18 +210,58 @@ public class JarDiff
         return deps;
     }
 
+    /**
+     * Set the number of threads used to parse the classes in a jar.
+     *
+     * @param threads the number of threads, 1 to parse on the calling 
+     *                thread
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Get the number of threads used to parse the classes in a jar.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the index used to avoid parsing jar files which have been 
+     * loaded before. Jar files loaded from a File are looked up in the 
+     * index, and added to it if they are not there.
+     *
+     * @param index the index, or null to always parse jar files.
+     */
+    public void setIndex(ClassInfoIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Get the index used to avoid parsing jar files.
+     *
+     * @return the index, or null.
+     */
+    public ClassInfoIndex getIndex() {
+        return index;
+    }
+
     /**
      * Load classinfo given a ClassReader.
      *
      * @param reader the ClassReader
      * @return the ClassInfo
      */
-    private synchronized ClassInfo loadClassInfo(ClassReader reader) 
+    private ClassInfo loadClassInfo(ClassReader reader) 
         throws IOException 
     {
-        infoVisitor.reset();
-        reader.accept(infoVisitor, ClassReader.SKIP_CODE);
-        return infoVisitor.getClassInfo();
+        ClassInfoVisitor visitor = (ClassInfoVisitor) infoVisitor.get();
+        visitor.reset();
+        reader.accept(visitor, ClassReader.SKIP_CODE);
+        return visitor.getClassInfo();
     }
 
     /**
@@ -202,10 +271,16 @@ public class JarDiff
      * which contain classes in subdirectories or in the current directory.
      *
      * @param infoMap the map to store the ClassInfo in.
+     * @param path the url of the jar file.
+     * @param record a map to store the LoadedClass of each entry in, or
+     *               null.
+     * @param reuse a map of LoadedClass from a previous jar, or null.
      * @throws DiffException if there is an exception reading info about a 
      *                       class.
      */
-    private void loadClasses(Map infoMap, URL path) throws DiffException {
+    private void loadClasses(Map infoMap, URL path, Map record, Map reuse)
+        throws DiffException 
+    {
         try {
             File jarFile = null;
             if(!"file".equals(path.getProtocol()) || path.getHost() != null) {
@@ -227,7 +302,7 @@ public class JarDiff
                 // Else it's a local file, nothing special to do.
                 jarFile = new File(path.getPath());
             }
-            loadClasses(infoMap, jarFile);
+            loadClasses(infoMap, jarFile, record, reuse);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -238,28 +313,86 @@ public class JarDiff
      * about them in the specified map.
      * This currently only works for jar files, <b>not</b> directories
      * which contain classes in subdirectories or in the current directory.
+     * Classes are parsed in parallel. Classes with the same name, size 
+     * and CRC as one in <code>reuse</code> are not parsed, they share 
+     * the existing ClassInfo.
      *
      * @param infoMap the map to store the ClassInfo in.
      * @param file the jarfile to load classes from.
+     * @param record a map to store the LoadedClass of each entry in, or
+     *               null.
+     * @param reuse a map of LoadedClass from a previous jar, or null.
      * @throws IOException if there is an IOException reading info about a 
      *                     class.
      */
-    private void loadClasses(Map infoMap, File file) throws DiffException {
+    private void loadClasses(Map infoMap, File file, Map record, Map reuse)
+        throws DiffException 
+    {
+        ExecutorService pool = null;
+        JarFile jar = null;
         try {
-            JarFile jar = new JarFile(file);
+            jar = new JarFile(file);
+            if (threads > 1) {
+                pool = Executors.newFixedThreadPool(threads);
+            }
+            List loading = new ArrayList();
             Enumeration e = jar.entries();
             while (e.hasMoreElements()) {
                 JarEntry entry = (JarEntry) e.nextElement();
                 String name = entry.getName();
                 if (!entry.isDirectory() && name.endsWith(".class")) {
-                    ClassReader reader
-                        = new ClassReader(jar.getInputStream(entry));
-                    ClassInfo ci = loadClassInfo(reader);
-                    infoMap.put(ci.getName(), ci);
+                    LoadedClass loaded = null;
+                    if (reuse != null) {
+                        loaded = (LoadedClass) reuse.get(name);
+                        if (loaded != null && !loaded.matches(entry)) {
+                            loaded = null;
+                        }
+                    }
+                    if (loaded != null) {
+                        loading.add(loaded);
+                    } else if (pool != null) {
+                        loading.add(pool.submit(new EntryLoader(jar, entry)));
+                    } else {
+                        loading.add(new EntryLoader(jar, entry).call());
+                    }
+                }
+            }
+            Iterator i = loading.iterator();
+            while (i.hasNext()) {
+                Object obj = i.next();
+                LoadedClass loaded;
+                if (obj instanceof Future) {
+                    loaded = (LoadedClass) ((Future) obj).get();
+                } else {
+                    loaded = (LoadedClass) obj;
+                }
+                infoMap.put(loaded.info.getName(), loaded.info);
+                if (record != null) {
+                    record.put(loaded.name, loaded);
                 }
             }
         } catch (IOException ioe) {
             throw new DiffException(ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DiffException(ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof Exception) {
+                throw new DiffException((Exception) cause);
+            }
+            throw new DiffException(ee);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            if (jar != null) {
+                try {
+                    jar.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
         }
     }
 
@@ -270,7 +403,7 @@ public class JarDiff
      * @throws DiffException if there is an IOException.
      */
     public void loadOldClasses(URL loc) throws DiffException {
-        loadClasses(oldClassInfo, loc);
+        loadClasses(oldClassInfo, loc, oldEntries, null);
     }
 
     /**
@@ -280,7 +413,7 @@ public class JarDiff
      * @throws DiffException if there is an IOException.
      */
     public void loadNewClasses(URL loc) throws DiffException {
-        loadClasses(newClassInfo, loc);
+        loadClasses(newClassInfo, loc, null, oldEntries);
     }
 
     /**
@@ -290,7 +423,7 @@ public class JarDiff
      * @throws DiffException if there is an IOException
      */
     public void loadOldClasses(File file) throws DiffException {
-        loadClasses(oldClassInfo, file);
+        loadIndexedClasses(oldClassInfo, file, oldEntries, null);
     }
 
     /**
@@ -300,7 +433,61 @@ public class JarDiff
      * @throws DiffExeption if there is an IOException
      */
     public void loadNewClasses(File file) throws DiffException {
-        loadClasses(newClassInfo, file);
+        loadIndexedClasses(newClassInfo, file, null, oldEntries);
+    }
+
+    /**
+     * Load old classes from an index file written by ClassInfoIndex, 
+     * without reading the jar file it was built from.
+     *
+     * @param file The index file to load classes from.
+     * @throws DiffException if the index cannot be read.
+     */
+    public void loadOldIndex(File file) throws DiffException {
+        oldClassInfo.putAll(ClassInfoIndex.read(file));
+    }
+
+    /**
+     * Load new classes from an index file written by ClassInfoIndex, 
+     * without reading the jar file it was built from.
+     *
+     * @param file The index file to load classes from.
+     * @throws DiffException if the index cannot be read.
+     */
+    public void loadNewIndex(File file) throws DiffException {
+        newClassInfo.putAll(ClassInfoIndex.read(file));
+    }
+
+    /**
+     * Load all the classes from the specified jar file, using the index
+     * if one has been set. A jar file which is not in the index is 
+     * parsed and then added to it.
+     *
+     * @param infoMap the map to store the ClassInfo in.
+     * @param file the jarfile to load classes from.
+     * @param record a map to store the LoadedClass of each entry in, or
+     *               null.
+     * @param reuse a map of LoadedClass from a previous jar, or null.
+     * @throws DiffException if there is an exception reading the jar or
+     *                       the index.
+     */
+    private void loadIndexedClasses(Map infoMap, File file, Map record,
+                                    Map reuse)
+        throws DiffException
+    {
+        if (index == null) {
+            loadClasses(infoMap, file, record, reuse);
+            return;
+        }
+        File indexFile = index.getIndexFile(file);
+        if (indexFile.isFile()) {
+            infoMap.putAll(ClassInfoIndex.read(indexFile));
+            return;
+        }
+        Map loaded = new TreeMap();
+        loadClasses(loaded, file, record, reuse);
+        ClassInfoIndex.write(loaded, indexFile);
+        infoMap.putAll(loaded);
     }
 
     /**
@@ -377,6 +564,10 @@ public class JarDiff
             String s = (String) i.next();
             ClassInfo oci = (ClassInfo) oldClassInfo.get(s);
             ClassInfo nci = (ClassInfo) newClassInfo.get(s);
+            if (oci == nci) {
+                // the same bytes in both jars, so nothing has changed
+                continue;
+            }
             if (criteria.validClass(oci) || criteria.validClass(nci)) {
                 Map oldMethods = oci.getMethodMap();
                 Map oldFields = oci.getFieldMap();
@@ -486,4 +677,51 @@ public class JarDiff
         handler.endChanged();
         handler.endDiff();
     }
+
+    /**
+     * The ClassInfo parsed from a jar entry, with the entry's size and 
+     * CRC so an identical entry in another jar can be recognised.
+     */
+    private static class LoadedClass {
+        private String name;
+        private long size;
+        private long crc;
+        private ClassInfo info;
+
+        LoadedClass(JarEntry entry, ClassInfo info) {
+            this.name = entry.getName();
+            this.size = entry.getSize();
+            this.crc = entry.getCrc();
+            this.info = info;
+        }
+
+        boolean matches(JarEntry entry) {
+            return crc != -1 && size != -1
+                && entry.getCrc() == crc && entry.getSize() == size;
+        }
+    }
+
+    /**
+     * Parses one jar entry, using the visitor of whichever thread it 
+     * runs on.
+     */
+    private class EntryLoader implements Callable {
+        private JarFile jar;
+        private JarEntry entry;
+
+        EntryLoader(JarFile jar, JarEntry entry) {
+            this.jar = jar;
+            this.entry = entry;
+        }
+
+        public Object call() throws IOException {
+            InputStream in = jar.getInputStream(entry);
+            try {
+                ClassReader reader = new ClassReader(in);
+                return new LoadedClass(entry, loadClassInfo(reader));
+            } finally {
+                in.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,668 @@
+/*
+ * org.osjava.jardiff.JsonDiffHandler
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.objectweb.asm.Type;
+
+/**
+ * A DiffHandler which writes a JSON document describing the diff as it 
+ * goes, holding nothing in memory.
+ * The document has the same shape as the xml written by 
+ * StreamDiffHandler:
+ * <pre>
+ * {"old":..., "new":...,
+ *  "oldcontents":[names], "newcontents":[names],
+ *  "removed":[classes], "added":[classes],
+ *  "changed":[{"name":..., "removed":[members], "added":[members],
+ *              "changed":[{"from":..., "to":...}]}]}
+ * </pre>
+ * Classes, fields and methods are objects with a "type" of "class", 
+ * "field" or "method", their access and modifiers, and their java 
+ * names, types and signatures.
+ */
+public class JsonDiffHandler extends AbstractDiffHandler
+{
+    /**
+     * Where we write the document to.
+     */
+    private final Writer out;
+
+    /**
+     * Whether the next item in the current array is the first.
+     */
+    private boolean first;
+
+    /**
+     * Whether the next item in the list of changed classes is the first,
+     * kept while the arrays inside a changed class are written.
+     */
+    private boolean firstClass;
+
+    /**
+     * Create a new JsonDiffHandler which writes to the specified 
+     * OutputStream.
+     *
+     * @param out Where to write output.
+     * @throws DiffException if UTF-8 is not supported.
+     */
+    public JsonDiffHandler(OutputStream out) throws DiffException {
+        try {
+            this.out = new BufferedWriter(
+                    new OutputStreamWriter(out, "UTF-8"), 65536
+                    );
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Start the diff.
+     *
+     * @param oldJar name of old jar file.
+     * @param newJar name of new jar file.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startDiff(String oldJar, String newJar) throws DiffException {
+        try {
+            out.write("{\"old\":");
+            quote(oldJar);
+            out.write(",\"new\":");
+            quote(newJar);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Start the list of old contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startOldContents() throws DiffException {
+        startArray("oldcontents");
+    }
+
+    /**
+     * Start the list of new contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startNewContents() throws DiffException {
+        startArray("newcontents");
+    }
+
+    /**
+     * Add a contained class.
+     *
+     * @param info information about a class
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void contains(ClassInfo info) throws DiffException {
+        try {
+            separator();
+            quote(getClassName(info.getName()));
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the list of old contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endOldContents() throws DiffException {
+        endArray();
+    }
+
+    /**
+     * End the list of new contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endNewContents() throws DiffException {
+        endArray();
+    }
+
+    /**
+     * Start the list of removed classes, or of removed members of a 
+     * changed class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startRemoved() throws DiffException {
+        startArray("removed");
+    }
+
+    /**
+     * Write out a removed class.
+     *
+     * @param info The info about the removed class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classRemoved(ClassInfo info) throws DiffException {
+        try {
+            separator();
+            writeClass(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the removed list.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endRemoved() throws DiffException {
+        endArray();
+    }
+
+    /**
+     * Start the list of added classes, or of added members of a changed
+     * class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startAdded() throws DiffException {
+        startArray("added");
+    }
+
+    /**
+     * Write out an added class.
+     *
+     * @param info The info about the added class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classAdded(ClassInfo info) throws DiffException {
+        try {
+            separator();
+            writeClass(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the added list.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endAdded() throws DiffException {
+        endArray();
+    }
+
+    /**
+     * Start the list of changed classes, or of changes to a changed 
+     * class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startChanged() throws DiffException {
+        startArray("changed");
+    }
+
+    /**
+     * Start the object describing the changes to a class.
+     *
+     * @param internalName the internal name of the class that has changed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startClassChanged(String internalName) throws DiffException 
+    {
+        try {
+            separator();
+            out.write("{\"name\":");
+            quote(getClassName(internalName));
+            firstClass = first;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a removed field.
+     *
+     * @param info Info about the field that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldRemoved(FieldInfo info) throws DiffException {
+        try {
+            separator();
+            writeField(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a removed method.
+     *
+     * @param info Info about the method that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodRemoved(MethodInfo info) throws DiffException {
+        try {
+            separator();
+            writeMethod(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out an added field.
+     *
+     * @param info Info about the added field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldAdded(FieldInfo info) throws DiffException {
+        try {
+            separator();
+            writeField(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out an added method.
+     *
+     * @param info Info about the added method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodAdded(MethodInfo info) throws DiffException {
+        try {
+            separator();
+            writeMethod(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a change to the class itself.
+     *
+     * @param oldInfo Info about the old class.
+     * @param newInfo Info about the new class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classChanged(ClassInfo oldInfo, ClassInfo newInfo)
+        throws DiffException 
+    {
+        try {
+            separator();
+            out.write("{\"from\":");
+            writeClass(oldInfo);
+            out.write(",\"to\":");
+            writeClass(newInfo);
+            out.write('}');
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a changed field.
+     *
+     * @param oldInfo Info about the old field.
+     * @param newInfo Info about the new field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldChanged(FieldInfo oldInfo, FieldInfo newInfo)
+        throws DiffException 
+    {
+        try {
+            separator();
+            out.write("{\"from\":");
+            writeField(oldInfo);
+            out.write(",\"to\":");
+            writeField(newInfo);
+            out.write('}');
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a changed method.
+     *
+     * @param oldInfo Info about the old method.
+     * @param newInfo Info about the new method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodChanged(MethodInfo oldInfo, MethodInfo newInfo)
+        throws DiffException
+    {
+        try {
+            separator();
+            out.write("{\"from\":");
+            writeMethod(oldInfo);
+            out.write(",\"to\":");
+            writeMethod(newInfo);
+            out.write('}');
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the object describing the changes to a class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endClassChanged() throws DiffException {
+        try {
+            out.write('}');
+            first = firstClass;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the changed list.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endChanged() throws DiffException {
+        endArray();
+    }
+
+    /**
+     * End the diff, closing the document and the stream.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endDiff() throws DiffException {
+        try {
+            out.write("}\n");
+            out.close();
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Start a named array in the current object.
+     */
+    private void startArray(String name) throws DiffException {
+        try {
+            out.write(",\"");
+            out.write(name);
+            out.write("\":[");
+            first = true;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the current array.
+     */
+    private void endArray() throws DiffException {
+        try {
+            out.write(']');
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write a comma before every item of an array but the first.
+     */
+    private void separator() throws IOException {
+        if (first) {
+            first = false;
+        } else {
+            out.write(',');
+        }
+    }
+
+    /**
+     * Write out a class as an object.
+     */
+    private void writeClass(ClassInfo info) throws IOException {
+        out.write("{\"type\":\"class\"");
+        writeAccess(info);
+        out.write(",\"name\":");
+        quote(getClassName(info.getName()));
+        if (info.getSignature() != null) {
+            out.write(",\"signature\":");
+            quote(info.getSignature());
+        }
+        if (info.getSupername() != null) {
+            out.write(",\"superclass\":");
+            quote(getClassName(info.getSupername()));
+        }
+        writeNames("implements", info.getInterfaces());
+        out.write('}');
+    }
+
+    /**
+     * Write out a field as an object.
+     */
+    private void writeField(FieldInfo info) throws IOException {
+        out.write("{\"type\":\"field\"");
+        writeAccess(info);
+        out.write(",\"name\":");
+        quote(info.getName());
+        out.write(",\"fieldtype\":");
+        quote(getTypeName(Type.getType(info.getDesc())));
+        if (info.getSignature() != null) {
+            out.write(",\"signature\":");
+            quote(info.getSignature());
+        }
+        if (info.getValue() != null) {
+            out.write(",\"value\":");
+            quote(info.getValue().toString());
+        }
+        out.write('}');
+    }
+
+    /**
+     * Write out a method as an object.
+     */
+    private void writeMethod(MethodInfo info) throws IOException {
+        out.write("{\"type\":\"method\"");
+        writeAccess(info);
+        out.write(",\"name\":");
+        quote(info.getName());
+        Type[] args = Type.getArgumentTypes(info.getDesc());
+        out.write(",\"arguments\":[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            quote(getTypeName(args[i]));
+        }
+        out.write("],\"return\":");
+        quote(getTypeName(Type.getReturnType(info.getDesc())));
+        if (info.getSignature() != null) {
+            out.write(",\"signature\":");
+            quote(info.getSignature());
+        }
+        writeNames("exceptions", info.getExceptions());
+        out.write('}');
+    }
+
+    /**
+     * Write out the access and the list of modifiers of a class or member.
+     */
+    private void writeAccess(AbstractInfo info) throws IOException {
+        out.write(",\"access\":\"");
+        out.write(info.getAccessType());
+        out.write("\",\"modifiers\":[");
+        boolean none = true;
+        none = modifier(info.isAbstract(), "abstract", none);
+        none = modifier(info.isAnnotation(), "annotation", none);
+        none = modifier(info.isBridge(), "bridge", none);
+        none = modifier(info.isDeprecated(), "deprecated", none);
+        none = modifier(info.isEnum(), "enum", none);
+        none = modifier(info.isFinal(), "final", none);
+        none = modifier(info.isInterface(), "interface", none);
+        none = modifier(info.isNative(), "native", none);
+        none = modifier(info.isStatic(), "static", none);
+        none = modifier(info.isStrict(), "strict", none);
+        none = modifier(info.isSuper(), "super", none);
+        none = modifier(info.isSynchronized(), "synchronized", none);
+        none = modifier(info.isSynthetic(), "synthetic", none);
+        none = modifier(info.isTransient(), "transient", none);
+        none = modifier(info.isVarargs(), "varargs", none);
+        modifier(info.isVolatile(), "volatile", none);
+        out.write(']');
+    }
+
+    private boolean modifier(boolean set, String name, boolean none) 
+        throws IOException 
+    {
+        if (!set) {
+            return none;
+        }
+        if (!none) {
+            out.write(',');
+        }
+        out.write('"');
+        out.write(name);
+        out.write('"');
+        return false;
+    }
+
+    /**
+     * Write out a named array of class names, if there are any.
+     */
+    private void writeNames(String name, String[] internalNames) 
+        throws IOException 
+    {
+        if (internalNames == null || internalNames.length == 0) {
+            return;
+        }
+        out.write(",\"");
+        out.write(name);
+        out.write("\":[");
+        for (int i = 0; i < internalNames.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            quote(getClassName(internalNames[i]));
+        }
+        out.write(']');
+    }
+
+    /**
+     * Get the java name of a type, e.g. int, java.lang.String[].
+     */
+    private String getTypeName(Type type) {
+        if (type.getSort() != Type.ARRAY) {
+            if (type.getSort() == Type.OBJECT) {
+                return getClassName(type.getInternalName());
+            }
+            return type.getClassName();
+        }
+        StringBuffer sb = new StringBuffer(getTypeName(type.getElementType()));
+        for (int i = 0; i < type.getDimensions(); i++) {
+            sb.append("[]");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write out a string as a quoted and escaped JSON string.
+     */
+    private void quote(String str) throws IOException {
+        out.write('"');
+        int len = str.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\') {
+                continue;
+            }
+            out.write(str, start, i - start);
+            switch (ch) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    String hex = Integer.toHexString(ch);
+                    out.write("\\u0000", 0, 6 - hex.length());
+                    out.write(hex);
+            }
+            start = i + 1;
+        }
+        out.write(str, start, len - start);
+        out.write('"');
+    }
+}
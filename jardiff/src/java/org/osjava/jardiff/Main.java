@@ -85,7 +85,6 @@ public class Main {
      * Can you javadoc static code, I think not, but lets try anyway.
      */
     static {
-        FORMATS.add("html");
         FORMATS.add("xhtml");
         FORMATS.add("text");
     }
@@ -100,7 +99,7 @@ public class Main {
             System.out.println(msg);
         }
         HelpFormatter hf = new HelpFormatter();
-        hf.printHelp("JarDiff -f <from jar> -t <to jar> [-F <from name>] [-T <to name>] [[-o <xml|html|xhtml|text>]|[-x <xsl file>]] [-O <file>] [-s <href>] [-fa <href>] [-ta <href>]", options);
+        hf.printHelp("JarDiff -f <from jar> -t <to jar> [-F <from name>] [-T <to name>] [[-o <xml|html|json|xhtml|text>]|[-x <xsl file>]] [-O <file>] [-s <href>] [-fa <href>] [-ta <href>] [-j <threads>] [-i <index dir>]", options);
     }
 
     /**
@@ -128,7 +127,7 @@ public class Main {
             options.addOption(tmp);
             //tmp = new Option("d","dep",true,"dependency path");
             //options.addOption(tmp);
-            tmp = new Option("o","output-format",true,"output format, xml or html");
+            tmp = new Option("o","output-format",true,"output format, xml, html, json, xhtml or text");
             options.addOption(tmp);
             tmp = new Option("O","out",true,"output file");
             options.addOption(tmp);
@@ -142,6 +141,10 @@ public class Main {
             options.addOption(tmp);
             tmp = new Option("ta","to-api",true,"relative location of to api");
             options.addOption(tmp);
+            tmp = new Option("j","threads",true,"number of threads to parse classes with");
+            options.addOption(tmp);
+            tmp = new Option("i","index",true,"directory to keep an index of parsed jars in");
+            options.addOption(tmp);
             Parser parser = new GnuParser();
             CommandLine cli = null;
             try {
@@ -182,7 +185,8 @@ public class Main {
                             System.err.println("xslt fatal error: "+te.getMessageAndLocation());
                         }
                     });
-            Transformer ot;
+            Transformer ot = null;
+            String format = null;
             if(cli.hasOption('o')) {
                 if(cli.hasOption('x')) {
                     showHelp(options, "Cannot use both -x and -o");
@@ -191,6 +195,9 @@ public class Main {
                 String val = cli.getOptionValue('o');
                 if("xml".equals(val)) {
                     ot = tf.newTransformer();
+                } else if("html".equals(val) || "json".equals(val)) {
+                    // written directly by a DiffHandler, no xslt needed
+                    format = val;
                 } else if(FORMATS.contains(val)) {
                     URL url = JarDiff.class.getClassLoader()
                         .getResource("style/jardiff-"+val+".xsl");
@@ -207,14 +214,16 @@ public class Main {
             } else {
                 ot = tf.newTransformer();
             }
-            if(cli.hasOption("s")) {
-                ot.setParameter("stylesheet", cli.getOptionValue("s"));
-            }
-            if(cli.hasOption("fa")) {
-                ot.setParameter("from-api", cli.getOptionValue("fa"));
-            }
-            if(cli.hasOption("ta")) {
-                ot.setParameter("to-api", cli.getOptionValue("ta"));
+            if(ot != null) {
+                if(cli.hasOption("s")) {
+                    ot.setParameter("stylesheet", cli.getOptionValue("s"));
+                }
+                if(cli.hasOption("fa")) {
+                    ot.setParameter("from-api", cli.getOptionValue("fa"));
+                }
+                if(cli.hasOption("ta")) {
+                    ot.setParameter("to-api", cli.getOptionValue("ta"));
+                }
             }
             OutputStream out;
             if(cli.hasOption('O')) {
@@ -235,12 +244,32 @@ public class Main {
             } else {
                 jd.setNewVersion(newFile.getName());
             }
+            if(cli.hasOption('j')) {
+                try {
+                    jd.setThreads(Integer.parseInt(cli.getOptionValue('j')));
+                } catch (NumberFormatException nfe) {
+                    showHelp(options, "Invalid number of threads: " + cli.getOptionValue('j'));
+                    return;
+                }
+            }
+            if(cli.hasOption('i')) {
+                jd.setIndex(new ClassInfoIndex(new File(cli.getOptionValue('i'))));
+            }
             jd.loadOldClasses(oldFile);
             jd.loadNewClasses(newFile);
-            jd.diff(
-                    new DOMDiffHandler(ot, new StreamResult(out)), 
-                    new SimpleDiffCriteria()
-                    );
+            DiffHandler handler;
+            if("html".equals(format)) {
+                HtmlDiffHandler html = new HtmlDiffHandler(out);
+                html.setStylesheet(cli.getOptionValue("s"));
+                html.setFromApi(cli.getOptionValue("fa"));
+                html.setToApi(cli.getOptionValue("ta"));
+                handler = html;
+            } else if("json".equals(format)) {
+                handler = new JsonDiffHandler(out);
+            } else {
+                handler = new DOMDiffHandler(ot, new StreamResult(out));
+            }
+            jd.diff(handler, new SimpleDiffCriteria());
             out.close();
         } catch (Exception e) {
             e.printStackTrace(System.err);
@@ -56,6 +56,7 @@ import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.osjava.jardiff.ClassInfoIndex;
 import org.osjava.jardiff.JarDiff;
 import org.osjava.jardiff.DiffException;
 import org.osjava.jardiff.StreamDiffHandler;
@@ -101,6 +102,11 @@ public class JarDiffTask extends Task {
      */
     private boolean force = false;
 
+    /**
+     * The directory to keep an index of parsed jar files in, or null.
+     */
+    private File indexDir = null;
+
     /**
      * Run the task, generating the jardiff report.
      *
@@ -146,6 +152,9 @@ public class JarDiffTask extends Task {
                 JarDiff jd = new JarDiff();
                 jd.setOldVersion(fromName);
                 jd.setNewVersion(toName);
+                if(indexDir != null) {
+                    jd.setIndex(new ClassInfoIndex(indexDir));
+                }
                 jd.loadOldClasses(fromJar);
                 jd.loadNewClasses(toJar);
                 jd.diff(
@@ -222,4 +231,16 @@ public class JarDiffTask extends Task {
     public void setForce(boolean force) {
         this.force = force;
     }
+
+    /**
+     * Set the directory to keep an index of parsed jar files in, so
+     * a jar file used in several diffs is only parsed once.
+     * Optional attribute.
+     * Defaults to no index.
+     *
+     * @param indexDir a directory, created if it does not exist.
+     */
+    public void setIndexdir(File indexDir) {
+        this.indexDir = indexDir;
+    }
 }
@@ -0,0 +1,219 @@
+/*
+ * org.osjava.jardiff.ClassInfoIndexTest
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class ClassInfoIndexTest extends TestCase
+{
+    /**
+     * Constants the index has to write and read back, picked to fall
+     * either side of the varint byte boundaries and zigzag's sign.
+     */
+    private static final Object[] CONSTANTS = {
+        Integer.valueOf(0), Integer.valueOf(-1), Integer.valueOf(63),
+        Integer.valueOf(64), Integer.valueOf(-65), Integer.valueOf(8191),
+        Integer.valueOf(8192), Integer.valueOf(Integer.MAX_VALUE),
+        Integer.valueOf(Integer.MIN_VALUE), Long.valueOf(Long.MIN_VALUE),
+        Float.valueOf(Float.NaN), Float.valueOf(-0.5f),
+        Double.valueOf(Double.POSITIVE_INFINITY), Double.valueOf(1e300),
+        "", "constant", "\u00e9\u4e2d\u0000"
+    };
+
+    private File dir;
+
+    public ClassInfoIndexTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws Exception {
+        dir = TestJars.createDir("classinfoindex");
+    }
+
+    public void tearDown() {
+        TestJars.delete(dir);
+    }
+
+    /**
+     * A jar of one class holding every constant above, a generic 
+     * method and a field with no value.
+     */
+    private File writeConstantsJar() throws Exception {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+                 "org/example/Constants", "<T:Ljava/lang/Object;>Ljava/lang/Object;",
+                 "java/lang/Object", null);
+        for (int i = 0; i < CONSTANTS.length; i++) {
+            Object value = CONSTANTS[i];
+            String desc = value instanceof Integer ? "I"
+                        : value instanceof Long ? "J"
+                        : value instanceof Float ? "F"
+                        : value instanceof Double ? "D"
+                        : "Ljava/lang/String;";
+            cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC 
+                          | Opcodes.ACC_FINAL, "C" + i, desc, null, value)
+                .visitEnd();
+        }
+        cw.visitField(Opcodes.ACC_PROTECTED, "list", "Ljava/util/List;",
+                      "Ljava/util/List<TT;>;", null).visitEnd();
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "get",
+                       "(I)Ljava/lang/Object;", "(I)TT;", null).visitEnd();
+        cw.visitEnd();
+
+        File file = new File(dir, "constants.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new JarEntry("org/example/Constants.class"));
+            out.write(cw.toByteArray());
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Parse the jar, write the classes to an index, read them back
+     * and check they are the same.
+     */
+    private void assertRoundTrip(File jar) throws Exception {
+        JarDiff jarDiff = new JarDiff();
+        jarDiff.loadOldClasses(jar);
+        Map parsed = jarDiff.oldClassInfo;
+        assertFalse(parsed.isEmpty());
+
+        File index = new File(dir, "index.jdx");
+        ClassInfoIndex.write(parsed, index);
+        Map read = ClassInfoIndex.read(index);
+
+        assertEquals(parsed.keySet(), read.keySet());
+        Iterator i = parsed.keySet().iterator();
+        while (i.hasNext()) {
+            Object name = i.next();
+            assertClassEquals((ClassInfo) parsed.get(name),
+                              (ClassInfo) read.get(name));
+        }
+    }
+
+    private void assertClassEquals(ClassInfo expected, ClassInfo actual) {
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getAccess(), actual.getAccess());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSignature(), actual.getSignature());
+        assertEquals(expected.getSupername(), actual.getSupername());
+        assertArrayEquals(expected.getInterfaces(), actual.getInterfaces());
+
+        Map methods = actual.getMethodMap();
+        assertEquals(expected.getMethodMap().keySet(), methods.keySet());
+        Iterator i = expected.getMethodMap().entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry entry = (Map.Entry) i.next();
+            MethodInfo method = (MethodInfo) entry.getValue();
+            MethodInfo other = (MethodInfo) methods.get(entry.getKey());
+            assertEquals(method.getAccess(), other.getAccess());
+            assertEquals(method.getName(), other.getName());
+            assertEquals(method.getDesc(), other.getDesc());
+            assertEquals(method.getSignature(), other.getSignature());
+            assertArrayEquals(method.getExceptions(), other.getExceptions());
+        }
+
+        Map fields = actual.getFieldMap();
+        assertEquals(expected.getFieldMap().keySet(), fields.keySet());
+        i = expected.getFieldMap().entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry entry = (Map.Entry) i.next();
+            FieldInfo field = (FieldInfo) entry.getValue();
+            FieldInfo other = (FieldInfo) fields.get(entry.getKey());
+            assertEquals(field.getAccess(), other.getAccess());
+            assertEquals(field.getName(), other.getName());
+            assertEquals(field.getDesc(), other.getDesc());
+            assertEquals(field.getSignature(), other.getSignature());
+            assertEquals(field.getValue(), other.getValue());
+        }
+    }
+
+    private static void assertArrayEquals(Object[] expected, Object[] actual) {
+        if (expected == null || actual == null) {
+            assertSame(expected, actual);
+        } else {
+            assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        assertRoundTrip(TestJars.writeOld(dir));
+        assertRoundTrip(TestJars.writeNew(dir));
+    }
+
+    public void testConstants() throws Exception {
+        File jar = writeConstantsJar();
+        assertRoundTrip(jar);
+
+        JarDiff jarDiff = new JarDiff();
+        jarDiff.loadOldClasses(jar);
+        ClassInfo info = (ClassInfo) jarDiff.oldClassInfo.get("org/example/Constants");
+        for (int i = 0; i < CONSTANTS.length; i++) {
+            FieldInfo field = (FieldInfo) info.getFieldMap().get("C" + i);
+            assertEquals(CONSTANTS[i], field.getValue());
+        }
+    }
+
+    public void testIndexedDiff() throws Exception {
+        File jar = TestJars.writeOld(dir);
+        ClassInfoIndex index = new ClassInfoIndex(new File(dir, "index"));
+        JarDiff jarDiff = new JarDiff();
+        jarDiff.setIndex(index);
+        jarDiff.loadOldClasses(jar);
+        File indexFile = index.getIndexFile(jar);
+        assertTrue(indexFile.isFile());
+
+        // the second load is from the index
+        JarDiff indexed = new JarDiff();
+        indexed.setIndex(index);
+        indexed.loadOldClasses(jar);
+        assertEquals(jarDiff.oldClassInfo.keySet(), indexed.oldClassInfo.keySet());
+        indexFile.delete();
+        new File(dir, "index").delete();
+    }
+}
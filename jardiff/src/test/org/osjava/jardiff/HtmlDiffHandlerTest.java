@@ -0,0 +1,93 @@
+/*
+ * org.osjava.jardiff.HtmlDiffHandlerTest
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import junit.framework.TestCase;
+
+public class HtmlDiffHandlerTest extends TestCase
+{
+    private File dir;
+
+    public HtmlDiffHandlerTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws Exception {
+        dir = TestJars.createDir("htmldiff");
+    }
+
+    public void tearDown() {
+        TestJars.delete(dir);
+    }
+
+    private String diff(HtmlDiffHandler handler, ByteArrayOutputStream out)
+        throws Exception
+    {
+        TestJars.diff(dir).diff(handler, new SimpleDiffCriteria());
+        return out.toString("UTF-8");
+    }
+
+    public void testDiff() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String html = diff(new HtmlDiffHandler(out), out);
+        assertTrue(html.indexOf("<title>Comparing 1.0 to 2.0</title>") != -1);
+        assertTrue(html.indexOf("<ul class=\"class-removed\">\n"
+            + "<li>org.example.Removed</li>\n</ul>") != -1);
+        assertTrue(html.indexOf("<ul class=\"class-added\">\n"
+            + "<li>org.example.Added</li>\n</ul>") != -1);
+        assertTrue(html.indexOf("<li><h4>org.example.Changed</h4>\n"
+            + "<h5>Removed:</h5>\n<ul>\n"
+            + "<li><span class=\"method\">public abstract void run() "
+            + "throws java.io.IOException</span></li>\n</ul>\n"
+            + "<h5>Added:</h5>\n<ul>\n"
+            + "<li><span class=\"method\">public abstract void "
+            + "stop(java.lang.String) throws java.io.IOException</span></li>\n"
+            + "</ul>\n<h5>Changed:</h5>\n<ul>\n"
+            + "<li><span>From: <span class=\"field\">public final static int "
+            + "SIZE = 1;</span></span><br><span>To: <span class=\"field\">"
+            + "public final static int SIZE = 2;</span></span></li>\n") != -1);
+        assertTrue(html.trim().endsWith("</body>\n</html>"));
+    }
+
+    public void testApiLinks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HtmlDiffHandler handler = new HtmlDiffHandler(out);
+        handler.setToApi("http://example.org/api");
+        String html = diff(handler, out);
+        assertTrue(html.indexOf("<li><a href=\"http://example.org/api/"
+            + "org/example/Added.html\">org.example.Added</a></li>") != -1);
+    }
+}
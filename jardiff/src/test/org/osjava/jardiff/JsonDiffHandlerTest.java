@@ -0,0 +1,87 @@
+/*
+ * org.osjava.jardiff.JsonDiffHandlerTest
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import junit.framework.TestCase;
+
+public class JsonDiffHandlerTest extends TestCase
+{
+    private File dir;
+
+    public JsonDiffHandlerTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws Exception {
+        dir = TestJars.createDir("jsondiff");
+    }
+
+    public void tearDown() {
+        TestJars.delete(dir);
+    }
+
+    public void testDiff() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TestJars.diff(dir).diff(new JsonDiffHandler(out), 
+                                new SimpleDiffCriteria());
+        assertEquals("{\"old\":\"1.0\",\"new\":\"2.0\","
+            + "\"oldcontents\":[\"org.example.Changed\",\"org.example.Removed\"],"
+            + "\"newcontents\":[\"org.example.Added\",\"org.example.Changed\"],"
+            + "\"removed\":[{\"type\":\"class\",\"access\":\"public\","
+            + "\"modifiers\":[\"abstract\"],\"name\":\"org.example.Removed\","
+            + "\"superclass\":\"java.lang.Object\","
+            + "\"implements\":[\"java.io.Serializable\"]}],"
+            + "\"added\":[{\"type\":\"class\",\"access\":\"public\","
+            + "\"modifiers\":[\"abstract\"],\"name\":\"org.example.Added\","
+            + "\"superclass\":\"java.lang.Object\","
+            + "\"implements\":[\"java.io.Serializable\"]}],"
+            + "\"changed\":[{\"name\":\"org.example.Changed\","
+            + "\"removed\":[{\"type\":\"method\",\"access\":\"public\","
+            + "\"modifiers\":[\"abstract\"],\"name\":\"run\",\"arguments\":[],"
+            + "\"return\":\"void\",\"exceptions\":[\"java.io.IOException\"]}],"
+            + "\"added\":[{\"type\":\"method\",\"access\":\"public\","
+            + "\"modifiers\":[\"abstract\"],\"name\":\"stop\","
+            + "\"arguments\":[\"java.lang.String\"],\"return\":\"void\","
+            + "\"exceptions\":[\"java.io.IOException\"]}],"
+            + "\"changed\":[{\"from\":{\"type\":\"field\",\"access\":\"public\","
+            + "\"modifiers\":[\"final\",\"static\"],\"name\":\"SIZE\","
+            + "\"fieldtype\":\"int\",\"value\":\"1\"},"
+            + "\"to\":{\"type\":\"field\",\"access\":\"public\","
+            + "\"modifiers\":[\"final\",\"static\"],\"name\":\"SIZE\","
+            + "\"fieldtype\":\"int\",\"value\":\"2\"}}]}]}",
+            out.toString("UTF-8").trim());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * org.osjava.jardiff.TestJars
+ *
+ * Copyright (c) 2005, OSJava
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * + Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * + Neither the name JarDiff nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.jardiff;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Writes the two small jars the tests diff. Between them, 
+ * org/example/Removed is removed, org/example/Added is added and 
+ * org/example/Changed loses run(), gains stop(String) and has 
+ * the value of SIZE changed from 1 to 2.
+ */
+class TestJars implements Opcodes
+{
+    static File writeOld(File dir) throws IOException {
+        File file = new File(dir, "old.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            addClass(out, "org/example/Removed", new String[0], null);
+            addClass(out, "org/example/Changed", new String[] { "run", "()V" },
+                     Integer.valueOf(1));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    static File writeNew(File dir) throws IOException {
+        File file = new File(dir, "new.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            addClass(out, "org/example/Added", new String[0], null);
+            addClass(out, "org/example/Changed",
+                     new String[] { "stop", "(Ljava/lang/String;)V" },
+                     Integer.valueOf(2));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * An abstract class with the given name and descriptor pairs as
+     * abstract methods, and a constant SIZE if size is not null.
+     */
+    private static void addClass(JarOutputStream out, String name, 
+                                 String[] methods, Integer size)
+        throws IOException
+    {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_4, ACC_PUBLIC | ACC_ABSTRACT, name, null, 
+                 "java/lang/Object", new String[] { "java/io/Serializable" });
+        if (size != null) {
+            cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, "SIZE", "I", 
+                          null, size).visitEnd();
+        }
+        for (int i = 0; i < methods.length; i += 2) {
+            cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, methods[i], 
+                           methods[i + 1], null, 
+                           new String[] { "java/io/IOException" }).visitEnd();
+        }
+        cw.visitEnd();
+        out.putNextEntry(new JarEntry(name + ".class"));
+        out.write(cw.toByteArray());
+        out.closeEntry();
+    }
+
+    /**
+     * A JarDiff of the two jars written into dir.
+     */
+    static JarDiff diff(File dir) throws IOException, DiffException {
+        JarDiff jarDiff = new JarDiff();
+        jarDiff.setOldVersion("1.0");
+        jarDiff.setNewVersion("2.0");
+        jarDiff.loadOldClasses(writeOld(dir));
+        jarDiff.loadNewClasses(writeNew(dir));
+        return jarDiff;
+    }
+
+    /**
+     * A new empty directory for a test to write into.
+     */
+    static File createDir(String name) throws IOException {
+        File dir = File.createTempFile(name, "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    static void delete(File dir) {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+}
@@ -2,21 +2,50 @@ package org.osjava.logview.reports;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.osjava.reportrunner.*;
 import org.osjava.logview.text.*;
 
 import org.apache.commons.io.IOUtils;
 
+/**
+ * A report over a combined format log. The log is split into chunks at
+ * line boundaries, each chunk is aggregated on its own thread and the
+ * aggregates are merged in log order.
+ * <p>
+ * Given a checkpoints directory the report tails the log instead: the
+ * aggregate and how far the log has been read are kept there, and each
+ * execution only reads the lines appended since. When the log is
+ * rotated the rest of the old log is read from its .1 file, if there
+ * is one, and the totals carry on into the new log. Delete the
+ * checkpoint to start again.
+ */
 public abstract class ApacheLogReport extends AbstractReport {
 
     private String resourceName;
 
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long chunkSize = 32 * 1024 * 1024;
+    private File checkpoints;
+
     public void setResource(String name, String resourceName) {
         this.resourceName = resourceName;
 System.out.println(""+this.resourceName);
     }
 
+    public void setThreads(String threads) {
+        this.threads = Math.max(1, Integer.parseInt(threads));
+    }
+
+    public void setChunkSize(String chunkSize) {
+        this.chunkSize = Math.max(64 * 1024, Long.parseLong(chunkSize));
+    }
+
+    public void setCheckpoints(String checkpoints) {
+        this.checkpoints = new File(checkpoints);
+    }
+
     public Result execute() {
         
         // get File
@@ -24,33 +53,170 @@ System.out.println(""+this.resourceName);
         // TODO: Fix bug in which this.resourceName is not set to logfile
         Resource resource = group.getResource("logfile");
 
-        FileReader rdr = null;
-
-        // ip, login, username, time, method, url, protocol, status, bytes, referrer, user-agent
-        RegexpParser dlp = new RegexpParser("([^ ]*) ([^ ]*) ([^ ]*) \\[([^\\]]*)\\] \"([^ ]*) ([^ ]*) ([^\"]*)\" ([0-9]*) ([0-9-]*) \"([^\"]*)\" \"([^\"]*)\"");
-
-        // read a line at a time, parsing into an Object[] with a parser
-        int count = 0;
+        File file = (File) resource.accessResource();
+        LogAggregate aggregate;
         try {
-            count++;
-            File file = (File) resource.accessResource();
-            rdr = new FileReader(file);
-            BufferedReader bfr = new BufferedReader(rdr);
-            String line = null;
-            while( (line = bfr.readLine()) != null ) {
-                addToReport( dlp.parse(line) );
+            if(checkpoints == null) {
+                aggregate = aggregate(file, 0, file.length());
+            } else {
+                aggregate = tail(file);
             }
         } catch(IOException ioe) {
             ioe.printStackTrace();
+            aggregate = createAggregate();
+        }
+        return createResult(aggregate);
+    }
+
+    /**
+     * Fold the lines appended to the log since the last execution into
+     * the checkpointed aggregate. A line still being written is left
+     * for the next execution.
+     */
+    protected LogAggregate tail(File file) throws IOException {
+        File checkpointFile = new File(checkpoints, getName() + "-" + file.getName() + ".checkpoint");
+        // one execution at a time per checkpoint
+        synchronized(checkpointFile.getAbsolutePath().intern()) {
+            String settings = getSettings();
+            LogCheckpoint checkpoint = LogCheckpoint.load(checkpointFile);
+            if(checkpoint != null && !checkpoint.isFor(file, settings)) {
+                checkpoint = null;
+            }
+
+            long end = lastLineEnd(file);
+            LogAggregate aggregate;
+            if(checkpoint == null) {
+                aggregate = aggregate(file, 0, end);
+            } else if(checkpoint.matches(file)) {
+                aggregate = checkpoint.getAggregate();
+                if(end > checkpoint.getOffset()) {
+                    aggregate.merge( aggregate(file, checkpoint.getOffset(), end) );
+                }
+            } else {
+                // rotated or truncated, finish the old log if it is
+                // still about and carry on from the start of the new one
+                aggregate = checkpoint.getAggregate();
+                File rotated = new File(file.getPath() + ".1");
+                if(rotated.exists() && checkpoint.matches(rotated)) {
+                    aggregate.merge( aggregate(rotated, checkpoint.getOffset(), rotated.length()) );
+                }
+                aggregate.merge( aggregate(file, 0, end) );
+            }
+
+            if(!checkpoints.exists()) {
+                checkpoints.mkdirs();
+            }
+            new LogCheckpoint(file, settings, end, aggregate).store(checkpointFile);
+            return aggregate;
+        }
+    }
+
+    // the offset just past the last newline in the file
+    private static long lastLineEnd(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            long end = raf.length();
+            while(end > 0) {
+                int n = (int) Math.min(buffer.length, end);
+                raf.seek(end - n);
+                raf.readFully(buffer, 0, n);
+                for(int i=n - 1; i>=0; i--) {
+                    if(buffer[i] == '\n') {
+                        return end - n + i + 1;
+                    }
+                }
+                end -= n;
+            }
+            return 0;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Aggregate the lines which start between from and to, in parallel
+     * if that is more than a chunk.
+     */
+    protected LogAggregate aggregate(final File file, long from, long to) throws IOException {
+        int chunks = (int) Math.max(1, (to - from + chunkSize - 1) / chunkSize);
+        if(chunks == 1 || threads == 1) {
+            return aggregateChunk(file, from, to);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks));
+        try {
+            List futures = new ArrayList(chunks);
+            for(int i=0; i<chunks; i++) {
+                final long start = from + i * chunkSize;
+                final long end = (i == chunks - 1) ? to : start + chunkSize;
+                futures.add( pool.submit( new Callable() {
+                    public Object call() throws IOException {
+                        return aggregateChunk(file, start, end);
+                    }
+                } ) );
+            }
+            LogAggregate aggregate = null;
+            Iterator iterator = futures.iterator();
+            while(iterator.hasNext()) {
+                LogAggregate next = (LogAggregate) ((Future) iterator.next()).get();
+                if(aggregate == null) {
+                    aggregate = next;
+                } else {
+                    aggregate.merge(next);
+                }
+            }
+            return aggregate;
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted aggregating " + file);
+        } catch(ExecutionException ee) {
+            if(ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new RuntimeException(ee.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Aggregate the lines which start between start and end.
+     */
+    protected LogAggregate aggregateChunk(File file, long start, long end) throws IOException {
+        LogAggregate aggregate = createAggregate();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            long offset = 0;
+            if(start > 0) {
+                // the line running over start belongs to the chunk before
+                offset = start - 1;
+                in.getChannel().position(offset);
+            }
+            CombinedLogReader reader = new CombinedLogReader(in);
+            if(start > 0 && !reader.skipLine()) {
+                return aggregate;
+            }
+            LogLine line = new LogLine();
+            while( reader.next(line) && offset + reader.getLineStart() < end ) {
+                aggregate.add( line );
+            }
         } finally {
-            IOUtils.closeQuietly(rdr);
+            IOUtils.closeQuietly(in);
         }
+        return aggregate;
+    }
 
-        return executeReport();
+    /**
+     * The settings which change what the aggregate holds, so a
+     * checkpoint made with other settings is not merged into.
+     */
+    protected String getSettings() {
+        return "";
     }
 
-    public abstract void addToReport(String[] fields);
-    public abstract Result executeReport();
+    protected abstract LogAggregate createAggregate();
+    protected abstract Result createResult(LogAggregate aggregate);
 
     public Choice[] getParamChoices(Param param) {
         return null;
@@ -1,6 +1,7 @@
 package org.osjava.logview.reports;
 
 import org.osjava.reportrunner.*;
+import org.osjava.logview.text.LogLine;
 import java.util.*;
 
 public class HitsByResponseCodeLogReport extends ApacheLogReport {
@@ -47,28 +48,21 @@ public class HitsByResponseCodeLogReport extends ApacheLogReport {
         formattedMap.put("505", "Code 505 - HTTP Version not supported");
     }
 
-    Map map = new HashMap();
-
-    public void addToReport(String[] line) {
-        Integer count = (Integer) map.get(line[7]);
-        if(count == null) {
-            count = new Integer(1);
-            map.put( line[7], count );
-        } else {
-            map.put( line[7], new Integer( count.intValue() + 1) );
-        }
+    protected LogAggregate createAggregate() {
+        return new Counts();
     }
 
-    public Result executeReport() {
-        List codes = new ArrayList(map.size());
-        List counts = new ArrayList(map.size());
-        Iterator iterator = map.keySet().iterator();
-        while(iterator.hasNext()) {
-            String key = (String) iterator.next();
-            codes.add( format(key) );
-            counts.add( map.get(key) );
+    protected Result createResult(LogAggregate aggregate) {
+        int[] counts = ((Counts) aggregate).counts;
+        List codes = new ArrayList();
+        List totals = new ArrayList();
+        for(int i=0; i<counts.length; i++) {
+            if(counts[i] != 0) {
+                codes.add( format(String.valueOf(i)) );
+                totals.add( new Integer(counts[i]) );
+            }
         }
-        return new ArrayResult( new Object[] { codes.toArray(), counts.toArray() } );
+        return new ArrayResult( new Object[] { codes.toArray(), totals.toArray() } );
     }
 
     public String format(String key) {
@@ -79,4 +73,29 @@ public class HitsByResponseCodeLogReport extends ApacheLogReport {
             return formatted;
         }
     }
+
+    static class Counts implements LogAggregate {
+
+        private static final long serialVersionUID = 1L;
+
+        // counts indexed by status code; codes outside 0-999 are counted as 0
+        private int[] counts = new int[1000];
+
+        public void add(LogLine line) {
+            int code = line.getInt(LogLine.STATUS);
+            if(code >= counts.length) {
+                code = 0;
+            }
+            counts[code]++;
+        }
+
+        public void merge(LogAggregate next) {
+            int[] theirs = ((Counts) next).counts;
+            for(int i=0; i<counts.length; i++) {
+                counts[i] += theirs[i];
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,26 @@
+package org.osjava.logview.reports;
+
+import java.io.Serializable;
+
+import org.osjava.logview.text.LogLine;
+
+/**
+ * The partial result of a report over one chunk of a log. Chunks are
+ * aggregated in parallel and then merged in the order they appear in
+ * the log. Counts, byte totals, the lines shown and exact unique
+ * counts come out the same however the log was split. Visits do not:
+ * a visit running across a chunk, run or rotation boundary may be
+ * counted once too often or too few. HyperLogLog unique counts are
+ * estimates, typically within 1% of the exact count.
+ * Aggregates are serialized into the checkpoint of a tailing report.
+ */
+public interface LogAggregate extends Serializable {
+
+    void add(LogLine line);
+
+    /**
+     * Fold in the aggregate of the chunk which follows this one.
+     */
+    void merge(LogAggregate next);
+
+}
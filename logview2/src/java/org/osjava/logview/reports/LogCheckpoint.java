@@ -0,0 +1,138 @@
+package org.osjava.logview.reports;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * How far a tailing report has read a log, and the aggregate of
+ * everything read so far. The log is recognised by its file key, the
+ * device and inode on Unix, which a rename keeps and a new log does
+ * not have. A checksum of its first bytes also has to match, as a
+ * copytruncate rotation keeps the inode but starts the log again.
+ */
+class LogCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // bytes of the start of the log checksummed to recognise it
+    private static final int HEAD = 1024;
+
+    private String path;
+    private String settings;
+    // the file key's toString, as the key itself is not Serializable;
+    // null where the file system has none
+    private String fileKey;
+    private long offset;
+    private int headLength;
+    private long headChecksum;
+    private LogAggregate aggregate;
+
+    LogCheckpoint(File log, String settings, long offset, LogAggregate aggregate) throws IOException {
+        this.path = log.getAbsolutePath();
+        this.settings = settings;
+        this.fileKey = fileKey(log);
+        this.offset = offset;
+        this.headLength = (int) Math.min(HEAD, offset);
+        this.headChecksum = checksum(log, this.headLength);
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * Whether this checkpoint was made over the given log by a report
+     * with the same settings.
+     */
+    boolean isFor(File log, String settings) {
+        return this.path.equals(log.getAbsolutePath()) && this.settings.equals(settings);
+    }
+
+    /**
+     * Whether the file is the log this checkpoint was made on, still
+     * holding everything that was read from it.
+     */
+    boolean matches(File file) throws IOException {
+        if(this.fileKey != null && !this.fileKey.equals(fileKey(file))) {
+            return false;
+        }
+        return file.length() >= offset && checksum(file, headLength) == headChecksum;
+    }
+
+    long getOffset() {
+        return this.offset;
+    }
+
+    LogAggregate getAggregate() {
+        return this.aggregate;
+    }
+
+    /**
+     * @return null if there is no checkpoint, or it cannot be read
+     */
+    static LogCheckpoint load(File file) {
+        if(!file.exists()) {
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return (LogCheckpoint) in.readObject();
+        } catch(IOException ioe) {
+            return null;
+        } catch(ClassNotFoundException cnfe) {
+            return null;
+        } catch(ClassCastException cce) {
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Written beside the checkpoint and renamed over it, so a failed run
+     * leaves the previous checkpoint in place.
+     */
+    void store(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeObject(this);
+        } finally {
+            out.close();
+        }
+        if(!tmp.renameTo(file)) {
+            file.delete();
+            if(!tmp.renameTo(file)) {
+                throw new IOException("Unable to replace " + file);
+            }
+        }
+    }
+
+    private static String fileKey(File file) throws IOException {
+        Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        return (key == null) ? null : key.toString();
+    }
+
+    private static long checksum(File file, int length) throws IOException {
+        byte[] head = new byte[length];
+        InputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while(n < length) {
+                int read = in.read(head, n, length - n);
+                if(read == -1) {
+                    return -1;
+                }
+                n += read;
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(head);
+        return crc.getValue();
+    }
+
+}
@@ -1,23 +1,34 @@
 package org.osjava.logview.reports;
 
 import org.osjava.reportrunner.*;
+import org.osjava.logview.text.LogLine;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ShowLogReport extends ApacheLogReport {
 
-    private List list = new ArrayList();
-
-    public void addToReport(String[] line) {
-        list.add( line );
+    protected LogAggregate createAggregate() {
+        return new Lines();
     }
 
-    public Result executeReport() {
-        return new ArrayResult(getLines().toArray());
+    protected Result createResult(LogAggregate aggregate) {
+        return new ArrayResult( ((Lines) aggregate).list.toArray() );
     }
 
-    protected List getLines() {
-        return this.list;
+    static class Lines implements LogAggregate {
+
+        private static final long serialVersionUID = 1L;
+
+        private List list = new ArrayList();
+
+        public void add(LogLine line) {
+            list.add( line.toArray() );
+        }
+
+        public void merge(LogAggregate next) {
+            list.addAll( ((Lines) next).list );
+        }
+
     }
 
 }
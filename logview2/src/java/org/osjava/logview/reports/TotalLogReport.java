@@ -4,21 +4,20 @@ import java.io.*;
 import java.util.*;
 
 import org.osjava.reportrunner.*;
+import org.osjava.logview.stats.*;
 import org.osjava.logview.text.*;
 
-import org.apache.commons.lang.math.NumberUtils;
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
-
 // TODO: Rename to SummaryLogReport
 /**
- * Categorically NOT threadsafe. 
+ * Categorically NOT threadsafe. Each chunk of the log is counted into
+ * its own Totals, which are merged once every chunk is done.
  */
 public class TotalLogReport extends ApacheLogReport {
 
     public static long VISIT_INTERVAL = 30 * 60 * 1000;
-    
-    private static SimpleDateFormat fmt = new SimpleDateFormat("dd/MMM/yyyy:hh:mm:ss Z");
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long DAY = 24 * HOUR;
 
     private static Column[] columns = Column.createColumns( new String[] {
             "Hits",
@@ -44,181 +43,284 @@ public class TotalLogReport extends ApacheLogReport {
             "Max bytes per day",
         } );
 
-    // for unique counts
-    private Set siteSet = new HashSet();
-    private Set urlSet = new HashSet();
-    private Set referrerSet = new HashSet();
-    private Set userAgentSet = new HashSet();
+    // exact, or hll for HyperLogLog estimates in bounded memory
+    private boolean approximate = false;
 
-    // for counts/averages/maxes
-    private StatCounter hitsPerHour  = new StatCounter();
-    private StatCounter hitsPerDay   = new StatCounter();
-    private StatCounter filesPerDay  = new StatCounter();
-    private StatCounter pagesPerDay  = new StatCounter();
-    private StatCounter visitsPerDay = new StatCounter();
-    private StatCounter bytesPerDay  = new StatCounter();
+    public void setUniques(String uniques) {
+        this.approximate = "hll".equalsIgnoreCase(uniques);
+    }
 
-    private String lastDay = null;
-    private String lastHour = null;
+    protected String getSettings() {
+        return approximate ? "hll" : "exact";
+    }
 
-    // used to calculate visits
-    private Map visitMap = new HashMap();
+    protected LogAggregate createAggregate() {
+        return new Totals(approximate);
+    }
 
-    // ip, login, username, time, method, url, protocol, status, bytes, referrer, user-agent
-    public void addToReport(String[] line) {
+    protected Result createResult(LogAggregate aggregate) {
+        Totals totals = (Totals) aggregate;
+        return new ArrayResult( columns, new Object[] { new Object[] { 
+            new Long(totals.hitsPerDay.count()),
+            new Long(totals.filesPerDay.count()),
+            new Long(totals.pagesPerDay.count()),
+            new Long(totals.visitsPerDay.count()),
+            new Long(totals.bytesPerDay.count()),
+            new Long(totals.sites.count()),
+            new Long(totals.urls.count()),
+            new Long(totals.referrers.count()),
+            new Long(totals.userAgents.count()),
+            new Double(totals.hitsPerHour.average()),
+            new Double(totals.hitsPerDay.average()),
+            new Double(totals.filesPerDay.average()),
+            new Double(totals.pagesPerDay.average()),
+            new Double(totals.visitsPerDay.average()),
+            new Double(totals.bytesPerDay.average()),
+            new Long(totals.hitsPerHour.max()),
+            new Long(totals.hitsPerDay.max()),
+            new Long(totals.filesPerDay.max()),
+            new Long(totals.pagesPerDay.max()),
+            new Long(totals.visitsPerDay.max()),
+            new Long(totals.bytesPerDay.max()),
+        } } );
+    }
 
-        // BUG: fill in missing days/hours. Averages are off otherwise.
-        // Get timestamp in Date form
-        // look at lastDate, find hour difference or day difference
-        // and call endChunk that number of times
+    static class Totals implements LogAggregate {
+
+        private static final long serialVersionUID = 1L;
+
+        // check for idle visitors every so many page hits
+        private static final int SWEEP_INTERVAL = 10000;
+
+        // for unique counts
+        private UniqueCounter sites;
+        private UniqueCounter urls;
+        private UniqueCounter referrers;
+        private UniqueCounter userAgents;
+
+        // for counts/averages/maxes, bucketed by the server's local hour or day
+        private StatCounter hitsPerHour  = new StatCounter();
+        private StatCounter hitsPerDay   = new StatCounter();
+        private StatCounter filesPerDay  = new StatCounter();
+        private StatCounter pagesPerDay  = new StatCounter();
+        private StatCounter visitsPerDay = new StatCounter();
+        private StatCounter bytesPerDay  = new StatCounter();
+
+        // used to calculate visits, ip to a long[] holding the start of
+        // its first and of its latest visit in this chunk
+        private Map visitMap = new HashMap();
+        private int sinceSweep;
+
+        // the span of time seen in this chunk
+        private long firstTime = -1;
+        private long lastTime = -1;
+
+        Totals(boolean approximate) {
+            if(approximate) {
+                sites = new HyperLogLog();
+                urls = new HyperLogLog();
+                referrers = new HyperLogLog();
+                userAgents = new HyperLogLog();
+            } else {
+                sites = new ExactUniqueCounter();
+                urls = new ExactUniqueCounter();
+                referrers = new ExactUniqueCounter();
+                userAgents = new ExactUniqueCounter();
+            }
+        }
 
-        // uses temporary string hack :- fails when daylight saving happens
+        public void add(LogLine line) {
+
+            // the server's local time, so hours and days are the server's;
+            // lines without a time are put with the line before
+            long time = line.getLocalTime();
+            if(time == -1) {
+                time = lastTime;
+            } else {
+                if(firstTime == -1 || time < firstTime) {
+                    firstTime = time;
+                }
+                if(time > lastTime) {
+                    lastTime = time;
+                }
+            }
+            long hour = time / HOUR;
+            long day = time / DAY;
 
-        // chop minutes onwards off
-        String hour = line[3].substring(0, 13);
+            // hit occurred
+            hitsPerHour.add(hour, 1);
+            hitsPerDay.add(day, 1);
 
-        // chop hours onwards off
-        String day = line[3].substring(0, 10);
+            // file occurred
+            if(line.equals(LogLine.STATUS, "200")) {
+                filesPerDay.add(day, 1);
+            }
 
-        // check if it's a new hour
-        if(!hour.equals(lastHour)) {
-            lastHour = hour;
-            hitsPerHour.endChunk();
-        }
-        
-        // check if it's a new day
-        if(!day.equals(lastDay)) {
-            lastDay = day;
-            hitsPerDay.endChunk();
-            filesPerDay.endChunk();
-            pagesPerDay.endChunk();
-            visitsPerDay.endChunk();
-            bytesPerDay.endChunk();
-        }
+            // page occurred
+            // TODO: Needs to improve to strip off the query parameters
+            // TODO: Consider having "/$" be a page
+            if( line.endsWith(LogLine.URL, ".html") ||
+                line.endsWith(LogLine.URL, ".htm") ||
+                line.endsWith(LogLine.URL, ".cgi") )
+            {
+                pagesPerDay.add(day, 1);
 
-        // hit occurred
-        hitsPerHour.add(1);
-        hitsPerDay.add(1);
+                if(time != -1) {
+                    visit(line.getString(LogLine.IP), time);
+                }
+            }
+
+            // bytes occurred
+            bytesPerDay.add(day, line.getInt(LogLine.BYTES));
 
-        // file occurred
-        if("200".equals(line[7])) {
-            filesPerDay.add(1);
+            sites.add(line, LogLine.IP);
+            urls.add(line, LogLine.URL);
+            referrers.add(line, LogLine.REFERRER);
+            userAgents.add(line, LogLine.USER_AGENT);
         }
 
-        // page occurred
-        // TODO: Needs to improve to strip off the query parameters
-        // TODO: Consider having "/$" be a page
-        if( line[5].endsWith(".html") ||
-            line[5].endsWith(".htm") ||
-            line[5].endsWith(".cgi") )
-        {
-            pagesPerDay.add(1);
-
-            Date lastHit = (Date) visitMap.get(line[0]);
-            Date thisHit = convert(line[3]);
+        private void visit(String ip, long time) {
+            long[] starts = (long[]) visitMap.get(ip);
             // visit occurred
-            if(lastHit == null ||
-               thisHit.getTime() - lastHit.getTime() > VISIT_INTERVAL)
-            {
-                visitsPerDay.add(1);
-                visitMap.put(line[0], thisHit);
+            if(starts == null) {
+                visitsPerDay.add(time / DAY, 1);
+                visitMap.put(ip, new long[] { time, time });
+            } else if(time - starts[1] > VISIT_INTERVAL) {
+                visitsPerDay.add(time / DAY, 1);
+                starts[1] = time;
+            }
+            if(++sinceSweep == SWEEP_INTERVAL) {
+                sweep();
             }
         }
 
-        // bytes occurred
-        bytesPerDay.add( NumberUtils.stringToInt(line[8]) );
-
-        siteSet.add(line[0]);
-        urlSet.add(line[5]);
-        referrerSet.add(line[9]);
-        userAgentSet.add(line[10]);
-    }
-
-    public Result executeReport() {
-        hitsPerHour.endChunk();
-        hitsPerDay.endChunk();
-        filesPerDay.endChunk();
-        pagesPerDay.endChunk();
-        visitsPerDay.endChunk();
-        bytesPerDay.endChunk();
+        // Forget visitors who can no longer matter: their first visit is
+        // too late to continue one from the chunk before, and their latest
+        // too early to be continued by a hit now or in the chunk after.
+        // This keeps memory to the visitors of the last half hour, rather
+        // than every visitor in the log.
+        private void sweep() {
+            Iterator iterator = visitMap.values().iterator();
+            while(iterator.hasNext()) {
+                long[] starts = (long[]) iterator.next();
+                if(starts[0] > firstTime + VISIT_INTERVAL &&
+                   starts[1] < lastTime - VISIT_INTERVAL)
+                {
+                    iterator.remove();
+                }
+            }
+            sinceSweep = 0;
+        }
 
-        return new ArrayResult( columns, new Object[] { new Object[] { 
-            new Integer(hitsPerDay.count()),
-            new Integer(filesPerDay.count()),
-            new Integer(pagesPerDay.count()),
-            new Integer(visitsPerDay.count()),
-            new Integer(bytesPerDay.count()),
-            new Integer(siteSet.size()),
-            new Integer(urlSet.size()),
-            new Integer(referrerSet.size()),
-            new Integer(userAgentSet.size()),
-            new Double(hitsPerHour.average()),
-            new Double(hitsPerDay.average()),
-            new Double(filesPerDay.average()),
-            new Double(pagesPerDay.average()),
-            new Double(visitsPerDay.average()),
-            new Double(bytesPerDay.average()),
-            new Integer(hitsPerHour.max()),
-            new Integer(hitsPerDay.max()),
-            new Integer(filesPerDay.max()),
-            new Integer(pagesPerDay.max()),
-            new Integer(visitsPerDay.max()),
-            new Integer(bytesPerDay.max()),
-        } } );
-    }
+        public void merge(LogAggregate aggregate) {
+            Totals next = (Totals) aggregate;
+
+            sites.merge(next.sites);
+            urls.merge(next.urls);
+            referrers.merge(next.referrers);
+            userAgents.merge(next.userAgents);
+
+            hitsPerHour.merge(next.hitsPerHour);
+            hitsPerDay.merge(next.hitsPerDay);
+            filesPerDay.merge(next.filesPerDay);
+            pagesPerDay.merge(next.pagesPerDay);
+            visitsPerDay.merge(next.visitsPerDay);
+            bytesPerDay.merge(next.bytesPerDay);
+
+            Iterator iterator = next.visitMap.entrySet().iterator();
+            while(iterator.hasNext()) {
+                Map.Entry entry = (Map.Entry) iterator.next();
+                long[] theirs = (long[]) entry.getValue();
+                long[] starts = (long[]) visitMap.get(entry.getKey());
+                if(starts == null) {
+                    visitMap.put(entry.getKey(), theirs);
+                } else if(theirs[0] - starts[1] <= VISIT_INTERVAL) {
+                    // the first visit of the next chunk continues our
+                    // latest, so it was counted twice
+                    visitsPerDay.add(theirs[0] / DAY, -1);
+                    if(theirs[1] != theirs[0]) {
+                        starts[1] = theirs[1];
+                    }
+                } else {
+                    starts[1] = theirs[1];
+                }
+            }
 
-    private static Date convert(String dateStr) {
-        try {
-            // 07/Mar/2005:23:36:01 -0500
-            return fmt.parse(dateStr);
-        } catch(ParseException pe) {
-            pe.printStackTrace();
-            return null;
+            if(firstTime == -1 || (next.firstTime != -1 && next.firstTime < firstTime)) {
+                firstTime = next.firstTime;
+            }
+            if(next.lastTime > lastTime) {
+                lastTime = next.lastTime;
+            }
+            sweep();
         }
+
     }
 
 }
 
-class StatCounter {
+/**
+ * Totals of a value per bucket, such as an hour or a day, giving the
+ * average and maximum bucket. Counters over different parts of a log
+ * merge by adding the buckets they share.
+ */
+class StatCounter implements Serializable {
 
-    // the total of the current chunk
-    private int runningTotal;
+    private static final long serialVersionUID = 1L;
 
-    // the total of all chunks so far
-    private int chunksTotal;
+    // bucket number to a long[] holding the bucket's total
+    private Map buckets = new HashMap();
 
-    // the number of chunks so far
-    private int chunkCount;
+    // the total of all buckets
+    private long total;
 
-    // the current max chunked value
-    private int max;
+    // the last bucket added to, as lines mostly share a bucket
+    private transient long lastBucket;
+    private transient long[] lastTotal;
 
-    public void add(int value) {
-        runningTotal += value;
+    public void add(long bucket, long value) {
+        if(lastTotal == null || bucket != lastBucket) {
+            Long key = new Long(bucket);
+            lastTotal = (long[]) buckets.get(key);
+            if(lastTotal == null) {
+                lastTotal = new long[1];
+                buckets.put(key, lastTotal);
+            }
+            lastBucket = bucket;
+        }
+        lastTotal[0] += value;
+        total += value;
     }
 
-    public void endChunk() {
-        if(runningTotal > max) {
-            max = runningTotal;
+    public void merge(StatCounter other) {
+        Iterator iterator = other.buckets.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry entry = (Map.Entry) iterator.next();
+            add( ((Long) entry.getKey()).longValue(), ((long[]) entry.getValue())[0] );
         }
-        chunksTotal += runningTotal;
-        chunkCount++;
-        runningTotal = 0;
     }
 
-    public int count() {
-        return chunksTotal;
+    public long count() {
+        return total;
     }
 
-    public int max() {
+    public long max() {
+        long max = 0;
+        Iterator iterator = buckets.values().iterator();
+        while(iterator.hasNext()) {
+            long value = ((long[]) iterator.next())[0];
+            if(value > max) {
+                max = value;
+            }
+        }
         return max;
     }
 
     public double average() {
-        if(chunkCount == 0) {
+        if(buckets.isEmpty()) {
             return 0;
         }
-        return round( ( (double) chunksTotal ) / ( (double) chunkCount ), 2);
+        return round( ( (double) total ) / ( (double) buckets.size() ), 2);
     }
 
     private double round(double value, int precision) {
@@ -0,0 +1,30 @@
+package org.osjava.logview.stats;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.osjava.logview.text.LogLine;
+
+/**
+ * Counts distinct values exactly by keeping them all, so memory grows
+ * with the number of distinct values.
+ */
+public class ExactUniqueCounter implements UniqueCounter {
+
+    private static final long serialVersionUID = 1L;
+
+    private Set values = new HashSet();
+
+    public void add(LogLine line, int field) {
+        values.add(line.getString(field));
+    }
+
+    public void merge(UniqueCounter other) {
+        values.addAll( ((ExactUniqueCounter) other).values );
+    }
+
+    public long count() {
+        return values.size();
+    }
+
+}
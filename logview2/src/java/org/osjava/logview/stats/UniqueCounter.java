@@ -0,0 +1,19 @@
+package org.osjava.logview.stats;
+
+import java.io.Serializable;
+
+import org.osjava.logview.text.LogLine;
+
+/**
+ * Counts the distinct values of a log field. Counters of the same kind
+ * built over different parts of a log can be merged.
+ */
+public interface UniqueCounter extends Serializable {
+
+    void add(LogLine line, int field);
+
+    void merge(UniqueCounter other);
+
+    long count();
+
+}
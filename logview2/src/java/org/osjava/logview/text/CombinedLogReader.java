@@ -0,0 +1,154 @@
+package org.osjava.logview.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a combined format log a line at a time into a reusable LogLine.
+ * Lines are split by CombinedLogTokenizer straight out of the read
+ * buffer; lines it cannot split are given to a RegexpParser, and lines
+ * neither can parse are skipped and counted. Bytes are read as
+ * ISO-8859-1, see LogLine.
+ */
+public class CombinedLogReader {
+
+    // ip, login, username, time, method, url, protocol, status, bytes, referrer, user-agent
+    public static final String PATTERN = "([^ ]*) ([^ ]*) ([^ ]*) \\[([^\\]]*)\\] \"([^ ]*) ([^ ]*) ([^\"]*)\" ([0-9]*) ([0-9-]*) \"([^\"]*)\" \"([^\"]*)\"";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private InputStream in;
+    private RegexpParser fallback;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private long bytesRead;
+    private long lineStart;
+    private int skipped;
+
+    public CombinedLogReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return false when there are no more lines
+     */
+    public boolean next(LogLine line) throws IOException {
+        while(true) {
+            int nl = -1;
+            for(int i=pos; i<limit; i++) {
+                if(buffer[i] == '\n') {
+                    nl = i;
+                    break;
+                }
+            }
+            int start = pos;
+            int end;
+            if(nl != -1) {
+                end = nl;
+                pos = nl + 1;
+            } else if(!eof) {
+                fill();
+                continue;
+            } else if(pos < limit) {
+                // last line has no newline
+                end = limit;
+                pos = limit;
+            } else {
+                return false;
+            }
+            if(end > start && buffer[end - 1] == '\r') {
+                end--;
+            }
+            if(end == start) {
+                continue;
+            }
+            lineStart = bytesRead - limit + start;
+            if(CombinedLogTokenizer.tokenize(buffer, start, end, line)) {
+                return true;
+            }
+            if(fallback == null) {
+                fallback = new RegexpParser(PATTERN);
+            }
+            String[] values = fallback.parse(new String(buffer, start, end - start, LogLine.CHARSET));
+            if(values != null) {
+                line.setValues(values);
+                return true;
+            }
+            skipped++;
+        }
+    }
+
+    /**
+     * Discard everything up to and including the next newline, to start
+     * reading at a line boundary from the middle of a file.
+     *
+     * @return false if there is no newline
+     */
+    public boolean skipLine() throws IOException {
+        while(true) {
+            for(int i=pos; i<limit; i++) {
+                if(buffer[i] == '\n') {
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            pos = limit;
+            if(eof) {
+                return false;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * The offset, from where this reader started, of the start of the
+     * last line read.
+     */
+    public long getLineStart() {
+        return this.lineStart;
+    }
+
+    /**
+     * The number of lines which could not be parsed.
+     */
+    public int getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * The number of bytes consumed, up to the end of the last line read.
+     */
+    public long getPosition() {
+        return bytesRead - (limit - pos);
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void fill() throws IOException {
+        if(pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if(limit == buffer.length) {
+            // a line longer than the buffer
+            byte[] bigger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, bigger, 0, limit);
+            buffer = bigger;
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if(n == -1) {
+            eof = true;
+        } else {
+            limit += n;
+            bytesRead += n;
+        }
+    }
+
+}
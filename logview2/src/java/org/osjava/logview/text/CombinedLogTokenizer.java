@@ -0,0 +1,90 @@
+package org.osjava.logview.text;
+
+/**
+ * Splits a line of a combined format log into fields without copying
+ * it, by recording where each field starts and ends:
+ * <pre>
+ * ip login username [time] "method url protocol" status bytes "referrer" "user-agent"
+ * </pre>
+ */
+public class CombinedLogTokenizer {
+
+    /**
+     * @return false if the line is not in combined log format
+     */
+    public static boolean tokenize(byte[] buf, int start, int end, LogLine line) {
+        line.setBuffer(buf);
+        int p = start;
+        int q;
+
+        q = indexOf(buf, p, end, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.IP, p, q);
+        p = q + 1;
+
+        q = indexOf(buf, p, end, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.LOGIN, p, q);
+        p = q + 1;
+
+        q = indexOf(buf, p, end, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.USERNAME, p, q);
+        p = q + 1;
+
+        if(p >= end || buf[p] != '[') return false;
+        q = indexOf(buf, p + 1, end, (byte) ']');
+        if(q == -1) return false;
+        line.setField(LogLine.TIME, p + 1, q);
+        p = q + 1;
+
+        if(p + 1 >= end || buf[p] != ' ' || buf[p + 1] != '"') return false;
+        p += 2;
+        int close = indexOf(buf, p, end, (byte) '"');
+        if(close == -1) return false;
+        q = indexOf(buf, p, close, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.METHOD, p, q);
+        p = q + 1;
+        q = indexOf(buf, p, close, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.URL, p, q);
+        line.setField(LogLine.PROTOCOL, q + 1, close);
+        p = close + 1;
+
+        if(p >= end || buf[p] != ' ') return false;
+        p++;
+        q = indexOf(buf, p, end, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.STATUS, p, q);
+        p = q + 1;
+
+        q = indexOf(buf, p, end, (byte) ' ');
+        if(q == -1) return false;
+        line.setField(LogLine.BYTES, p, q);
+        p = q + 1;
+
+        if(p >= end || buf[p] != '"') return false;
+        q = indexOf(buf, p + 1, end, (byte) '"');
+        if(q == -1) return false;
+        line.setField(LogLine.REFERRER, p + 1, q);
+        p = q + 1;
+
+        if(p + 1 >= end || buf[p] != ' ' || buf[p + 1] != '"') return false;
+        p += 2;
+        q = indexOf(buf, p, end, (byte) '"');
+        if(q == -1) return false;
+        line.setField(LogLine.USER_AGENT, p, q);
+        return true;
+    }
+
+    private static int indexOf(byte[] buf, int start, int end, byte b) {
+        for(int i=start; i<end; i++) {
+            if(buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
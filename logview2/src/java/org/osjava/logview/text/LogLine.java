@@ -0,0 +1,195 @@
+package org.osjava.logview.text;
+
+import java.nio.charset.Charset;
+
+/**
+ * One line of a combined format log, held as offsets into the buffer
+ * it was read into. Strings are only created when a report asks for
+ * them. A LogLine is reused for every line, so reports must copy
+ * anything they keep.
+ *
+ * Bytes are decoded as ISO-8859-1, a char per byte, as the comparisons
+ * here assume. Apache escapes anything outside ASCII in what it logs,
+ * so this loses nothing and does not depend on the platform charset.
+ */
+public class LogLine {
+
+    static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    // ip, login, username, time, method, url, protocol, status, bytes, referrer, user-agent
+    public static final int IP = 0;
+    public static final int LOGIN = 1;
+    public static final int USERNAME = 2;
+    public static final int TIME = 3;
+    public static final int METHOD = 4;
+    public static final int URL = 5;
+    public static final int PROTOCOL = 6;
+    public static final int STATUS = 7;
+    public static final int BYTES = 8;
+    public static final int REFERRER = 9;
+    public static final int USER_AGENT = 10;
+
+    public static final int FIELDS = 11;
+
+    private byte[] buffer;
+    private int[] start = new int[FIELDS];
+    private int[] end = new int[FIELDS];
+
+    // set instead of the offsets when the line came from RegexpParser
+    private String[] values;
+
+    private LogTimestamp timestamp;
+
+    public LogLine() {
+        this(new LogTimestamp());
+    }
+
+    public LogLine(LogTimestamp timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    void setBuffer(byte[] buffer) {
+        this.buffer = buffer;
+        this.values = null;
+    }
+
+    void setField(int field, int start, int end) {
+        this.start[field] = start;
+        this.end[field] = end;
+    }
+
+    void setValues(String[] values) {
+        this.values = values;
+    }
+
+    public int length(int field) {
+        if(values != null) {
+            return values[field].length();
+        }
+        return end[field] - start[field];
+    }
+
+    public String getString(int field) {
+        if(values != null) {
+            return values[field];
+        }
+        return new String(buffer, start[field], end[field] - start[field], CHARSET);
+    }
+
+    public boolean equals(int field, String str) {
+        if(values != null) {
+            return str.equals(values[field]);
+        }
+        int len = end[field] - start[field];
+        if(len != str.length()) {
+            return false;
+        }
+        int off = start[field];
+        for(int i=0; i<len; i++) {
+            if( (buffer[off + i] & 0xff) != str.charAt(i) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean endsWith(int field, String str) {
+        if(values != null) {
+            return values[field].endsWith(str);
+        }
+        int len = str.length();
+        if(end[field] - start[field] < len) {
+            return false;
+        }
+        int off = end[field] - len;
+        for(int i=0; i<len; i++) {
+            if( (buffer[off + i] & 0xff) != str.charAt(i) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The field as a non-negative int, 0 if it is not a number, such as
+     * the '-' logged for a response with no body.
+     */
+    public int getInt(int field) {
+        if(values != null) {
+            try {
+                return Integer.parseInt(values[field]);
+            } catch(NumberFormatException nfe) {
+                return 0;
+            }
+        }
+        int value = 0;
+        for(int i=start[field]; i<end[field]; i++) {
+            int digit = buffer[i] - '0';
+            if(digit < 0 || digit > 9) {
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * The time of the request in milliseconds since the epoch, or -1 if
+     * the timestamp cannot be parsed.
+     */
+    public long getTime() {
+        if(values != null) {
+            return timestamp.parse(values[TIME]);
+        }
+        return timestamp.parse(buffer, start[TIME], end[TIME]);
+    }
+
+    /**
+     * The time of the request in milliseconds since the epoch, in the
+     * timezone of the server which logged it. Dividing by an hour or a
+     * day gives the hour or day the server thought it was.
+     */
+    public long getLocalTime() {
+        long time = getTime();
+        if(time == -1) {
+            return -1;
+        }
+        return time + timestamp.getOffset();
+    }
+
+    /**
+     * A 64 bit hash of the field, for sketches which count distinct
+     * values without keeping them.
+     */
+    public long hash(int field) {
+        long h = 0xcbf29ce484222325L;
+        if(values != null) {
+            String str = values[field];
+            for(int i=0; i<str.length(); i++) {
+                h ^= str.charAt(i) & 0xff;
+                h *= 0x100000001b3L;
+            }
+        } else {
+            for(int i=start[field]; i<end[field]; i++) {
+                h ^= buffer[i] & 0xff;
+                h *= 0x100000001b3L;
+            }
+        }
+        // FNV-1a mixes the low bits poorly, finish as murmur3 does
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public String[] toArray() {
+        String[] array = new String[FIELDS];
+        for(int i=0; i<FIELDS; i++) {
+            array[i] = getString(i);
+        }
+        return array;
+    }
+
+}
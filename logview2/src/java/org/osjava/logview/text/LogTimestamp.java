@@ -0,0 +1,160 @@
+package org.osjava.logview.text;
+
+/**
+ * Parses the timestamps of a common or combined format log,
+ * 07/Mar/2005:23:36:01 -0500, into milliseconds since the epoch.
+ * Consecutive lines mostly share their timestamp, and nearly always
+ * their day, so the last second and the last day are cached.
+ * Categorically NOT threadsafe, use one per thread.
+ */
+public class LogTimestamp {
+
+    private static final int LENGTH = 26;
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private byte[] last = new byte[LENGTH];
+    private boolean cached = false;
+    private long lastTime;
+    private long lastOffset;
+    private long lastDay;
+
+    private byte[] scratch = new byte[LENGTH];
+
+    public long parse(String str) {
+        if(str == null || str.length() != LENGTH) {
+            return -1;
+        }
+        for(int i=0; i<LENGTH; i++) {
+            scratch[i] = (byte) str.charAt(i);
+        }
+        return parse(scratch, 0, LENGTH);
+    }
+
+    public long parse(byte[] buf, int start, int end) {
+        if(end - start != LENGTH) {
+            return -1;
+        }
+        if(cached) {
+            int i = 0;
+            while(i < LENGTH && buf[start + i] == last[i]) {
+                i++;
+            }
+            if(i == LENGTH) {
+                return lastTime;
+            }
+            // same day and zone, only the time has moved on
+            if(i >= 12 && sameZone(buf, start)) {
+                long time = parseTime(buf, start);
+                if(time != -1) {
+                    return remember(buf, start, lastDay + time - lastOffset, lastOffset, lastDay);
+                }
+                return -1;
+            }
+        }
+
+        // dd/MMM/yyyy:HH:mm:ss +hhmm
+        // 01234567890123456789012345
+        int day = digits(buf, start, 2);
+        int month = month(buf, start + 3);
+        int year = digits(buf, start + 7, 4);
+        long time = parseTime(buf, start);
+        int zh = digits(buf, start + 22, 2);
+        int zm = digits(buf, start + 24, 2);
+        byte sign = buf[start + 21];
+        if(day < 1 || month < 1 || year < 0 || time == -1 || zh < 0 || zm < 0 ||
+           buf[start + 2] != '/' || buf[start + 6] != '/' || buf[start + 11] != ':' ||
+           buf[start + 20] != ' ' || (sign != '+' && sign != '-'))
+        {
+            return -1;
+        }
+        long offset = zh * HOUR + zm * MINUTE;
+        if(sign == '-') {
+            offset = -offset;
+        }
+        long dayMillis = daysFromCivil(year, month, day) * DAY;
+        return remember(buf, start, dayMillis + time - offset, offset, dayMillis);
+    }
+
+    /**
+     * The timezone offset, in milliseconds, of the last timestamp parsed.
+     */
+    public long getOffset() {
+        return lastOffset;
+    }
+
+    private long remember(byte[] buf, int start, long time, long offset, long day) {
+        System.arraycopy(buf, start, last, 0, LENGTH);
+        cached = true;
+        lastTime = time;
+        lastOffset = offset;
+        lastDay = day;
+        return time;
+    }
+
+    private boolean sameZone(byte[] buf, int start) {
+        for(int i=20; i<LENGTH; i++) {
+            if(buf[start + i] != last[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseTime(byte[] buf, int start) {
+        int h = digits(buf, start + 12, 2);
+        int m = digits(buf, start + 15, 2);
+        int s = digits(buf, start + 18, 2);
+        if(h < 0 || m < 0 || s < 0 || buf[start + 14] != ':' || buf[start + 17] != ':') {
+            return -1;
+        }
+        return h * HOUR + m * MINUTE + s * SECOND;
+    }
+
+    private static int digits(byte[] buf, int start, int len) {
+        int value = 0;
+        for(int i=start; i<start + len; i++) {
+            int digit = buf[i] - '0';
+            if(digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int month(byte[] buf, int start) {
+        int key = ( (buf[start] & 0xff) << 16 ) | ( (buf[start + 1] & 0xff) << 8 ) | (buf[start + 2] & 0xff);
+        switch(key) {
+            case ('J' << 16) | ('a' << 8) | 'n': return 1;
+            case ('F' << 16) | ('e' << 8) | 'b': return 2;
+            case ('M' << 16) | ('a' << 8) | 'r': return 3;
+            case ('A' << 16) | ('p' << 8) | 'r': return 4;
+            case ('M' << 16) | ('a' << 8) | 'y': return 5;
+            case ('J' << 16) | ('u' << 8) | 'n': return 6;
+            case ('J' << 16) | ('u' << 8) | 'l': return 7;
+            case ('A' << 16) | ('u' << 8) | 'g': return 8;
+            case ('S' << 16) | ('e' << 8) | 'p': return 9;
+            case ('O' << 16) | ('c' << 8) | 't': return 10;
+            case ('N' << 16) | ('o' << 8) | 'v': return 11;
+            case ('D' << 16) | ('e' << 8) | 'c': return 12;
+            default: return -1;
+        }
+    }
+
+    // days since 1970-01-01 of a proleptic gregorian date
+    private static long daysFromCivil(int y, int m, int d) {
+        if(m <= 2) {
+            y--;
+        }
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+}
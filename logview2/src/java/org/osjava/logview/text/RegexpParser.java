@@ -4,16 +4,20 @@ import java.util.regex.*;
 
 public class RegexpParser {
 
-    private String re;
+    private Pattern pattern;
 
     public RegexpParser(String re) {
-        this.re = re;
+        this.pattern = Pattern.compile(re);
     }
 
+    /**
+     * @return the groups of the pattern, or null if the line does not match
+     */
     public String[] parse(String line) {
-        Pattern pattern = Pattern.compile(this.re);
-        Matcher matcher = pattern.matcher(line);
-        matcher.matches();
+        Matcher matcher = this.pattern.matcher(line);
+        if(!matcher.matches()) {
+            return null;
+        }
         int sz = matcher.groupCount();
         String[] values = new String[sz];
         for(int i=1; i<=sz; i++) {
@@ -0,0 +1,115 @@
+package org.osjava.logview.text;
+
+import junit.framework.TestCase;
+
+public class CombinedLogTokenizerTest extends TestCase {
+
+    private static final String LINE = 
+        "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326 " +
+        "\"http://www.example.com/start.html\" \"Mozilla/4.08 [en] (Win98; I ;Nav)\"";
+
+    private LogLine line;
+
+    public CombinedLogTokenizerTest(String name) {
+        super(name);
+    }
+
+    public void setUp() {
+        this.line = new LogLine();
+    }
+
+    private boolean tokenize(String str) {
+        byte[] buf = str.getBytes(LogLine.CHARSET);
+        return CombinedLogTokenizer.tokenize(buf, 0, buf.length, this.line);
+    }
+
+    public void testFields() {
+        assertTrue(tokenize(LINE));
+        assertEquals("127.0.0.1", this.line.getString(LogLine.IP));
+        assertEquals("-", this.line.getString(LogLine.LOGIN));
+        assertEquals("frank", this.line.getString(LogLine.USERNAME));
+        assertEquals("10/Oct/2000:13:55:36 -0700", this.line.getString(LogLine.TIME));
+        assertEquals("GET", this.line.getString(LogLine.METHOD));
+        assertEquals("/apache_pb.gif", this.line.getString(LogLine.URL));
+        assertEquals("HTTP/1.0", this.line.getString(LogLine.PROTOCOL));
+        assertEquals("200", this.line.getString(LogLine.STATUS));
+        assertEquals(2326, this.line.getInt(LogLine.BYTES));
+        assertEquals("http://www.example.com/start.html", this.line.getString(LogLine.REFERRER));
+        assertEquals("Mozilla/4.08 [en] (Win98; I ;Nav)", this.line.getString(LogLine.USER_AGENT));
+        assertEquals(971211336000L, this.line.getTime());
+    }
+
+    public void testWithinBuffer() {
+        byte[] buf = ("junk\n" + LINE + "\nmore").getBytes(LogLine.CHARSET);
+        assertTrue(CombinedLogTokenizer.tokenize(buf, 5, 5 + LINE.length(), this.line));
+        assertEquals("127.0.0.1", this.line.getString(LogLine.IP));
+        assertEquals("Mozilla/4.08 [en] (Win98; I ;Nav)", this.line.getString(LogLine.USER_AGENT));
+    }
+
+    public void testEmptyQuotedFields() {
+        assertTrue(tokenize("10.0.0.1 - - [10/Oct/2000:13:55:36 +0000] \"GET / HTTP/1.1\" 304 - \"-\" \"\""));
+        assertEquals("-", this.line.getString(LogLine.USERNAME));
+        assertEquals("/", this.line.getString(LogLine.URL));
+        assertEquals(0, this.line.getInt(LogLine.BYTES));
+        assertEquals("-", this.line.getString(LogLine.REFERRER));
+        assertEquals("", this.line.getString(LogLine.USER_AGENT));
+        assertEquals(0, this.line.length(LogLine.USER_AGENT));
+    }
+
+    public void testSpacesInQuotedFields() {
+        assertTrue(tokenize("10.0.0.1 - - [10/Oct/2000:13:55:36 +0000] \"GET /search?q=a+b HTTP/1.1\" 200 10 " +
+                            "\"http://example.com/a page\" \"Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101\""));
+        assertEquals("/search?q=a+b", this.line.getString(LogLine.URL));
+        assertEquals("http://example.com/a page", this.line.getString(LogLine.REFERRER));
+        assertEquals("Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101", this.line.getString(LogLine.USER_AGENT));
+    }
+
+    public void testQuotesClose() {
+        // the user-agent ends at its closing quote, whatever follows
+        assertTrue(tokenize(LINE + " trailing"));
+        assertEquals("Mozilla/4.08 [en] (Win98; I ;Nav)", this.line.getString(LogLine.USER_AGENT));
+    }
+
+    public void testCommonFormat() {
+        // no referrer or user-agent
+        assertFalse(tokenize("127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326"));
+    }
+
+    public void testMalformed() {
+        assertFalse(tokenize(""));
+        assertFalse(tokenize("127.0.0.1"));
+        assertFalse(tokenize("127.0.0.1 - frank"));
+        // no brackets around the time
+        assertFalse(tokenize("127.0.0.1 - frank 10/Oct/2000:13:55:36 \"GET / HTTP/1.0\" 200 1 \"-\" \"-\""));
+        // unclosed time
+        assertFalse(tokenize("127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700 \"GET / HTTP/1.0\" 200 1 \"-\" \"-\""));
+        // unquoted request
+        assertFalse(tokenize("127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] GET / HTTP/1.0 200 1 \"-\" \"-\""));
+        // unclosed request
+        assertFalse(tokenize("127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0"));
+        // request with no url, as logged for a client that sends nothing
+        assertFalse(tokenize("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"-\" 408 - \"-\" \"-\""));
+        // request with no protocol
+        assertFalse(tokenize("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /\" 200 1 \"-\" \"-\""));
+        // nothing between the request and the referrer
+        assertFalse(tokenize("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0\"\"-\" \"-\""));
+        // unquoted referrer
+        assertFalse(tokenize("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0\" 200 1 - \"-\""));
+        // unclosed user-agent
+        assertFalse(tokenize("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0\" 200 1 \"-\" \"Mozilla"));
+        // no space between referrer and user-agent
+        assertFalse(tokenize("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0\" 200 1 \"-\"\"-\""));
+    }
+
+    public void testReuse() {
+        assertTrue(tokenize(LINE));
+        assertFalse(tokenize("garbage"));
+        assertTrue(tokenize("10.0.0.2 - - [11/Oct/2000:13:55:36 -0700] \"POST /form HTTP/1.1\" 500 - \"-\" \"curl\""));
+        assertEquals("10.0.0.2", this.line.getString(LogLine.IP));
+        assertEquals("POST", this.line.getString(LogLine.METHOD));
+        assertEquals("500", this.line.getString(LogLine.STATUS));
+        assertEquals("curl", this.line.getString(LogLine.USER_AGENT));
+        assertEquals(971211336000L + 24 * 60 * 60 * 1000, this.line.getTime());
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.osjava.logview.text;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class LogTimestampTest extends TestCase {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private LogTimestamp timestamp;
+
+    public LogTimestampTest(String name) {
+        super(name);
+    }
+
+    public void setUp() {
+        this.timestamp = new LogTimestamp();
+    }
+
+    private static long millis(String zone, int year, int month, int day, int hour, int minute, int second) {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(zone));
+        cal.clear();
+        cal.set(year, month - 1, day, hour, minute, second);
+        return cal.getTime().getTime();
+    }
+
+    // checked against a LogTimestamp with nothing cached
+    private long fresh(String str) {
+        return new LogTimestamp().parse(str);
+    }
+
+    public void testUtc() {
+        assertEquals(millis("GMT", 2005, 3, 7, 23, 36, 1), this.timestamp.parse("07/Mar/2005:23:36:01 +0000"));
+        assertEquals(0, this.timestamp.getOffset());
+        assertEquals(0, this.timestamp.parse("01/Jan/1970:00:00:00 +0000"));
+    }
+
+    public void testNegativeOffset() {
+        assertEquals(millis("GMT-05:00", 2005, 3, 7, 23, 36, 1), this.timestamp.parse("07/Mar/2005:23:36:01 -0500"));
+        assertEquals(-5 * HOUR, this.timestamp.getOffset());
+    }
+
+    public void testPositiveOffset() {
+        assertEquals(millis("GMT+05:30", 2005, 3, 8, 4, 6, 1), this.timestamp.parse("08/Mar/2005:04:06:01 +0530"));
+        assertEquals(5 * HOUR + 30 * 60 * 1000, this.timestamp.getOffset());
+        // the same instant as 07/Mar/2005:22:36:01 +0000
+        assertEquals(millis("GMT", 2005, 3, 7, 22, 36, 1), this.timestamp.parse("08/Mar/2005:04:06:01 +0530"));
+    }
+
+    public void testEveryMonth() {
+        String[] months = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+        for(int i=0; i<months.length; i++) {
+            assertEquals(months[i], millis("GMT", 2004, i + 1, 29, 12, 0, 0), this.timestamp.parse("29/"+months[i]+"/2004:12:00:00 +0000"));
+        }
+    }
+
+    public void testLeapDay() {
+        assertEquals(millis("GMT", 2004, 2, 29, 0, 0, 0), this.timestamp.parse("29/Feb/2004:00:00:00 +0000"));
+        assertEquals(millis("GMT", 2000, 3, 1, 0, 0, 0), this.timestamp.parse("01/Mar/2000:00:00:00 +0000"));
+    }
+
+    public void testMalformed() {
+        assertEquals(-1, this.timestamp.parse((String) null));
+        assertEquals(-1, this.timestamp.parse(""));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23:36:01"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23:36:01 +00000"));
+        assertEquals(-1, this.timestamp.parse("07/Foo/2005:23:36:01 +0000"));
+        assertEquals(-1, this.timestamp.parse("07-Mar-2005:23:36:01 +0000"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005 23:36:01 +0000"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23-36:01 +0000"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:2x:36:01 +0000"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23:36:01 *0000"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23:36:01 +00x0"));
+        assertEquals(-1, this.timestamp.parse("00/Mar/2005:23:36:01 +0000"));
+    }
+
+    public void testByteRange() {
+        byte[] buf = "[07/Mar/2005:23:36:01 -0500]".getBytes();
+        assertEquals(millis("GMT-05:00", 2005, 3, 7, 23, 36, 1), this.timestamp.parse(buf, 1, buf.length - 1));
+        assertEquals(-1, this.timestamp.parse(buf, 0, buf.length - 1));
+    }
+
+    public void testCacheHit() {
+        long first = this.timestamp.parse("07/Mar/2005:23:36:01 -0500");
+        assertEquals(first, this.timestamp.parse("07/Mar/2005:23:36:01 -0500"));
+        assertEquals(-5 * HOUR, this.timestamp.getOffset());
+        // the same text at a different place in another buffer
+        byte[] buf = "xx07/Mar/2005:23:36:01 -0500".getBytes();
+        assertEquals(first, this.timestamp.parse(buf, 2, buf.length));
+    }
+
+    public void testCacheSameDay() {
+        this.timestamp.parse("07/Mar/2005:23:36:01 -0500");
+        assertEquals(millis("GMT-05:00", 2005, 3, 7, 23, 36, 2), this.timestamp.parse("07/Mar/2005:23:36:02 -0500"));
+        assertEquals(millis("GMT-05:00", 2005, 3, 7, 9, 5, 59), this.timestamp.parse("07/Mar/2005:09:05:59 -0500"));
+        assertEquals(-5 * HOUR, this.timestamp.getOffset());
+        // a bad time on the cached day is still refused
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:09:0x:59 -0500"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:09:05-59 -0500"));
+        assertEquals(millis("GMT-05:00", 2005, 3, 7, 9, 5, 59), this.timestamp.parse("07/Mar/2005:09:05:59 -0500"));
+    }
+
+    public void testCacheMiss() {
+        String[] lines = {
+            "07/Mar/2005:23:59:59 -0500",
+            "08/Mar/2005:00:00:00 -0500",  // next day
+            "08/Apr/2005:00:00:00 -0500",  // next month, same day of month
+            "08/Apr/2006:00:00:00 -0500",  // next year
+            "08/Apr/2006:00:00:00 +0100",  // same day, another zone
+            "08/Apr/2006:00:00:01 +0130",
+            "08/Apr/2006:00:00:01 -0130",
+        };
+        for(int i=0; i<lines.length; i++) {
+            assertEquals(lines[i], fresh(lines[i]), this.timestamp.parse(lines[i]));
+        }
+        assertEquals(-(HOUR + 30 * 60 * 1000), this.timestamp.getOffset());
+        assertEquals(millis("GMT+01:00", 2006, 4, 8, 0, 0, 0), this.timestamp.parse(lines[4]));
+        assertEquals(HOUR, this.timestamp.getOffset());
+    }
+
+    public void testMalformedKeepsCache() {
+        long first = this.timestamp.parse("07/Mar/2005:23:36:01 -0500");
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23:36:01 -05000"));
+        assertEquals(-1, this.timestamp.parse("07/Mar/2005:23:36:01 -05x0"));
+        assertEquals(first, this.timestamp.parse("07/Mar/2005:23:36:01 -0500"));
+        assertEquals(-5 * HOUR, this.timestamp.getOffset());
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.cyberiantiger.mudclient.parser;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.cyberiantiger.console.*;
+import org.cyberiantiger.telnet.*;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays a session through a TelnetInputStream and an ANSIParser, as
+ * MudConnection reads it, a packet at a time. The session is the file
+ * named by the MUDCLIENT_SESSION environment variable, a capture of
+ * what a mud sent, or else 4Mb of generated coloured spam.
+ * perChar is the old read loop, a character and a lock at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ANSIParserBenchmark {
+
+    private static final int PACKET = 1460;
+
+    private static final String[] WORDS = {
+	"the", "orc", "hits", "you", "very", "hard", "misses", "elephant",
+	"You", "swing", "at", "a", "small", "grey", "rat", "and", "it",
+	"dodges", "north", "south", "east", "west", "shouts:", "Hello!"
+    };
+
+    private byte[] session;
+
+    private int actions;
+
+    private ConsoleWriter writer = new ConsoleWriter() {
+	public void consoleAction(ConsoleAction action) {
+	    actions++;
+	}
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+	String file = System.getenv("MUDCLIENT_SESSION");
+	if(file != null) {
+	    session = java.nio.file.Files.readAllBytes(new File(file).toPath());
+	} else {
+	    session = generate(4 * 1024 * 1024);
+	}
+	System.out.println(session.length + " bytes of session");
+    }
+
+    private static byte[] generate(int size) throws IOException {
+	Random random = new Random(0);
+	StringBuffer text = new StringBuffer(size + 256);
+	while(text.length() < size) {
+	    boolean colour = random.nextInt(3) == 0;
+	    if(colour) {
+		text.append("\033[1;").append(31 + random.nextInt(7)).append('m');
+	    }
+	    int words = 4 + random.nextInt(12);
+	    for(int i=0; i<words; i++) {
+		if(i > 0) {
+		    text.append(' ');
+		}
+		text.append(WORDS[random.nextInt(WORDS.length)]);
+	    }
+	    if(colour) {
+		text.append("\033[0m");
+	    }
+	    text.append("\r\n");
+	}
+	return text.toString().getBytes("UTF-8");
+    }
+
+    private Reader reader() throws IOException {
+	return new InputStreamReader(
+		new TelnetInputStream(new PacketInputStream(session)) {
+		    protected void parseTelnetOption(TelnetOption topt) {
+		    }
+		}, "UTF-8");
+    }
+
+    @Benchmark
+    public int perChar() throws IOException {
+	actions = 0;
+	Reader reader = reader();
+	Parser parser = new ANSIParser();
+	int ch;
+	while( (ch = reader.read()) != -1) {
+	    synchronized(parser) {
+		parser.putChar((char)ch);
+		if(!reader.ready()) {
+		    parser.flush(writer);
+		}
+	    }
+	}
+	return actions;
+    }
+
+    @Benchmark
+    public int bulk() throws IOException {
+	actions = 0;
+	Reader reader = reader();
+	Parser parser = new ANSIParser();
+	char[] chars = new char[2048];
+	int len;
+	while( (len = reader.read(chars)) != -1) {
+	    int off = 0;
+	    while(off < len) {
+		off += parser.putChars(chars, off, len - off);
+	    }
+	    if(!reader.ready()) {
+		parser.flush(writer);
+	    }
+	}
+	return actions;
+    }
+
+    /**
+     * Hands out the session a packet at a time, as a socket would.
+     */
+    private static class PacketInputStream extends InputStream {
+	private byte[] data;
+	private int off = 0;
+	private int end = 0;
+
+	PacketInputStream(byte[] data) {
+	    this.data = data;
+	}
+
+	public int read() throws IOException {
+	    byte[] b = new byte[1];
+	    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	public int read(byte[] b, int bOff, int bLen) throws IOException {
+	    if(off == data.length) {
+		return -1;
+	    }
+	    if(off == end) {
+		end = Math.min(off + PACKET, data.length);
+	    }
+	    int len = Math.min(bLen, end - off);
+	    System.arraycopy(data, off, b, bOff, len);
+	    off += len;
+	    return len;
+	}
+
+	public int available() throws IOException {
+	    return end - off;
+	}
+    }
+
+}
@@ -2,6 +2,7 @@ package org.cyberiantiger.mudclient.net;
 
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.atomic.AtomicReference;
 import org.cyberiantiger.telnet.*;
 import org.cyberiantiger.mudclient.parser.Parser;
 
@@ -18,7 +19,10 @@ public class MudConnection extends Thread {
     private TelnetSocket sock;
     private SimpleTelnetSession session;
     private Display client;
+    // only used by the thread reading from the mud
     private Parser parser;
+    // a parser set by another thread, for the reading thread to pick up
+    private AtomicReference newParser = new AtomicReference();
     
     /**
      * Create a new MudConnection for the specified MudClient to the
@@ -113,17 +117,25 @@ public class MudConnection extends Thread {
     }
 
     /**
-     * Set the parser to use to parse output from the mud.
+     * Set the parser to use to parse output from the mud. The parser is
+     * handed to the thread reading from the mud, which changes to it
+     * before parsing what it reads next.
      */
     public void setParser(Parser parser) {
+	newParser.set(parser);
+    }
+
+    /**
+     * Change to the parser, flushing what the old one has parsed.
+     */
+    private void changeParser(Parser parser) {
+	if(parser == null || parser == this.parser) {
+	    return;
+	}
 	if(this.parser != null) {
-	    synchronized(this.parser) {
-		parser.flush(client.getConsoleWriter());
-		this.parser = parser;
-	    }
-	} else {
-	    this.parser = parser;
+	    this.parser.flush(client.getConsoleWriter());
 	}
+	this.parser = parser;
     }
 
     public void command(String text) {
@@ -158,21 +170,24 @@ public class MudConnection extends Thread {
 		}
 	    }
 	    try {
+		char[] chars = new char[2048];
 		while(status == CONNECTED) {
-		    int ch = sock.getReader().read();
-		    if(ch == -1) {
+		    Reader reader = sock.getReader();
+		    int len = reader.read(chars);
+		    if(len == -1) {
 			disconnect();
 		    } else {
-			if(parser != null) {
-			    synchronized(parser) {
-				parser.putChar((char)ch);
-				if(parser.changeParser()) {
-				    setParser(parser.getNewParser());
-				} else if(!sock.getReader().ready()) {
-				    parser.flush(client.getConsoleWriter());
-				}
+			changeParser((Parser) newParser.getAndSet(null));
+			int off = 0;
+			while(parser != null && off < len) {
+			    off += parser.putChars(chars, off, len - off);
+			    if(parser.changeParser()) {
+				changeParser(parser.getNewParser());
 			    }
 			}
+			if(parser != null && !reader.ready()) {
+			    parser.flush(client.getConsoleWriter());
+			}
 		    }
 		}
 	    } catch (Exception e) {
@@ -30,14 +30,57 @@ public class ANSIParser implements Parser {
 	last_offset = 0;
     }
 
-    public void putChar(char ch) {
-	if(offset == buffer.length) {
-	    char[] newBuff = new char[2048];
-	    System.arraycopy(buffer,last_offset,newBuff,0,buffer.length - last_offset);
-	    offset = buffer.length - last_offset;
+    /**
+     * Make room for len more characters in the buffer. Actions already
+     * made keep the old buffer, so it is replaced rather than reused.
+     */
+    private void reserve(int len) {
+	if(offset + len > buffer.length) {
+	    int pending = offset - last_offset;
+	    int size = 2048;
+	    while(size < pending + len) {
+		size *= 2;
+	    }
+	    char[] newBuff = new char[size];
+	    System.arraycopy(buffer,last_offset,newBuff,0,pending);
+	    offset = pending;
 	    last_offset = 0;
 	    buffer = newBuff;
 	}
+    }
+
+    private static boolean isControl(char ch) {
+	return ch <= 27 && 
+	    (ch == '\n' || ch == '\r' || ch == '\007' || ch == '\014' || ch == 27);
+    }
+
+    public int putChars(char[] chars, int off, int len) {
+	int end = off + len;
+	int i = off;
+	while(i < end) {
+	    if(state == TEXT) {
+		// copy text up to the next control character in one go
+		int start = i;
+		while(i < end && !isControl(chars[i])) {
+		    i++;
+		}
+		if(i > start) {
+		    reserve(i - start);
+		    System.arraycopy(chars,start,buffer,offset,i - start);
+		    offset += i - start;
+		    continue;
+		}
+	    }
+	    putChar(chars[i++]);
+	    if(parserDetect != NONE) {
+		break;
+	    }
+	}
+	return i - off;
+    }
+
+    public void putChar(char ch) {
+	reserve(1);
 	switch(state) {
 	    case TEXT:
 		switch(ch) {
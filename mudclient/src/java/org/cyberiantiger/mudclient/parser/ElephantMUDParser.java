@@ -46,6 +46,29 @@ public class ElephantMUDParser implements Parser {
 	}
     }
 
+    public int putChars(char[] chars, int off, int len) {
+	int end = off + len;
+	int i = off;
+	while(i < end) {
+	    if(!haveEscape) {
+		// append text up to the next escape in one go
+		int start = i;
+		while(i < end && chars[i] != '\033') {
+		    i++;
+		}
+		temp.append(chars,start,i - start);
+		if(i == end) {
+		    break;
+		}
+	    }
+	    putChar(chars[i++]);
+	    if(changeParser) {
+		break;
+	    }
+	}
+	return i - off;
+    }
+
     public void flush(ConsoleWriter client) {
 	Iterator i = actions.iterator();
 	while(i.hasNext()) {
@@ -12,6 +12,15 @@ public interface Parser {
      */
     public void putChar(char ch);
 
+    /**
+     * Push a run of characters to this parser, as putChar would each of
+     * them. Stops after a character which means the parser should be
+     * changed, the rest should be pushed to the new parser.
+     *
+     * @return The number of characters taken
+     */
+    public int putChars(char[] chars, int off, int len);
+
     /**
      * Tell this parser to flush it's output to client.
      */
@@ -20,7 +20,7 @@ public class ConsoleModel implements Console {
     private int lineOffset = 0;
 
     // The buffer each element represents a line.
-    List buffer;
+    LineBuffer buffer;
     // The offset into the buffer, of the first line on the screen
     int buffer_offset = 0;
     // The X position of the cursor
@@ -34,7 +34,7 @@ public class ConsoleModel implements Console {
 	this.width = width;
 	this.height = height;
 	this.bufferSize = bufferSize;
-	buffer = new LinkedList();
+	buffer = new LineBuffer(bufferSize + height);
     }
 
     public int getBufferSize() {
@@ -53,6 +53,7 @@ public class ConsoleModel implements Console {
 	if(width != this.width || height != this.height) {
 	    this.width = width;
 	    this.height = height;
+	    buffer.ensureCapacity(bufferSize + height);
 	    setCursorX(getCursorX());
 	    setCursorY(getCursorY());
 	}
@@ -91,18 +92,17 @@ public class ConsoleModel implements Console {
 	    cursor_y = height - 1;
 
 	    if(buffer_offset>bufferSize) {
+		int scrolled = buffer_offset - bufferSize;
 		if(hasSelection) {
-		    start.y -= buffer_offset - bufferSize;
-		    end.y -= buffer_offset - bufferSize;
-		    if(start.y < 0) {
+		    start.y -= scrolled;
+		    end.y -= scrolled;
+		    if(start.y < 0 || end.y < 0) {
 			hasSelection = false;
 		    }
 		}
 
-		while(buffer_offset > bufferSize) {
-		    buffer.remove(0);
-		    buffer_offset--;
-		}
+		buffer.removeFirst(scrolled);
+		buffer_offset = bufferSize;
 	    }
 	} else if(y<0) {
 	    cursor_y = 0;
@@ -226,17 +226,13 @@ public class ConsoleModel implements Console {
 	if(line < 0 || line >= buffer.size()) {
 	    return null;
 	} else {
-	    return (Line) buffer.get(line);
+	    return buffer.get(line);
 	}
     }
 
     protected Line getCurrentLine() {
-	if(buffer_offset + cursor_y >= buffer.size()) {
-	    for(int i=buffer.size();i<=buffer_offset + cursor_y;i++) {
-		buffer.add(null);
-	    }
-	}
-	Line ret = (Line) buffer.get(buffer_offset + cursor_y);
+	buffer.extend(buffer_offset + cursor_y + 1);
+	Line ret = buffer.get(buffer_offset + cursor_y);
 	if(ret == null) {
 	    ret = new Line();
 	    buffer.set(buffer_offset + cursor_y, ret);
@@ -271,7 +267,7 @@ public class ConsoleModel implements Console {
     public void startSelection(Point start) {
 	this.start = (Point) start.clone();
 	this.start.y += lineOffset;
-	this.end = this.start;
+	this.end = (Point) this.start.clone();
 	hasSelection = true;
     }
 
@@ -0,0 +1,77 @@
+package org.cyberiantiger.mudclient.ui;
+
+/**
+ * The lines of a ConsoleModel, oldest first, held in a circular array.
+ * Getting a line and dropping the oldest lines take the same time
+ * however much scrollback is kept. Lines which have never been written
+ * are null.
+ */
+class LineBuffer {
+
+    private Line[] lines;
+    // The index in lines of the oldest line
+    private int head = 0;
+    private int size = 0;
+
+    LineBuffer(int capacity) {
+	lines = new Line[Math.max(capacity, 1)];
+    }
+
+    int size() {
+	return size;
+    }
+
+    private int index(int line) {
+	int i = head + line;
+	return i < lines.length ? i : i - lines.length;
+    }
+
+    Line get(int line) {
+	return lines[index(line)];
+    }
+
+    void set(int line, Line value) {
+	lines[index(line)] = value;
+    }
+
+    /**
+     * Add empty lines to the end, until there are size lines.
+     */
+    void extend(int size) {
+	if(size > lines.length) {
+	    ensureCapacity(Math.max(size, lines.length * 2));
+	}
+	if(size > this.size) {
+	    // slots past the end are always null
+	    this.size = size;
+	}
+    }
+
+    /**
+     * Drop the oldest lines, the rest move up count places.
+     */
+    void removeFirst(int count) {
+	if(count > size) {
+	    count = size;
+	}
+	for(int i=0;i<count;i++) {
+	    lines[head] = null;
+	    head = index(1);
+	}
+	size -= count;
+    }
+
+    /**
+     * Only a taller console needs more lines, so only resizing copies.
+     */
+    void ensureCapacity(int capacity) {
+	if(capacity > lines.length) {
+	    Line[] newLines = new Line[capacity];
+	    for(int i=0;i<size;i++) {
+		newLines[i] = get(i);
+	    }
+	    lines = newLines;
+	    head = 0;
+	}
+    }
+}
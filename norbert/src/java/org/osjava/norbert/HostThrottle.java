@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.norbert;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Spaces out requests to the same host, so a robot honours a 
+ * site's Crawl-delay however many threads it is running. Each 
+ * caller is given the next free slot for the host and sleeps 
+ * until it arrives.
+ */
+public class HostThrottle {
+
+    private static final HostThrottle INSTANCE = new HostThrottle();
+
+    /**
+     * The throttle shared by everything in this JVM.
+     */
+    public static HostThrottle getInstance() {
+        return INSTANCE;
+    }
+
+    // how many hosts to remember before forgetting those that are idle
+    private static final int PURGE_SIZE = 1000;
+
+    // host -> Long time at which the next request may be made
+    private Map nextSlots = new HashMap();
+
+    /**
+     * Wait until a request may be made to the url's host. 
+     *
+     * @param delay milliseconds to leave between requests to the host; 
+     *              a robots.txt Crawl-delay is in seconds, and 
+     *              RobotsCache.getCrawlDelay has already converted it
+     */
+    public void waitForTurn(URL url, long delay) throws InterruptedException {
+        if(delay <= 0) {
+            return;
+        }
+        String host = url.getProtocol() + "://" + url.getHost().toLowerCase() + ":" + url.getPort();
+        long now = System.currentTimeMillis();
+        long slot;
+        synchronized(this.nextSlots) {
+            if(this.nextSlots.size() > PURGE_SIZE) {
+                purge(now);
+            }
+            Long next = (Long) this.nextSlots.get(host);
+            slot = (next == null) ? now : Math.max(now, next.longValue());
+            this.nextSlots.put(host, Long.valueOf(slot + delay));
+        }
+        if(slot > now) {
+            Thread.sleep(slot - now);
+        }
+    }
+
+    /**
+     * Forget about hosts whose last slot has passed. 
+     */
+    public void purge() {
+        synchronized(this.nextSlots) {
+            purge(System.currentTimeMillis());
+        }
+    }
+
+    private void purge(long now) {
+        Iterator itr = this.nextSlots.values().iterator();
+        while(itr.hasNext()) {
+            if( ((Long) itr.next()).longValue() < now ) {
+                itr.remove();
+            }
+        }
+    }
+
+}
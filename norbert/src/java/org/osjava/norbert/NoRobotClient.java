@@ -31,6 +31,7 @@
  */
 package org.osjava.norbert;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.BufferedReader;
@@ -54,6 +55,7 @@ public class NoRobotClient {
     private RulesEngine rules;
     private RulesEngine wildcardRules;
     private URL baseUrl;
+    private boolean longestMatch;
 
     /**
      * Create a Client for a particular user-agent name. 
@@ -64,6 +66,15 @@ public class NoRobotClient {
         this.userAgent = userAgent;
     }
 
+    /**
+     * Let the longest matching Allow/Disallow rule win, as the 
+     * big search engines do, rather than the first one in the file 
+     * as the norobots rfc says. Must be set before parsing.
+     */
+    public void setLongestMatch(boolean longestMatch) {
+        this.longestMatch = longestMatch;
+    }
+
     /**
      * Head to a website and suck in their robots.txt file. 
      * Note that the URL passed in is for the website and does 
@@ -89,7 +100,7 @@ public class NoRobotClient {
         try {
             txt = loadContent(txtUrl, this.userAgent);
             if(txt == null) {
-                throw new NoRobotException("No content found for: "+txtUrl);
+                throw new NoRobotException("No robots.txt at: "+txtUrl, true);
             }
         } catch(IOException ioe) {
             throw new NoRobotException("Unable to get content for: "+txtUrl, ioe);
@@ -110,6 +121,7 @@ public class NoRobotClient {
     private RulesEngine parseTextForUserAgent(String txt, String userAgent) throws NoRobotException {
 
         RulesEngine engine = new RulesEngine();
+        engine.setLongestMatch(this.longestMatch);
 
         // Classic basic parser style, read an element at a time, 
         // changing a state variable [parsingAllowBlock]
@@ -162,6 +174,16 @@ public class NoRobotClient {
                             value = line.substring("Disallow:".length()).trim();
                             value = URLDecoder.decode(value);
                             engine.disallowPath( value );
+                        } else 
+                        if(line.toLowerCase().startsWith("crawl-delay:")) {
+                            value = line.substring("crawl-delay:".length()).trim();
+                            try {
+                                // in seconds, but may be fractional
+                                engine.setCrawlDelay( (long) (Double.parseDouble(value) * 1000) );
+                            } catch(NumberFormatException nfe) {
+                                // ignore a broken delay
+                                continue;
+                            }
                         } else {
                             // ignore
                             continue;
@@ -177,6 +199,7 @@ public class NoRobotClient {
             throw new NoRobotException("Problem while parsing text. ", ioe);
         }
 
+        engine.compile();
         return engine;
     }
 
@@ -208,7 +231,10 @@ public class NoRobotClient {
         if("/robots.txt".equals(urlStr)) {
             return true;
         }
-        urlStr = URLDecoder.decode( urlStr );
+        // most urls have nothing to decode
+        if(urlStr.indexOf('%') != -1 || urlStr.indexOf('+') != -1) {
+            urlStr = URLDecoder.decode( urlStr );
+        }
         Boolean allowed = this.rules.isAllowed( urlStr );
         if(allowed == null) {
             allowed = this.wildcardRules.isAllowed( urlStr );
@@ -220,16 +246,50 @@ public class NoRobotClient {
         return allowed.booleanValue();
     }
 
+    /**
+     * The Crawl-delay the parsed website asks for, in milliseconds. 
+     * The delay for this client's user-agent is used if there is one, 
+     * else the wildcard delay, else 0.
+     *
+     * @throws IllegalStateException when parse has not been called
+     */
+    public long getCrawlDelay() throws IllegalStateException {
+        if(rules == null) {
+            throw new IllegalStateException("You must call parse before you call this method.  ");
+        }
+        if(this.rules.getCrawlDelay() != -1) {
+            return this.rules.getCrawlDelay();
+        }
+        if(this.wildcardRules != null && this.wildcardRules.getCrawlDelay() != -1) {
+            return this.wildcardRules.getCrawlDelay();
+        }
+        return 0;
+    }
+
     // INLINE: as such from genjava/gj-core's net package. Simple method 
     // stolen from Payload too.
+    // null if the server says there is no such file
     private static String loadContent(URL url, String userAgent) throws IOException {
         URLConnection urlConn = url.openConnection();
+        InputStream in;
         if(urlConn instanceof HttpURLConnection) {
+            HttpURLConnection httpConn = (HttpURLConnection) urlConn;
             if(userAgent != null) {
-                ((HttpURLConnection)urlConn).addRequestProperty("User-Agent", userAgent);
+                httpConn.addRequestProperty("User-Agent", userAgent);
+            }
+            int code = httpConn.getResponseCode();
+            if(code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                httpConn.disconnect();
+                return null;
+            }
+            in = httpConn.getInputStream();
+        } else {
+            try {
+                in = urlConn.getInputStream();
+            } catch(FileNotFoundException fnfe) {
+                return null;
             }
         }
-        InputStream in = urlConn.getInputStream();
         BufferedReader rdr = new BufferedReader(new InputStreamReader(in));
         StringBuffer buffer = new StringBuffer();
         String line = "";
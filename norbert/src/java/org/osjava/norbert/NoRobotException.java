@@ -38,12 +38,31 @@ package org.osjava.norbert;
  */
 public class NoRobotException extends Exception {
 
+    private boolean missing;
+
     public NoRobotException(String message) {
         super(message);
     }
 
+    /**
+     * @param missing true if the site says it has no robots.txt, 
+     *                rather than it failing to give one
+     */
+    public NoRobotException(String message, boolean missing) {
+        super(message);
+        this.missing = missing;
+    }
+
     public NoRobotException(String message, Throwable t) {
         super(message + " :::: " + t.getMessage());
     }
 
+    /**
+     * Whether the site has no robots.txt at all, a 404 or 410, 
+     * as opposed to one that could not be fetched or read.
+     */
+    public boolean isMissing() {
+        return this.missing;
+    }
+
 }
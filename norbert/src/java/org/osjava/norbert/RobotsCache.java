@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.norbert;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A shared cache of parsed robots.txt files, so that a robot 
+ * looking at many urls on a site only fetches the robots.txt once. 
+ *
+ * Entries are keyed by protocol, host, port and user-agent, expire 
+ * after a time to live and the least recently used are dropped when 
+ * the cache is full. A site which answers 404 or 410 for its 
+ * robots.txt has none, so allows everything, and is remembered as 
+ * such for a shorter time. A robots.txt which could not be fetched 
+ * for any other reason, a timeout, a refused connection or a 5xx, 
+ * disallows everything until it is retried after a short error 
+ * time to live. If many threads ask about the same 
+ * site at once, only one of them fetches the robots.txt and the rest 
+ * wait for it.
+ */
+public class RobotsCache {
+
+    public static final int DEFAULT_SIZE = 1000;
+    public static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L;
+    public static final long DEFAULT_MISSING_TTL = 60 * 60 * 1000L;
+    public static final long DEFAULT_ERROR_TTL = 5 * 60 * 1000L;
+
+    private static final RobotsCache INSTANCE = new RobotsCache(DEFAULT_SIZE, DEFAULT_TTL, DEFAULT_MISSING_TTL, DEFAULT_ERROR_TTL);
+
+    /**
+     * The cache shared by everything in this JVM.
+     */
+    public static RobotsCache getInstance() {
+        return INSTANCE;
+    }
+
+    private Map entries;
+    private long ttl;
+    private long missingTtl;
+    private long errorTtl;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxSize the number of sites to remember
+     * @param ttl milliseconds to keep a parsed robots.txt
+     * @param missingTtl milliseconds to remember a site has no robots.txt
+     */
+    public RobotsCache(int maxSize, long ttl, long missingTtl) {
+        this(maxSize, ttl, missingTtl, DEFAULT_ERROR_TTL);
+    }
+
+    /**
+     * @param maxSize the number of sites to remember
+     * @param ttl milliseconds to keep a parsed robots.txt
+     * @param missingTtl milliseconds to remember a site has no robots.txt
+     * @param errorTtl milliseconds to disallow a site whose robots.txt 
+     *                 could not be fetched, 0 to retry on the next call
+     */
+    public RobotsCache(final int maxSize, long ttl, long missingTtl, long errorTtl) {
+        this.ttl = ttl;
+        this.missingTtl = missingTtl;
+        this.errorTtl = errorTtl;
+        this.entries = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a client for the site the url is on, fetching and parsing 
+     * its robots.txt if it is not in the cache. Returns null if the 
+     * site has no robots.txt, or it could not be fetched.
+     */
+    public NoRobotClient getClient(URL url, String userAgent) {
+        Entry entry = getEntry(url, userAgent);
+        return (entry == null) ? null : entry.getClient();
+    }
+
+    // the loaded entry for the url's site, or null if the url has no site
+    private Entry getEntry(URL url, String userAgent) {
+        URL base;
+        try {
+            base = toBase(url);
+        } catch(MalformedURLException murle) {
+            return null;
+        }
+        String key = base.toExternalForm() + " " + userAgent;
+
+        Entry entry;
+        boolean load = false;
+        synchronized(this.entries) {
+            entry = (Entry) this.entries.get(key);
+            if(entry == null || entry.isExpired(System.currentTimeMillis())) {
+                entry = new Entry();
+                this.entries.put(key, entry);
+                this.misses++;
+                load = true;
+            } else {
+                this.hits++;
+            }
+        }
+
+        if(load) {
+            NoRobotClient client = null;
+            boolean allowAll = false;
+            long life = this.errorTtl;
+            try {
+                client = new NoRobotClient(userAgent);
+                client.parse(base);
+                life = this.ttl;
+            } catch(NoRobotException nre) {
+                client = null;
+                if(nre.isMissing()) {
+                    allowAll = true;
+                    life = this.missingTtl;
+                }
+            } finally {
+                entry.loaded(client, allowAll, System.currentTimeMillis() + life);
+            }
+            return entry;
+        }
+        entry.await();
+        return entry;
+    }
+
+    /**
+     * Is the url allowed by its site's robots.txt? A site without 
+     * a robots.txt allows everything, one whose robots.txt could 
+     * not be fetched allows nothing.
+     */
+    public boolean isUrlAllowed(URL url, String userAgent) {
+        Entry entry = getEntry(url, userAgent);
+        if(entry == null) {
+            return true;
+        }
+        NoRobotClient client = entry.getClient();
+        if(client == null) {
+            return entry.isAllowAll();
+        }
+        return client.isUrlAllowed(url);
+    }
+
+    /**
+     * The Crawl-delay, in milliseconds, asked for by the robots.txt 
+     * of the url's site.
+     */
+    public long getCrawlDelay(URL url, String userAgent) {
+        NoRobotClient client = getClient(url, userAgent);
+        if(client == null) {
+            return 0;
+        }
+        return client.getCrawlDelay();
+    }
+
+    public void clear() {
+        synchronized(this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized(this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized(this.entries) {
+            return this.hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized(this.entries) {
+            return this.misses;
+        }
+    }
+
+    /**
+     * The url of the site whose robots.txt applies to the url.
+     */
+    protected URL toBase(URL url) throws MalformedURLException {
+        return new URL(url.getProtocol() + "://" + url.getHost() + 
+           (
+              url.getPort() == -1 ? "" : ":" + url.getPort()
+           ) + "/");
+    }
+
+    // A cached client, which may still be loading. Without a client 
+    // the site either allows everything or, after an error, nothing
+    private static class Entry {
+        private boolean loaded;
+        private NoRobotClient client;
+        private boolean allowAll;
+        private long expires;
+
+        synchronized void loaded(NoRobotClient client, boolean allowAll, long expires) {
+            this.client = client;
+            this.allowAll = allowAll;
+            this.expires = expires;
+            this.loaded = true;
+            notifyAll();
+        }
+
+        synchronized NoRobotClient getClient() {
+            return this.client;
+        }
+
+        synchronized boolean isAllowAll() {
+            return this.allowAll;
+        }
+
+        synchronized boolean isExpired(long now) {
+            return this.loaded && now > this.expires;
+        }
+
+        synchronized void await() {
+            while(!this.loaded) {
+                try {
+                    wait();
+                } catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+}
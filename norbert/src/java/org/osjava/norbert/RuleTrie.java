@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.norbert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Allow and Disallow rules of a RulesEngine compiled into a 
+ * prefix trie, so a path can be checked in one walk along it rather 
+ * than by trying every rule. A '*' in a rule matches any run of 
+ * characters and a '$' at the end of a rule anchors it to the end 
+ * of the path.
+ *
+ * By default the first rule in the file that matches wins, as in the 
+ * norobots rfc. With longest-match precedence the rule with the 
+ * longest path wins instead, an Allow beating a Disallow of the same 
+ * length.
+ *
+ * A RuleTrie is not changed once built, so may be shared between 
+ * threads.
+ */
+final class RuleTrie {
+
+    private static final int NONE = -1;
+
+    private Node root;
+    private boolean longestMatch;
+    private boolean wildcards;
+
+    // per rule, by position in the file
+    private boolean[] allowed;
+    private int[] lengths;
+
+    /**
+     * @param rules AllowedRules and DisallowedRules, in file order
+     */
+    RuleTrie(List rules, boolean longestMatch) {
+        this.longestMatch = longestMatch;
+        this.root = new Node();
+        this.allowed = new boolean[rules.size()];
+        this.lengths = new int[rules.size()];
+        for(int i=0; i<rules.size(); i++) {
+            AbstractRule rule = (AbstractRule) rules.get(i);
+            String path = rule.getPath();
+            this.allowed[i] = (rule instanceof AllowedRule);
+            this.lengths[i] = path.length();
+            if("".equals(path)) {
+                if(this.allowed[i]) {
+                    // an empty Allow says nothing
+                    continue;
+                } else {
+                    // an empty Disallow allows everything
+                    this.allowed[i] = true;
+                }
+            }
+            insert(path, i);
+        }
+    }
+
+    /**
+     * Boolean.TRUE if the path is allowed, Boolean.FALSE if not 
+     * and null if no rule applies.
+     */
+    Boolean isAllowed(String path) {
+        int best = this.wildcards ? walkWildcards(path) : walk(path);
+        if(best == NONE) {
+            return null;
+        }
+        return this.allowed[best] ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+    // the common case of plain prefixes, a single path through the trie
+    private int walk(String path) {
+        int best = NONE;
+        Node node = this.root;
+        int len = path.length();
+        for(int i=0; ; i++) {
+            best = choose(best, node.rule);
+            if(i == len) {
+                best = choose(best, node.endRule);
+                return best;
+            }
+            node = node.get(path.charAt(i));
+            if(node == null) {
+                return best;
+            }
+        }
+    }
+
+    // with '*' in a rule more than one node may be alive at once
+    private int walkWildcards(String path) {
+        int best = NONE;
+        List active = new ArrayList();
+        List next = new ArrayList();
+        addClosure(active, this.root);
+        int len = path.length();
+        for(int i=0; ; i++) {
+            for(int j=0; j<active.size(); j++) {
+                Node node = (Node) active.get(j);
+                best = choose(best, node.rule);
+                if(i == len) {
+                    best = choose(best, node.endRule);
+                }
+            }
+            if(i == len || active.isEmpty()) {
+                return best;
+            }
+            char ch = path.charAt(i);
+            next.clear();
+            for(int j=0; j<active.size(); j++) {
+                Node node = (Node) active.get(j);
+                if(node.loops) {
+                    addClosure(next, node);
+                }
+                Node child = node.get(ch);
+                if(child != null) {
+                    addClosure(next, child);
+                }
+            }
+            List tmp = active;
+            active = next;
+            next = tmp;
+        }
+    }
+
+    // add a node, and the node after any '*' as it may match nothing
+    private static void addClosure(List nodes, Node node) {
+        while(node != null) {
+            if(nodes.contains(node)) {
+                return;
+            }
+            nodes.add(node);
+            node = node.star;
+        }
+    }
+
+    private int choose(int best, int rule) {
+        if(rule == NONE) {
+            return best;
+        }
+        if(best == NONE) {
+            return rule;
+        }
+        if(this.longestMatch) {
+            if(this.lengths[rule] != this.lengths[best]) {
+                return (this.lengths[rule] > this.lengths[best]) ? rule : best;
+            }
+            if(this.allowed[rule] != this.allowed[best]) {
+                return this.allowed[rule] ? rule : best;
+            }
+        }
+        return (rule < best) ? rule : best;
+    }
+
+    private void insert(String path, int rule) {
+        Node node = this.root;
+        int len = path.length();
+        boolean anchored = false;
+        if(len > 0 && path.charAt(len - 1) == '$') {
+            anchored = true;
+            len--;
+        }
+        for(int i=0; i<len; i++) {
+            char ch = path.charAt(i);
+            if(ch == '*') {
+                this.wildcards = true;
+                if(node.star == null) {
+                    node.star = new Node();
+                    node.star.loops = true;
+                }
+                node = node.star;
+            } else {
+                node = node.add(ch);
+            }
+        }
+        if(anchored) {
+            node.endRule = choose(node.endRule, rule);
+        } else {
+            node.rule = choose(node.rule, rule);
+        }
+    }
+
+    private static class Node {
+        // sorted, searched with a binary search
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        // child for a '*'
+        Node star;
+        // whether this node follows a '*' and so matches any character
+        boolean loops;
+        // rule that matches any path reaching here
+        int rule = NONE;
+        // rule that matches a path ending here, from a '$'
+        int endRule = NONE;
+
+        Node get(char ch) {
+            int low = 0;
+            int high = this.keys.length - 1;
+            while(low <= high) {
+                int mid = (low + high) >>> 1;
+                char key = this.keys[mid];
+                if(key < ch) {
+                    low = mid + 1;
+                } else 
+                if(key > ch) {
+                    high = mid - 1;
+                } else {
+                    return this.children[mid];
+                }
+            }
+            return null;
+        }
+
+        Node add(char ch) {
+            Node child = get(ch);
+            if(child != null) {
+                return child;
+            }
+            int idx = 0;
+            while(idx < this.keys.length && this.keys[idx] < ch) {
+                idx++;
+            }
+            char[] keys = new char[this.keys.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, idx);
+            System.arraycopy(this.children, 0, children, 0, idx);
+            keys[idx] = ch;
+            children[idx] = new Node();
+            System.arraycopy(this.keys, idx, keys, idx + 1, this.keys.length - idx);
+            System.arraycopy(this.children, idx, children, idx + 1, this.children.length - idx);
+            this.keys = keys;
+            this.children = children;
+            return children[idx];
+        }
+    }
+
+}
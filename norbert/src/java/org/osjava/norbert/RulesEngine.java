@@ -38,16 +38,35 @@ import java.util.List;
 /**
  * Contains a series of Rules. It then runs a path against these 
  * to decide if it is allowed or not. 
+ * Allow and Disallow rules are compiled into a RuleTrie the first 
+ * time a path is checked; other Rules are run one after another.
  */
  // TODO: Make this package private?
 class RulesEngine {
 
     private List rules;
+    private long crawlDelay = -1;
+    private boolean longestMatch;
+    // whether every rule is an Allow or Disallow, and so may go in a trie
+    private boolean compilable = true;
+    private volatile RuleTrie trie;
 
     public RulesEngine() {
         this.rules = new ArrayList();
     }
 
+    /**
+     * The Crawl-delay for this block in milliseconds, or -1 if 
+     * none was given.
+     */
+    public long getCrawlDelay() {
+        return this.crawlDelay;
+    }
+
+    public void setCrawlDelay(long crawlDelay) {
+        this.crawlDelay = crawlDelay;
+    }
+
     public void allowPath(String path) {
         add( new AllowedRule(path) );
     }
@@ -58,6 +77,35 @@ class RulesEngine {
 
     public void add(Rule rule) {
         this.rules.add(rule);
+        if(!(rule instanceof AllowedRule) && !(rule instanceof DisallowedRule)) {
+            this.compilable = false;
+        }
+        this.trie = null;
+    }
+
+    /**
+     * Whether the longest matching rule wins, rather than the first. 
+     */
+    public void setLongestMatch(boolean longestMatch) {
+        this.longestMatch = longestMatch;
+        this.trie = null;
+    }
+
+    /**
+     * Build the trie now rather than on the first check, so it 
+     * is ready before the engine is shared. Returns null if the 
+     * rules cannot be compiled.
+     */
+    public RuleTrie compile() {
+        if(!this.compilable) {
+            return null;
+        }
+        RuleTrie compiled = this.trie;
+        if(compiled == null) {
+            compiled = new RuleTrie(this.rules, this.longestMatch);
+            this.trie = compiled;
+        }
+        return compiled;
     }
 
     /**
@@ -68,6 +116,10 @@ class RulesEngine {
      */
     public Boolean isAllowed(String path) {
 
+        if(this.compilable) {
+            return compile().isAllowed(path);
+        }
+
         Iterator iterator = this.rules.iterator();
         while(iterator.hasNext()) {
             Rule rule = (Rule)iterator.next();
@@ -81,7 +133,7 @@ class RulesEngine {
     }
 
     public boolean isEmpty() {
-        return this.rules.isEmpty();
+        return this.rules.isEmpty() && this.crawlDelay == -1;
     }
 
     public String toString() {
@@ -196,4 +196,45 @@ public class NoRobotClientTest extends TestCase {
         }
     }      
 
+    public void testWildcards() throws MalformedURLException, NoRobotException {
+        String base = this.hardCode + "wildcards/";
+        NoRobotClient nrc = new NoRobotClient("test");
+        nrc.parse( new URL(base) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "images/a.gif" ) ) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "images/a.gif?size=2" ) ) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "private2/secret" ) ) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "private/public/index.html" ) ) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "private/index.html" ) ) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "search" ) ) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "search/more" ) ) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "index.html" ) ) );
+    }
+
+    public void testFirstMatchIsDefault() throws MalformedURLException, NoRobotException {
+        String base = this.hardCode + "longest/";
+        NoRobotClient nrc = new NoRobotClient("test");
+        nrc.parse( new URL(base) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "shop/catalog/index.html" ) ) );
+    }
+
+    public void testLongestMatch() throws MalformedURLException, NoRobotException {
+        String base = this.hardCode + "longest/";
+        NoRobotClient nrc = new NoRobotClient("test");
+        nrc.setLongestMatch(true);
+        nrc.parse( new URL(base) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "shop/catalog/index.html" ) ) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "shop/catalog/admin/index.html" ) ) );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "shop/basket.html" ) ) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "index.html" ) ) );
+    }
+
+    public void testCrawlDelay() throws MalformedURLException, NoRobotException {
+        String base = this.hardCode + "crawl-delay/";
+        NoRobotClient nrc = new NoRobotClient("slowbot");
+        nrc.parse( new URL(base) );
+        assertEquals( 2500, nrc.getCrawlDelay() );
+        assertFalse( nrc.isUrlAllowed( new URL(base + "private/index.html" ) ) );
+        assertTrue( nrc.isUrlAllowed( new URL(base + "index.html" ) ) );
+    }
+
 }
@@ -0,0 +1,202 @@
+package org.osjava.norbert;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.MalformedURLException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RobotsCacheTest extends TestCase {
+
+    private HttpServer server;
+    private String hardCode;
+    private int requests;
+
+    public RobotsCacheTest(String name) {
+        super(name);
+    }
+
+    // serves data/<host>/robots.txt, with the host name given as the first path element, 
+    // or answers with <code> for a host of status-<code>
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                synchronized(RobotsCacheTest.this) {
+                    requests++;
+                }
+                String path = exchange.getRequestURI().getPath();
+                if(path.startsWith("/status-")) {
+                    int code = Integer.parseInt(path.substring(8, path.indexOf('/', 1)));
+                    exchange.sendResponseHeaders(code, -1);
+                    exchange.close();
+                    return;
+                }
+                File file = new File("data", path);
+                if(!file.isFile()) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, file.length());
+                InputStream in = new FileInputStream(file);
+                OutputStream out = exchange.getResponseBody();
+                byte[] buffer = new byte[1024];
+                int n;
+                while( (n = in.read(buffer)) != -1 ) {
+                    out.write(buffer, 0, n);
+                }
+                in.close();
+                exchange.close();
+            }
+        });
+        this.server.start();
+        this.hardCode = "http://127.0.0.1:"+this.server.getAddress().getPort()+"/";
+    }
+
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    // each test site is a different data directory, so a different robots.txt 
+    // needs a different cache rather than a different host
+    private RobotsCache cacheFor(String site, int size, long ttl, long missingTtl) {
+        return cacheFor(site, size, ttl, missingTtl, 60000);
+    }
+
+    private RobotsCache cacheFor(final String site, int size, long ttl, long missingTtl, long errorTtl) {
+        return new RobotsCache(size, ttl, missingTtl, errorTtl) {
+            protected URL toBase(URL url) throws MalformedURLException {
+                return new URL(super.toBase(url), site + "/");
+            }
+        };
+    }
+
+    public void testCached() throws MalformedURLException {
+        RobotsCache cache = cacheFor("basic", 10, 60000, 60000);
+        String base = this.hardCode + "basic/";
+        NoRobotClient nrc = cache.getClient( new URL(base+"index.html"), "Scabies-1.0" );
+        assertNotNull( nrc );
+        assertSame( nrc, cache.getClient( new URL(base+"view-cvs/"), "Scabies-1.0" ) );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, cache.getHits() );
+        assertTrue( cache.isUrlAllowed( new URL(base+"index.html"), "Scabies-1.0" ) );
+        assertFalse( cache.isUrlAllowed( new URL(base+"view-cvs/"), "Scabies-1.0" ) );
+    }
+
+    public void testMissingIsCached() throws MalformedURLException {
+        RobotsCache cache = cacheFor("no-such-site", 10, 60000, 60000);
+        String base = this.hardCode + "no-such-site/";
+        assertNull( cache.getClient( new URL(base+"index.html"), "Scabies-1.0" ) );
+        assertTrue( cache.isUrlAllowed( new URL(base+"index.html"), "Scabies-1.0" ) );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, this.requests );
+    }
+
+    public void testGoneIsCached() throws MalformedURLException {
+        RobotsCache cache = cacheFor("status-410", 10, 60000, 60000);
+        URL url = new URL(this.hardCode + "status-410/index.html");
+        assertTrue( cache.isUrlAllowed( url, "Scabies-1.0" ) );
+        assertTrue( cache.isUrlAllowed( url, "Scabies-1.0" ) );
+        assertEquals( 1, this.requests );
+    }
+
+    public void testServerErrorDisallows() throws MalformedURLException {
+        RobotsCache cache = cacheFor("status-503", 10, 60000, 60000, 60000);
+        URL url = new URL(this.hardCode + "status-503/index.html");
+        assertNull( cache.getClient( url, "Scabies-1.0" ) );
+        assertFalse( cache.isUrlAllowed( url, "Scabies-1.0" ) );
+        assertEquals( 1, this.requests );
+    }
+
+    public void testServerErrorRetried() throws MalformedURLException, InterruptedException {
+        RobotsCache cache = cacheFor("status-500", 10, 60000, 60000, 0);
+        URL url = new URL(this.hardCode + "status-500/index.html");
+        assertFalse( cache.isUrlAllowed( url, "Scabies-1.0" ) );
+        Thread.sleep(5);
+        assertFalse( cache.isUrlAllowed( url, "Scabies-1.0" ) );
+        assertEquals( 2, this.requests );
+    }
+
+    public void testUnreachableDisallows() throws Exception {
+        // a port nothing is listening on
+        ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        int port = socket.getLocalPort();
+        socket.close();
+        RobotsCache cache = cacheFor("basic", 10, 60000, 60000);
+        assertFalse( cache.isUrlAllowed( new URL("http://127.0.0.1:"+port+"/basic/index.html"), "Scabies-1.0" ) );
+    }
+
+    public void testExpiry() throws MalformedURLException, InterruptedException {
+        RobotsCache cache = cacheFor("basic", 10, 0, 0);
+        String base = this.hardCode + "basic/";
+        cache.getClient( new URL(base), "Scabies-1.0" );
+        Thread.sleep(5);
+        cache.getClient( new URL(base), "Scabies-1.0" );
+        assertEquals( 2, cache.getMisses() );
+    }
+
+    public void testSizeBound() throws MalformedURLException {
+        RobotsCache cache = cacheFor("basic", 2, 60000, 60000);
+        String base = this.hardCode + "basic/";
+        cache.getClient( new URL(base), "one" );
+        cache.getClient( new URL(base), "two" );
+        cache.getClient( new URL(base), "three" );
+        assertEquals( 2, cache.size() );
+    }
+
+    public void testSingleLoad() throws Exception {
+        final RobotsCache cache = cacheFor("basic", 10, 60000, 60000);
+        final URL url = new URL(this.hardCode + "basic/index.html");
+        Thread[] threads = new Thread[10];
+        for(int i=0; i<threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    cache.getClient(url, "Scabies-1.0");
+                }
+            };
+            threads[i].start();
+        }
+        for(int i=0; i<threads.length; i++) {
+            threads[i].join();
+        }
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 9, cache.getHits() );
+        assertEquals( 1, this.requests );
+    }
+
+    public void testCrawlDelay() throws MalformedURLException {
+        RobotsCache cache = cacheFor("crawl-delay", 10, 60000, 60000);
+        assertEquals( 2500, cache.getCrawlDelay( new URL(this.hardCode + "crawl-delay/"), "slowbot" ) );
+        assertEquals( 1000, cache.getCrawlDelay( new URL(this.hardCode + "crawl-delay/"), "otherbot" ) );
+        cache = cacheFor("basic", 10, 60000, 60000);
+        assertEquals( 0, cache.getCrawlDelay( new URL(this.hardCode + "basic/"), "otherbot" ) );
+    }
+
+    public void testThrottle() throws Exception {
+        HostThrottle throttle = new HostThrottle();
+        URL url = new URL("http://www.example.com/");
+        long start = System.currentTimeMillis();
+        throttle.waitForTurn(url, 50);
+        throttle.waitForTurn(url, 50);
+        throttle.waitForTurn(url, 50);
+        assertTrue( System.currentTimeMillis() - start >= 100 );
+        // a different host is not held up
+        start = System.currentTimeMillis();
+        throttle.waitForTurn(new URL("http://www.example.org/"), 50);
+        assertTrue( System.currentTimeMillis() - start < 50 );
+    }
+
+}
@@ -54,33 +54,38 @@ public class MultiResult implements Result {
 
 }
 
+// walks each Result's rows in turn, without copying them
 class MultiIterator implements Iterator {
 
-    private List list;
-    private int current;
-    private int max;
+    private Iterator iterators;
+    private Iterator current;
 
     public MultiIterator(List list) {
-        this.list = list;
-        this.max = list.size() - 1;
+        this.iterators = list.iterator();
     }
 
     public boolean hasNext() {
-        boolean b = ((Iterator)list.get(this.current)).hasNext();
-        if(!b) {
-            if(this.current == max) {
+        while(this.current == null || !this.current.hasNext()) {
+            if(!this.iterators.hasNext()) {
                 return false;
             }
+            this.current = (Iterator) this.iterators.next();
         }
         return true;
     }
 
     public Object next() {
-        return ((Iterator)list.get(this.current)).next();
+        if(!hasNext()) {
+            throw new java.util.NoSuchElementException();
+        }
+        return this.current.next();
     }
 
     public void remove() {
-        ((Iterator)list.get(this.current)).remove();
+        if(this.current == null) {
+            throw new IllegalStateException();
+        }
+        this.current.remove();
     }
 
 }
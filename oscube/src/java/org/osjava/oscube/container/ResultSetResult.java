@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.oscube.container;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.dbutils.DbUtils;
+
+/**
+ * A Result whose rows are read from an open ResultSet as they are 
+ * iterated over, rather than all being held in memory. The 
+ * ResultSet, Statement and Connection are closed once the last row 
+ * has been read, or by close(). The rows may only be iterated once.
+ */
+public class ResultSetResult implements Result {
+
+    private Connection conn;
+    private Statement stmt;
+    private ResultSet rs;
+    private boolean iterated;
+
+    public ResultSetResult(Connection conn, Statement stmt, ResultSet rs) {
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+    }
+
+    // returns Iterator of <Object[]>.
+    public Iterator iterateRows() {
+        if(this.iterated) {
+            throw new IllegalStateException("A ResultSetResult may only be iterated once. ");
+        }
+        this.iterated = true;
+        return new ResultSetIterator();
+    }
+
+    public void close() {
+        DbUtils.closeQuietly(this.rs);
+        DbUtils.closeQuietly(this.stmt);
+        DbUtils.closeQuietly(this.conn);
+        this.rs = null;
+        this.stmt = null;
+        this.conn = null;
+    }
+
+    private class ResultSetIterator implements Iterator {
+
+        private Object[] next;
+
+        public boolean hasNext() {
+            if(this.next == null && rs != null) {
+                try {
+                    if(rs.next()) {
+                        Object[] row = new Object[rs.getMetaData().getColumnCount()];
+                        for(int i=0; i<row.length; i++) {
+                            row[i] = rs.getObject(i + 1);
+                        }
+                        this.next = row;
+                    } else {
+                        close();
+                    }
+                } catch(SQLException sqle) {
+                    close();
+                    throw new RuntimeException("Unable to read row: "+sqle.getMessage(), sqle);
+                }
+            }
+            return this.next != null;
+        }
+
+        public Object next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = this.next;
+            this.next = null;
+            return row;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Rows may not be removed from a ResultSet. ");
+        }
+
+    }
+
+}
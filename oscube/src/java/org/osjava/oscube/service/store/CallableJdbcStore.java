@@ -32,7 +32,6 @@
 package org.osjava.oscube.service.store;
 
 import java.sql.*;
-import org.apache.commons.dbutils.QueryRunner;
 
 import org.apache.log4j.Logger;
 
@@ -40,34 +39,8 @@ public class CallableJdbcStore extends JdbcStore {
 
     private static Logger logger = Logger.getLogger(CallableJdbcStore.class);
 
-    protected int executeSql(Connection conn, String sql, Object[] row, QueryRunner queryRunner ) throws SQLException {
-        CallableStatement cs = null;
-        try {
-            cs = conn.prepareCall(sql);
-            fillStatement(cs, row);
-            return cs.executeUpdate();
-        } finally {
-            cs.close();
-        }
+    protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        return conn.prepareCall(sql);
     }
 
-    // COPIED FROM Commons DbUtils until it supports such a thing
-    protected void fillStatement(PreparedStatement stmt, Object[] params) throws SQLException {
-
-        if (params == null) {
-            return;
-        }
-
-        for (int i = 0; i < params.length; i++) {
-            if (params[i] != null) {
-                stmt.setObject(i + 1, params[i]);
-            } else {
-                // VARCHAR works with many drivers regardless
-                // of the actual column type.  Oddly, NULL and 
-                // OTHER don't work with Oracle's drivers.
-                stmt.setNull(i + 1, Types.VARCHAR);
-            }
-        }
-    }
-    
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2003, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.oscube.service.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Finds which of many keys are already in a table with one query 
+ * per chunk of keys, rather than one query per key. The sql given 
+ * is a query ending in IN, such as 
+ * "SELECT id FROM strip WHERE id IN", and the first column of 
+ * its results is the key. 
+ */
+public class JdbcExists {
+
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    /**
+     * Returns the keys, as given by toKey, that the query found.
+     */
+    public static Set findExisting(Connection conn, String sql, Object[] keys) throws SQLException {
+        return findExisting(conn, sql, keys, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static Set findExisting(Connection conn, String sql, Object[] keys, int chunkSize) throws SQLException {
+        Set found = new HashSet();
+        for(int start=0; start<keys.length; start += chunkSize) {
+            int length = Math.min(chunkSize, keys.length - start);
+            String query = sql + " (?" + StringUtils.repeat(", ?", length - 1) + ")";
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = conn.prepareStatement(query);
+                for(int i=0; i<length; i++) {
+                    stmt.setObject(i + 1, keys[start + i]);
+                }
+                rs = stmt.executeQuery();
+                while(rs.next()) {
+                    found.add(toKey(rs.getObject(1)));
+                }
+            } finally {
+                DbUtils.closeQuietly(rs);
+                DbUtils.closeQuietly(stmt);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Keys are compared as Strings, as the database may not hand 
+     * back the same type as was put in, an Integer as a BigDecimal 
+     * for example.
+     */
+    public static String toKey(Object key) {
+        if(key instanceof java.math.BigDecimal) {
+            key = ((java.math.BigDecimal) key).stripTrailingZeros().toPlainString();
+        }
+        return String.valueOf(key);
+    }
+
+}
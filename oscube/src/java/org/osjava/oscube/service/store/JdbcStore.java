@@ -31,11 +31,16 @@
  */
 package org.osjava.oscube.service.store;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.sql.DataSource;
 import java.sql.*;
 import org.apache.commons.dbutils.DbUtils;
-import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.lang.StringUtils;
 
 import org.apache.log4j.Logger;
@@ -45,56 +50,246 @@ import org.osjava.oscube.container.Session;
 import org.osjava.oscube.container.Header;
 import org.osjava.oscube.container.Result;
 
+/**
+ * Stores each row of a Result into a database. 
+ * Rows are sent in batches through a reused PreparedStatement 
+ * and the whole Result is stored in one transaction. 
+ *
+ * <pre>
+ * jdbc.DS          name of the DataSource
+ * jdbc.sql         insert statement, or
+ * jdbc.table       table to insert into
+ * jdbc.batch       rows per batch (default 100)
+ * jdbc.savepoint   if true, a batch that fails is rolled back and 
+ *                  its rows stored one at a time, skipping bad rows
+ * jdbc.exists.sql  optional query ending in IN, such as 
+ *                  "SELECT id FROM strip WHERE id IN"; rows whose 
+ *                  first column it returns are not stored again, 
+ *                  nor are rows repeating the first column of an 
+ *                  earlier row in their batch
+ * </pre>
+ */
 public class JdbcStore implements Store {
 
     private static Logger logger = Logger.getLogger(JdbcStore.class);
 
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     public void store(Result result, Config cfg, Session session) throws StoringException {
         Connection conn = null;
-try {
-        // get DataSource from cfg
-        String dsname = cfg.getString("jdbc.DS");
-//        System.err.println("DSNAME: "+dsname);
-//        System.err.println("/DSNAME: "+cfg.getAbsolute(dsname));
-        DataSource ds = (DataSource)cfg.getAbsolute(dsname);
-//        System.err.println("DataSource: "+ds);
-        conn = ds.getConnection();
-//        System.err.println("CONN: "+conn);
-        String sql = cfg.getString("jdbc.sql");
-//        System.err.println("SQL: "+sql);
-        String table = cfg.getString("jdbc.table");
-//        System.err.println("Table: "+table);
-        if(sql == null) {
-            if(table == null) {
-                throw new StoringException(cfg.getContext()+".jdbc.sql or "+cfg.getContext()+".jdbc.table must be specified. ");
+        Map statements = new HashMap();
+        boolean autoCommit = true;
+        try {
+            // get DataSource from cfg
+            String dsname = cfg.getString("jdbc.DS");
+            DataSource ds = (DataSource)cfg.getAbsolute(dsname);
+            conn = ds.getConnection();
+            String sql = cfg.getString("jdbc.sql");
+            String table = cfg.getString("jdbc.table");
+            if(sql == null) {
+                if(table == null) {
+                    throw new StoringException(cfg.getContext()+".jdbc.sql or "+cfg.getContext()+".jdbc.table must be specified. ");
+                }
             }
-        }
 
-        QueryRunner queryRunner = new QueryRunner();
-        Iterator iterator = result.iterateRows();
-        while(iterator.hasNext()) {
-            Object[] row = (Object[])iterator.next();
-            if(row.length == 0) {
-                logger.error("Empty row found. Skipping. ");
-                continue;
+            int batchSize = DEFAULT_BATCH_SIZE;
+            if(cfg.has("jdbc.batch")) {
+                batchSize = Math.max(1, cfg.getInt("jdbc.batch"));
+            }
+            DatabaseMetaData meta = conn.getMetaData();
+            if(!meta.supportsBatchUpdates()) {
+                batchSize = 1;
+            }
+            boolean savepoints = "true".equalsIgnoreCase(cfg.getString("jdbc.savepoint")) && meta.supportsSavepoints();
+            String existsSql = cfg.getString("jdbc.exists.sql");
+
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            List batch = new ArrayList(batchSize);
+            PreparedStatement stmt = null;
+            Iterator iterator = result.iterateRows();
+            while(iterator.hasNext()) {
+                Object[] row = (Object[])iterator.next();
+                if(row.length == 0) {
+                    logger.error("Empty row found. Skipping. ");
+                    continue;
+                }
+                PreparedStatement rowStmt = getStatement(conn, sql, table, row.length, statements);
+                if(rowStmt != stmt && !batch.isEmpty()) {
+                    storeBatch(conn, stmt, batch, existsSql, savepoints);
+                    batch.clear();
+                }
+                stmt = rowStmt;
+                batch.add(row);
+                if(batch.size() == batchSize) {
+                    storeBatch(conn, stmt, batch, existsSql, savepoints);
+                    batch.clear();
+                }
+            }
+            if(!batch.isEmpty()) {
+                storeBatch(conn, stmt, batch, existsSql, savepoints);
             }
+            conn.commit();
+        } catch(SQLException sqle) {
+            rollback(conn);
+            throw new StoringException("JDBC Storing Error: "+sqle.getMessage(), sqle);
+        } catch(RuntimeException re) {
+            rollback(conn);
+            throw re;
+        } finally {
+            Iterator iterator = statements.values().iterator();
+            while(iterator.hasNext()) {
+                DbUtils.closeQuietly( (PreparedStatement) iterator.next() );
+            }
+            if(conn != null) {
+                try {
+                    conn.setAutoCommit(autoCommit);
+                } catch(SQLException sqle) {
+                    // ignore, it's being closed
+                }
+            }
+            DbUtils.closeQuietly( conn );
+        }
+    }
+
+    // jdbc.sql is used for every row, but an INSERT built from jdbc.table 
+    // has one placeholder per column, so rows of each length get their own
+    private PreparedStatement getStatement(Connection conn, String sql, String table, int length, Map statements) throws SQLException {
+        Integer key = Integer.valueOf(sql == null ? length : 0);
+        PreparedStatement stmt = (PreparedStatement) statements.get(key);
+        if(stmt == null) {
             if(sql == null) {
-                if(table != null) {  
-                    sql = "INSERT INTO " + table + " VALUES(?"+ StringUtils.repeat(", ?", row.length-1) + ")";
+                sql = "INSERT INTO " + table + " VALUES(?"+ StringUtils.repeat(", ?", length-1) + ")";
+            }
+            stmt = prepareStatement(conn, sql);
+            statements.put(key, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Create the statement that rows will be stored with.
+     */
+    protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        return conn.prepareStatement(sql);
+    }
+
+    private void storeBatch(Connection conn, PreparedStatement stmt, List batch, String existsSql, boolean savepoints) throws SQLException {
+        if(existsSql != null) {
+            batch = removeExisting(conn, existsSql, batch);
+            if(batch.isEmpty()) {
+                return;
+            }
+        }
+
+        Savepoint savepoint = null;
+        if(savepoints) {
+            savepoint = conn.setSavepoint();
+        }
+        try {
+            if(batch.size() == 1) {
+                fillStatement(stmt, (Object[]) batch.get(0));
+                stmt.executeUpdate();
+            } else {
+                Iterator iterator = batch.iterator();
+                while(iterator.hasNext()) {
+                    fillStatement(stmt, (Object[]) iterator.next());
+                    stmt.addBatch();
                 }
+                stmt.executeBatch();
             }
-            int count = executeSql( conn, sql, row, queryRunner );
+        } catch(SQLException sqle) {
+            if(savepoint == null) {
+                throw sqle;
+            }
+            logger.warn("Batch of "+batch.size()+" rows failed, storing them one at a time. "+sqle.getMessage());
+            conn.rollback(savepoint);
+            stmt.clearBatch();
+            storeSingly(conn, stmt, batch);
+            return;
+        }
+        if(savepoint != null) {
+            conn.releaseSavepoint(savepoint);
         }
+    }
 
-} catch(SQLException sqle) {
-    throw new StoringException("JDBC Storing Error: "+sqle.getMessage(), sqle);
-} finally {
-        DbUtils.closeQuietly( conn );
-}
+    // each row gets its own savepoint, so a bad one is just skipped
+    private void storeSingly(Connection conn, PreparedStatement stmt, List batch) throws SQLException {
+        Iterator iterator = batch.iterator();
+        while(iterator.hasNext()) {
+            Object[] row = (Object[]) iterator.next();
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                fillStatement(stmt, row);
+                stmt.executeUpdate();
+                conn.releaseSavepoint(savepoint);
+            } catch(SQLException sqle) {
+                logger.error("Unable to store row, skipping. "+sqle.getMessage());
+                conn.rollback(savepoint);
+            }
+        }
+    }
+
+    // drops rows whose key is already stored, or which repeat the key 
+    // of an earlier row in the batch
+    private List removeExisting(Connection conn, String existsSql, List batch) throws SQLException {
+        Map unique = new LinkedHashMap();
+        Iterator iterator = batch.iterator();
+        while(iterator.hasNext()) {
+            Object[] row = (Object[]) iterator.next();
+            Object key = JdbcExists.toKey(row[0]);
+            if(!unique.containsKey(key)) {
+                unique.put(key, row);
+            }
+        }
+        Object[] keys = new Object[unique.size()];
+        iterator = unique.values().iterator();
+        for(int i=0; i<keys.length; i++) {
+            keys[i] = ((Object[]) iterator.next())[0];
+        }
+        Set existing = JdbcExists.findExisting(conn, existsSql, keys);
+        List remaining = new ArrayList(unique.size());
+        iterator = unique.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry entry = (Map.Entry) iterator.next();
+            if(!existing.contains(entry.getKey())) {
+                remaining.add(entry.getValue());
+            }
+        }
+        if(remaining.size() < batch.size()) {
+            logger.debug((batch.size() - remaining.size())+" rows already stored or repeated. ");
+        }
+        return remaining;
+    }
+
+    private void rollback(Connection conn) {
+        if(conn != null) {
+            try {
+                conn.rollback();
+            } catch(SQLException sqle) {
+                logger.error("Unable to rollback. "+sqle.getMessage());
+            }
+        }
     }
 
-    protected int executeSql(Connection conn, String sql, Object[] row, QueryRunner queryRunner ) throws SQLException {
-        return queryRunner.update( conn, sql, row );
+    // COPIED FROM Commons DbUtils until it supports such a thing
+    protected void fillStatement(PreparedStatement stmt, Object[] params) throws SQLException {
+
+        if (params == null) {
+            return;
+        }
+
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] != null) {
+                stmt.setObject(i + 1, params[i]);
+            } else {
+                // VARCHAR works with many drivers regardless
+                // of the actual column type.  Oddly, NULL and 
+                // OTHER don't work with Oracle's drivers.
+                stmt.setNull(i + 1, Types.VARCHAR);
+            }
+        }
     }
 
 }
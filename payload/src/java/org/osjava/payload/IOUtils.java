@@ -44,7 +44,7 @@ import java.io.ByteArrayOutputStream;
 public class IOUtils {
 
     static void pushBytes(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1023];
+        byte[] buffer = new byte[8192];
         while(true) {
             int size = in.read(buffer);
             if(size == -1) {
@@ -32,12 +32,18 @@
 package org.osjava.payload;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Properties;
 
 /**
@@ -92,33 +98,94 @@ class Interpolation {
     }
 
     public String interpolate(String str, Properties props) {
-        Iterator itr = props.keySet().iterator();
-        while(itr.hasNext()) {
-            String key = (String) itr.next();
-//            str = str.replaceAll( "\\$\\{"+key+"\\}", props.getProperty(key) );
-            str = replace(str, "${"+key+"}", props.getProperty(key), -1 );
+        StringWriter writer = new StringWriter(str.length());
+        try {
+            interpolate(new StringReader(str), writer, props);
+        } catch(IOException ioe) {
+            // not thrown by String readers and writers
+            throw new RuntimeException(ioe.getMessage());
         }
-        return str;
+        return writer.toString();
     }
-    
-    // From Jakarta Commons Lang's StringUtils
-    private static String replace(String text, String repl, String with, int max) {
-        if (text == null || repl == null || repl.equals("") || with == null || max == 0) {
-            return text;
-        }
 
-        StringBuffer buf = new StringBuffer(text.length());
-        int start = 0, end = 0;
-        while ((end = text.indexOf(repl, start)) != -1) {
-            buf.append(text.substring(start, end)).append(with);
-            start = end + repl.length();
+    /**
+     * Interpolates text in the platform encoding, as it is read. 
+     * Neither stream is closed, so this may be used on the entries 
+     * of a zip.
+     */
+    public void interpolate(InputStream in, OutputStream out, Properties props) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+        interpolate(new BufferedReader(new InputStreamReader(in)), writer, props);
+        writer.flush();
+    }
 
-            if (--max == 0) {
-                break;
+    /**
+     * Replaces each ${key} with the value of key in props in a single 
+     * pass over the text. Keys without a value are left as they are, 
+     * and values are not themselves interpolated.
+     */
+    public void interpolate(Reader in, Writer out, Properties props) throws IOException {
+        char[] buffer = new char[4096];
+        // the key being read, when inside a ${
+        StringBuffer key = null;
+        // whether the last character was a $ which may start a ${
+        boolean dollar = false;
+        int size = 0;
+        while( (size = in.read(buffer)) != -1) {
+            // start of the text still to be written
+            int start = 0;
+            for(int i=0; i<size; i++) {
+                char c = buffer[i];
+                if(key != null) {
+                    if(c == '}') {
+                        String value = props.getProperty(key.toString());
+                        if(value == null) {
+                            out.write("${");
+                            out.write(key.toString());
+                            out.write('}');
+                        } else {
+                            out.write(value);
+                        }
+                        key = null;
+                        start = i + 1;
+                    } else if(c == '$') {
+                        // not a key after all, but this may start one
+                        out.write("${");
+                        out.write(key.toString());
+                        key = null;
+                        dollar = true;
+                        start = i + 1;
+                    } else {
+                        key.append(c);
+                    }
+                    continue;
+                }
+                if(dollar) {
+                    dollar = false;
+                    if(c == '{') {
+                        key = new StringBuffer();
+                        continue;
+                    }
+                    out.write('$');
+                    start = i;
+                }
+                if(c == '$') {
+                    out.write(buffer, start, i - start);
+                    dollar = true;
+                    start = i + 1;
+                }
             }
+            if(key == null) {
+                out.write(buffer, start, size - start);
+            }
+        }
+        if(dollar) {
+            out.write('$');
+        }
+        if(key != null) {
+            out.write("${");
+            out.write(key.toString());
         }
-        buf.append(text.substring(start));
-        return buf.toString();
     }
 
 }
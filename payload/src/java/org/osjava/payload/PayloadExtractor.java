@@ -34,10 +34,20 @@ package org.osjava.payload;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.File;
@@ -55,6 +65,9 @@ public class PayloadExtractor {
 
     public static final boolean DEBUG = (System.getProperty("PAYLOAD.DEBUG")!=null);
 
+    // how many entries to extract at once
+    private static final int THREADS = Integer.getInteger("PAYLOAD.THREADS", Runtime.getRuntime().availableProcessors()).intValue();
+
     public static void main(String[] args) {
 if(DEBUG) System.out.println("DEBUG turned on. ");
         System.out.print("Payload extraction setup");
@@ -103,8 +116,10 @@ if(DEBUG) System.out.println(props.toString());
 
             PayloadConfiguration configuration = null;
 
-            // need to find a way to ensure the interpolation is read 
-            // first. possibly scan through the zip first?
+            // read the central directory once, noting the directories 
+            // to make and the files to extract
+            List entries = new ArrayList();
+            Set dirs = new HashSet();
             Enumeration enumeration = jar.entries();
             while(enumeration.hasMoreElements()) {
                 JarEntry entry = (JarEntry) enumeration.nextElement();
@@ -112,8 +127,21 @@ if(DEBUG) System.out.println(props.toString());
 if(DEBUG) System.out.println("Custom interpolation being used. ");
                     InputStream in = jar.getInputStream( entry );
                     String txt = IOUtils.readToString(in);
+                    in.close();
                     configuration = new PayloadConfiguration(txt);
-                    break;
+                    continue;
+                }
+                if(!entry.getName().startsWith("payload")) {
+                    continue;
+                }
+                // remove payload/
+                String inName = entry.getName().substring("payload/".length());
+                File outFile = new File(jarName + File.separator + inName);
+                if(entry.isDirectory()) {
+                    dirs.add(outFile);
+                } else {
+                    dirs.add(outFile.getParentFile());
+                    entries.add(entry);
                 }
             }
 
@@ -128,124 +156,126 @@ if(DEBUG) System.out.println("Default configuration being used. ");
 
             System.out.print("Payload extracting");
 
-            enumeration = jar.entries();
-            while(enumeration.hasMoreElements()) {
-                JarEntry entry = (JarEntry) enumeration.nextElement();
-                if(!entry.getName().startsWith("payload")) {
-                    continue;
+            Iterator itr = dirs.iterator();
+            while(itr.hasNext()) {
+                ((File) itr.next()).mkdirs();
+            }
+
+            // entries are extracted by a pool of workers, with progress 
+            // reported in jar order as each finishes
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                List futures = new ArrayList(entries.size());
+                itr = entries.iterator();
+                while(itr.hasNext()) {
+                    JarEntry entry = (JarEntry) itr.next();
+                    String outName = jarName + File.separator + entry.getName().substring("payload/".length());
+                    futures.add( pool.submit( new EntryExtractor(jar, entry, outName, interpolation, props) ) );
                 }
-                if(entry.getName().equals("payload.properties")) {
-                    continue;
+                itr = futures.iterator();
+                while(itr.hasNext()) {
+                    System.out.print( ((Future) itr.next()).get() );
                 }
-                // remove payload/
-                String inName = entry.getName().substring("payload/".length());
-                String outName = jarName + File.separator + inName;
-                File outFile = new File(outName);
-                if(entry.isDirectory()) {
-                    outFile.mkdirs();
-                    continue;
-                } else {
-                    outFile.getParentFile().mkdirs();
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting. ");
+            } catch(ExecutionException ee) {
+                if(ee.getCause() instanceof IOException) {
+                    throw (IOException) ee.getCause();
                 }
+                throw new RuntimeException(ee.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
 
-                InputStream in = jar.getInputStream( entry );
+            payletExecutor.execute(props);
+        } catch(IOException ioe) { ioe.printStackTrace(); }
 
-                // TODO: configurable interpolation targets
-                // trusting that we're not interpolating anything 
-                // that can't fit in memory
-                boolean interpolated = false;
-                if( props != null && interpolation.interpolatable(outName)) {
-                    // interpolate push
-if(DEBUG) System.out.println("Interpolating "+outName);
-                    String text = IOUtils.readToString(in);
-                    text = interpolation.interpolate(text, props);
-                    in.close();
-                    in = new ByteArrayInputStream(text.getBytes());
-                    interpolated = true;
-                }
 
-                boolean interpolateArchive = false;
+        System.out.println("");
+        System.out.println("Payload has arrived. ");
+    }
 
-                // if an archive, then interpolate in the archive
-                // TODO: Make this configurable
-                if(props != null && interpolation.interpolatableArchive(outName)) {
-                    // first pass. See if any interpolatables
-                    // if so, then flag this for a zip-handler
-                    byte[] bytes = IOUtils.readToBytes(in);
-                    ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(bytes));
-                    ZipEntry zEntry = null;
-                    while( (zEntry = zin.getNextEntry()) != null) {
-                        if(interpolation.interpolatable(zEntry.getName())) {
-                            interpolateArchive = true;
-                            break;
-                        }
-                    }
-                    zin.close();
-                    in = new ByteArrayInputStream(bytes);
 
-                }
+    /**
+     * Extracts one entry, returning the character to show for it.
+     */
+    private static class EntryExtractor implements Callable {
 
-                if(interpolateArchive) {
-                    FileOutputStream out = new FileOutputStream( outFile );
+        private JarFile jar;
+        private JarEntry entry;
+        private String outName;
+        private Interpolation interpolation;
+        private Properties props;
+
+        EntryExtractor(JarFile jar, JarEntry entry, String outName, Interpolation interpolation, Properties props) {
+            this.jar = jar;
+            this.entry = entry;
+            this.outName = outName;
+            this.interpolation = interpolation;
+            this.props = props;
+        }
+
+        public Object call() throws IOException {
+            InputStream in = jar.getInputStream( entry );
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream( outName );
+                // TODO: configurable interpolation targets
+                // if an archive, then interpolate in the archive
+                // TODO: Make this configurable
+                if( props != null && interpolation.interpolatable(outName)) {
+                    // interpolate push
+if(DEBUG) System.out.println("Interpolating "+outName);
+                    interpolation.interpolate(in, out, props);
+                    return "$";
+                } else if(props != null && interpolation.interpolatableArchive(outName) &&
+                          containsInterpolatable(jar, entry, interpolation)) 
+                {
                     interpolateArchive(out, in, interpolation, props);
-                    out.close();
-                    System.out.print("#");
+                    return "#";
                 } else {
-                    OutputStream out = new FileOutputStream( outFile );
                     IOUtils.pushBytes(in, out);
+                    return ".";
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+                if(out != null) {
                     out.close();
-                    in.close();
-                    if(interpolated) {
-                        System.out.print("$");
-                    } else {
-                        System.out.print(".");
-                    }
                 }
-
             }
+        }
 
-            payletExecutor.execute(props);
-        } catch(IOException ioe) { ioe.printStackTrace(); }
-
-
-        System.out.println("");
-        System.out.println("Payload has arrived. ");
     }
 
+    // See if an archive has anything to interpolate, reading it 
+    // afresh from the jar rather than holding it in memory.
+    private static boolean containsInterpolatable(JarFile jar, JarEntry entry, Interpolation interpolation) throws IOException {
+        ZipInputStream zin = new ZipInputStream(jar.getInputStream(entry));
+        try {
+            ZipEntry zEntry = null;
+            while( (zEntry = zin.getNextEntry()) != null) {
+                if(interpolation.interpolatable(zEntry.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            zin.close();
+        }
+    }
 
+    // Entries are streamed from in to out one at a time; only a stored 
+    // entry which is changed is held in memory, as its size and crc 
+    // have to be written before it. Neither stream is closed.
     private static void interpolateArchive(OutputStream out, InputStream in, Interpolation interpolation, Properties props) throws IOException {
         ZipOutputStream zout = new ZipOutputStream(out);
         ZipInputStream zin = new ZipInputStream(in);
         ZipEntry zEntry = null;
-        InputStream tmpin = null;
         while( (zEntry = zin.getNextEntry()) != null) {
-            tmpin = zin;
-            long size = zEntry.getSize();
-            long crc = zEntry.getCrc();
-            if(props != null && interpolation.interpolatable(zEntry.getName())) {
-if(DEBUG) System.out.println("Interpolating in archive");
-                String text = IOUtils.readToString(zin);
-                text = interpolation.interpolate(text, props);
-                tmpin = new ByteArrayInputStream(text.getBytes());
-                size = text.getBytes().length;
-                CRC32 crc32 = new CRC32();
-                crc32.update(text.getBytes());
-                crc = crc32.getValue();
-            }
+            boolean interpolate = interpolation.interpolatable(zEntry.getName());
             // if interpolatable archive, then recurse.....
-            if(props != null && interpolation.interpolatableArchive(zEntry.getName())) {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                IOUtils.pushBytes(zin, baos);
-                tmpin = new ByteArrayInputStream( baos.toByteArray() );
-                baos = new ByteArrayOutputStream();
-if(DEBUG) System.out.println("Recursing into sub-archive");
-                interpolateArchive(baos, tmpin, interpolation, props);
-                tmpin = new ByteArrayInputStream( baos.toByteArray() );
-                size = baos.toByteArray().length;
-                CRC32 crc32 = new CRC32();
-                crc32.update(baos.toByteArray());
-                crc = crc32.getValue();
-            }
+            boolean recurse = !interpolate && interpolation.interpolatableArchive(zEntry.getName());
 
             ZipEntry newEntry = new ZipEntry(zEntry.getName());
             if(zEntry.getComment() != null) {
@@ -261,25 +291,51 @@ if(DEBUG) System.out.println("Recursing into sub-archive");
                 newEntry.setMethod(zEntry.getMethod());
                 zout.setMethod(zEntry.getMethod());
             }
-            if(crc != -1) {
-                newEntry.setCrc(crc);
-            }
-            if(zEntry.getSize() != -1) {
-                newEntry.setSize(size);
+
+            if(!interpolate && !recurse) {
+                if(zEntry.getCrc() != -1) {
+                    newEntry.setCrc(zEntry.getCrc());
+                }
+                if(zEntry.getSize() != -1) {
+                    newEntry.setSize(zEntry.getSize());
+                }
+                zout.putNextEntry(newEntry);
+                IOUtils.pushBytes(zin, zout);
+            } else if(zEntry.getMethod() == ZipEntry.STORED) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                interpolateEntry(zin, baos, recurse, interpolation, props);
+                byte[] bytes = baos.toByteArray();
+                CRC32 crc32 = new CRC32();
+                crc32.update(bytes);
+                newEntry.setCrc(crc32.getValue());
+                newEntry.setSize(bytes.length);
+                zout.putNextEntry(newEntry);
+                zout.write(bytes);
+            } else {
+                // the size and crc are worked out as it is deflated
+                zout.putNextEntry(newEntry);
+                interpolateEntry(zin, zout, recurse, interpolation, props);
             }
             /* Oddly fails, unsure why. 
             if(zEntry.getCompressedSize() != -1 && size == zEntry.getSize()) {
                 newEntry.setCompressedSize(zEntry.getCompressedSize());
             }
             */
-            zout.putNextEntry(newEntry);
 
-            IOUtils.pushBytes(tmpin, zout);
             zin.closeEntry();
             zout.closeEntry();
         }
         zout.finish();
-        zin.close();
+    }
+
+    private static void interpolateEntry(InputStream in, OutputStream out, boolean archive, Interpolation interpolation, Properties props) throws IOException {
+        if(archive) {
+if(DEBUG) System.out.println("Recursing into sub-archive");
+            interpolateArchive(out, in, interpolation, props);
+        } else {
+if(DEBUG) System.out.println("Interpolating in archive");
+            interpolation.interpolate(in, out, props);
+        }
     }
 
 }
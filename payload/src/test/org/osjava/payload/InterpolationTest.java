@@ -31,6 +31,10 @@
  */
 package org.osjava.payload;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
 import java.util.Properties;
 
 import junit.framework.*;
@@ -65,4 +69,36 @@ public class InterpolationTest extends TestCase {
         assertEquals( "Fred boom ${FOO} Joe", this.interpolation.interpolate(before, props) );
     }
 
+    public void testInterpolateDollars() {
+        Properties props = new Properties();
+        props.setProperty("BANG", "boom");
+        assertEquals( "$boom", this.interpolation.interpolate("$${BANG}", props) );
+        assertEquals( "${a boom", this.interpolation.interpolate("${a ${BANG}", props) );
+        assertEquals( "cost $5 {BANG}", this.interpolation.interpolate("cost $5 {BANG}", props) );
+        assertEquals( "end $", this.interpolation.interpolate("end $", props) );
+        assertEquals( "end ${BANG", this.interpolation.interpolate("end ${BANG", props) );
+    }
+
+    public void testInterpolateOnce() {
+        Properties props = new Properties();
+        props.setProperty("A", "${B}");
+        props.setProperty("B", "b");
+        assertEquals( "${B} b", this.interpolation.interpolate("${A} ${B}", props) );
+    }
+
+    public void testInterpolateStream() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("BANG", "boom");
+        // bigger than the read buffer, with keys across its edges
+        StringBuffer text = new StringBuffer();
+        StringBuffer expected = new StringBuffer();
+        for(int i=0; i<2000; i++) {
+            text.append("line ${BANG}\r\n");
+            expected.append("line boom\r\n");
+        }
+        StringWriter writer = new StringWriter();
+        this.interpolation.interpolate(new StringReader(text.toString()), writer, props);
+        assertEquals( expected.toString(), writer.toString() );
+    }
+
 }
@@ -79,7 +79,10 @@ public abstract class AbstractRenderer implements Renderer, Cloneable {
 
     public Renderer cloneRenderer() {
         try {
-            return (Renderer) this.clone();
+            AbstractRenderer renderer = (AbstractRenderer) this.clone();
+            // the clone's variables are set for its own report
+            renderer.variables = (Properties) this.variables.clone();
+            return renderer;
         } catch(CloneNotSupportedException cnfe) {
             cnfe.printStackTrace();
             return this;
@@ -1,6 +1,9 @@
 package org.osjava.reportrunner;
 
-public class FormattingResult implements Result {
+import java.io.Closeable;
+import java.io.IOException;
+
+public class FormattingResult implements Result, Closeable {
 
     private Result result;
     private Report report;
@@ -39,4 +42,10 @@ public class FormattingResult implements Result {
     public Column[] getHeader() {
         return this.result.getHeader();
     }
+
+    public void close() throws IOException {
+        if(this.result instanceof Closeable) {
+            ((Closeable) this.result).close();
+        }
+    }
 }
@@ -9,14 +9,56 @@ import org.apache.commons.lang.StringUtils;
 
 public class ReportFactory {
 
+    // Parsed xml files, keyed by the name they were asked for with. 
+    // The nodes are only ever read, so may be shared by every request. 
+    // Reports are still created fresh from them each time as they are 
+    // changed while a report is run.
+    private static Map xmlCache = new HashMap();
+
+    // The ReportGroups and the prototype Renderers, which are not changed 
+    // once built, and the parsed xml they were built from. They are built 
+    // again when any of that xml is reparsed.
+    private static ReportGroup[] groups;
+    private static CachedXml[] groupsSource;
+    private static Renderer[] renderers;
+    private static CachedXml renderersSource;
+
+    // Parsers and Formatters by class name and pattern. They hold nothing 
+    // but the pattern, so one of each may be used by every report.
+    private static Map patterned = new HashMap();
+
+    // how often, in milliseconds, to check whether a file has changed
+    private static long checkInterval = 1000;
+
+    /**
+     * Set how often the xml files are checked for changes. 
+     * A negative interval means they are never reloaded.
+     */
+    public static void setCheckInterval(long interval) {
+        checkInterval = interval;
+    }
+
+    /**
+     * Forget all the parsed xml, so it is read again when next needed.
+     */
+    public static void reload() {
+        synchronized(xmlCache) {
+            xmlCache.clear();
+        }
+    }
+
     public static Report getReport(String groupName, String reportName) {
-        Report[] reports = getReports(groupName);
-        for(int i=0; i<reports.length; i++) {
-            if(reports[i].getName().equals(reportName)) {
-                return reports[i];
-            }
+        ReportGroup group = getReportGroup(groupName);
+        if(group == null) {
+            throw new RuntimeException("Illegal group somehow chosen. ");
         }
-        return null;
+
+        // only build the report that's wanted
+        XMLNode reportNode = (XMLNode) getCachedXml( group.getFilename() ).getReportNodes().get(reportName);
+        if(reportNode == null) {
+            return null;
+        }
+        return createReport(group, reportNode);
     }
     public static ReportGroup getReportGroup(String groupName) {
         ReportGroup[] groups = getReportGroups();
@@ -28,9 +70,18 @@ public class ReportFactory {
         return null;
     }
     public static ReportGroup[] getReportGroups() {
-        Map resourcesMap = getResources();
+        CachedXml[] source = new CachedXml[] { getCachedXml("reportrunner.xml"), getCachedXml("resources.xml") };
+        synchronized(ReportFactory.class) {
+            if(groups == null || !Arrays.equals(source, groupsSource)) {
+                groups = createReportGroups(source[0].getNode(), createResources(source[1].getNode()));
+                groupsSource = source;
+            }
+            return (ReportGroup[]) groups.clone();
+        }
+    }
+    private static ReportGroup[] createReportGroups(XMLNode root, Map resourcesMap) {
         List groups = new ArrayList();
-        XMLNode node = parseXml("reportrunner.xml").getNode("reportrunner");
+        XMLNode node = root.getNode("reportrunner");
         Enumeration groupNodes = node.enumerateNode("reports");
         while(groupNodes.hasMoreElements()) {
             XMLNode groupNode = (XMLNode) groupNodes.nextElement();
@@ -42,8 +93,11 @@ public class ReportFactory {
         return (ReportGroup[]) groups.toArray( new ReportGroup[0] );
     }
     public static Map getResources() {
+        return createResources( parseXml("resources.xml") );
+    }
+    private static Map createResources(XMLNode root) {
         HashMap map = new HashMap();
-        XMLNode node = parseXml("resources.xml").getNode("resources");
+        XMLNode node = root.getNode("resources");
         Enumeration resourceNodes = node.enumerateNode("resource");
         while(resourceNodes.hasMoreElements()) {
             XMLNode resourceNode = (XMLNode) resourceNodes.nextElement();
@@ -59,14 +113,9 @@ public class ReportFactory {
             throw new RuntimeException("Illegal group somehow chosen. ");
         }
 
-        String filename = group.getFilename();
-        XMLNode node = parseXml( filename ).getNode("reports");
-        Enumeration reportNodes = node.enumerateNode("report");
-        while(reportNodes.hasMoreElements()) {
-            XMLNode reportNode = (XMLNode) reportNodes.nextElement();
-            if(reportNode.getAttr("name").equals(reportName)) {
-                return reportNode.toString();
-            }
+        XMLNode reportNode = (XMLNode) getCachedXml( group.getFilename() ).getReportNodes().get(reportName);
+        if(reportNode != null) {
+            return reportNode.toString();
         }
         throw new RuntimeException("Illegal report somehow chosen. ");
     }
@@ -82,33 +131,56 @@ public class ReportFactory {
         Enumeration reportNodes = node.enumerateNode("report");
         while(reportNodes.hasMoreElements()) {
             XMLNode reportNode = (XMLNode) reportNodes.nextElement();
-            String className = reportNode.getAttr("class");
-            Report report = (Report) ClassW.createObject(className);
-            // TODO: If report is null, throw exception
-            applyAttrs( report, reportNode, new String[] { "class" } );
-            applyNodes( report, reportNode.enumerateNode(), new String[] { "param", "column", "renderer", "columns", "renderers", "variant" } );
-            applyParamTag( report, reportNode.enumerateNode("param") );
-            applyVariantTag( report, reportNode.enumerateNode("variant") );
-            applyColumnTags( report, reportNode );    // "column" and "columns"
-            applyRendererTags( report, reportNode );  // "renderer" and "renderers"
-            report.setReportGroup(group);
-            reports.add(report);
+            reports.add(createReport(group, reportNode));
         }
         return (Report[]) reports.toArray( new Report[0] );
     }
 
+    private static Report createReport(ReportGroup group, XMLNode reportNode) {
+        String className = reportNode.getAttr("class");
+        Report report = (Report) ClassW.createObject(className);
+        // TODO: If report is null, throw exception
+        applyAttrs( report, reportNode, new String[] { "class" } );
+        applyNodes( report, reportNode.enumerateNode(), new String[] { "param", "column", "renderer", "columns", "renderers", "variant" } );
+        applyParamTag( report, reportNode.enumerateNode("param") );
+        applyVariantTag( report, reportNode.enumerateNode("variant") );
+        applyColumnTags( report, reportNode );    // "column" and "columns"
+        applyRendererTags( report, reportNode );  // "renderer" and "renderers"
+        report.setReportGroup(group);
+        return report;
+    }
+
     public static Renderer getRenderer(String rendererName) {
-        Renderer[] renderers = getRenderers();
+        Renderer[] renderers = getPrototypeRenderers();
         for(int i=0; i<renderers.length; i++) {
             if(renderers[i].getName().equals(rendererName)) {
-                return renderers[i];
+                return renderers[i].cloneRenderer();
             }
         }
         return null;
     }
     public static Renderer[] getRenderers() {
+        Renderer[] renderers = getPrototypeRenderers();
+        Renderer[] copies = new Renderer[renderers.length];
+        for(int i=0; i<renderers.length; i++) {
+            copies[i] = renderers[i].cloneRenderer();
+        }
+        return copies;
+    }
+    // not to be changed, clone them first
+    private static Renderer[] getPrototypeRenderers() {
+        CachedXml source = getCachedXml("renderers.xml");
+        synchronized(ReportFactory.class) {
+            if(renderers == null || source != renderersSource) {
+                renderers = createRenderers(source.getNode());
+                renderersSource = source;
+            }
+            return renderers;
+        }
+    }
+    private static Renderer[] createRenderers(XMLNode root) {
         List renderers = new ArrayList();
-        XMLNode node = parseXml("renderers.xml").getNode("renderers");
+        XMLNode node = root.getNode("renderers");
         Enumeration renderNodes = node.enumerateNode("renderer");
         while(renderNodes.hasMoreElements()) {
             XMLNode rendererNode = (XMLNode) renderNodes.nextElement();
@@ -232,24 +304,51 @@ LABEL:  while(nodes.hasMoreElements()) {
         Param param = new Param();
         applyAttrs( param, node, new String[] { "parser", "pattern" } );
         if(node.getAttr("parser") != null) {
-            try {
-                Parser parser = (Parser) Thread.currentThread().getContextClassLoader().loadClass(node.getAttr("parser")).newInstance();
-                parser.setPattern( node.getAttr("pattern") );
+            Parser parser = (Parser) getPatterned( node.getAttr("parser"), node.getAttr("pattern") );
+            if(parser != null) {
                 param.setParser(parser);
-            } catch(ClassNotFoundException cnfe) {
-                cnfe.printStackTrace();
-            } catch(InstantiationException ie) {
-                ie.printStackTrace();
-            } catch(IllegalAccessException iae) {
-                iae.printStackTrace();
             }
         }
         return param;
     }
 
+    // a shared Parser or Formatter, null if it can't be created
+    private static Object getPatterned( String className, String pattern ) {
+        String key = className + " " + pattern;
+        synchronized(patterned) {
+            Object obj = patterned.get(key);
+            if(obj != null) {
+                return obj;
+            }
+        }
+        Object obj = null;
+        try {
+            obj = Thread.currentThread().getContextClassLoader().loadClass(className).newInstance();
+        } catch(ClassNotFoundException cnfe) {
+            cnfe.printStackTrace();
+            return null;
+        } catch(InstantiationException ie) {
+            ie.printStackTrace();
+            return null;
+        } catch(IllegalAccessException iae) {
+            iae.printStackTrace();
+            return null;
+        }
+        if(obj instanceof Parser) {
+            ((Parser) obj).setPattern( pattern );
+        } else
+        if(obj instanceof Formatter) {
+            ((Formatter) obj).setPattern( pattern );
+        }
+        synchronized(patterned) {
+            patterned.put(key, obj);
+        }
+        return obj;
+    }
+
     // move <renderers> into here too
     private static void applyRendererTags( Report report, XMLNode reportNode ) {
-        Renderer[] renderers = ReportFactory.getRenderers();
+        Renderer[] renderers = getPrototypeRenderers();
         Enumeration nodes = reportNode.enumerateNode();
         while(nodes.hasMoreElements()) {
             XMLNode node = (XMLNode) nodes.nextElement();
@@ -259,7 +358,7 @@ LABEL:  while(nodes.hasMoreElements()) {
                 for(int i=0; i<rendererTypes.length; i++) {
                     for(int j=0; j<renderers.length; j++) {
                         if(rendererTypes[i].equals(renderers[j].getName())) {
-                            report.addRenderer(renderers[j]);
+                            report.addRenderer(renderers[j].cloneRenderer());
                             break;
                         }
                     }
@@ -309,16 +408,9 @@ LABEL:  while(nodes.hasMoreElements()) {
                 column.setName( node.getAttr("name") );
                 column.setLabel( node.getAttr("label") );
                 if(node.getAttr("formatter") != null) {
-                    try {
-                        Formatter formatter = (Formatter) Thread.currentThread().getContextClassLoader().loadClass(node.getAttr("formatter")).newInstance();
-                        formatter.setPattern( node.getAttr("pattern") );
+                    Formatter formatter = (Formatter) getPatterned( node.getAttr("formatter"), node.getAttr("pattern") );
+                    if(formatter != null) {
                         column.setFormatter(formatter);
-                    } catch(ClassNotFoundException cnfe) {
-                        cnfe.printStackTrace();
-                    } catch(InstantiationException ie) {
-                        ie.printStackTrace();
-                    } catch(IllegalAccessException iae) {
-                        iae.printStackTrace();
                     }
                 }
                 report.addColumn( column );
@@ -327,8 +419,28 @@ LABEL:  while(nodes.hasMoreElements()) {
     }
 
     private static XMLNode parseXml(String file) {
+        return getCachedXml(file).getNode();
+    }
+
+    // the lock on xmlCache is only held to find the entry, the file 
+    // is parsed holding the entry's lock so other files can be read
+    private static CachedXml getCachedXml(String name) {
+        CachedXml cached;
+        synchronized(xmlCache) {
+            cached = (CachedXml) xmlCache.get(name);
+            if(cached == null || cached.isStale()) {
+                cached = new CachedXml(name);
+                xmlCache.put(name, cached);
+            }
+        }
+        cached.load();
+        return cached;
+    }
+
+    private static XMLNode parseXml(String file, File[] source) {
         if(file.startsWith("classpath:")) {
             file = file.substring("classpath:".length());
+            source[0] = toFile( XMLParser.class.getResource("/"+file) );
             return parseXmlFromClasspath( file );
         }
 
@@ -338,11 +450,29 @@ LABEL:  while(nodes.hasMoreElements()) {
 
         File f = new File(file);
         if(f.exists()) {
+            source[0] = f;
             return parseXmlFromFile( f );
         } else {
+            source[0] = toFile( XMLParser.class.getResource("/"+file) );
             return parseXmlFromClasspath( file );
         }
     }
+
+    // resources inside jars can't change, so have no File
+    private static File toFile(java.net.URL url) {
+        if(url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            // decodes %20 and the like
+            return new File(url.toURI());
+        } catch(java.net.URISyntaxException use) {
+            return new File(url.getPath());
+        } catch(IllegalArgumentException iae) {
+            return new File(url.getPath());
+        }
+    }
+
     private static XMLNode parseXmlFromFile(File file) {
         Reader reader = null;
         try {
@@ -373,5 +503,75 @@ LABEL:  while(nodes.hasMoreElements()) {
         }
     }
 
-}
+    /**
+     * A parsed xml file and when it was last modified. It is parsed 
+     * by the first to load it, anyone else asking waits for that.
+     */
+    private static class CachedXml {
 
+        private String name;
+        private XMLNode node;
+        private File file;
+        private long lastModified;
+        private long lastChecked;
+        private Map reportNodes;
+        // set once the fields above are, so isStale needn't wait on a parse
+        private volatile boolean loaded;
+
+        CachedXml(String name) {
+            this.name = name;
+            this.lastChecked = System.currentTimeMillis();
+        }
+
+        synchronized void load() {
+            if(this.loaded) {
+                return;
+            }
+            File[] source = new File[1];
+            this.node = parseXml(this.name, source);
+            this.file = source[0];
+            if(this.file != null) {
+                this.lastModified = this.file.lastModified();
+            }
+            this.loaded = true;
+        }
+
+        synchronized XMLNode getNode() {
+            return this.node;
+        }
+
+        // the <report> nodes of a reports file, by name
+        synchronized Map getReportNodes() {
+            if(this.reportNodes == null) {
+                Map map = new HashMap();
+                XMLNode reports = this.node.getNode("reports");
+                if(reports != null) {
+                    Enumeration nodes = reports.enumerateNode("report");
+                    while(nodes.hasMoreElements()) {
+                        XMLNode reportNode = (XMLNode) nodes.nextElement();
+                        // the first of a name wins, as it always has
+                        if(!map.containsKey(reportNode.getAttr("name"))) {
+                            map.put(reportNode.getAttr("name"), reportNode);
+                        }
+                    }
+                }
+                this.reportNodes = map;
+            }
+            return this.reportNodes;
+        }
+
+        // only called with the xmlCache lock held
+        boolean isStale() {
+            if(!this.loaded || this.file == null || checkInterval < 0) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if(now - this.lastChecked < checkInterval) {
+                return false;
+            }
+            this.lastChecked = now;
+            return this.file.lastModified() != this.lastModified;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.osjava.reportrunner;
+
+import java.io.File;
+
+/**
+ * A report that has been submitted to run in the background. 
+ * Its rendered output is spooled to a file until downloaded.
+ */
+public class ReportJob {
+
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String DONE = "done";
+    public static final String FAILED = "failed";
+
+    private String id;
+    private Report report;
+    private Renderer renderer;
+    private String state = QUEUED;
+    private File file;
+    private Throwable error;
+    private long submitted;
+    private long started;
+    private long finished;
+
+    ReportJob(String id, Report report, Renderer renderer) {
+        this.id = id;
+        this.report = report;
+        this.renderer = renderer;
+        this.submitted = System.currentTimeMillis();
+    }
+
+    public String getId() { return this.id; }
+    public Report getReport() { return this.report; }
+    public Renderer getRenderer() { return this.renderer; }
+
+    public synchronized String getState() { return this.state; }
+    public synchronized File getFile() { return this.file; }
+    public synchronized Throwable getError() { return this.error; }
+    public synchronized long getSubmitted() { return this.submitted; }
+    public synchronized long getStarted() { return this.started; }
+    public synchronized long getFinished() { return this.finished; }
+
+    public synchronized boolean isFinished() {
+        return this.state == DONE || this.state == FAILED;
+    }
+
+    synchronized void started() {
+        this.state = RUNNING;
+        this.started = System.currentTimeMillis();
+    }
+
+    synchronized void done(File file) {
+        this.state = DONE;
+        this.file = file;
+        this.finished = System.currentTimeMillis();
+    }
+
+    synchronized void failed(Throwable error) {
+        this.state = FAILED;
+        this.error = error;
+        this.finished = System.currentTimeMillis();
+    }
+
+    synchronized void delete() {
+        if(this.file != null) {
+            this.file.delete();
+            this.file = null;
+        }
+    }
+
+}
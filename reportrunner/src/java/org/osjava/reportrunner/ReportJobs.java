@@ -0,0 +1,294 @@
+package org.osjava.reportrunner;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.log4j.Logger;
+import org.osjava.reportrunner.reports.AbstractSqlReport;
+
+/**
+ * Runs reports in the background on a bounded pool of threads, so a 
+ * long report does not hold a request thread. Each job's output is 
+ * rendered to a temporary file which is kept until it expires, and 
+ * is found by a random id. No more than a set number of reports run 
+ * against one data source at a time; the rest wait in a queue of their 
+ * own rather than holding a thread of the pool.
+ */
+public class ReportJobs {
+
+    private static Logger logger = Logger.getLogger(ReportJobs.class);
+
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_QUEUE = 100;
+    public static final int DEFAULT_RESOURCE_LIMIT = 2;
+    // how long finished jobs are kept, in milliseconds
+    public static final long DEFAULT_EXPIRY = 30 * 60 * 1000;
+
+    private static ReportJobs instance;
+
+    public static synchronized ReportJobs getInstance() {
+        if(instance == null) {
+            instance = new ReportJobs(DEFAULT_THREADS, DEFAULT_QUEUE, DEFAULT_RESOURCE_LIMIT, DEFAULT_EXPIRY);
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the shared instance, shutting down the old one.
+     */
+    public static synchronized void setInstance(ReportJobs jobs) {
+        if(instance != null) {
+            instance.shutdown();
+        }
+        instance = jobs;
+    }
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService expirer;
+    private int queueSize;
+    private int resourceLimit;
+    private long expiry;
+    private Map jobs = new LinkedHashMap();
+    // resource key to Slots
+    private Map resources = new HashMap();
+    private int waiting;
+
+    public ReportJobs(int threads, int queueSize, int resourceLimit, long expiry) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue(queueSize));
+        this.queueSize = queueSize;
+        this.resourceLimit = resourceLimit;
+        this.expiry = expiry;
+        this.expirer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ReportJobs-expiry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long period = Math.max(expiry, 1000);
+        this.expirer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                expire();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a report to be run. 
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ReportJob submit(Report report, Renderer renderer) {
+        expire();
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), report, renderer);
+        String key = getResourceKey(report);
+        synchronized(this) {
+            if(!acquire(key)) {
+                // the data source is busy, wait for one of its jobs to finish
+                if(this.waiting >= this.queueSize) {
+                    throw new RejectedExecutionException("Too many reports waiting for "+key);
+                }
+                getSlots(key).waiting.add(job);
+                this.waiting++;
+                this.jobs.put(job.getId(), job);
+                return job;
+            }
+            this.jobs.put(job.getId(), job);
+        }
+        try {
+            execute(job, key);
+        } catch(RejectedExecutionException ree) {
+            synchronized(this) {
+                this.jobs.remove(job.getId());
+            }
+            release(key);
+            throw ree;
+        }
+        return job;
+    }
+
+    private void execute(final ReportJob job, final String key) {
+        this.executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    runJob(job);
+                } finally {
+                    release(key);
+                }
+            }
+        });
+    }
+
+    public synchronized ReportJob getJob(String id) {
+        return (ReportJob) this.jobs.get(id);
+    }
+
+    public synchronized ReportJob[] getJobs() {
+        return (ReportJob[]) this.jobs.values().toArray(new ReportJob[0]);
+    }
+
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    public void shutdown() {
+        this.expirer.shutdownNow();
+        this.executor.shutdownNow();
+        synchronized(this) {
+            Iterator iterator = this.jobs.values().iterator();
+            while(iterator.hasNext()) {
+                ((ReportJob) iterator.next()).delete();
+            }
+            this.jobs.clear();
+        }
+    }
+
+    private void runJob(ReportJob job) {
+        File file = null;
+        try {
+            job.started();
+            // deleted when the job expires
+            file = File.createTempFile("reportrunner", "."+job.getRenderer().getExtension());
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                run(job.getReport(), job.getRenderer(), out);
+            } finally {
+                out.close();
+            }
+            job.done(file);
+        } catch(IOException ioe) {
+            job.failed(ioe);
+        } catch(RuntimeException re) {
+            logger.error("Report "+job.getReport().getName()+" failed", re);
+            job.failed(re);
+        } catch(Error e) {
+            logger.error("Report "+job.getReport().getName()+" failed", e);
+            job.failed(e);
+            throw e;
+        } finally {
+            // whatever went wrong, the job must not stay RUNNING
+            if(!job.isFinished()) {
+                job.failed(new IllegalStateException("Report stopped without finishing. "));
+            }
+            if(job.getState() == ReportJob.FAILED && file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Execute a report and render it to the stream, recording how 
+     * long each took in the ReportMetrics.
+     *
+     * @throws EmptyReportException if the report has no rows
+     */
+    public static void run(Report report, Renderer renderer, OutputStream out) throws IOException {
+        long rep_start = System.currentTimeMillis();
+        Result result = null;
+        try {
+            result = report.execute();
+            long rep_time = System.currentTimeMillis() - rep_start;
+
+            if(result == null) {
+                throw new RuntimeException("Result is null. ");
+            }
+            if(result.hasNextRow() == false) {
+                throw new EmptyReportException();
+            }
+            result = new FormattingResult(result, report);
+
+            long rend_start = System.currentTimeMillis();
+            renderer.display( result, report, out );
+            long rend_time = System.currentTimeMillis() - rend_start;
+
+            ReportMetrics.getInstance().record(report, rep_time, rend_time);
+        } catch(RuntimeException re) {
+            ReportMetrics.getInstance().recordFailure(report);
+            throw re;
+        } finally {
+            // streamed results hold a database connection
+            if(result instanceof Closeable) {
+                ((Closeable) result).close();
+            }
+        }
+    }
+
+    // reports that use the same data source share a limit
+    private static String getResourceKey(Report report) {
+        String group = report.getReportGroup() == null ? "" : report.getReportGroup().getName();
+        if(report instanceof AbstractSqlReport) {
+            return group + "/" + ((AbstractSqlReport) report).getDsName();
+        }
+        return group + "/" + report.getName();
+    }
+
+    private synchronized Slots getSlots(String key) {
+        Slots slots = (Slots) this.resources.get(key);
+        if(slots == null) {
+            slots = new Slots();
+            this.resources.put(key, slots);
+        }
+        return slots;
+    }
+
+    // take one of the resource's slots, if it has one free
+    private synchronized boolean acquire(String key) {
+        Slots slots = getSlots(key);
+        if(slots.running >= this.resourceLimit) {
+            return false;
+        }
+        slots.running++;
+        return true;
+    }
+
+    // give back a slot, handing it straight to the next job waiting for it
+    private void release(String key) {
+        while(true) {
+            ReportJob next;
+            synchronized(this) {
+                Slots slots = getSlots(key);
+                if(slots.waiting.isEmpty()) {
+                    slots.running--;
+                    if(slots.running == 0) {
+                        this.resources.remove(key);
+                    }
+                    return;
+                }
+                next = (ReportJob) slots.waiting.removeFirst();
+                this.waiting--;
+            }
+            try {
+                execute(next, key);
+                return;
+            } catch(RejectedExecutionException ree) {
+                next.failed(ree);
+            }
+        }
+    }
+
+    // the jobs running against a resource, and those waiting for it
+    private static class Slots {
+        int running;
+        LinkedList waiting = new LinkedList();
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - this.expiry;
+        synchronized(this) {
+            Iterator iterator = this.jobs.values().iterator();
+            while(iterator.hasNext()) {
+                ReportJob job = (ReportJob) iterator.next();
+                if(job.isFinished() && job.getFinished() < cutoff) {
+                    job.delete();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+}
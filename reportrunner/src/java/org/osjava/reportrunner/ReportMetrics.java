@@ -0,0 +1,113 @@
+package org.osjava.reportrunner;
+
+import java.util.*;
+import org.apache.log4j.Logger;
+
+/**
+ * Timings of each report that has been run. Each run is also logged 
+ * to the org.osjava.reportrunner.ReportMetrics log4j category as 
+ * date,execute ms,render ms,report name.
+ */
+public class ReportMetrics {
+
+    private static Logger logger = Logger.getLogger(ReportMetrics.class);
+
+    private static ReportMetrics instance = new ReportMetrics();
+
+    public static ReportMetrics getInstance() {
+        return instance;
+    }
+
+    private Map timings = new TreeMap();
+
+    public void record(Report report, long executeTime, long renderTime) {
+        String name = report.getReportGroup() == null ? report.getName() : report.getReportGroup().getName() + "/" + report.getName();
+        synchronized(this) {
+            Timing timing = (Timing) this.timings.get(name);
+            if(timing == null) {
+                timing = new Timing(name);
+                this.timings.put(name, timing);
+            }
+            timing.add(executeTime, renderTime);
+        }
+        if(logger.isInfoEnabled()) {
+            logger.info(new Date()+","+executeTime+","+renderTime+","+report.getName());
+        }
+    }
+
+    public synchronized void recordFailure(Report report) {
+        String name = report.getReportGroup() == null ? report.getName() : report.getReportGroup().getName() + "/" + report.getName();
+        Timing timing = (Timing) this.timings.get(name);
+        if(timing == null) {
+            timing = new Timing(name);
+            this.timings.put(name, timing);
+        }
+        timing.failures++;
+    }
+
+    /**
+     * Copies of the timings, by group/report name.
+     */
+    public synchronized Timing[] getTimings() {
+        Timing[] array = new Timing[this.timings.size()];
+        Iterator iterator = this.timings.values().iterator();
+        for(int i=0; iterator.hasNext(); i++) {
+            array[i] = ((Timing) iterator.next()).copy();
+        }
+        return array;
+    }
+
+    public synchronized void clear() {
+        this.timings.clear();
+    }
+
+    public static class Timing {
+        private String name;
+        private long runs;
+        private long failures;
+        private long executeTotal;
+        private long executeMax;
+        private long renderTotal;
+        private long renderMax;
+
+        Timing(String name) {
+            this.name = name;
+        }
+
+        void add(long executeTime, long renderTime) {
+            this.runs++;
+            this.executeTotal += executeTime;
+            this.executeMax = Math.max(this.executeMax, executeTime);
+            this.renderTotal += renderTime;
+            this.renderMax = Math.max(this.renderMax, renderTime);
+        }
+
+        Timing copy() {
+            Timing timing = new Timing(this.name);
+            timing.runs = this.runs;
+            timing.failures = this.failures;
+            timing.executeTotal = this.executeTotal;
+            timing.executeMax = this.executeMax;
+            timing.renderTotal = this.renderTotal;
+            timing.renderMax = this.renderMax;
+            return timing;
+        }
+
+        public String getName() { return this.name; }
+        public long getRuns() { return this.runs; }
+        public long getFailures() { return this.failures; }
+        public long getExecuteTotal() { return this.executeTotal; }
+        public long getExecuteMax() { return this.executeMax; }
+        public long getRenderTotal() { return this.renderTotal; }
+        public long getRenderMax() { return this.renderMax; }
+
+        public long getExecuteAverage() {
+            return this.runs == 0 ? 0 : this.executeTotal / this.runs;
+        }
+
+        public long getRenderAverage() {
+            return this.runs == 0 ? 0 : this.renderTotal / this.runs;
+        }
+    }
+
+}
@@ -2,6 +2,7 @@
 package org.osjava.reportrunner;
 
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
@@ -239,20 +240,27 @@ public class ReportRunner {
                 if(result == null) {
                     throw new RuntimeException("Result is null. ");
                 }
-                if(result.hasNextRow() == false) {
-                    throw new EmptyReportException();
+                try {
+                    if(result.hasNextRow() == false) {
+                        throw new EmptyReportException();
+                    }
+                    //System.out.println(new java.util.Date()+" Formatting result");
+                    result = new FormattingResult(result, report);
+                    
+                    long rend_start = System.currentTimeMillis();
+                    //System.out.println(new java.util.Date()+" Rendering result");
+                    //renderer.display( result, report, response.getOutputStream() );
+                    renderer.display(result, report, os);
+                    long rend_time = System.currentTimeMillis() - rend_start;
+                    //System.out.println(new java.util.Date()+" Took "+rend_time);
+                    
+                    logReport(report, rep_time, rend_time);
+                } finally {
+                    // streamed results hold a database connection
+                    if(result instanceof Closeable) {
+                        ((Closeable) result).close();
+                    }
                 }
-                //System.out.println(new java.util.Date()+" Formatting result");
-                result = new FormattingResult(result, report);
-                
-                long rend_start = System.currentTimeMillis();
-                //System.out.println(new java.util.Date()+" Rendering result");
-                //renderer.display( result, report, response.getOutputStream() );
-                renderer.display(result, report, os);
-                long rend_time = System.currentTimeMillis() - rend_start;
-                //System.out.println(new java.util.Date()+" Took "+rend_time);
-                
-                logReport(report, rep_time, rend_time);
             } else {
                 throw new RuntimeException("Renderer or Report is null. ");
             }
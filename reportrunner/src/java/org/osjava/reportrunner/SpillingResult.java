@@ -0,0 +1,149 @@
+package org.osjava.reportrunner;
+
+import java.io.*;
+
+/**
+ * Wraps a Result that can only be read once, such as a streamed 
+ * ResultSet, copying each row to a temporary file as it is read. 
+ * reset() then replays the rows from disk, so a second pass does 
+ * not need the rows in memory or the query to be run again.
+ */
+public class SpillingResult implements Result, Closeable {
+
+    // ObjectOutputStream remembers every object it writes until reset
+    private static final int RESET_INTERVAL = 256;
+
+    private Result result;
+    private File file;
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+    private int written;
+    private int position;
+
+    public SpillingResult(Result result) {
+        this.result = result;
+    }
+
+    public boolean hasNextRow() {
+        if(this.in != null) {
+            return this.position < this.written;
+        }
+        return this.result.hasNextRow();
+    }
+
+    public Object[] nextRow() {
+        if(this.in != null) {
+            if(this.position == this.written) {
+                throw new RuntimeException("No more rows available. ");
+            }
+            try {
+                this.position++;
+                return (Object[]) this.in.readObject();
+            } catch(IOException ioe) {
+                throw new RuntimeException("Unable to read spilled row: "+ioe.getMessage(), ioe);
+            } catch(ClassNotFoundException cnfe) {
+                throw new RuntimeException("Unable to read spilled row: "+cnfe.getMessage(), cnfe);
+            }
+        }
+        Object[] row = this.result.nextRow();
+        spill(row);
+        return row;
+    }
+
+    public void reset() {
+        try {
+            if(this.in == null) {
+                // the rest of the rows are needed on disk before replaying
+                while(this.result.hasNextRow()) {
+                    spill(this.result.nextRow());
+                }
+                closeResult();
+                if(this.out != null) {
+                    this.out.close();
+                    this.out = null;
+                }
+            } else {
+                this.in.close();
+            }
+            this.position = 0;
+            if(this.file == null) {
+                // nothing was read, so there is nothing to replay
+                this.in = new ObjectInputStream(new ByteArrayInputStream(emptyStream()));
+            } else {
+                this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            }
+        } catch(IOException ioe) {
+            throw new RuntimeException("Unable to reset spilled result: "+ioe.getMessage(), ioe);
+        }
+    }
+
+    public Column[] getHeader() {
+        return this.result.getHeader();
+    }
+
+    public void close() {
+        closeResult();
+        closeQuietly(this.out);
+        closeQuietly(this.in);
+        this.out = null;
+        this.in = null;
+        if(this.file != null) {
+            this.file.delete();
+            this.file = null;
+        }
+    }
+
+    private void spill(Object[] row) {
+        try {
+            if(this.out == null) {
+                this.file = File.createTempFile("reportrunner", ".rows");
+                this.file.deleteOnExit();
+                this.out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+            }
+            this.out.writeObject(serializable(row));
+            this.written++;
+            if(this.written % RESET_INTERVAL == 0) {
+                this.out.reset();
+            }
+        } catch(IOException ioe) {
+            throw new RuntimeException("Unable to spill row to disk: "+ioe.getMessage(), ioe);
+        }
+    }
+
+    // a copy of the row with anything unserializable as a String
+    private static Object[] serializable(Object[] row) {
+        Object[] copy = row;
+        for(int i=0; i<row.length; i++) {
+            if(row[i] != null && !(row[i] instanceof Serializable)) {
+                if(copy == row) {
+                    copy = (Object[]) row.clone();
+                }
+                copy[i] = row[i].toString();
+            }
+        }
+        return copy;
+    }
+
+    private static byte[] emptyStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).close();
+        return bytes.toByteArray();
+    }
+
+    private void closeResult() {
+        if(this.result instanceof Closeable) {
+            closeQuietly((Closeable) this.result);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch(IOException ioe) {
+                // ignore
+            }
+        }
+    }
+
+}
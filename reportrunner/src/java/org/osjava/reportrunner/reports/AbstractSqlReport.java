@@ -5,6 +5,7 @@ import org.apache.commons.dbutils.*;
 import org.apache.commons.dbutils.handlers.*;
 import org.osjava.reportrunner.*;
 
+import java.io.Closeable;
 import java.sql.*;
 import java.util.List;
 import java.util.ArrayList;
@@ -16,9 +17,14 @@ public abstract class AbstractSqlReport extends AbstractReport {
 
     private static String DEFAULT_RESOURCE = "SqlReportDS";
 
+    private static int DEFAULT_FETCH_SIZE = 1000;
+
     private String dsName = DEFAULT_RESOURCE;
     private String sql;
     private String params;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private boolean spill;
+    private long cacheTtl;
 
     public void setSql(String sql) {
         this.sql = sql;
@@ -34,10 +40,46 @@ public abstract class AbstractSqlReport extends AbstractReport {
         }
     }
 
-    protected String getDsName() {
+    public String getDsName() {
         return this.dsName;
     }
 
+    /**
+     * How many rows the driver should fetch from the database at a time.
+     */
+    public void setFetchSize(String fetchSize) {
+        this.fetchSize = Integer.parseInt(fetchSize);
+    }
+
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * Whether rows should be copied to disk as they are read, so 
+     * the Result may be reset() and read again.
+     */
+    public void setSpill(String spill) {
+        this.spill = "true".equalsIgnoreCase(spill);
+    }
+
+    public boolean isSpill() {
+        return this.spill;
+    }
+
+    /**
+     * How many seconds the rows of this report may be served from 
+     * the QueryCache for the same sql and parameters. Reports are 
+     * not cached unless this is set.
+     */
+    public void setCacheTtl(String seconds) {
+        this.cacheTtl = Long.parseLong(seconds) * 1000;
+    }
+
+    public long getCacheTtl() {
+        return this.cacheTtl / 1000;
+    }
+
     public final Result execute() throws ReportException {
         ReportGroup group = super.getReportGroup();
         Resource resource = group.getResource(this.dsName);
@@ -50,6 +92,15 @@ public abstract class AbstractSqlReport extends AbstractReport {
             this.sql = StringUtils.replace( this.sql, "?"+variants[i].getName(), snippet);
         }
 
+        return postExecute( executeQuery(ds) );
+    }
+
+    /**
+     * Run the report's query. By default the rows from executeSql 
+     * are wrapped in an ArrayResult; subclasses that can should 
+     * return a streaming Result from stream() instead.
+     */
+    protected Result executeQuery(DataSource ds) throws ReportException {
         Object[] array = executeSql(ds);
 
         if(array == null) {
@@ -67,7 +118,7 @@ public abstract class AbstractSqlReport extends AbstractReport {
 
         array = hackOracleTimestamp(array);
 
-        return postExecute( new ArrayResult( getColumns(), array ) );
+        return new ArrayResult( getColumns(), array );
     }
 
     protected Result postExecute(Result result) throws ReportException {
@@ -76,6 +127,180 @@ public abstract class AbstractSqlReport extends AbstractReport {
 
     protected abstract Object[] executeSql(DataSource ds) throws ReportException;
 
+    /**
+     * Execute the sql and return a Result that reads rows from the 
+     * open cursor as the renderer asks for them. If the report has 
+     * no columns, they are taken from the ResultSet's meta data. 
+     * Reports with a cacheTtl are read in full and cached instead.
+     */
+    protected Result stream(DataSource ds, String sql, Object[] values) throws ReportException {
+        if(this.cacheTtl > 0) {
+            return cached(ds, sql, values);
+        }
+        Result result = open(ds, sql, values);
+        if(this.spill) {
+            result = new SpillingResult(result);
+        }
+        return result;
+    }
+
+    // Rows are copied for the cache only until they reach its maxBytes. 
+    // Past that the rows read so far and the rest of the cursor are 
+    // streamed as usual, and anyone waiting runs the query themselves.
+    private Result cached(final DataSource ds, final String sql, final Object[] values) throws ReportException {
+        final String groupName = getReportGroup().getName();
+        String key = QueryCache.createKey(groupName, getName(), this.dsName, sql, values);
+        final Result[] uncached = new Result[1];
+        QueryCache.Entry entry = QueryCache.getInstance().get(key, this.cacheTtl, new QueryCache.Loader() {
+            public QueryCache.Entry load() throws ReportException {
+                ResultSetResult result = open(ds, sql, values);
+                try {
+                    long maxBytes = QueryCache.getInstance().getMaxBytes();
+                    long bytes = 0;
+                    List rows = new ArrayList();
+                    while(result.hasNextRow()) {
+                        Object[] row = result.nextRow();
+                        rows.add(row);
+                        bytes += QueryCache.estimateRow(row);
+                        if(bytes > maxBytes) {
+                            uncached[0] = new ContinuedResult(rows, result);
+                            return null;
+                        }
+                    }
+                    return new QueryCache.Entry(groupName, getName(), getColumns(), rows.toArray(new Object[0]));
+                } finally {
+                    if(uncached[0] == null) {
+                        result.close();
+                    }
+                }
+            }
+        });
+        if(entry == null) {
+            Result result = uncached[0];
+            if(result == null) {
+                result = open(ds, sql, values);
+            }
+            if(this.spill) {
+                result = new SpillingResult(result);
+            }
+            return result;
+        }
+        // another request may have run it, so the columns may be unknown
+        if(getColumns().length == 0 && entry.getHeader() != null) {
+            Column[] columns = entry.getHeader();
+            for(int i=0; i<columns.length; i++) {
+                addColumn(columns[i]);
+            }
+        }
+        return entry.createResult();
+    }
+
+    private ResultSetResult open(DataSource ds, String sql, Object[] values) throws ReportException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        boolean autoCommit = true;
+        try {
+            conn = ds.getConnection();
+            autoCommit = conn.getAutoCommit();
+            // some drivers, PostgreSQL for one, only use a cursor 
+            // inside a transaction
+            if(autoCommit) {
+                conn.setAutoCommit(false);
+            }
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if(this.fetchSize > 0) {
+                stmt.setFetchSize(this.fetchSize);
+            }
+            for(int i=0; i<values.length; i++) {
+                if(values[i] != null) {
+                    stmt.setObject(i + 1, values[i]);
+                } else {
+                    stmt.setNull(i + 1, Types.VARCHAR);
+                }
+            }
+            rs = stmt.executeQuery();
+
+            if(getColumns().length == 0) {
+                // use meta data to guess column names
+                ResultSetMetaData meta = rs.getMetaData();
+                int sz = meta.getColumnCount();
+                for(int i=1; i<=sz; i++) {
+                    Column column = new Column();
+                    column.setName(meta.getColumnName(i));
+                    column.setLabel(meta.getColumnLabel(i));
+                    addColumn(column);
+                }
+            }
+
+            return new ResultSetResult(getColumns(), conn, stmt, rs, autoCommit);
+        } catch(SQLException sqle) {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(stmt);
+            if(conn != null) {
+                try {
+                    conn.setAutoCommit(autoCommit);
+                } catch(SQLException sqle2) {
+                    // ignore, it's being closed
+                }
+            }
+            DbUtils.closeQuietly(conn);
+            throw new ReportException("Unable to run SQL report", sqle);
+        }
+    }
+
+    // the rows read before giving up on caching, then the rest of the cursor
+    private static class ContinuedResult implements Result, Closeable {
+
+        private List rows;
+        private ResultSetResult rest;
+        private int index;
+
+        ContinuedResult(List rows, ResultSetResult rest) {
+            this.rows = rows;
+            this.rest = rest;
+        }
+
+        public boolean hasNextRow() {
+            return this.index < this.rows.size() || this.rest.hasNextRow();
+        }
+
+        public Object[] nextRow() {
+            if(this.index < this.rows.size()) {
+                Object[] row = (Object[]) this.rows.get(this.index);
+                // let the copied rows go as they are used
+                this.rows.set(this.index++, null);
+                return row;
+            }
+            return this.rest.nextRow();
+        }
+
+        public void reset() {
+            if(this.index > 0) {
+                throw new UnsupportedOperationException("A streamed ResultSet can only be read once. Set spill=\"true\" on the report to be able to reset it. ");
+            }
+        }
+
+        public Column[] getHeader() {
+            return this.rest.getHeader();
+        }
+
+        public void close() {
+            this.rest.close();
+        }
+    }
+
+    /**
+     * Read every row of a Result into an array.
+     */
+    protected static Object[] toArray(Result result) {
+        List list = new ArrayList();
+        while(result.hasNextRow()) {
+            list.add(result.nextRow());
+        }
+        return list.toArray(new Object[0]);
+    }
+
     // returns a Choice[]
     public Choice[] getParamChoices(Param param) {
         String binding = param.getBinding();
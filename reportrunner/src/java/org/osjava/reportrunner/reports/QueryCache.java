@@ -0,0 +1,339 @@
+package org.osjava.reportrunner.reports;
+
+import java.util.*;
+import org.osjava.reportrunner.*;
+
+/**
+ * Caches the rows of SQL reports that ask for it, so the same report 
+ * with the same parameters is not run against the database again 
+ * until its time to live is up. The cache is an LRU bounded by an 
+ * estimate of the bytes its rows take. Identical queries that arrive 
+ * while one is running wait for it rather than running too.
+ */
+public class QueryCache {
+
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static QueryCache instance = new QueryCache(DEFAULT_MAX_BYTES);
+
+    public static QueryCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Runs the query when the cache does not have it. Returns null 
+     * if the rows are not to be cached, as when they are too big.
+     */
+    public static interface Loader {
+        Entry load() throws ReportException;
+    }
+
+    private long maxBytes;
+    private long bytes;
+    private LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+    private Map loading = new HashMap();
+    private long nextId;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public QueryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static String createKey(String group, String report, String resource, String sql, Object[] values) {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append(group).append('\n');
+        buffer.append(report).append('\n');
+        buffer.append(resource).append('\n');
+        buffer.append(sql);
+        for(int i=0; i<values.length; i++) {
+            buffer.append('\n');
+            if(values[i] != null) {
+                buffer.append(values[i].getClass().getName()).append(':');
+            }
+            buffer.append(values[i]);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Get the entry for a key, loading it if it is not cached or 
+     * has expired. If the same key is already being loaded, wait 
+     * for that instead. Null if the Loader gave nothing to cache.
+     */
+    public Entry get(String key, long ttl, Loader loader) throws ReportException {
+        Loading load = null;
+        boolean owner = false;
+        synchronized(this) {
+            Entry entry = (Entry) this.entries.get(key);
+            if(entry != null) {
+                if(!entry.isExpired()) {
+                    entry.hit();
+                    this.hits++;
+                    return entry;
+                }
+                remove(key);
+            }
+            this.misses++;
+            load = (Loading) this.loading.get(key);
+            if(load == null) {
+                load = new Loading();
+                this.loading.put(key, load);
+                owner = true;
+            }
+        }
+
+        if(!owner) {
+            return load.waitFor();
+        }
+
+        Entry entry = null;
+        try {
+            entry = loader.load();
+            if(entry == null) {
+                load.done(null, null);
+                return null;
+            }
+            entry.init(key, ttl);
+            synchronized(this) {
+                entry.id = ++this.nextId;
+                // something bigger than the whole cache is not kept
+                if(ttl > 0 && entry.getBytes() <= this.maxBytes) {
+                    this.entries.put(key, entry);
+                    this.bytes += entry.getBytes();
+                    evict();
+                }
+            }
+            load.done(entry, null);
+            return entry;
+        } catch(ReportException re) {
+            load.done(null, re);
+            throw re;
+        } catch(RuntimeException re) {
+            load.done(null, new ReportException("Unable to run report", re));
+            throw re;
+        } finally {
+            synchronized(this) {
+                this.loading.remove(key);
+            }
+        }
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * The cached entries, least recently used first.
+     */
+    public synchronized Entry[] getEntries() {
+        return (Entry[]) this.entries.values().toArray(new Entry[0]);
+    }
+
+    public synchronized boolean invalidate(long id) {
+        Iterator iterator = this.entries.values().iterator();
+        while(iterator.hasNext()) {
+            Entry entry = (Entry) iterator.next();
+            if(entry.getId() == id) {
+                iterator.remove();
+                this.bytes -= entry.getBytes();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forget every entry for a report, or every report of a 
+     * group if the report is null.
+     */
+    public synchronized int invalidate(String group, String report) {
+        int count = 0;
+        Iterator iterator = this.entries.values().iterator();
+        while(iterator.hasNext()) {
+            Entry entry = (Entry) iterator.next();
+            if(entry.getGroup().equals(group) && (report == null || entry.getReport().equals(report))) {
+                iterator.remove();
+                this.bytes -= entry.getBytes();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry entry = (Entry) this.entries.remove(key);
+        if(entry != null) {
+            this.bytes -= entry.getBytes();
+        }
+    }
+
+    private void evict() {
+        Iterator iterator = this.entries.values().iterator();
+        while(this.bytes > this.maxBytes && iterator.hasNext()) {
+            Entry entry = (Entry) iterator.next();
+            iterator.remove();
+            this.bytes -= entry.getBytes();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * The rows of one run of a report.
+     */
+    public static class Entry {
+
+        private String key;
+        private String group;
+        private String report;
+        private Column[] header;
+        private Object[] rows;
+        private long bytes;
+        private long created;
+        private long expires;
+        private long id;
+        private int hits;
+
+        public Entry(String group, String report, Column[] header, Object[] rows) {
+            this.group = group;
+            this.report = report;
+            this.header = header;
+            this.rows = rows;
+            this.bytes = estimate(rows);
+        }
+
+        void init(String key, long ttl) {
+            this.key = key;
+            this.created = System.currentTimeMillis();
+            this.expires = this.created + ttl;
+        }
+
+        synchronized void hit() {
+            this.hits++;
+        }
+
+        public long getId() { return this.id; }
+        public String getKey() { return this.key; }
+        public String getGroup() { return this.group; }
+        public String getReport() { return this.report; }
+        public Column[] getHeader() { return this.header; }
+        public int getRowCount() { return this.rows.length; }
+        public long getBytes() { return this.bytes; }
+        public long getCreated() { return this.created; }
+        public long getExpires() { return this.expires; }
+        public synchronized int getHits() { return this.hits; }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= this.expires;
+        }
+
+        /**
+         * A Result over a copy of the rows, as formatting a Result 
+         * changes its rows in place.
+         */
+        public Result createResult() {
+            if(this.rows.length == 0) {
+                return new NullResult();
+            }
+            return new ArrayResult(this.header, this.rows) {
+                public Object[] nextRow() {
+                    return (Object[]) super.nextRow().clone();
+                }
+            };
+        }
+
+        // a rough guess at the heap the rows take
+        private static long estimate(Object[] rows) {
+            long size = 16;
+            for(int i=0; i<rows.length; i++) {
+                size += estimateRow((Object[]) rows[i]);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * A rough guess at the heap one row takes, as it is counted 
+     * against the cache's maxBytes.
+     */
+    public static long estimateRow(Object[] row) {
+        // its slot in the rows, the row array and its values
+        long size = 4 + 16 + 4 * row.length;
+        for(int j=0; j<row.length; j++) {
+            Object value = row[j];
+            if(value == null) {
+                continue;
+            } else
+            if(value instanceof String) {
+                size += 40 + 2 * ((String) value).length();
+            } else
+            if(value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else
+            if(value instanceof java.math.BigDecimal) {
+                size += 64;
+            } else {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
+    // a load in progress that other threads may wait on
+    private static class Loading {
+        private boolean done;
+        private Entry entry;
+        private ReportException error;
+
+        synchronized void done(Entry entry, ReportException error) {
+            this.entry = entry;
+            this.error = error;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized Entry waitFor() throws ReportException {
+            while(!this.done) {
+                try {
+                    wait();
+                } catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new ReportException("Interrupted waiting for the same report to run", ie);
+                }
+            }
+            if(this.error != null) {
+                throw this.error;
+            }
+            return this.entry;
+        }
+    }
+
+}
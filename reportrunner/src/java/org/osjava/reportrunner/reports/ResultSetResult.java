@@ -0,0 +1,134 @@
+package org.osjava.reportrunner.reports;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.osjava.reportrunner.*;
+
+/**
+ * A Result that reads rows from a live ResultSet as they are asked 
+ * for, so a report of any size is never held in memory. The 
+ * connection is closed when the last row has been read, or by 
+ * close() if rendering stops early. 
+ * Rows can only be read once; wrap in a SpillingResult to reset().
+ */
+public class ResultSetResult implements Result, Closeable {
+
+    private static Map timestampMethods = new HashMap();
+
+    private Column[] header;
+    private Connection conn;
+    private Statement stmt;
+    private ResultSet rs;
+    private boolean autoCommit;
+    private int columnCount;
+
+    private Object[] next;
+    private boolean done;
+    private boolean read;
+
+    /**
+     * @param autoCommit the auto-commit setting to restore on the 
+     *                   connection when it is closed
+     */
+    public ResultSetResult(Column[] header, Connection conn, Statement stmt, ResultSet rs, boolean autoCommit) throws SQLException {
+        this.header = header;
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.autoCommit = autoCommit;
+        this.columnCount = rs.getMetaData().getColumnCount();
+    }
+
+    public boolean hasNextRow() {
+        if(this.next == null && !this.done) {
+            fetch();
+        }
+        return this.next != null;
+    }
+
+    public Object[] nextRow() {
+        if(!hasNextRow()) {
+            throw new RuntimeException("No more rows available from the ResultSet. ");
+        }
+        Object[] row = this.next;
+        this.next = null;
+        this.read = true;
+        return row;
+    }
+
+    public void reset() {
+        if(this.read) {
+            throw new UnsupportedOperationException("A streamed ResultSet can only be read once. Set spill=\"true\" on the report to be able to reset it. ");
+        }
+    }
+
+    public Column[] getHeader() {
+        return this.header;
+    }
+
+    public void close() {
+        if(this.conn == null) {
+            return;
+        }
+        this.done = true;
+        DbUtils.closeQuietly(this.rs);
+        DbUtils.closeQuietly(this.stmt);
+        try {
+            // nothing was written, this just ends the cursor's transaction
+            this.conn.rollback();
+            this.conn.setAutoCommit(this.autoCommit);
+        } catch(SQLException sqle) {
+            // ignore, it's being closed
+        }
+        DbUtils.closeQuietly(this.conn);
+        this.conn = null;
+    }
+
+    private void fetch() {
+        try {
+            if(this.rs.next()) {
+                Object[] row = new Object[this.columnCount];
+                for(int i=0; i<row.length; i++) {
+                    row[i] = convert(this.rs.getObject(i + 1));
+                }
+                this.next = row;
+            } else {
+                close();
+            }
+        } catch(SQLException sqle) {
+            close();
+            throw new RuntimeException("Unable to read row from ResultSet: "+sqle.getMessage(), sqle);
+        }
+    }
+
+    // Oracle's TIMESTAMP is not a java.sql.Timestamp
+    private static Object convert(Object value) {
+        if(value == null || !"oracle.sql.TIMESTAMP".equals(value.getClass().getName())) {
+            return value;
+        }
+        try {
+            Method method = null;
+            synchronized(timestampMethods) {
+                method = (Method) timestampMethods.get(value.getClass());
+                if(method == null) {
+                    method = value.getClass().getMethod("timestampValue", new Class[0]);
+                    timestampMethods.put(value.getClass(), method);
+                }
+            }
+            return method.invoke(value, new Object[0]);
+        } catch(NoSuchMethodException nsme) {
+            throw new RuntimeException("Unable to convert Oracle timestamp: "+nsme.getMessage(), nsme);
+        } catch(IllegalAccessException iae) {
+            throw new RuntimeException("Unable to convert Oracle timestamp: "+iae.getMessage(), iae);
+        } catch(InvocationTargetException ite) {
+            throw new RuntimeException("Unable to convert Oracle timestamp: "+ite.getTargetException().getMessage(), ite.getTargetException());
+        }
+    }
+
+}
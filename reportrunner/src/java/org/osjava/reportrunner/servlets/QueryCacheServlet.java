@@ -0,0 +1,92 @@
+package org.osjava.reportrunner.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import javax.servlet.ServletException;
+import javax.servlet.http.*;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.osjava.reportrunner.reports.QueryCache;
+
+/**
+ * Shows what the QueryCache holds, and lets entries be thrown away 
+ * by POSTing one of:
+ *
+ * _invalidate=id               forget one entry
+ * _group=g[&amp;_report=r]         forget a report's or a group's entries
+ * _clear=true                  forget everything
+ *
+ * The init-param maxBytes sets the size of the cache, so the servlet 
+ * should be loaded on startup.
+ */
+public class QueryCacheServlet extends HttpServlet {
+
+    public static final String GROUP = "_group";
+    public static final String REPORT = "_report";
+    public static final String INVALIDATE = "_invalidate";
+    public static final String CLEAR = "_clear";
+
+    public void init() throws ServletException {
+        String maxBytes = getInitParameter("maxBytes");
+        if(maxBytes != null) {
+            QueryCache.getInstance().setMaxBytes(Long.parseLong(maxBytes));
+        }
+    }
+
+    // changes only on POST, then back to the listing
+    public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        QueryCache cache = QueryCache.getInstance();
+
+        if("true".equals(request.getParameter(CLEAR))) {
+            cache.clear();
+        }
+        if(request.getParameter(INVALIDATE) != null) {
+            cache.invalidate(Long.parseLong(request.getParameter(INVALIDATE)));
+        }
+        if(request.getParameter(GROUP) != null) {
+            cache.invalidate(request.getParameter(GROUP), request.getParameter(REPORT));
+        }
+
+        response.sendRedirect(request.getRequestURI());
+    }
+
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        QueryCache cache = QueryCache.getInstance();
+
+        response.setContentType("text/html");
+        PrintWriter out = response.getWriter();
+        out.println("<html><head><title>Query Cache</title></head><body>");
+        out.println("<p>"+cache.getBytes()+" of "+cache.getMaxBytes()+" bytes used. "+
+                    cache.getHits()+" hits, "+cache.getMisses()+" misses, "+cache.getEvictions()+" evictions. "+
+                    button(CLEAR, "true", "Clear")+"</p>");
+        out.println("<table border=\"1\">");
+        out.println("<tr><th>Group</th><th>Report</th><th>Query</th><th>Rows</th><th>Bytes</th><th>Hits</th><th>Created</th><th>Expires</th><th></th></tr>");
+        QueryCache.Entry[] entries = cache.getEntries();
+        // most recently used first
+        for(int i=entries.length-1; i>=0; i--) {
+            QueryCache.Entry entry = entries[i];
+            out.print("<tr><td>"+escape(entry.getGroup())+"</td>");
+            out.print("<td>"+escape(entry.getReport())+"</td>");
+            out.print("<td><pre>"+escape(entry.getKey())+"</pre></td>");
+            out.print("<td>"+entry.getRowCount()+"</td>");
+            out.print("<td>"+entry.getBytes()+"</td>");
+            out.print("<td>"+entry.getHits()+"</td>");
+            out.print("<td>"+new Date(entry.getCreated())+"</td>");
+            out.print("<td>"+new Date(entry.getExpires())+"</td>");
+            out.println("<td>"+button(INVALIDATE, ""+entry.getId(), "Invalidate")+"</td></tr>");
+        }
+        out.println("</table></body></html>");
+        out.flush();
+    }
+
+    private static String button(String name, String value, String label) {
+        return "<form method=\"post\" style=\"display:inline\">"+
+               "<input type=\"hidden\" name=\""+name+"\" value=\""+escape(value)+"\"/>"+
+               "<input type=\"submit\" value=\""+label+"\"/></form>";
+    }
+
+    private static String escape(String str) {
+        return StringEscapeUtils.escapeHtml(str);
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.osjava.reportrunner.servlets;
+
+import java.io.*;
+import java.util.Date;
+import javax.servlet.http.*;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.osjava.reportrunner.*;
+
+/**
+ * Follows reports submitted with _async=true. 
+ *
+ * ?_job=id                 the job's state, refreshing until it is done
+ * ?_job=id&amp;_download=true  the rendered report
+ * no parameters            the state of the jobs, without their ids, 
+ *                          and the timings of each report
+ */
+public class ReportJobServlet extends HttpServlet {
+
+    public static final String JOB = "_job";
+    public static final String DOWNLOAD = "_download";
+
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String id = request.getParameter(JOB);
+        if(id == null) {
+            showJobs(response);
+            return;
+        }
+
+        ReportJob job = ReportJobs.getInstance().getJob(id);
+        if(job == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No such report job, it may have expired. ");
+            return;
+        }
+
+        if("true".equals(request.getParameter(DOWNLOAD)) && job.getState() == ReportJob.DONE) {
+            download(job, response);
+            return;
+        }
+
+        response.setContentType("text/html");
+        PrintWriter out = response.getWriter();
+        out.print("<html><head><title>"+escape(job.getReport().getLabel())+"</title>");
+        if(!job.isFinished()) {
+            out.print("<meta http-equiv=\"refresh\" content=\"2\">");
+        }
+        out.println("</head><body>");
+        out.println("<p>"+escape(job.getReport().getLabel())+" is "+job.getState()+".</p>");
+        if(job.getState() == ReportJob.DONE) {
+            out.println("<p><a href=\"?"+JOB+"="+job.getId()+"&amp;"+DOWNLOAD+"=true\">Download</a> ("+job.getFile().length()+" bytes, took "+(job.getFinished() - job.getStarted())+"ms)</p>");
+        } else
+        if(job.getState() == ReportJob.FAILED) {
+            if(job.getError() instanceof EmptyReportException) {
+                out.println("<p>The report has no results.</p>");
+            } else {
+                out.println("<p>"+escape(String.valueOf(job.getError()))+"</p>");
+            }
+        }
+        out.println("</body></html>");
+        out.flush();
+    }
+
+    private void download(ReportJob job, HttpServletResponse response) throws IOException {
+        Renderer renderer = job.getRenderer();
+        File file = job.getFile();
+        response.setContentType( renderer.getMimeType() );
+        if(!renderer.isInline()) {
+            response.setHeader("Content-Disposition", "attachment; filename="+job.getReport().getName()+"."+renderer.getExtension());
+        }
+        // setContentLength takes an int, and a spool file may be larger
+        response.setHeader("Content-Length", String.valueOf(file.length()));
+
+        OutputStream out = response.getOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        out.flush();
+    }
+
+    private void showJobs(HttpServletResponse response) throws IOException {
+        ReportJobs jobs = ReportJobs.getInstance();
+        response.setContentType("text/html");
+        PrintWriter out = response.getWriter();
+        out.println("<html><head><title>Report Jobs</title></head><body>");
+        out.println("<p>"+jobs.getActiveCount()+" running, "+jobs.getQueueSize()+" queued.</p>");
+        out.println("<table border=\"1\">");
+        out.println("<tr><th>Report</th><th>State</th><th>Submitted</th><th>Took</th></tr>");
+        // no job ids, they are all that stops one user fetching 
+        // another's report
+        ReportJob[] array = jobs.getJobs();
+        for(int i=array.length-1; i>=0; i--) {
+            ReportJob job = array[i];
+            out.print("<tr><td>"+escape(job.getReport().getName())+"</td>");
+            out.print("<td>"+job.getState()+"</td>");
+            out.print("<td>"+new Date(job.getSubmitted())+"</td>");
+            out.println("<td>"+(job.isFinished() ? (job.getFinished() - job.getStarted())+"ms" : "")+"</td></tr>");
+        }
+        out.println("</table>");
+
+        out.println("<table border=\"1\">");
+        out.println("<tr><th>Report</th><th>Runs</th><th>Failures</th><th>Execute avg/max ms</th><th>Render avg/max ms</th></tr>");
+        ReportMetrics.Timing[] timings = ReportMetrics.getInstance().getTimings();
+        for(int i=0; i<timings.length; i++) {
+            ReportMetrics.Timing timing = timings[i];
+            out.print("<tr><td>"+escape(timing.getName())+"</td>");
+            out.print("<td>"+timing.getRuns()+"</td>");
+            out.print("<td>"+timing.getFailures()+"</td>");
+            out.print("<td>"+timing.getExecuteAverage()+" / "+timing.getExecuteMax()+"</td>");
+            out.println("<td>"+timing.getRenderAverage()+" / "+timing.getRenderMax()+"</td></tr>");
+        }
+        out.println("</table></body></html>");
+        out.flush();
+    }
+
+    private static String escape(String str) {
+        return StringEscapeUtils.escapeHtml(str);
+    }
+
+}
@@ -2,6 +2,8 @@ package org.osjava.reportrunner.servlets;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import javax.servlet.ServletException;
 import javax.servlet.http.*;
 import org.osjava.reportrunner.*;
 
@@ -10,6 +12,29 @@ public class ReportRunnerServlet extends HttpServlet {
     public static final String GROUP = "_group";
     public static final String REPORT = "_report";
     public static final String RENDERER = "_renderer";
+    public static final String ASYNC = "_async";
+
+    /**
+     * The init-params async.threads, async.queue and async.resourceLimit 
+     * size the pool that runs reports asked for with _async=true.
+     */
+    public void init() throws ServletException {
+        if(getInitParameter("async.threads") != null || getInitParameter("async.queue") != null || getInitParameter("async.resourceLimit") != null) {
+            ReportJobs.setInstance( new ReportJobs( getInt("async.threads", ReportJobs.DEFAULT_THREADS),
+                                                    getInt("async.queue", ReportJobs.DEFAULT_QUEUE),
+                                                    getInt("async.resourceLimit", ReportJobs.DEFAULT_RESOURCE_LIMIT),
+                                                    ReportJobs.DEFAULT_EXPIRY ) );
+        }
+    }
+
+    public void destroy() {
+        ReportJobs.getInstance().shutdown();
+    }
+
+    private int getInt(String name, int defaultValue) {
+        String value = getInitParameter(name);
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
 
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
@@ -76,6 +101,21 @@ public class ReportRunnerServlet extends HttpServlet {
             }
         }
 
+        if(renderer == null || report == null) {
+            throw new RuntimeException("Renderer or Report is null. ");
+        }
+
+        if("true".equals(request.getParameter(ASYNC))) {
+            // run in the background and send them to wait for it
+            try {
+                ReportJob job = ReportJobs.getInstance().submit(report, renderer);
+                response.sendRedirect(request.getContextPath() + "/reportjob?" + ReportJobServlet.JOB + "=" + job.getId());
+            } catch(RejectedExecutionException ree) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many reports are waiting to run, please try again later. ");
+            }
+            return;
+        }
+
 //System.out.println(new java.util.Date()+" Preparing response");
         // prepare response
         response.setContentType( renderer.getMimeType() );
@@ -84,62 +124,12 @@ public class ReportRunnerServlet extends HttpServlet {
         }
 
         // render results
-        if(renderer != null && report != null) {
-
-            long rep_start = System.currentTimeMillis();
-//System.out.println(new java.util.Date()+" Executing report");
-            Result result = report.execute();
-            long rep_time = System.currentTimeMillis() - rep_start;
-//System.out.println(new java.util.Date()+" Took "+rep_time);
-            
-            if(result == null) {
-                throw new RuntimeException("Result is null. ");
-            }
-            if(result.hasNextRow() == false) {
-                throw new EmptyReportException();
-            }
-//System.out.println(new java.util.Date()+" Formatting result");
-            result = new FormattingResult(result, report);
-
-            long rend_start = System.currentTimeMillis();
-//System.out.println(new java.util.Date()+" Rendering result");
-            renderer.display( result, report, response.getOutputStream() );
-            long rend_time = System.currentTimeMillis() - rend_start;
-//System.out.println(new java.util.Date()+" Took "+rend_time);
-
-            logReport(report, request, rep_time, rend_time);
-        } else {
-            throw new RuntimeException("Renderer or Report is null. ");
-        }
+        ReportJobs.run( report, renderer, response.getOutputStream() );
 
         response.getOutputStream().flush();
 
     }
 
-    private static synchronized void logReport(Report report, HttpServletRequest request, long report_time, long render_time) {
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter( new File("rrr.log"), true );
-            // add more to this
-            StringBuffer buffer = new StringBuffer();
-            buffer.append(new Date());
-            buffer.append(",");
-            buffer.append(report_time);
-            buffer.append(",");
-            buffer.append(render_time);
-            buffer.append(",");
-            buffer.append(report.getName());
-            buffer.append("\n");
-            writer.write(buffer.toString());
-            writer.flush();
-            writer.close();
-        } catch(IOException ioe) {
-            ioe.printStackTrace();
-        } finally {
-            if(writer != null) { try { writer.close(); } catch(IOException ioe) { } }
-        }
-    }
-
     public static void applyResources(Report report, HttpServletRequest request) {
         String[] required = report.getResourceNames();
         for(int i=0; i<required.length; i++) {
@@ -35,14 +35,14 @@ import org.apache.commons.lang.StringUtils;
 
 import org.apache.commons.httpclient.*;
 import org.apache.commons.httpclient.methods.*;
+import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URL;
 
 import java.util.*;
 
-import org.osjava.norbert.NoRobotClient;
-import org.osjava.norbert.NoRobotException;
+import org.osjava.norbert.HostThrottle;
+import org.osjava.norbert.RobotsCache;
 import com.generationjava.config.Config;
 import org.osjava.oscube.container.Session;
 
@@ -89,6 +89,7 @@ public abstract class AbstractHttpFetcher implements Fetcher {
                 if(checkIllegal(url, userAgent)) {
                     throw new FetchingException("Not allowed to fetch url: "+uri+" due to the NoRobots RFQ. ");
                 }
+                waitForTurn(url, userAgent, cfg);
             }
 
             HttpClient client = (HttpClient) session.get(SESSION_CACHE_CODE);
@@ -131,6 +132,23 @@ public abstract class AbstractHttpFetcher implements Fetcher {
                 }
             }
 
+            // Only GETs are cached. With a previous copy we ask the 
+            // server to send the page only if it has changed.
+            HttpCache cache = null;
+            HttpCache.Entry cached = null;
+            if(postQuery == null && cfg.has("http.cache")) {
+                cache = HttpCache.getInstance(new File(cfg.getString("http.cache")));
+                cached = cache.get(uri);
+                if(cached != null) {
+                    if(cached.getETag() != null) {
+                        method.addRequestHeader("If-None-Match", cached.getETag());
+                    }
+                    if(cached.getLastModified() != null) {
+                        method.addRequestHeader("If-Modified-Since", cached.getLastModified());
+                    }
+                }
+            }
+
             int port = url.getPort();
             if(port == -1) {
                 port = getDefaultPort();
@@ -139,7 +157,16 @@ public abstract class AbstractHttpFetcher implements Fetcher {
             if(cfg.has("timeout")) {
                 client.setTimeout(cfg.getInt("timeout"));
             }
+            long requested = System.currentTimeMillis();
             int result = client.executeMethod(method);
+            if(result == 304 && cached != null) {
+                method.releaseConnection();
+                cache.notModified(cached, requested);
+                FilePage page = new FilePage(cache.getBody(cached), cached.getType());
+                page.setUnchanged(true);
+                page.setDocumentBase(getDocumentBase(url));
+                return page;
+            }
             if(result != 200) {
                 throw new FetchingException("Unable to fetch from "+uri+" due to error code "+result);
             }
@@ -158,45 +185,76 @@ public abstract class AbstractHttpFetcher implements Fetcher {
                 }
             }
 
-            String txt = method.getResponseBodyAsString();
-            method.releaseConnection(); 
-            MemoryPage page = new MemoryPage(txt, type);
-
-            String base = url.getProtocol()+"://"+url.getHost();
-            if(url.getPort() != -1) {
-                base += ":"+url.getPort();
-            }
-            String path = url.getPath();
-            int idx = path.lastIndexOf("/");
-            if(idx != -1) {
-                base += path.substring(0, idx);
+            AbstractPage page = null;
+            if(cache != null) {
+                // stream the body to disk rather than into a String
+                HttpCache.Entry entry = null;
+                try {
+                    entry = cache.store(uri, method.getResponseBodyAsStream(), 
+                                        getHeader(method, "ETag"), 
+                                        getHeader(method, "Last-Modified"), 
+                                        type, requested);
+                } finally {
+                    method.releaseConnection();
+                }
+                FilePage filePage = new FilePage(cache.getBody(entry), type);
+                // not remembered until the scrape is stored
+                filePage.setCacheEntry(cache, entry);
+                // the server may ignore conditional requests but 
+                // still send the same bytes
+                if(cached != null && entry.getHash().equals(cached.getHash())) {
+                    filePage.setUnchanged(true);
+                }
+                page = filePage;
+            } else {
+                String txt = method.getResponseBodyAsString();
+                method.releaseConnection(); 
+                page = new MemoryPage(txt, type);
             }
-            page.setDocumentBase(base);
+
+            page.setDocumentBase(getDocumentBase(url));
             return page;
         } catch(IOException ioe) {
             throw new FetchingException("Error fetching from "+uri+". "+ioe.getMessage(), ioe);
         }
     }
 
-    private boolean checkIllegal(URL url, String userAgent) throws MalformedURLException {
-        // TODO: Use User-Agent here. And fix Norbert.
-        NoRobotClient nrc = new NoRobotClient(userAgent);
-
-        // only parse the root, not the whole url
-        try {
-            nrc.parse( toBase(url) );
-        } catch(NoRobotException nre) {
-            // no robots.txt, so who cares :)
-            return false;
+    private String getDocumentBase(URL url) {
+        String base = url.getProtocol()+"://"+url.getHost();
+        if(url.getPort() != -1) {
+            base += ":"+url.getPort();
         }
-        return !nrc.isUrlAllowed(url);
+        String path = url.getPath();
+        int idx = path.lastIndexOf("/");
+        if(idx != -1) {
+            base += path.substring(0, idx);
+        }
+        return base;
+    }
+
+    private String getHeader(HttpMethod method, String name) {
+        org.apache.commons.httpclient.Header hdr = method.getResponseHeader(name);
+        return (hdr == null) ? null : hdr.getValue();
     }
 
-    private URL toBase(URL url) throws MalformedURLException {
-        return new URL(url.getProtocol() + "://" + url.getHost() + 
-           (
-              url.getPort() == -1 ? "" : ":" + url.getPort()
-           ) + "/");
+    private boolean checkIllegal(URL url, String userAgent) {
+        // robots.txt files are fetched once per site and shared 
+        // between all the scrapers in this JVM
+        return !RobotsCache.getInstance().isUrlAllowed(url, userAgent);
+    }
+
+    // honour the site's Crawl-delay, or our own crawl.delay if longer; 
+    // robots.txt gives seconds, but both are milliseconds by now
+    private void waitForTurn(URL url, String userAgent, Config cfg) throws FetchingException {
+        long delay = RobotsCache.getInstance().getCrawlDelay(url, userAgent);
+        if(cfg.has("crawl.delay")) {
+            delay = Math.max(delay, cfg.getInt("crawl.delay"));
+        }
+        try {
+            HostThrottle.getInstance().waitForTurn(url, delay);
+        } catch(InterruptedException ie) {
+            throw new FetchingException("Interrupted while waiting to fetch "+url, ie);
+        }
     }
 
 }
@@ -50,6 +50,7 @@ public abstract class AbstractPage implements Page {
 
     private String documentBase;
     private String type;
+    private boolean unchanged;
 
     public AbstractPage() {
     }
@@ -62,6 +63,24 @@ public abstract class AbstractPage implements Page {
         return this.type;
     }
 
+    /**
+     * Whether the page is known to be the same as when it was 
+     * last fetched, so there is no need to parse it again. 
+     */
+    public boolean isUnchanged() {
+        return this.unchanged;
+    }
+
+    public void setUnchanged(boolean unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Nothing to remember by default. 
+     */
+    public void commit() throws IOException {
+    }
+
     public abstract Reader read() throws IOException;
 
     public Page fetch(String uri, Config cfg, Session session) throws FetchingException {
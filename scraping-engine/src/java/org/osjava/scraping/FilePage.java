@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * A page whose content is in a file, such as a body in the 
+ * HttpCache. Nothing is read until the page is.
+ */
+public class FilePage extends AbstractPage {
+
+    private File file;
+    private String encoding;
+
+    // the fetch to remember once the page has been stored
+    private HttpCache cache;
+    private HttpCache.Entry entry;
+
+    public FilePage(File file, String type) {
+        this.file = file;
+        setType(type);
+        this.encoding = getCharset(type);
+    }
+
+    public Reader read() throws IOException {
+        return new InputStreamReader(new FileInputStream(this.file), this.encoding);
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * The cache entry to commit when this page has been stored.
+     */
+    public void setCacheEntry(HttpCache cache, HttpCache.Entry entry) {
+        this.cache = cache;
+        this.entry = entry;
+    }
+
+    public void commit() throws IOException {
+        if(this.entry != null) {
+            this.cache.commit(this.entry);
+            this.entry = null;
+        }
+    }
+
+    // the charset from a content type, or HTTP's default
+    private static String getCharset(String type) {
+        if(type != null) {
+            int idx = type.toLowerCase().indexOf("charset=");
+            if(idx != -1) {
+                String charset = type.substring(idx + "charset=".length()).trim();
+                int end = 0;
+                while(end < charset.length() && charset.charAt(end) != ';' && !Character.isWhitespace(charset.charAt(end))) {
+                    end++;
+                }
+                charset = charset.substring(0, end);
+                if(charset.startsWith("\"") && charset.endsWith("\"") && charset.length() > 1) {
+                    charset = charset.substring(1, charset.length() - 1);
+                }
+                try {
+                    if(charset.length() > 0 && java.nio.charset.Charset.isSupported(charset)) {
+                        return charset;
+                    }
+                } catch(java.nio.charset.IllegalCharsetNameException icne) {
+                    // fall through to the default
+                }
+            }
+        }
+        return "ISO-8859-1";
+    }
+
+}
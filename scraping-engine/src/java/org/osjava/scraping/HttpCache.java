@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An on-disk cache of fetched pages, so a page that has not 
+ * changed since it was last scraped need not be downloaded again. 
+ * The ETag and Last-Modified of each uri are remembered for 
+ * conditional requests, and bodies are stored under the SHA-1 of 
+ * their content so identical pages share a file. Bodies are 
+ * streamed straight to disk rather than held in memory. 
+ * A fetch is only remembered once it is committed, after what was 
+ * scraped from it has been stored, so a failed scrape is retried 
+ * in full the next time.
+ *
+ * <pre>
+ * dir/entries/&lt;sha1 of uri&gt;  properties describing the last fetch
+ * dir/bodies/&lt;sha1 of body&gt;  the content
+ * </pre>
+ */
+public class HttpCache {
+
+    private static Logger logger = Logger.getLogger(HttpCache.class);
+
+    private static Map instances = new HashMap();
+
+    /**
+     * Get the cache for a directory, creating it if need be. 
+     */
+    public static HttpCache getInstance(File dir) throws IOException {
+        String key = dir.getCanonicalPath();
+        synchronized(instances) {
+            HttpCache cache = (HttpCache) instances.get(key);
+            if(cache == null) {
+                cache = new HttpCache(dir);
+                instances.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    private File entries;
+    private File bodies;
+
+    // body hash to the number of stored entries not yet committed
+    private Map pending = new HashMap();
+
+    private long fetched;
+    private long notModified;
+    private long bytesFetched;
+    private long bytesSaved;
+    private long fetchedMillis;
+    private long notModifiedMillis;
+
+    public HttpCache(File dir) throws IOException {
+        this.entries = new File(dir, "entries");
+        this.bodies = new File(dir, "bodies");
+        mkdirs(this.entries);
+        mkdirs(this.bodies);
+    }
+
+    /**
+     * The cached entry for a uri, or null if there is not one 
+     * or its body has gone.
+     */
+    public Entry get(String uri) {
+        File file = new File(this.entries, digest(uri));
+        if(!file.exists()) {
+            return null;
+        }
+        Properties props = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            props.load(in);
+        } catch(IOException ioe) {
+            logger.warn("Unable to read cache entry for "+uri, ioe);
+            return null;
+        } finally {
+            close(in);
+        }
+        // guard against a clash of uri digests
+        if(!uri.equals(props.getProperty("uri"))) {
+            return null;
+        }
+        Entry entry = new Entry(props);
+        if(!getBody(entry).exists()) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Save a newly fetched body. The stream is copied to disk, 
+     * not into memory, and is not closed. The returned entry is 
+     * not used for conditional requests until it is committed, 
+     * and its body is kept by purge until then. 
+     * requested is when the request was sent, as given by 
+     * System.currentTimeMillis, and times the fetch.
+     */
+    public Entry store(String uri, InputStream body, String etag, String lastModified, String type, long requested) throws IOException {
+        MessageDigest md = newDigest();
+        File tmp = File.createTempFile("body", ".tmp", this.bodies);
+        long length = 0;
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            if(body != null) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while( (n = body.read(buffer)) != -1 ) {
+                    md.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    length += n;
+                }
+            }
+        } catch(IOException ioe) {
+            out.close();
+            tmp.delete();
+            throw ioe;
+        }
+        out.close();
+
+        String hash = toHex(md.digest());
+        File target = new File(this.bodies, hash);
+        // held so purge cannot delete the body before it is pending
+        synchronized(this) {
+            if(target.exists()) {
+                // same content as something already cached
+                tmp.delete();
+            } else 
+            if(!tmp.renameTo(target)) {
+                tmp.delete();
+                throw new IOException("Unable to move body into the cache: "+target);
+            }
+            Integer count = (Integer) this.pending.get(hash);
+            this.pending.put(hash, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+            this.fetched++;
+            this.bytesFetched += length;
+            this.fetchedMillis += System.currentTimeMillis() - requested;
+        }
+
+        Properties props = new Properties();
+        props.setProperty("uri", uri);
+        props.setProperty("hash", hash);
+        props.setProperty("length", String.valueOf(length));
+        if(etag != null) {
+            props.setProperty("etag", etag);
+        }
+        if(lastModified != null) {
+            props.setProperty("lastModified", lastModified);
+        }
+        if(type != null) {
+            props.setProperty("type", type);
+        }
+        return new Entry(props);
+    }
+
+    /**
+     * Remember a stored entry, replacing the last one for its uri.
+     */
+    public synchronized void commit(Entry entry) throws IOException {
+        try {
+            writeEntry(entry.getUri(), entry.props);
+        } finally {
+            Integer count = (Integer) this.pending.get(entry.getHash());
+            if(count != null) {
+                if(count.intValue() == 1) {
+                    this.pending.remove(entry.getHash());
+                } else {
+                    this.pending.put(entry.getHash(), Integer.valueOf(count.intValue() - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Note that the server said the entry is still current. 
+     * requested is when the conditional request was sent.
+     */
+    public synchronized void notModified(Entry entry, long requested) {
+        this.notModified++;
+        this.bytesSaved += entry.getLength();
+        this.notModifiedMillis += System.currentTimeMillis() - requested;
+    }
+
+    public File getBody(Entry entry) {
+        return new File(this.bodies, entry.getHash());
+    }
+
+    /**
+     * Delete bodies that no entry refers to any more. Bodies of 
+     * entries stored but not yet committed are kept, so an entry 
+     * that is never committed keeps its body while this cache 
+     * is in use.
+     */
+    public synchronized void purge() {
+        Set used = new HashSet();
+        File[] files = this.entries.listFiles();
+        for(int i=0; files != null && i<files.length; i++) {
+            Properties props = new Properties();
+            InputStream in = null;
+            try {
+                in = new FileInputStream(files[i]);
+                props.load(in);
+                used.add(props.getProperty("hash"));
+            } catch(IOException ioe) {
+                // a half-written entry, its body will be rewritten
+            } finally {
+                close(in);
+            }
+        }
+        files = this.bodies.listFiles();
+        for(int i=0; files != null && i<files.length; i++) {
+            String name = files[i].getName();
+            if(!used.contains(name) && !this.pending.containsKey(name) && !name.endsWith(".tmp")) {
+                files[i].delete();
+            }
+        }
+    }
+
+    /**
+     * The number of full downloads stored.
+     */
+    public synchronized long getFetchedCount() {
+        return this.fetched;
+    }
+
+    /**
+     * The number of times the server answered 304 Not Modified.
+     */
+    public synchronized long getNotModifiedCount() {
+        return this.notModified;
+    }
+
+    public synchronized long getBytesFetched() {
+        return this.bytesFetched;
+    }
+
+    /**
+     * The number of body bytes that did not need downloading.
+     */
+    public synchronized long getBytesSaved() {
+        return this.bytesSaved;
+    }
+
+    /**
+     * The average milliseconds from sending a request to having 
+     * the whole body on disk, over the full downloads.
+     */
+    public synchronized long getAverageFetchTime() {
+        return (this.fetched == 0) ? 0 : this.fetchedMillis / this.fetched;
+    }
+
+    /**
+     * The average milliseconds from sending a conditional request 
+     * to its 304 Not Modified.
+     */
+    public synchronized long getAverageNotModifiedTime() {
+        return (this.notModified == 0) ? 0 : this.notModifiedMillis / this.notModified;
+    }
+
+    public String toString() {
+        return "HttpCache[fetched="+getFetchedCount()+" ("+getBytesFetched()+" bytes, "+getAverageFetchTime()+
+               "ms avg), notModified="+getNotModifiedCount()+" ("+getBytesSaved()+" bytes saved, "+
+               getAverageNotModifiedTime()+"ms avg)]";
+    }
+
+    private void writeEntry(String uri, Properties props) throws IOException {
+        File tmp = File.createTempFile("entry", ".tmp", this.entries);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            props.store(out, null);
+        } finally {
+            out.close();
+        }
+        File file = new File(this.entries, digest(uri));
+        file.delete();
+        if(!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to write cache entry: "+file);
+        }
+    }
+
+    private static void mkdirs(File dir) throws IOException {
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create cache directory: "+dir);
+        }
+    }
+
+    private static void close(InputStream in) {
+        if(in != null) {
+            try {
+                in.close();
+            } catch(IOException ioe) {
+                // ignore
+            }
+        }
+    }
+
+    private static String digest(String str) {
+        MessageDigest md = newDigest();
+        try {
+            return toHex(md.digest(str.getBytes("UTF-8")));
+        } catch(java.io.UnsupportedEncodingException uee) {
+            throw new RuntimeException("UTF-8 not supported. This should be impossible. ");
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch(NoSuchAlgorithmException nsae) {
+            throw new RuntimeException("SHA-1 not supported. This should be impossible. ");
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuffer buffer = new StringBuffer(bytes.length * 2);
+        for(int i=0; i<bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            if(b < 0x10) {
+                buffer.append('0');
+            }
+            buffer.append(Integer.toHexString(b));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * What is known about the last fetch of a uri.
+     */
+    public static class Entry {
+        private Properties props;
+
+        Entry(Properties props) {
+            this.props = props;
+        }
+
+        public String getUri() {
+            return this.props.getProperty("uri");
+        }
+
+        public String getETag() {
+            return this.props.getProperty("etag");
+        }
+
+        public String getLastModified() {
+            return this.props.getProperty("lastModified");
+        }
+
+        public String getType() {
+            return this.props.getProperty("type");
+        }
+
+        /**
+         * SHA-1 of the body, as hex.
+         */
+        public String getHash() {
+            return this.props.getProperty("hash");
+        }
+
+        public long getLength() {
+            try {
+                return Long.parseLong(this.props.getProperty("length"));
+            } catch(NumberFormatException nfe) {
+                return 0;
+            }
+        }
+    }
+
+}
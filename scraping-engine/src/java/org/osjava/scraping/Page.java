@@ -54,4 +54,11 @@ public interface Page {
     // Page's have different types, this lets us decide what to do with it
     public String getType();
 
+    // true if this is the same content as the last time it was fetched
+    public boolean isUnchanged();
+
+    // called once what was scraped from the page has been stored, so 
+    // a later fetch may treat the same content as unchanged
+    public void commit() throws IOException;
+
 }
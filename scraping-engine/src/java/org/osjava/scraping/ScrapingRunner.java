@@ -31,6 +31,7 @@
  */
 package org.osjava.scraping;
 
+import java.io.IOException;
 import java.util.*;
 import org.apache.commons.lang.StringUtils;
 
@@ -68,27 +69,33 @@ public class ScrapingRunner implements Runner {
             String uri = cfg.getString("uri");
             Page page = fetcher.fetch(uri, cfg, session);
 
-            // parse the data
-            Parser parser = ParserFactory.getParser(cfg, session);
+            if(page.isUnchanged()) {
+                // nothing new since the last scrape, so nothing to store
+                logger.info("Unchanged: "+uri);
+            } else {
+                // parse the data
+                Parser parser = ParserFactory.getParser(cfg, session);
 
-            // TODO: do a pre-check to see if it should be parsed?
-            // This would classically be done to stop a parse from 
-            // actually happening. 
-            // QUERY: Call this Checker??
+                // TODO: do a pre-check to see if it should be parsed?
+                // This would classically be done to stop a parse from 
+                // actually happening. 
+                // QUERY: Call this Checker??
 
-            // throws ParsingException
-            Result result = parser.parse(page, cfg, session);
+                // throws ParsingException
+                Result result = parser.parse(page, cfg, session);
 
-            // TODO: do a post-check to see if it should be stored?
-            // This would classically be done to convert the output 
-            // into something else, prior to storing.
-            // QUERY: Call this Converter??
+                // TODO: do a post-check to see if it should be stored?
+                // This would classically be done to convert the output 
+                // into something else, prior to storing.
+                // QUERY: Call this Converter??
 
-            // store the data
-            Store store = StoreFactory.getStore(cfg, session);
+                // store the data
+                Store store = StoreFactory.getStore(cfg, session);
 
-            // throws StoringException
-            store.store(result, cfg, session);
+                // throws StoringException
+                store.store(result, cfg, session);
+            }
+            commit(page);
 
             // notify parties
             Notifier notifier = NotificationFactory.getSuccessNotifier(cfg, session);
@@ -106,7 +113,22 @@ public class ScrapingRunner implements Runner {
         }
     }
 
-    private static void notifyError(Config cfg, Session session, Exception e) {
+    /**
+     * Remember that a page has been stored. If this fails the 
+     * page is only scraped again, so it is not an error.
+     */
+    public static void commit(Page page) {
+        try {
+            page.commit();
+        } catch(IOException ioe) {
+            logger.warn("Unable to remember fetch of "+page.getDocumentBase(), ioe);
+        }
+    }
+
+    /**
+     * Tell the error notifier for the site about a failure.
+     */
+    public static void notifyError(Config cfg, Session session, Exception e) {
         try {
             Notifier notifier = NotificationFactory.getErrorNotifier(cfg, session, e);
             session.put(cfg.getContext()+".error", e);
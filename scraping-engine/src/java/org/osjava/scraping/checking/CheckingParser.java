@@ -35,26 +35,69 @@ import com.generationjava.config.Config;
 import org.osjava.oscube.container.Session;
 import org.osjava.oscube.container.Result;
 import org.osjava.oscube.container.NullResult;
+import org.osjava.oscube.container.MultiResult;
 
 import org.osjava.oscube.container.Header;
 
 import org.osjava.scraping.*;
 
+/**
+ * Parses the Headers of a Page first and only parses the body for 
+ * those the Checker does not find in the store. A Page listing 
+ * many items overrides parseHeaders; when the Checker is a 
+ * BulkChecker they are all checked with one call.
+ */
 public abstract class CheckingParser extends AbstractParser {
 
     public Result parse(Page page, Config cfg, Session session) throws ParsingException {
-        Header header = parseHeader(page, cfg, session);
+        Header[] headers = parseHeaders(page, cfg, session);
         Checker checker = CheckerFactory.getChecker(cfg, session);
+        boolean[] found;
         try {
-            boolean found = checker.exists(header, cfg, session);
-            if(found) {
-                return new NullResult();
+            if(checker instanceof BulkChecker) {
+                found = ((BulkChecker) checker).exists(headers, cfg, session);
             } else {
-                return parseBody(page, header, cfg, session);
+                found = new boolean[headers.length];
+                for(int i=0; i<headers.length; i++) {
+                    found[i] = checker.exists(headers[i], cfg, session);
+                }
             }
         } catch(CheckingException ce) {
             throw new ParsingException("Unable to check if header exists", ce);
         }
+
+        Result single = null;
+        MultiResult multi = null;
+        for(int i=0; i<headers.length; i++) {
+            if(found[i]) {
+                continue;
+            }
+            Result result = parseBody(page, headers[i], cfg, session);
+            if(single == null) {
+                single = result;
+            } else {
+                if(multi == null) {
+                    multi = new MultiResult();
+                    multi.addResult(single);
+                }
+                multi.addResult(result);
+            }
+        }
+        if(multi != null) {
+            return multi;
+        }
+        if(single != null) {
+            return single;
+        }
+        return new NullResult();
+    }
+
+    /**
+     * The Headers of the items on this Page. By default the Page 
+     * is a single item, as given by parseHeader.
+     */
+    public Header[] parseHeaders(Page page, Config cfg, Session session) throws ParsingException {
+        return new Header[] { parseHeader(page, cfg, session) };
     }
 
     public abstract Header parseHeader(Page page, Config cfg, Session session) throws ParsingException;
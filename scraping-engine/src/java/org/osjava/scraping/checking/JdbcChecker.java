@@ -32,6 +32,7 @@
 package org.osjava.scraping.checking;
 
 import java.util.Iterator;
+import java.util.Set;
 import javax.sql.DataSource;
 import java.sql.*;
 import org.apache.commons.dbutils.DbUtils;
@@ -44,8 +45,16 @@ import com.generationjava.config.Config;
 import org.osjava.oscube.container.Session;
 import org.osjava.oscube.container.Header;
 import org.osjava.oscube.container.Result;
+import org.osjava.oscube.service.store.JdbcExists;
 
-public class JdbcChecker implements Checker {
+/**
+ * Checks for a Header with the jdbc.sql query, which is passed the 
+ * values of the Header. When many Headers are checked at once, and 
+ * each has a single value, jdbc.exists.sql may be given as a query 
+ * ending in IN, such as "SELECT id FROM strip WHERE id IN", so 
+ * they are looked up together rather than one query each.
+ */
+public class JdbcChecker implements BulkChecker {
 
     private static Logger logger = Logger.getLogger(JdbcChecker.class);
 
@@ -70,6 +79,56 @@ public class JdbcChecker implements Checker {
         }
     }
 
+    public boolean[] exists(Header[] headers, Config cfg, Session session) throws CheckingException {
+        boolean[] found = new boolean[headers.length];
+        if(headers.length == 0) {
+            return found;
+        }
+        Connection conn = null;
+        try {
+            String dsname = cfg.getString("jdbc.DS");
+            DataSource ds = (DataSource)cfg.getAbsolute(dsname);
+            conn = ds.getConnection();
+            String existsSql = cfg.getString("jdbc.exists.sql");
+            if(existsSql != null && isSingleValued(headers)) {
+                Object[] keys = new Object[headers.length];
+                for(int i=0; i<headers.length; i++) {
+                    keys[i] = ((Object[]) headers[i].getValue())[0];
+                }
+                Set existing = JdbcExists.findExisting(conn, existsSql, keys);
+                for(int i=0; i<keys.length; i++) {
+                    found[i] = existing.contains(JdbcExists.toKey(keys[i]));
+                }
+                return found;
+            }
+
+            // one query per Header, but at least on one connection
+            String sql = cfg.getString("jdbc.sql");
+            if(sql == null) {
+                throw new CheckingException(cfg.getContext()+".jdbc.sql or "+cfg.getContext()+".jdbc.exists.sql must be specified. ");
+            }
+            QueryRunner queryRunner = new QueryRunner();
+            for(int i=0; i<headers.length; i++) {
+                found[i] = executeSql( conn, sql, (Object[]) headers[i].getValue(), queryRunner );
+            }
+            return found;
+        } catch(SQLException sqle) {
+            throw new CheckingException("JDBC Checking Error: "+sqle.getMessage(), sqle);
+        } finally {
+            DbUtils.closeQuietly( conn );
+        }
+    }
+
+    private boolean isSingleValued(Header[] headers) {
+        for(int i=0; i<headers.length; i++) {
+            Object[] value = (Object[]) headers[i].getValue();
+            if(value == null || value.length != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected boolean executeSql(Connection conn, String sql, Object[] header, QueryRunner queryRunner ) throws SQLException {
         return ((Boolean) queryRunner.query( conn, sql, header, new ExistsHandler() )).booleanValue();
     }
@@ -38,10 +38,14 @@ import org.osjava.oscube.container.Session;
 import org.osjava.oscube.container.Header;
 import org.osjava.oscube.container.Result;
 
-public class NullChecker implements Checker {
+public class NullChecker implements BulkChecker {
 
     public boolean exists(Header header, Config cfg, Session session) throws CheckingException {
         return false;
     }
 
+    public boolean[] exists(Header[] headers, Config cfg, Session session) throws CheckingException {
+        return new boolean[headers.length];
+    }
+
 }
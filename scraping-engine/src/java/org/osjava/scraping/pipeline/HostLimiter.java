@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping.pipeline;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Limits how many fetches may be made to a single host at once, 
+ * so running many sites concurrently does not hammer any one of them. 
+ * Nothing waits for a busy host. Its jobs are parked, and handed 
+ * over one at a time as the fetches to that host finish.
+ */
+public class HostLimiter {
+
+    private int limit;
+    // host to Slots
+    private Map hosts = new HashMap();
+
+    public HostLimiter(int limit) {
+        if(limit < 1) {
+            throw new IllegalArgumentException("Host limit must be at least one. ");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Take a slot to fetch from the host, or park the job until one 
+     * is released.
+     *
+     * @return false if the job was parked
+     */
+    public synchronized boolean acquire(String host, Object job) {
+        Slots slots = getSlots(host);
+        if(slots.active < this.limit) {
+            slots.active++;
+            return true;
+        }
+        slots.parked.add(job);
+        return false;
+    }
+
+    /**
+     * Give back a slot for the host. If a job is parked on the host 
+     * it is returned, and the slot is now its.
+     *
+     * @return the next job for the host, or null
+     */
+    public synchronized Object release(String host) {
+        Slots slots = getSlots(host);
+        if(!slots.parked.isEmpty()) {
+            return slots.parked.removeFirst();
+        }
+        slots.active--;
+        if(slots.active == 0) {
+            this.hosts.remove(key(host));
+        }
+        return null;
+    }
+
+    /**
+     * The number of fetches currently running against a host.
+     */
+    public synchronized int getActive(String host) {
+        Slots slots = (Slots) this.hosts.get(key(host));
+        return (slots == null) ? 0 : slots.active;
+    }
+
+    /**
+     * The number of jobs waiting for a host.
+     */
+    public synchronized int getParked(String host) {
+        Slots slots = (Slots) this.hosts.get(key(host));
+        return (slots == null) ? 0 : slots.parked.size();
+    }
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    private Slots getSlots(String host) {
+        String key = key(host);
+        Slots slots = (Slots) this.hosts.get(key);
+        if(slots == null) {
+            slots = new Slots();
+            this.hosts.put(key, slots);
+        }
+        return slots;
+    }
+
+    private static String key(String host) {
+        return (host == null) ? "" : host.toLowerCase();
+    }
+
+    private static class Slots {
+        int active;
+        LinkedList parked = new LinkedList();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping.pipeline;
+
+import java.util.List;
+
+import com.generationjava.config.Config;
+import org.osjava.oscube.container.ConfigFactory;
+import org.osjava.oscube.container.Engine;
+import org.osjava.oscube.container.Runner;
+import org.osjava.oscube.container.Session;
+
+import org.osjava.scraping.ScrapingRunner;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A Runner that hands each site to a shared ScrapingPipeline 
+ * rather than scraping it on the scheduler's thread. Use it in 
+ * place of ScrapingRunner by setting:
+ * <pre>
+ * org.osjava.oscube.runner=org.osjava.scraping.pipeline.PipelineRunner
+ * </pre>
+ * The pipeline's threads do not keep the JVM alive. When it exits, 
+ * the work already queued is finished first.
+ */
+public class PipelineRunner implements Runner {
+
+    private static Logger logger = Logger.getLogger(PipelineRunner.class);
+
+    private static ScrapingPipeline pipeline;
+
+    // 'org.osjava.oscube.prefix' needs to equal 'org.osjava.scraper' 
+    public static void main(String[] args) throws InterruptedException {
+        Engine engine = new Engine();
+        PipelineRunner runner = new PipelineRunner();
+        engine.run(runner, args);
+
+        // if nothing is on a Quartz schedule, everything has now 
+        // been queued and the pipeline can be drained
+        if(!usesQuartz(ConfigFactory.getConfig(args)) && pipeline != null) {
+            pipeline.shutdown();
+            logger.info("Finished "+pipeline);
+        }
+    }
+
+    public void run(Config cfg, Session session) {
+        try {
+            getPipeline(cfg).submit(cfg, session);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            ScrapingRunner.notifyError(cfg, session, ie);
+        } catch(IllegalStateException ise) {
+            // a scheduled run firing as the JVM exits
+            ScrapingRunner.notifyError(cfg, session, ise);
+        }
+        if(logger.isDebugEnabled()) {
+            logger.debug(pipeline);
+        }
+    }
+
+    private static boolean usesQuartz(Config cfg) {
+        String prefix = cfg.getString("org.osjava.oscube.prefix");
+        List sites = cfg.getList(prefix);
+        for(int i=0; i<sites.size(); i++) {
+            Object scheduler = cfg.get(sites.get(i)+".scheduler");
+            if(scheduler != null && "Quartz".equalsIgnoreCase(scheduler.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The pipeline shared by all PipelineRunners, created from 
+     * the first config seen.
+     */
+    public static synchronized ScrapingPipeline getPipeline(Config cfg) {
+        if(pipeline == null) {
+            pipeline = new ScrapingPipeline(cfg);
+            pipeline.start();
+            logger.info("Started "+pipeline);
+            final ScrapingPipeline started = pipeline;
+            Runtime.getRuntime().addShutdownHook(new Thread("scraping-pipeline-shutdown") {
+                public void run() {
+                    try {
+                        started.shutdown();
+                        logger.info("Finished "+started);
+                    } catch(InterruptedException ie) {
+                        // exiting regardless
+                    }
+                }
+            });
+        }
+        return pipeline;
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping.pipeline;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.generationjava.config.Config;
+import org.osjava.oscube.container.Result;
+import org.osjava.oscube.container.Session;
+import org.osjava.oscube.service.notify.NotificationException;
+import org.osjava.oscube.service.notify.NotificationFactory;
+import org.osjava.oscube.service.notify.Notifier;
+import org.osjava.oscube.service.store.Store;
+import org.osjava.oscube.service.store.StoreFactory;
+
+import org.osjava.scraping.Fetcher;
+import org.osjava.scraping.FetchingException;
+import org.osjava.scraping.FetchingFactory;
+import org.osjava.scraping.Page;
+import org.osjava.scraping.Parser;
+import org.osjava.scraping.ParserFactory;
+import org.osjava.scraping.ScrapingRunner;
+
+/**
+ * Runs the fetch, parse, store and notify steps of ScrapingRunner 
+ * as separate stages, each with its own threads and a bounded queue 
+ * between them. A slow site then only holds a fetch thread, and the 
+ * parsers and stores keep working on whatever has already arrived. 
+ * Checking happens inside the parse stage, as CheckingParser needs 
+ * the parsed header to check. 
+ *
+ * The sizes are read from the following absolute config keys:
+ * <pre>
+ * org.osjava.scraping.pipeline.fetch.threads   (default 16)
+ * org.osjava.scraping.pipeline.parse.threads   (default number of processors)
+ * org.osjava.scraping.pipeline.store.threads   (default 2)
+ * org.osjava.scraping.pipeline.notify.threads  (default 1)
+ * org.osjava.scraping.pipeline.queue           (default 64)
+ * org.osjava.scraping.pipeline.host.limit      (default 2)
+ * </pre>
+ */
+public class ScrapingPipeline {
+
+    private static Logger logger = Logger.getLogger(ScrapingPipeline.class);
+
+    public static final String PREFIX = "org.osjava.scraping.pipeline.";
+
+    private Stage fetchStage;
+    private Stage parseStage;
+    private Stage storeStage;
+    private Stage notifyStage;
+
+    private HostLimiter hostLimiter;
+
+    // contexts of the sites currently being scraped
+    private Set inFlight = new HashSet();
+
+    private boolean shutdown;
+
+    public ScrapingPipeline(Config cfg) {
+        this( getInt(cfg, "fetch.threads", 16), 
+              getInt(cfg, "parse.threads", Runtime.getRuntime().availableProcessors()),
+              getInt(cfg, "store.threads", 2),
+              getInt(cfg, "notify.threads", 1),
+              getInt(cfg, "queue", 64),
+              getInt(cfg, "host.limit", 2) );
+    }
+
+    public ScrapingPipeline(int fetchThreads, int parseThreads, int storeThreads, int notifyThreads, int queueSize, int hostLimit) {
+        this.hostLimiter = new HostLimiter(hostLimit);
+        this.fetchStage = new Stage("fetch", fetchThreads, queueSize, new FetchHandler());
+        this.parseStage = new Stage("parse", parseThreads, queueSize, new ParseHandler());
+        this.storeStage = new Stage("store", storeThreads, queueSize, new StoreHandler());
+        this.notifyStage = new Stage("notify", notifyThreads, queueSize, new NotifyHandler());
+    }
+
+    public void start() {
+        this.notifyStage.start();
+        this.storeStage.start();
+        this.parseStage.start();
+        this.fetchStage.start();
+    }
+
+    /**
+     * Queue a site to be scraped, waiting if the fetch queue is full. 
+     * Returns false without queueing if the same site is still being 
+     * scraped from an earlier run.
+     *
+     * @throws IllegalStateException if the pipeline has been shut down
+     */
+    public boolean submit(Config cfg, Session session) throws InterruptedException {
+        synchronized(this) {
+            if(this.shutdown) {
+                throw new IllegalStateException("ScrapingPipeline has been shut down. ");
+            }
+        }
+        String context = cfg.getContext();
+        synchronized(this.inFlight) {
+            if(this.inFlight.contains(context)) {
+                logger.warn("Skipping "+context+" as the previous run has not finished. ");
+                return false;
+            }
+            this.inFlight.add(context);
+        }
+        try {
+            this.fetchStage.put(new ScrapeJob(cfg, session));
+        } catch(InterruptedException ie) {
+            finished(context);
+            throw ie;
+        } catch(IllegalStateException ise) {
+            // shut down while we waited
+            finished(context);
+            throw ise;
+        }
+        return true;
+    }
+
+    /**
+     * Finish the queued work and stop all the threads. Only the 
+     * first call does anything.
+     */
+    public void shutdown() throws InterruptedException {
+        synchronized(this) {
+            if(this.shutdown) {
+                return;
+            }
+            this.shutdown = true;
+        }
+        this.fetchStage.shutdown();
+        this.parseStage.shutdown();
+        this.storeStage.shutdown();
+        this.notifyStage.shutdown();
+    }
+
+    public Stage[] getStages() {
+        return new Stage[] { this.fetchStage, this.parseStage, this.storeStage, this.notifyStage };
+    }
+
+    public HostLimiter getHostLimiter() {
+        return this.hostLimiter;
+    }
+
+    /**
+     * The number of sites queued or being worked on.
+     */
+    public int getInFlightCount() {
+        synchronized(this.inFlight) {
+            return this.inFlight.size();
+        }
+    }
+
+    public String toString() {
+        return "ScrapingPipeline[inFlight="+getInFlightCount()+", "+this.fetchStage+", "+
+               this.parseStage+", "+this.storeStage+", "+this.notifyStage+"]";
+    }
+
+    private void finished(String context) {
+        synchronized(this.inFlight) {
+            this.inFlight.remove(context);
+        }
+    }
+
+    /**
+     * Hand a job to the next stage, or to the notifiers if it has 
+     * failed. A job that cannot be handed on is finished here, so 
+     * whatever happens its site is let go.
+     */
+    private void moveOn(ScrapeJob job, Stage next) {
+        if(job.error != null) {
+            next = this.notifyStage;
+        }
+        boolean handedOn = false;
+        try {
+            next.put(job);
+            handedOn = true;
+        } catch(InterruptedException ie) {
+            logger.warn("Interrupted handing on "+job.uri+", finishing it now. ");
+            if(job.error == null) {
+                job.error = ie;
+            }
+        } catch(RuntimeException re) {
+            if(job.error == null) {
+                job.error = re;
+            }
+        } finally {
+            if(!handedOn) {
+                complete(job);
+            }
+        }
+    }
+
+    /**
+     * Notify about a job, and let its site be scraped again.
+     */
+    private void complete(ScrapeJob job) {
+        try {
+            try {
+                if(job.error != null) {
+                    ScrapingRunner.notifyError(job.cfg, job.session, job.error);
+                } else {
+                    Notifier notifier = NotificationFactory.getSuccessNotifier(job.cfg, job.session);
+                    notifier.notify(job.cfg, job.session);
+                }
+            } catch(NotificationException ne) {
+                ScrapingRunner.notifyError(job.cfg, job.session, ne);
+            } catch(RuntimeException re) {
+                ScrapingRunner.notifyError(job.cfg, job.session, re);
+            }
+        } catch(RuntimeException re) {
+            logger.error("Unable to notify about "+job.uri, re);
+        } finally {
+            finished(job.cfg.getContext());
+        }
+    }
+
+    private static int getInt(Config cfg, String key, int def) {
+        Object value = cfg.getAbsolute(PREFIX + key);
+        if(value == null) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch(NumberFormatException nfe) {
+            logger.warn("Bad number for "+PREFIX+key+": "+value+", using "+def);
+            return def;
+        }
+    }
+
+    // The state of one site as it passes through the stages
+    private static class ScrapeJob {
+        Config cfg;
+        Session session;
+        String uri;
+        String host;
+        Page page;
+        Result result;
+        Exception error;
+
+        ScrapeJob(Config cfg, Session session) {
+            this.cfg = cfg;
+            this.session = session;
+            this.uri = cfg.getString("uri");
+            this.host = "";
+            if(this.uri != null) {
+                try {
+                    this.host = new URL(this.uri).getHost();
+                } catch(MalformedURLException murle) {
+                    this.host = this.uri;
+                }
+            }
+        }
+    }
+
+    private class FetchHandler implements Stage.Handler {
+        public void handle(Object obj) {
+            ScrapeJob job = (ScrapeJob) obj;
+            if(!hostLimiter.acquire(job.host, job)) {
+                // fetched when an earlier fetch from its host finishes
+                return;
+            }
+            while(job != null) {
+                ScrapeJob next;
+                try {
+                    fetch(job);
+                } finally {
+                    // the slot passes to the next job parked on the host
+                    next = (ScrapeJob) hostLimiter.release(job.host);
+                }
+                if(job.error == null && job.page.isUnchanged()) {
+                    // nothing new since the last scrape, so nothing to store
+                    logger.info("Unchanged: "+job.uri);
+                    ScrapingRunner.commit(job.page);
+                    job.page = null;
+                    moveOn(job, notifyStage);
+                } else {
+                    moveOn(job, parseStage);
+                }
+                job = next;
+            }
+        }
+
+        private void fetch(ScrapeJob job) {
+            logger.info("Scraping: "+job.uri);
+            try {
+                Fetcher fetcher = FetchingFactory.getFetcher(job.cfg, job.session);
+                job.page = fetcher.fetch(job.uri, job.cfg, job.session);
+                if(job.page == null) {
+                    throw new FetchingException("Nothing fetched from "+job.uri);
+                }
+            } catch(Exception e) {
+                // FetchingException, or anything a fetcher lets slip
+                job.error = e;
+            }
+        }
+    }
+
+    private class ParseHandler implements Stage.Handler {
+        public void handle(Object obj) {
+            ScrapeJob job = (ScrapeJob) obj;
+            try {
+                Parser parser = ParserFactory.getParser(job.cfg, job.session);
+                job.result = parser.parse(job.page, job.cfg, job.session);
+            } catch(Exception e) {
+                job.error = e;
+            }
+            moveOn(job, storeStage);
+        }
+    }
+
+    private class StoreHandler implements Stage.Handler {
+        public void handle(Object obj) {
+            ScrapeJob job = (ScrapeJob) obj;
+            try {
+                Store store = StoreFactory.getStore(job.cfg, job.session);
+                store.store(job.result, job.cfg, job.session);
+                job.result = null;
+                // only now may the page be treated as unchanged
+                ScrapingRunner.commit(job.page);
+                job.page = null;
+            } catch(Exception e) {
+                job.error = e;
+            }
+            moveOn(job, notifyStage);
+        }
+    }
+
+    private class NotifyHandler implements Stage.Handler {
+        public void handle(Object obj) {
+            complete((ScrapeJob) obj);
+        }
+    }
+
+}
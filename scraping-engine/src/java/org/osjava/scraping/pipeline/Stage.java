@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * One step of the ScrapingPipeline. A bounded queue of jobs 
+ * in front of a fixed number of worker threads. When the queue 
+ * is full, whoever is handing work over waits, so a slow stage 
+ * pushes back on the stages before it instead of filling memory. 
+ * The workers are daemon threads, and only stop at shutdown. An 
+ * interrupt just ends the wait it interrupted. Once shut down, a 
+ * stage turns away new jobs.
+ */
+public class Stage {
+
+    private static Logger logger = Logger.getLogger(Stage.class);
+
+    // put on the queue once per worker to stop it
+    private static final Object POISON = new Object();
+
+    /**
+     * The work a Stage does for each job. A handler deals with all 
+     * of its job's failures itself.
+     */
+    public interface Handler {
+        public void handle(Object job);
+    }
+
+    private String name;
+    private BlockingQueue queue;
+    private Thread[] workers;
+    private Handler handler;
+
+    private volatile boolean stopped;
+
+    private int active;
+    private long completed;
+    private long blocked;
+    private long blockedMillis;
+
+    public Stage(String name, int threads, int capacity, Handler handler) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Stage "+name+" needs at least one thread. ");
+        }
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Stage "+name+" needs a queue capacity of at least one. ");
+        }
+        this.name = name;
+        this.queue = new ArrayBlockingQueue(capacity);
+        this.handler = handler;
+        this.workers = new Thread[threads];
+        for(int i=0; i<threads; i++) {
+            this.workers[i] = new Thread(new Worker(), "scraping-"+name+"-"+i);
+            this.workers[i].setDaemon(true);
+        }
+    }
+
+    public void start() {
+        for(int i=0; i<this.workers.length; i++) {
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Hand a job to this stage, waiting for space in the queue 
+     * if it is full.
+     *
+     * @throws IllegalStateException if the stage has been shut down, 
+     *         including while waiting for space
+     */
+    public void put(Object job) throws InterruptedException {
+        checkRunning();
+        if(this.queue.offer(job)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        // the workers may stop while we wait, so look up now and then
+        while(!this.queue.offer(job, 100, TimeUnit.MILLISECONDS)) {
+            checkRunning();
+        }
+        synchronized(this) {
+            this.blocked++;
+            this.blockedMillis += System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * Stop the workers once the jobs already queued are done, 
+     * waiting for them to finish.
+     */
+    public void shutdown() throws InterruptedException {
+        this.stopped = true;
+        for(int i=0; i<this.workers.length; i++) {
+            this.queue.put(POISON);
+        }
+        for(int i=0; i<this.workers.length; i++) {
+            this.workers[i].join();
+        }
+        // only a put racing with the shutdown can leave anything
+        if(!this.queue.isEmpty()) {
+            logger.warn("Stage "+this.name+" shut down with "+this.queue.size()+" jobs left. ");
+        }
+    }
+
+    private void checkRunning() {
+        if(this.stopped) {
+            throw new IllegalStateException("Stage "+this.name+" has been shut down. ");
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getThreads() {
+        return this.workers.length;
+    }
+
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return this.queue.size() + this.queue.remainingCapacity();
+    }
+
+    public synchronized int getActiveCount() {
+        return this.active;
+    }
+
+    public synchronized long getCompletedCount() {
+        return this.completed;
+    }
+
+    /**
+     * The number of times a put had to wait for space. 
+     */
+    public synchronized long getBlockedCount() {
+        return this.blocked;
+    }
+
+    /**
+     * The total time puts have spent waiting for space.
+     */
+    public synchronized long getBlockedMillis() {
+        return this.blockedMillis;
+    }
+
+    public String toString() {
+        return this.name+"[queued="+getQueueSize()+"/"+getQueueCapacity()+
+               ", active="+getActiveCount()+"/"+getThreads()+
+               ", completed="+getCompletedCount()+
+               ", blocked="+getBlockedCount()+" ("+getBlockedMillis()+"ms)]";
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            while(true) {
+                Object job;
+                try {
+                    job = queue.take();
+                } catch(InterruptedException ie) {
+                    logger.warn("Interrupted waiting in stage "+name+", carrying on. ");
+                    continue;
+                }
+                if(job == POISON) {
+                    return;
+                }
+                synchronized(Stage.this) {
+                    active++;
+                }
+                try {
+                    handler.handle(job);
+                } catch(RuntimeException re) {
+                    // handlers deal with their own failures, this is a last resort
+                    logger.error("Unexpected failure in stage "+name, re);
+                } finally {
+                    synchronized(Stage.this) {
+                        active--;
+                        completed++;
+                    }
+                }
+            }
+        }
+    }
+
+}
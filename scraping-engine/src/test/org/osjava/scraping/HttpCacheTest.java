@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import com.generationjava.config.Config;
+import com.generationjava.config.MapConfig;
+import org.osjava.oscube.container.NamespaceSession;
+import org.osjava.oscube.container.Result;
+import org.osjava.oscube.container.Session;
+import org.osjava.oscube.service.store.Store;
+import org.osjava.oscube.service.store.StoringException;
+
+public class HttpCacheTest extends TestCase {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String BODY = "<html>page</html>";
+
+    // how long the server takes over a full response
+    private static final long DELAY = 200;
+
+    private HttpServer server;
+    private File dir;
+    private Map props;
+    private int sent;
+    private int notModified;
+
+    // set by FailingStore
+    private static int stored;
+    private static int failures;
+
+    public HttpCacheTest(String name) {
+        super(name);
+    }
+
+    // serves the same page with an ETag, slowly, answering 304 at once 
+    // when the ETag is sent back
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if(ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified++;
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                sent++;
+                try {
+                    Thread.sleep(DELAY);
+                } catch(InterruptedException ie) {
+                    throw new IOException("Interrupted");
+                }
+                byte[] body = BODY.getBytes("ISO-8859-1");
+                exchange.getResponseHeaders().add("Content-Type", "text/html");
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                exchange.close();
+            }
+        });
+        this.server.start();
+
+        this.dir = File.createTempFile("httpcache", "");
+        this.dir.delete();
+
+        this.props = new HashMap();
+        this.props.put("uri", "http://127.0.0.1:"+this.server.getAddress().getPort()+"/page");
+        this.props.put("norobots.override", "true");
+        this.props.put("http.cache", this.dir.getPath());
+        this.props.put("store", FailingStore.class.getName());
+        this.props.put("notifier.success", "Null");
+        this.props.put("notifier.error", "Null");
+        stored = 0;
+        failures = 0;
+    }
+
+    public void tearDown() {
+        this.server.stop(0);
+        delete(this.dir);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        for(int i=0; files != null && i<files.length; i++) {
+            delete(files[i]);
+        }
+        file.delete();
+    }
+
+    private void scrape() {
+        Session session = new NamespaceSession();
+        new ScrapingRunner().run(new MapConfig(this.props), session);
+    }
+
+    public void testUnchangedAfterStore() throws IOException {
+        scrape();
+        scrape();
+        assertEquals(1, this.sent);
+        assertEquals(1, this.notModified);
+        assertEquals(1, stored);
+
+        HttpCache cache = HttpCache.getInstance(this.dir);
+        assertEquals(1, cache.getFetchedCount());
+        assertEquals(1, cache.getNotModifiedCount());
+        assertEquals(BODY.length(), cache.getBytesFetched());
+        assertEquals(BODY.length(), cache.getBytesSaved());
+        assertTrue(cache.getAverageFetchTime() >= DELAY);
+        assertTrue(cache.getAverageNotModifiedTime() < cache.getAverageFetchTime());
+    }
+
+    public void testFailedStoreIsRetried() {
+        failures = 1;
+        scrape();
+        assertEquals(0, stored);
+
+        // nothing was remembered, so the page is fetched and stored again
+        scrape();
+        assertEquals(2, this.sent);
+        assertEquals(0, this.notModified);
+        assertEquals(1, stored);
+
+        scrape();
+        assertEquals(1, this.notModified);
+        assertEquals(1, stored);
+    }
+
+    public void testNotRememberedUntilCommitted() throws IOException {
+        HttpCache cache = new HttpCache(this.dir);
+        String uri = (String) this.props.get("uri");
+        HttpCache.Entry entry = cache.store(uri, new ByteArrayInputStream(new byte[] { 'a' }), ETAG, null, "text/plain", System.currentTimeMillis());
+        assertNull(cache.get(uri));
+        cache.commit(entry);
+        assertEquals(ETAG, cache.get(uri).getETag());
+    }
+
+    public void testPurgeKeepsPendingBodies() throws IOException {
+        HttpCache cache = new HttpCache(this.dir);
+        String uri = (String) this.props.get("uri");
+        HttpCache.Entry first = cache.store(uri, new ByteArrayInputStream(new byte[] { 'a' }), null, null, "text/plain", System.currentTimeMillis());
+        cache.purge();
+        assertTrue(cache.getBody(first).exists());
+        cache.commit(first);
+
+        // replaced, so the first body goes once the second is committed
+        HttpCache.Entry second = cache.store(uri, new ByteArrayInputStream(new byte[] { 'b' }), null, null, "text/plain", System.currentTimeMillis());
+        cache.purge();
+        assertTrue(cache.getBody(first).exists());
+        assertTrue(cache.getBody(second).exists());
+        cache.commit(second);
+        cache.purge();
+        assertFalse(cache.getBody(first).exists());
+        assertTrue(cache.getBody(second).exists());
+    }
+
+    /**
+     * Fails while there are failures left, otherwise counts what it stores.
+     */
+    public static class FailingStore implements Store {
+        public void store(Result result, Config cfg, Session session) throws StoringException {
+            if(failures > 0) {
+                failures--;
+                throw new StoringException("Failing as asked");
+            }
+            stored++;
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping.checking;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.generationjava.config.Config;
+import com.generationjava.config.MapConfig;
+import org.osjava.oscube.container.Header;
+import org.osjava.oscube.container.NamespaceSession;
+import org.osjava.oscube.container.Result;
+import org.osjava.oscube.container.Session;
+import org.osjava.oscube.container.SingleResult;
+
+import org.osjava.scraping.MemoryPage;
+import org.osjava.scraping.Page;
+import org.osjava.scraping.ParsingException;
+
+public class CheckingParserTest extends TestCase {
+
+    // the calls made to the Checkers below
+    private static List calls = new ArrayList();
+
+    public CheckingParserTest(String name) {
+        super(name);
+    }
+
+    public void setUp() {
+        calls.clear();
+    }
+
+    private Config config(Class checker) {
+        Map map = new HashMap();
+        map.put("site.checker", checker.getName());
+        Config cfg = new MapConfig(map);
+        cfg.setContext("site.");
+        return cfg;
+    }
+
+    private List rows(Result result) {
+        List list = new ArrayList();
+        Iterator iterator = result.iterateRows();
+        while(iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+
+    public void testBulkCheckerCalledOnce() throws ParsingException {
+        Result result = new ListParser().parse(new MemoryPage("a b c d", "text/plain"), config(EvenBulkChecker.class), new NamespaceSession());
+        assertEquals(1, calls.size());
+        assertEquals("bulk 4", calls.get(0));
+        List rows = rows(result);
+        assertEquals(2, rows.size());
+        assertEquals("a", ((Object[]) rows.get(0))[0]);
+        assertEquals("c", ((Object[]) rows.get(1))[0]);
+    }
+
+    public void testCheckerCalledPerHeader() throws ParsingException {
+        Result result = new ListParser().parse(new MemoryPage("a b c", "text/plain"), config(FoundChecker.class), new NamespaceSession());
+        assertEquals(3, calls.size());
+        assertEquals(0, rows(result).size());
+    }
+
+    public void testSingleHeader() throws ParsingException {
+        ListParser parser = new ListParser() {
+            public Header[] parseHeaders(Page page, Config cfg, Session session) throws ParsingException {
+                return new Header[] { parseHeader(page, cfg, session) };
+            }
+        };
+        Result result = parser.parse(new MemoryPage("a b", "text/plain"), config(EvenBulkChecker.class), new NamespaceSession());
+        assertEquals("bulk 1", calls.get(0));
+        assertEquals(1, rows(result).size());
+    }
+
+    // one Header per word of the page
+    public static class ListParser extends CheckingParser {
+        public Header[] parseHeaders(Page page, Config cfg, Session session) throws ParsingException {
+            String[] words;
+            try {
+                words = new BufferedReader(page.read()).readLine().split(" ");
+            } catch(IOException ioe) {
+                throw new ParsingException("Unable to read page", ioe);
+            }
+            Header[] headers = new Header[words.length];
+            for(int i=0; i<words.length; i++) {
+                headers[i] = new WordHeader(words[i]);
+            }
+            return headers;
+        }
+        public Header parseHeader(Page page, Config cfg, Session session) throws ParsingException {
+            return new WordHeader("whole");
+        }
+        public Result parseBody(Page page, Header header, Config cfg, Session session) throws ParsingException {
+            return new SingleResult(((Object[]) header.getValue())[0]);
+        }
+    }
+
+    public static class WordHeader implements Header {
+        private String word;
+        public WordHeader(String word) {
+            this.word = word;
+        }
+        public Object getValue() {
+            return new Object[] { this.word };
+        }
+        public int compareTo(Object obj) {
+            return this.word.compareTo(((WordHeader) obj).word);
+        }
+    }
+
+    // finds every other Header
+    public static class EvenBulkChecker implements BulkChecker {
+        public boolean exists(Header header, Config cfg, Session session) {
+            calls.add("single");
+            return false;
+        }
+        public boolean[] exists(Header[] headers, Config cfg, Session session) {
+            calls.add("bulk "+headers.length);
+            boolean[] found = new boolean[headers.length];
+            for(int i=0; i<headers.length; i++) {
+                found[i] = (i % 2 == 1);
+            }
+            return found;
+        }
+    }
+
+    public static class FoundChecker implements Checker {
+        public boolean exists(Header header, Config cfg, Session session) {
+            calls.add("single");
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2005, Henri Yandell
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the 
+ * following conditions are met:
+ * 
+ * + Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * 
+ * + Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * + Neither the name of OSJava nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software 
+ *   without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.osjava.scraping.pipeline;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.generationjava.config.Config;
+import com.generationjava.config.MapConfig;
+import org.osjava.oscube.container.NamespaceSession;
+import org.osjava.oscube.container.Result;
+import org.osjava.oscube.container.Session;
+import org.osjava.oscube.service.store.Store;
+
+import org.osjava.scraping.Fetcher;
+import org.osjava.scraping.FetchingException;
+import org.osjava.scraping.MemoryPage;
+import org.osjava.scraping.Page;
+
+public class ScrapingPipelineTest extends TestCase {
+
+    // held by SlowFetcher until released
+    private static CountDownLatch gate;
+
+    private ScrapingPipeline pipeline;
+
+    public ScrapingPipelineTest(String name) {
+        super(name);
+    }
+
+    public void setUp() {
+        gate = new CountDownLatch(0);
+    }
+
+    public void tearDown() throws InterruptedException {
+        gate.countDown();
+        if(this.pipeline != null) {
+            this.pipeline.shutdown();
+        }
+    }
+
+    private Config config(String site, String uri, Class fetcher, Class store) {
+        Map map = new HashMap();
+        map.put(site+".uri", uri);
+        map.put(site+".fetcher", fetcher.getName());
+        map.put(site+".store", (store == null) ? "Null" : store.getName());
+        map.put(site+".notifier.success", "Null");
+        map.put(site+".notifier.error", "Null");
+        Config cfg = new MapConfig(map);
+        cfg.setContext(site+".");
+        return cfg;
+    }
+
+    private void submit(Config cfg) throws InterruptedException {
+        assertTrue(this.pipeline.submit(cfg, new NamespaceSession()));
+    }
+
+    private void waitForInFlight(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while(this.pipeline.getInFlightCount() != count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, this.pipeline.getInFlightCount());
+    }
+
+    public void testNullPageFinishes() throws InterruptedException {
+        this.pipeline = new ScrapingPipeline(2, 1, 1, 1, 4, 1);
+        this.pipeline.start();
+        Config cfg = config("site", "http://example.com/", NullPageFetcher.class, null);
+        submit(cfg);
+        waitForInFlight(0);
+        // the site may be scraped again
+        submit(cfg);
+        waitForInFlight(0);
+    }
+
+    public void testFailingStoreFinishes() throws InterruptedException {
+        this.pipeline = new ScrapingPipeline(1, 1, 1, 1, 4, 1);
+        this.pipeline.start();
+        submit(config("site", "http://example.com/", PageFetcher.class, BrokenStore.class));
+        waitForInFlight(0);
+        assertEquals(1, this.pipeline.getStages()[2].getCompletedCount());
+    }
+
+    public void testBusyHostDoesNotBlockOthers() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        this.pipeline = new ScrapingPipeline(2, 1, 1, 1, 4, 1);
+        this.pipeline.start();
+        submit(config("a1", "http://a.example.com/1", SlowFetcher.class, null));
+        submit(config("a2", "http://a.example.com/2", SlowFetcher.class, null));
+        submit(config("b", "http://b.example.com/", PageFetcher.class, null));
+
+        // a1 holds its host, a2 is parked, b goes past them both
+        waitForInFlight(2);
+        assertEquals(1, this.pipeline.getHostLimiter().getActive("a.example.com"));
+        assertEquals(1, this.pipeline.getHostLimiter().getParked("a.example.com"));
+
+        gate.countDown();
+        waitForInFlight(0);
+        assertEquals(0, this.pipeline.getHostLimiter().getActive("a.example.com"));
+    }
+
+    public void testSubmitAfterShutdown() throws InterruptedException {
+        this.pipeline = new ScrapingPipeline(1, 1, 1, 1, 1, 1);
+        this.pipeline.start();
+        this.pipeline.shutdown();
+        try {
+            this.pipeline.submit(config("site", "http://example.com/", PageFetcher.class, null), new NamespaceSession());
+            fail("Expected submit to be refused after shutdown");
+        } catch(IllegalStateException ise) {
+            // expected
+        }
+        assertEquals(0, this.pipeline.getInFlightCount());
+    }
+
+    public void testShutdownRefusesWaitingSubmit() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        this.pipeline = new ScrapingPipeline(1, 1, 1, 1, 1, 4);
+        this.pipeline.start();
+        // one being fetched, one filling the queue
+        submit(config("a", "http://a.example.com/", SlowFetcher.class, null));
+        waitForActive(this.pipeline.getStages()[0], 1);
+        submit(config("b", "http://b.example.com/", SlowFetcher.class, null));
+
+        final Throwable[] refused = new Throwable[1];
+        Thread submitter = new Thread() {
+            public void run() {
+                try {
+                    pipeline.submit(config("c", "http://c.example.com/", SlowFetcher.class, null), new NamespaceSession());
+                } catch(Throwable t) {
+                    refused[0] = t;
+                }
+            }
+        };
+        submitter.start();
+        waitForInFlight(3);
+
+        Thread stopper = new Thread() {
+            public void run() {
+                try {
+                    pipeline.shutdown();
+                } catch(InterruptedException ie) {
+                    // test fails below
+                }
+            }
+        };
+        stopper.start();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+        assertTrue(refused[0] instanceof IllegalStateException);
+
+        gate.countDown();
+        stopper.join(5000);
+        assertFalse(stopper.isAlive());
+        assertEquals(0, this.pipeline.getInFlightCount());
+    }
+
+    private void waitForActive(Stage stage, int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while(stage.getActiveCount() != count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, stage.getActiveCount());
+    }
+
+    public static class NullPageFetcher implements Fetcher {
+        public Page fetch(String uri, Config cfg, Session session) throws FetchingException {
+            return null;
+        }
+    }
+
+    public static class PageFetcher implements Fetcher {
+        public Page fetch(String uri, Config cfg, Session session) throws FetchingException {
+            return new MemoryPage("page", "text/plain");
+        }
+    }
+
+    public static class SlowFetcher implements Fetcher {
+        public Page fetch(String uri, Config cfg, Session session) throws FetchingException {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch(InterruptedException ie) {
+                throw new FetchingException("Interrupted", ie);
+            }
+            return new MemoryPage("page", "text/plain");
+        }
+    }
+
+    public static class BrokenStore implements Store {
+        public void store(Result result, Config cfg, Session session) {
+            throw new IllegalStateException("Broken as asked");
+        }
+    }
+
+}